@@ -0,0 +1,59 @@
+package com.payment.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import com.payment.entity.Payment;
+
+/**
+ * Shared sample data for the benchmarks
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    static Payment payment() {
+        Payment payment = new Payment();
+        payment.setId(42L);
+        payment.setOrderId("ORDER_0D9KX4M7Q2B8N");
+        payment.setPaymentId("order_9A33XWu170gUtm");
+        payment.setCustomerName("Benchmark Customer");
+        payment.setCustomerEmail("benchmark.customer@example.com");
+        payment.setCustomerPhone("+919876543210");
+        payment.setAmount(new BigDecimal("1499.00"));
+        payment.setCurrency("INR");
+        payment.setStatus(Payment.PaymentStatus.SUCCESS);
+        payment.setCreatedAt(LocalDateTime.of(2024, 1, 15, 10, 30));
+        payment.setUpdatedAt(LocalDateTime.of(2024, 1, 15, 10, 31));
+        payment.setDescription("Order #12345 - 3 items");
+        payment.setNotes("Deliver between 9am and 6pm");
+        return payment;
+    }
+
+    /**
+     * A payment.captured webhook shaped like Razorpay's, including the bulky entity objects
+     */
+    static String webhookPayload(String paymentId, String orderId) {
+        StringBuilder notes = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            notes.append("\"note_").append(i).append("\":\"value number ").append(i).append("\",");
+        }
+        notes.setLength(notes.length() - 1);
+
+        return "{\"entity\":\"event\",\"account_id\":\"acc_BFQ7uQEaa7j2z7\",\"event\":\"payment.captured\","
+                + "\"contains\":[\"payment\",\"order\"],\"payload\":{"
+                + "\"payment\":{\"entity\":{\"id\":\"" + paymentId + "\",\"entity\":\"payment\",\"amount\":149900,"
+                + "\"currency\":\"INR\",\"status\":\"captured\",\"order_id\":\"" + orderId + "\","
+                + "\"method\":\"card\",\"amount_refunded\":0,\"captured\":true,\"description\":\"Order #12345\","
+                + "\"card\":{\"id\":\"card_DG4ZdUO3xABb20\",\"entity\":\"card\",\"name\":\"Gaurav Kumar\","
+                + "\"last4\":\"1111\",\"network\":\"Visa\",\"type\":\"debit\",\"issuer\":null,"
+                + "\"international\":false,\"emi\":false},\"email\":\"gaurav.kumar@example.com\","
+                + "\"contact\":\"+919876543210\",\"notes\":{" + notes + "},\"fee\":2998,\"tax\":458,"
+                + "\"created_at\":1567674599}},"
+                + "\"order\":{\"entity\":{\"id\":\"" + orderId + "\",\"entity\":\"order\",\"amount\":149900,"
+                + "\"amount_paid\":149900,\"amount_due\":0,\"currency\":\"INR\",\"receipt\":\"rcptid #1\","
+                + "\"status\":\"paid\",\"attempts\":1,\"notes\":{},\"created_at\":1567674581}}},"
+                + "\"created_at\":1567674606}";
+    }
+}
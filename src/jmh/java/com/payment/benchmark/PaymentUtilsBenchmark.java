@@ -0,0 +1,83 @@
+package com.payment.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.payment.exception.PaymentException;
+import com.payment.util.PaymentUtils;
+
+/**
+ * ID generation and request validation done for every created payment
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaymentUtilsBenchmark {
+
+    // Not final, so the JIT cannot treat the inputs as constants and fold the checks
+    private String customerName;
+    private String customerEmail;
+    private String customerPhone;
+    private BigDecimal amount;
+    private String currency;
+
+    @Setup
+    public void setUp() {
+        customerName = "Benchmark Customer";
+        customerEmail = "benchmark.customer@example.com";
+        customerPhone = "+919876543210";
+        amount = new BigDecimal("1499.00");
+        currency = "INR";
+    }
+
+    @Benchmark
+    public String generateOrderId() {
+        return PaymentUtils.generateOrderId();
+    }
+
+    @Benchmark
+    public String generatePaymentId() {
+        return PaymentUtils.generatePaymentId();
+    }
+
+    /**
+     * Same as generateOrderId but from several threads, to surface contention in the generator
+     */
+    @Benchmark
+    @Threads(4)
+    public String generateOrderIdContended() {
+        return PaymentUtils.generateOrderId();
+    }
+
+    /**
+     * validatePaymentRequest returns nothing, so the outcome (passed or threw) goes to the
+     * Blackhole to keep the JIT from discarding the checks
+     */
+    @Benchmark
+    public void validatePaymentRequest(Blackhole blackhole) {
+        boolean valid;
+        try {
+            PaymentUtils.validatePaymentRequest(customerName, customerEmail, customerPhone, amount, currency);
+            valid = true;
+        } catch (PaymentException e) {
+            valid = false;
+        }
+        blackhole.consume(valid);
+    }
+}
@@ -0,0 +1,73 @@
+package com.payment.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.payment.util.RazorpaySignatureVerifier;
+
+/**
+ * Throughput of the signature checks done on /razorpay/verify-payment and on every webhook
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SignatureVerificationBenchmark {
+
+    private RazorpaySignatureVerifier verifier;
+
+    private String paymentId;
+    private String orderId;
+    private String paymentSignature;
+
+    private String webhookPayload;
+    // Raw request body, as WebhookController receives it
+    private byte[] webhookBody;
+    private String webhookSignature;
+
+    @Setup
+    public void setUp() {
+        verifier = new RazorpaySignatureVerifier("benchmark_secret_key", "benchmark_webhook_secret");
+
+        paymentId = "pay_29QQoUBi66xm2f";
+        orderId = "order_9A33XWu170gUtm";
+        paymentSignature = verifier.generateSignature(paymentId + "|" + orderId);
+
+        webhookPayload = BenchmarkFixtures.webhookPayload(paymentId, orderId);
+        webhookBody = webhookPayload.getBytes(StandardCharsets.UTF_8);
+        webhookSignature = verifier.generateWebhookSignature(webhookPayload);
+    }
+
+    @Benchmark
+    public boolean verifyPaymentSignature() {
+        return verifier.verifyPaymentSignature(paymentId, orderId, paymentSignature);
+    }
+
+    @Benchmark
+    public boolean verifyWebhookSignature() {
+        return verifier.verifyWebhookSignature(webhookPayload, webhookSignature);
+    }
+
+    @Benchmark
+    public boolean verifyWebhookSignatureBytes() {
+        return verifier.verifyWebhookSignature(webhookBody, webhookSignature);
+    }
+
+    @Benchmark
+    public String generateSignature() {
+        return verifier.generateSignature(paymentId + "|" + orderId);
+    }
+}
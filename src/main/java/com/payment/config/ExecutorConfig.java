@@ -0,0 +1,41 @@
+package com.payment.config;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ExecutorConfig {
+    
+    @Value("${payment.batch.gateway-concurrency:16}")
+    private int gatewayConcurrency;
+    
+    @Value("${payment.batch.max-size:500}")
+    private int batchMaxSize;
+    
+    /**
+     * Bounded pool for fanning out Razorpay order calls from batch requests.
+     * When every worker is busy and the queue is full the submitting thread runs
+     * the call itself, which throttles the batch instead of failing it.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService gatewayFanOutExecutor() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(gatewayConcurrency, gatewayConcurrency,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(batchMaxSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "gateway-fanout-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
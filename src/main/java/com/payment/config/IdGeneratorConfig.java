@@ -0,0 +1,47 @@
+package com.payment.config;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.payment.util.IdGenerator;
+
+/**
+ * Installs the process-wide IdGenerator with this node's ID.
+ *
+ * IDs are only unique across nodes if every node has its own ID, which a host name hash
+ * cannot promise, so outside the dev and test profiles payment.node-id (PAYMENT_NODE_ID)
+ * must be set and startup fails without it. A malformed value fails startup everywhere.
+ */
+@Configuration
+public class IdGeneratorConfig {
+    
+    private static final Set<String> SINGLE_NODE_PROFILES = Set.of("dev", "test");
+    
+    @Value("${payment.node-id:}")
+    private String nodeId;
+    
+    @Autowired
+    private Environment environment;
+    
+    @PostConstruct
+    void installDefaultGenerator() {
+        long resolved;
+        if (!nodeId.isBlank()) {
+            resolved = IdGenerator.parseNodeId(nodeId);
+        } else if (SINGLE_NODE_PROFILES.containsAll(Arrays.asList(environment.getActiveProfiles()))) {
+            resolved = IdGenerator.hostNodeId();
+            System.out.println("payment.node-id not set, using node " + resolved + " from the host name (single node only)");
+        } else {
+            throw new IllegalStateException("payment.node-id (PAYMENT_NODE_ID) must be set to a value between 0 and 1023 "
+                    + "unique to this node when running with profiles " + Arrays.toString(environment.getActiveProfiles()));
+        }
+        IdGenerator.setDefault(new IdGenerator(resolved));
+    }
+}
@@ -0,0 +1,65 @@
+package com.payment.config;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.payment.service.MerchantCredentialCache;
+import com.payment.service.MerchantCredentialCache.MerchantCredential;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Authenticates requests that carry a merchant API key in the X-Api-Key header.
+ *
+ * The merchant is resolved through MerchantCredentialCache, so a known key costs a hash
+ * and a map lookup. Requests without the header pass through untouched and are handled
+ * by the rest of the chain; an unknown key or a merchant that is not ACTIVE is rejected
+ * with 401. Not a bean, so it only runs inside the security chain.
+ */
+public class MerchantApiKeyAuthenticationFilter extends OncePerRequestFilter {
+    
+    public static final String API_KEY_HEADER = "X-Api-Key";
+    
+    private static final List<SimpleGrantedAuthority> MERCHANT_AUTHORITIES = List.of(new SimpleGrantedAuthority("ROLE_MERCHANT"));
+    
+    private final MerchantCredentialCache credentialCache;
+    
+    public MerchantApiKeyAuthenticationFilter(MerchantCredentialCache credentialCache) {
+        this.credentialCache = credentialCache;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String apiKey = request.getHeader(API_KEY_HEADER);
+        if (apiKey == null || apiKey.isEmpty()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        
+        MerchantCredential merchant = credentialCache.resolve(apiKey);
+        if (merchant == null || !merchant.isActive()) {
+            SecurityContextHolder.clearContext();
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"Invalid or inactive API key\"}");
+            return;
+        }
+        
+        UsernamePasswordAuthenticationToken authentication =
+                new UsernamePasswordAuthenticationToken(merchant.getMerchantId(), null, MERCHANT_AUTHORITIES);
+        authentication.setDetails(merchant);
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        filterChain.doFilter(request, response);
+    }
+}
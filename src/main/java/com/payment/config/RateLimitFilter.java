@@ -0,0 +1,61 @@
+package com.payment.config;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.payment.service.MerchantCredentialCache.MerchantCredential;
+import com.payment.service.MerchantRateLimiter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Applies MerchantRateLimiter to /api/payments/**. Runs after API key authentication, so
+ * authenticated merchants are limited by merchant ID and everyone else by client address.
+ * Rejected requests get 429 with Retry-After. Not a bean, so it only runs inside the
+ * security chain.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+    
+    private static final String LIMITED_PATH = "/api/payments/";
+    
+    private final MerchantRateLimiter rateLimiter;
+    
+    public RateLimitFilter(MerchantRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + LIMITED_PATH);
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        boolean merchant = authentication != null && authentication.getDetails() instanceof MerchantCredential;
+        String key = merchant ? authentication.getName() : "ip:" + request.getRemoteAddr();
+        
+        long waitNanos = rateLimiter.tryAcquire(key, merchant);
+        if (waitNanos > 0) {
+            long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"Rate limit exceeded\",\"limitPerMinute\":"
+                    + rateLimiter.getRequestsPerMinute() + "}");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
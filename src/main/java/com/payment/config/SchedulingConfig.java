@@ -0,0 +1,12 @@
+package com.payment.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled housekeeping jobs (ticket eviction, reconciliation, flushes)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
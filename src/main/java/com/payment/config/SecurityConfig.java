@@ -2,14 +2,19 @@ package com.payment.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import com.payment.service.MerchantCredentialCache;
+import com.payment.service.MerchantRateLimiter;
+
 import java.util.Arrays;
 
 @Configuration
@@ -17,14 +22,20 @@ import java.util.Arrays;
 public class SecurityConfig {
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, MerchantCredentialCache credentialCache,
+                                           MerchantRateLimiter rateLimiter) throws Exception {
         http
             .csrf(csrf -> csrf.disable())
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+            .addFilterBefore(new MerchantApiKeyAuthenticationFilter(credentialCache), UsernamePasswordAuthenticationFilter.class)
+            .addFilterAfter(new RateLimitFilter(rateLimiter), MerchantApiKeyAuthenticationFilter.class)
             .authorizeHttpRequests(authz -> authz
-                .requestMatchers("/api/payments/create", "/api/payments/verify").permitAll()
+                .requestMatchers("/api/payments/create", "/api/payments/batch", "/api/payments/verify").permitAll()
+                .requestMatchers(HttpMethod.POST, "/api/payments/create-async").permitAll()
+                .requestMatchers(HttpMethod.GET, "/api/payments/create-async/*").permitAll() // authorized by the poll token
                 .requestMatchers("/api/payments/health", "/api-docs/**", "/swagger-ui/**").permitAll()
+                .requestMatchers("/api/webhooks/**").permitAll() // authenticated by the Razorpay signature
                 .requestMatchers("/h2-console/**").permitAll()
                 .requestMatchers("/static/**", "/", "/index.html").permitAll()
                 .anyRequest().authenticated()
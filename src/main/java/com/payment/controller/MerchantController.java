@@ -4,6 +4,8 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -13,10 +15,15 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.payment.dto.CursorPage;
 import com.payment.entity.Merchant;
 import com.payment.repository.MerchantRepository;
+import com.payment.service.MerchantCredentialCache;
+import com.payment.util.IdGenerator;
+import com.payment.util.PageCursor;
 
 import jakarta.validation.Valid;
 
@@ -28,16 +35,24 @@ public class MerchantController {
     @Autowired
     private MerchantRepository merchantRepository;
     
+    @Autowired
+    private MerchantCredentialCache credentialCache;
+    
+    @Value("${payment.page.max-size:200}")
+    private int maxPageSize;
+    
     @PostMapping("/register")
     public ResponseEntity<Merchant> registerMerchant(@Valid @RequestBody Merchant merchant) {
         try {
             // Generate merchant ID if not provided
             if (merchant.getMerchantId() == null || merchant.getMerchantId().isEmpty()) {
-                merchant.setMerchantId("MERCH_" + System.currentTimeMillis());
+                merchant.setMerchantId(IdGenerator.getDefault().next("MERCH_"));
             }
             
             merchant.setStatus(Merchant.MerchantStatus.ACTIVE);
             Merchant savedMerchant = merchantRepository.save(merchant);
+            // The key may have been cached as unknown before this merchant existed
+            credentialCache.invalidate(savedMerchant);
             return ResponseEntity.status(HttpStatus.CREATED).body(savedMerchant);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -66,15 +81,28 @@ public class MerchantController {
     }
     
     @GetMapping("/status/{status}")
-    public ResponseEntity<List<Merchant>> getMerchantsByStatus(@PathVariable Merchant.MerchantStatus status) {
-        List<Merchant> merchants = merchantRepository.findByStatus(status);
-        return ResponseEntity.ok(merchants);
+    public ResponseEntity<CursorPage<Merchant>> getMerchantsByStatus(
+            @PathVariable Merchant.MerchantStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        int size = PageCursor.pageSize(limit, maxPageSize);
+        PageCursor after = PageCursor.fromRequest(cursor);
+        List<Merchant> merchants = after == null
+                ? merchantRepository.findByStatusOrderByCreatedAtDescIdDesc(status, Limit.of(size + 1))
+                : merchantRepository.findByStatusBefore(status, after.getCreatedAt(), after.getId(), Limit.of(size + 1));
+        return ResponseEntity.ok(CursorPage.of(merchants, size, merchant -> merchant, MerchantController::cursorOf));
     }
     
     @GetMapping
-    public ResponseEntity<List<Merchant>> getAllMerchants() {
-        List<Merchant> merchants = merchantRepository.findAll();
-        return ResponseEntity.ok(merchants);
+    public ResponseEntity<CursorPage<Merchant>> getAllMerchants(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        int size = PageCursor.pageSize(limit, maxPageSize);
+        PageCursor after = PageCursor.fromRequest(cursor);
+        List<Merchant> merchants = after == null
+                ? merchantRepository.findAllByOrderByCreatedAtDescIdDesc(Limit.of(size + 1))
+                : merchantRepository.findAllBefore(after.getCreatedAt(), after.getId(), Limit.of(size + 1));
+        return ResponseEntity.ok(CursorPage.of(merchants, size, merchant -> merchant, MerchantController::cursorOf));
     }
     
     @PutMapping("/{id}/status")
@@ -86,6 +114,7 @@ public class MerchantController {
             Merchant merchant = merchantOpt.get();
             merchant.setStatus(status);
             Merchant updatedMerchant = merchantRepository.save(merchant);
+            credentialCache.invalidate(updatedMerchant);
             return ResponseEntity.ok(updatedMerchant);
         }
         return ResponseEntity.notFound().build();
@@ -109,8 +138,13 @@ public class MerchantController {
             merchant.setCountry(merchantDetails.getCountry());
             
             Merchant updatedMerchant = merchantRepository.save(merchant);
+            credentialCache.invalidate(updatedMerchant);
             return ResponseEntity.ok(updatedMerchant);
         }
         return ResponseEntity.notFound().build();
     }
-} 
\ No newline at end of file
+    
+    private static PageCursor cursorOf(Merchant merchant) {
+        return new PageCursor(merchant.getCreatedAt(), merchant.getId());
+    }
+}
\ No newline at end of file
@@ -1,14 +1,22 @@
 package com.payment.controller;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.net.URI;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPOutputStream;
 
+import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -16,16 +24,28 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.payment.dto.BatchPaymentResponse;
+import com.payment.dto.CursorPage;
+import com.payment.dto.PaymentAggregate;
+import com.payment.dto.PaymentCreationStatus;
 import com.payment.dto.PaymentRequest;
 import com.payment.dto.PaymentResponse;
 import com.payment.dto.RazorpayPaymentVerificationRequest;
 import com.payment.entity.Payment;
+import com.payment.exception.InvalidStatusTransitionException;
+import com.payment.service.PaymentAnalyticsService;
+import com.payment.service.PaymentExportService;
 import com.payment.service.PaymentService;
+import com.payment.service.PaymentStatsRegistry;
+import com.razorpay.Order;
 import com.razorpay.RazorpayClient;
+import com.razorpay.RazorpayException;
 
 import jakarta.validation.Valid;
 
@@ -40,6 +60,15 @@ public class PaymentController {
     @Autowired
     private RazorpayClient razorpayClient;
     
+    @Autowired
+    private PaymentStatsRegistry statsRegistry;
+    
+    @Autowired
+    private PaymentAnalyticsService analyticsService;
+    
+    @Autowired
+    private PaymentExportService exportService;
+    
     @PostMapping("/create")
     public ResponseEntity<PaymentResponse> createPayment(@Valid @RequestBody PaymentRequest request) {
         try {
@@ -51,6 +80,45 @@ public class PaymentController {
         }
     }
     
+    @PostMapping("/batch")
+    public ResponseEntity<BatchPaymentResponse> createPayments(@RequestBody List<PaymentRequest> requests) {
+        BatchPaymentResponse response = paymentService.createPayments(requests);
+        if (response.getFailed() == 0) {
+            return ResponseEntity.ok(response);
+        }
+        // Some or all items failed; the body carries per-item results
+        HttpStatus status = response.getSucceeded() == 0 ? HttpStatus.BAD_REQUEST : HttpStatus.MULTI_STATUS;
+        return ResponseEntity.status(status).body(response);
+    }
+    
+    @PostMapping("/create-async")
+    public ResponseEntity<PaymentCreationStatus> createPaymentAsync(@Valid @RequestBody PaymentRequest request) {
+        try {
+            PaymentCreationStatus status = paymentService.createPaymentAsync(request);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/payments/create-async/" + status.getOrderId() + "?token=" + status.getPollToken()))
+                    .body(status);
+        } catch (RejectedExecutionException e) {
+            // Order pipeline is saturated; ask the client to back off briefly
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
+        }
+    }
+    
+    @GetMapping("/create-async/{orderId}")
+    public ResponseEntity<PaymentCreationStatus> getPaymentCreationStatus(
+            @PathVariable String orderId,
+            @RequestParam(required = false) String token,
+            @RequestParam(defaultValue = "0") long waitMillis) {
+        // Unknown orders and wrong tokens look the same, so order IDs cannot be probed
+        PaymentCreationStatus status = paymentService.getPaymentCreationStatus(orderId, token, waitMillis);
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(status);
+    }
+    
     @PostMapping("/razorpay/order")
     public ResponseEntity<Map<String, Object>> createRazorpayOrder(@RequestBody Map<String, Object> request) {
         try {
@@ -130,30 +198,100 @@ public class PaymentController {
     }
     
     @GetMapping("/customer/{email}")
-    public ResponseEntity<List<PaymentResponse>> getPaymentsByCustomerEmail(@PathVariable String email) {
-        List<PaymentResponse> responses = paymentService.getPaymentsByCustomerEmail(email);
-        return ResponseEntity.ok(responses);
+    public ResponseEntity<CursorPage<PaymentResponse>> getPaymentsByCustomerEmail(
+            @PathVariable String email,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        CursorPage<PaymentResponse> page = paymentService.getPaymentsByCustomerEmail(email, cursor, limit);
+        return ResponseEntity.ok(page);
     }
     
     @GetMapping("/status/{status}")
-    public ResponseEntity<List<PaymentResponse>> getPaymentsByStatus(@PathVariable Payment.PaymentStatus status) {
-        List<PaymentResponse> responses = paymentService.getPaymentsByStatus(status);
-        return ResponseEntity.ok(responses);
+    public ResponseEntity<CursorPage<PaymentResponse>> getPaymentsByStatus(
+            @PathVariable Payment.PaymentStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        CursorPage<PaymentResponse> page = paymentService.getPaymentsByStatus(status, cursor, limit);
+        return ResponseEntity.ok(page);
     }
     
     @GetMapping("/date-range")
-    public ResponseEntity<List<PaymentResponse>> getPaymentsByDateRange(
+    public ResponseEntity<CursorPage<PaymentResponse>> getPaymentsByDateRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
-        List<PaymentResponse> responses = paymentService.getPaymentsByDateRange(startDate, endDate);
-        return ResponseEntity.ok(responses);
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        CursorPage<PaymentResponse> page = paymentService.getPaymentsByDateRange(startDate, endDate, cursor, limit);
+        return ResponseEntity.ok(page);
+    }
+    
+    /**
+     * Stream matching payments as NDJSON or CSV without building them up in memory.
+     * Filter by a date range, a status or a customer email. The response is gzipped
+     * when the client sends Accept-Encoding: gzip.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportPayments(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) Payment.PaymentStatus status,
+            @RequestParam(required = false) String email,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        PaymentExportService.Format exportFormat;
+        try {
+            exportFormat = PaymentExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        ExportWriter writer;
+        if (startDate != null && endDate != null) {
+            writer = out -> exportService.exportByDateRange(startDate, endDate, exportFormat, out);
+        } else if (status != null) {
+            writer = out -> exportService.exportByStatus(status, exportFormat, out);
+        } else if (email != null && !email.isBlank()) {
+            writer = out -> exportService.exportByCustomerEmail(email, exportFormat, out);
+        } else {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out, 16 * 1024);
+                writer.write(compressed);
+                compressed.finish();
+            } else {
+                writer.write(out);
+            }
+        };
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"payments." + exportFormat.getExtension() + "\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+    
+    @FunctionalInterface
+    private interface ExportWriter {
+        void write(OutputStream out) throws IOException;
     }
     
     @PutMapping("/{id}/status")
     public ResponseEntity<PaymentResponse> updatePaymentStatus(
             @PathVariable Long id,
             @RequestParam Payment.PaymentStatus status) {
-        PaymentResponse response = paymentService.updatePaymentStatus(id, status);
+        PaymentResponse response;
+        try {
+            response = paymentService.updatePaymentStatus(id, status);
+        } catch (InvalidStatusTransitionException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new PaymentResponse(e.getMessage()));
+        }
         if (response.getMessage() != null && response.getMessage().equals("Payment not found")) {
             return ResponseEntity.notFound().build();
         }
@@ -183,22 +321,42 @@ public class PaymentController {
         return ResponseEntity.ok(totalAmount != null ? totalAmount : BigDecimal.ZERO);
     }
     
+    @GetMapping("/stats/daily")
+    public ResponseEntity<List<PaymentAggregate>> getDailyStats(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+        return ResponseEntity.ok(analyticsService.getDailyStats(startDate, endDate));
+    }
+    
+    @GetMapping("/stats/by-currency")
+    public ResponseEntity<List<PaymentAggregate>> getStatsByCurrency(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+        return ResponseEntity.ok(analyticsService.getStatsByCurrency(startDate, endDate));
+    }
+    
+    @GetMapping("/stats/by-method")
+    public ResponseEntity<List<PaymentAggregate>> getStatsByMethod(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+        return ResponseEntity.ok(analyticsService.getStatsByMethod(startDate, endDate));
+    }
+    
     @GetMapping("/stats/dashboard")
     public ResponseEntity<Map<String, Object>> getDashboardStats() {
         Map<String, Object> stats = new HashMap<>();
         
-        // Get counts for each status
-        stats.put("pending", paymentService.getPaymentCountByStatus(Payment.PaymentStatus.PENDING));
-        stats.put("success", paymentService.getPaymentCountByStatus(Payment.PaymentStatus.SUCCESS));
-        stats.put("failed", paymentService.getPaymentCountByStatus(Payment.PaymentStatus.FAILED));
-        stats.put("cancelled", paymentService.getPaymentCountByStatus(Payment.PaymentStatus.CANCELLED));
-        stats.put("refunded", paymentService.getPaymentCountByStatus(Payment.PaymentStatus.REFUNDED));
+        // Served from in-memory counters maintained on every status transition
+        stats.put("pending", statsRegistry.getCount(Payment.PaymentStatus.PENDING));
+        stats.put("success", statsRegistry.getCount(Payment.PaymentStatus.SUCCESS));
+        stats.put("failed", statsRegistry.getCount(Payment.PaymentStatus.FAILED));
+        stats.put("cancelled", statsRegistry.getCount(Payment.PaymentStatus.CANCELLED));
+        stats.put("refunded", statsRegistry.getCount(Payment.PaymentStatus.REFUNDED));
         
-        // Get total amount for last 30 days
-        LocalDateTime endDate = LocalDateTime.now();
-        LocalDateTime startDate = endDate.minusDays(30);
-        BigDecimal totalAmount = paymentService.getTotalAmountByDateRange(startDate, endDate);
-        stats.put("totalAmountLast30Days", totalAmount != null ? totalAmount : BigDecimal.ZERO);
+        // Total amount for last 30 days
+        stats.put("totalAmountLast30Days", statsRegistry.getSuccessAmountLast30Days());
+        stats.put("amountsLast30DaysByCurrency", statsRegistry.getSuccessAmountsLast30DaysByCurrency());
+        stats.put("lastReconciledAt", statsRegistry.getLastReconciledAt());
         
         return ResponseEntity.ok(stats);
     }
@@ -242,6 +400,27 @@ public class PaymentController {
         createPayment.put("body", "PaymentRequest object");
         endpoints.put("createPayment", createPayment);
         
+        Map<String, Object> createPaymentAsync = new HashMap<>();
+        createPaymentAsync.put("method", "POST");
+        createPaymentAsync.put("url", "/api/payments/create-async");
+        createPaymentAsync.put("description", "Create a payment and create the Razorpay order in the background");
+        createPaymentAsync.put("body", "PaymentRequest object");
+        endpoints.put("createPaymentAsync", createPaymentAsync);
+        
+        Map<String, Object> createPayments = new HashMap<>();
+        createPayments.put("method", "POST");
+        createPayments.put("url", "/api/payments/batch");
+        createPayments.put("description", "Create up to payment.batch.max-size payments; returns per-item results (207 on partial failure)");
+        createPayments.put("body", "Array of PaymentRequest objects");
+        endpoints.put("createPayments", createPayments);
+        
+        Map<String, Object> getPaymentCreationStatus = new HashMap<>();
+        getPaymentCreationStatus.put("method", "GET");
+        getPaymentCreationStatus.put("url", "/api/payments/create-async/{orderId}");
+        getPaymentCreationStatus.put("description", "Poll the status of an asynchronously created payment");
+        getPaymentCreationStatus.put("params", "token (pollToken from create-async), waitMillis (optional long-poll)");
+        endpoints.put("getPaymentCreationStatus", getPaymentCreationStatus);
+        
         Map<String, Object> verifyPayment = new HashMap<>();
         verifyPayment.put("method", "POST");
         verifyPayment.put("url", "/api/payments/verify");
@@ -278,20 +457,22 @@ public class PaymentController {
         Map<String, Object> getPaymentsByCustomer = new HashMap<>();
         getPaymentsByCustomer.put("method", "GET");
         getPaymentsByCustomer.put("url", "/api/payments/customer/{email}");
-        getPaymentsByCustomer.put("description", "Get all payments for a customer");
+        getPaymentsByCustomer.put("description", "Get payments for a customer, newest first");
+        getPaymentsByCustomer.put("params", "cursor, limit (optional; pass nextCursor to get the next page)");
         endpoints.put("getPaymentsByCustomer", getPaymentsByCustomer);
         
         Map<String, Object> getPaymentsByStatus = new HashMap<>();
         getPaymentsByStatus.put("method", "GET");
         getPaymentsByStatus.put("url", "/api/payments/status/{status}");
-        getPaymentsByStatus.put("description", "Get payments by status");
+        getPaymentsByStatus.put("description", "Get payments by status, newest first");
+        getPaymentsByStatus.put("params", "cursor, limit (optional)");
         endpoints.put("getPaymentsByStatus", getPaymentsByStatus);
         
         Map<String, Object> getPaymentsByDateRange = new HashMap<>();
         getPaymentsByDateRange.put("method", "GET");
         getPaymentsByDateRange.put("url", "/api/payments/date-range");
         getPaymentsByDateRange.put("description", "Get payments by date range");
-        getPaymentsByDateRange.put("params", "startDate, endDate");
+        getPaymentsByDateRange.put("params", "startDate, endDate, cursor, limit");
         endpoints.put("getPaymentsByDateRange", getPaymentsByDateRange);
         
         // PUT endpoints
@@ -323,6 +504,34 @@ public class PaymentController {
         getTotalAmount.put("params", "startDate, endDate");
         endpoints.put("getTotalAmount", getTotalAmount);
         
+        Map<String, Object> getDailyStats = new HashMap<>();
+        getDailyStats.put("method", "GET");
+        getDailyStats.put("url", "/api/payments/stats/daily");
+        getDailyStats.put("description", "Successful payment count and amounts per day");
+        getDailyStats.put("params", "startDate, endDate");
+        endpoints.put("getDailyStats", getDailyStats);
+        
+        Map<String, Object> getStatsByCurrency = new HashMap<>();
+        getStatsByCurrency.put("method", "GET");
+        getStatsByCurrency.put("url", "/api/payments/stats/by-currency");
+        getStatsByCurrency.put("description", "Successful payment count and amounts per currency");
+        getStatsByCurrency.put("params", "startDate, endDate");
+        endpoints.put("getStatsByCurrency", getStatsByCurrency);
+        
+        Map<String, Object> getStatsByMethod = new HashMap<>();
+        getStatsByMethod.put("method", "GET");
+        getStatsByMethod.put("url", "/api/payments/stats/by-method");
+        getStatsByMethod.put("description", "Successful payment count and amounts per payment method");
+        getStatsByMethod.put("params", "startDate, endDate");
+        endpoints.put("getStatsByMethod", getStatsByMethod);
+        
+        Map<String, Object> exportPayments = new HashMap<>();
+        exportPayments.put("method", "GET");
+        exportPayments.put("url", "/api/payments/export");
+        exportPayments.put("description", "Stream payments as NDJSON or CSV (gzip with Accept-Encoding)");
+        exportPayments.put("params", "format (ndjson|csv), and startDate+endDate, status or email");
+        endpoints.put("exportPayments", exportPayments);
+        
         Map<String, Object> getDashboardStats = new HashMap<>();
         getDashboardStats.put("method", "GET");
         getDashboardStats.put("url", "/api/payments/stats/dashboard");
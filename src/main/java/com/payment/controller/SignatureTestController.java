@@ -99,7 +99,7 @@ public class SignatureTestController {
         }
         
         boolean isValid = signatureVerifier.verifyWebhookSignature(payload, signature);
-        String expectedSignature = signatureVerifier.generateSignature(payload);
+        String expectedSignature = signatureVerifier.generateWebhookSignature(payload);
         
         Map<String, Object> response = new HashMap<>();
         response.put("valid", isValid);
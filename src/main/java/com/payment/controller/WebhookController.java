@@ -1,12 +1,14 @@
 package com.payment.controller;
 
-import com.payment.service.PaymentService;
-import org.json.JSONObject;
+import com.payment.service.WebhookDeduplicator;
+import com.payment.service.WebhookJournal;
+import com.payment.util.RazorpaySignatureVerifier;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.Map;
 
 @RestController
@@ -15,46 +17,42 @@ import java.util.Map;
 public class WebhookController {
 
     @Autowired
-    private PaymentService paymentService;
+    private RazorpaySignatureVerifier signatureVerifier;
 
+    @Autowired
+    private WebhookJournal webhookJournal;
+
+    @Autowired
+    private WebhookDeduplicator webhookDeduplicator;
+
+    /**
+     * Verify and durably journal a Razorpay webhook, then acknowledge immediately.
+     * Payments are updated asynchronously by WebhookEventProcessor.
+     */
     @PostMapping("/razorpay")
-    public ResponseEntity<String> handleRazorpayWebhook(@RequestBody String payload,
-                                                       @RequestHeader("X-Razorpay-Signature") String signature) {
+    public ResponseEntity<String> handleRazorpayWebhook(@RequestBody byte[] payload,
+                                                       @RequestHeader("X-Razorpay-Signature") String signature,
+                                                       @RequestHeader(value = "X-Razorpay-Event-Id", required = false) String eventId) {
+        if (!signatureVerifier.verifyWebhookSignature(payload, signature)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Invalid webhook signature");
+        }
+        
+        if (eventId != null && webhookDeduplicator.isDuplicate(eventId)) {
+            // Already applied; acknowledge so Razorpay stops redelivering
+            return ResponseEntity.ok("Duplicate webhook ignored");
+        }
+        
         try {
-            // Parse the webhook payload
-            JSONObject webhookData = new JSONObject(payload);
-            
-            // Extract payment information
-            String event = webhookData.getString("event");
-            JSONObject payloadData = webhookData.getJSONObject("payload");
-            JSONObject payment = payloadData.getJSONObject("payment");
-            JSONObject order = payloadData.getJSONObject("order");
-            
-            String paymentId = payment.getString("id");
-            String orderId = order.getString("id");
-            String status = payment.getString("status");
+            // Durable before we answer, so a crash after the 200 cannot lose the event.
+            // The same bytes that were verified are journaled and later parsed.
+            webhookJournal.append(eventId, payload);
+            return ResponseEntity.ok("Webhook accepted");
             
-            // Process the webhook based on event type
-            switch (event) {
-                case "payment.captured":
-                    paymentService.processPaymentSuccess(paymentId, orderId);
-                    break;
-                case "payment.failed":
-                    paymentService.processPaymentFailure(paymentId, orderId);
-                    break;
-                case "payment.refunded":
-                    paymentService.processPaymentRefund(paymentId, orderId);
-                    break;
-                default:
-                    // Log unhandled events
-                    System.out.println("Unhandled webhook event: " + event);
-            }
-            
-            return ResponseEntity.ok("Webhook processed successfully");
-            
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body("Failed to process webhook: " + e.getMessage());
+        } catch (IOException e) {
+            // Not journaled; let Razorpay retry
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Failed to journal webhook: " + e.getMessage());
         }
     }
 
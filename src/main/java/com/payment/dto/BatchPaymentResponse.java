@@ -0,0 +1,104 @@
+package com.payment.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of a batch payment creation. Items are reported in request order and
+ * succeed or fail independently.
+ */
+public class BatchPaymentResponse {
+    
+    private int total;
+    private int succeeded;
+    private int failed;
+    private List<Item> results = new ArrayList<>();
+    
+    // Default constructor
+    public BatchPaymentResponse() {}
+    
+    public BatchPaymentResponse(List<Item> results) {
+        this.results = results;
+        this.total = results.size();
+        for (Item item : results) {
+            if (item.isSuccess()) {
+                succeeded++;
+            } else {
+                failed++;
+            }
+        }
+    }
+    
+    // Getters and Setters
+    public int getTotal() {
+        return total;
+    }
+    
+    public void setTotal(int total) {
+        this.total = total;
+    }
+    
+    public int getSucceeded() {
+        return succeeded;
+    }
+    
+    public void setSucceeded(int succeeded) {
+        this.succeeded = succeeded;
+    }
+    
+    public int getFailed() {
+        return failed;
+    }
+    
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+    
+    public List<Item> getResults() {
+        return results;
+    }
+    
+    public void setResults(List<Item> results) {
+        this.results = results;
+    }
+    
+    /**
+     * Outcome of one request in the batch
+     */
+    public static class Item {
+        private int index;
+        private boolean success;
+        private PaymentResponse payment;
+        private String error;
+        
+        public Item() {}
+        
+        public static Item success(int index, PaymentResponse payment) {
+            Item item = new Item();
+            item.index = index;
+            item.success = true;
+            item.payment = payment;
+            return item;
+        }
+        
+        public static Item failure(int index, String error) {
+            Item item = new Item();
+            item.index = index;
+            item.success = false;
+            item.error = error;
+            return item;
+        }
+        
+        public int getIndex() { return index; }
+        public void setIndex(int index) { this.index = index; }
+        
+        public boolean isSuccess() { return success; }
+        public void setSuccess(boolean success) { this.success = success; }
+        
+        public PaymentResponse getPayment() { return payment; }
+        public void setPayment(PaymentResponse payment) { this.payment = payment; }
+        
+        public String getError() { return error; }
+        public void setError(String error) { this.error = error; }
+    }
+}
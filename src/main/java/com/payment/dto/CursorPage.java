@@ -0,0 +1,78 @@
+package com.payment.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import com.payment.util.PageCursor;
+
+/**
+ * One page of a keyset-paginated listing. Pass nextCursor back as the cursor parameter
+ * to fetch the following page; it is null on the last page.
+ */
+public class CursorPage<T> {
+    
+    private List<T> items = new ArrayList<>();
+    private int limit;
+    private boolean hasMore;
+    private String nextCursor;
+    
+    // Default constructor
+    public CursorPage() {}
+    
+    public CursorPage(List<T> items, int limit, boolean hasMore, String nextCursor) {
+        this.items = items;
+        this.limit = limit;
+        this.hasMore = hasMore;
+        this.nextCursor = nextCursor;
+    }
+    
+    /**
+     * Build a page from a query that fetched up to limit + 1 rows; the extra row only
+     * signals that another page exists and is not returned.
+     */
+    public static <E, T> CursorPage<T> of(List<E> rows, int limit, Function<E, T> mapper,
+                                          Function<E, PageCursor> cursorOf) {
+        boolean hasMore = rows.size() > limit;
+        List<E> page = hasMore ? rows.subList(0, limit) : rows;
+        List<T> items = new ArrayList<>(page.size());
+        for (E row : page) {
+            items.add(mapper.apply(row));
+        }
+        String nextCursor = hasMore ? cursorOf.apply(page.get(page.size() - 1)).encode() : null;
+        return new CursorPage<>(items, limit, hasMore, nextCursor);
+    }
+    
+    // Getters and Setters
+    public List<T> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+    
+    public int getLimit() {
+        return limit;
+    }
+    
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+    
+    public boolean isHasMore() {
+        return hasMore;
+    }
+    
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+    
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
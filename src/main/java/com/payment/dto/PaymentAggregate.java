@@ -0,0 +1,67 @@
+package com.payment.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Count and amount statistics for one group (a day, currency or payment method)
+ */
+public class PaymentAggregate {
+    
+    private Object key;
+    private long count;
+    private BigDecimal totalAmount;
+    private BigDecimal minAmount;
+    private BigDecimal maxAmount;
+    
+    // Default constructor
+    public PaymentAggregate() {}
+    
+    public PaymentAggregate(Object key, long count, BigDecimal totalAmount, BigDecimal minAmount, BigDecimal maxAmount) {
+        this.key = key;
+        this.count = count;
+        this.totalAmount = totalAmount;
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+    }
+    
+    // Getters and Setters
+    public Object getKey() {
+        return key;
+    }
+    
+    public void setKey(Object key) {
+        this.key = key;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public void setCount(long count) {
+        this.count = count;
+    }
+    
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+    
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+    
+    public BigDecimal getMinAmount() {
+        return minAmount;
+    }
+    
+    public void setMinAmount(BigDecimal minAmount) {
+        this.minAmount = minAmount;
+    }
+    
+    public BigDecimal getMaxAmount() {
+        return maxAmount;
+    }
+    
+    public void setMaxAmount(BigDecimal maxAmount) {
+        this.maxAmount = maxAmount;
+    }
+}
@@ -0,0 +1,121 @@
+package com.payment.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of an asynchronously created payment, as returned by the create-async endpoints
+ */
+public class PaymentCreationStatus {
+    
+    private Long id;
+    private String orderId;
+    private State state;
+    private String paymentId;
+    private String paymentUrl;
+    private String error;
+    private LocalDateTime queuedAt;
+    private LocalDateTime completedAt;
+    private Long gatewayLatencyMillis;
+    // Only set on the create-async response; polls must present it
+    private String pollToken;
+    
+    // Default constructor
+    public PaymentCreationStatus() {}
+    
+    public PaymentCreationStatus(Long id, String orderId, State state) {
+        this.id = id;
+        this.orderId = orderId;
+        this.state = state;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getOrderId() {
+        return orderId;
+    }
+    
+    public void setOrderId(String orderId) {
+        this.orderId = orderId;
+    }
+    
+    public State getState() {
+        return state;
+    }
+    
+    public void setState(State state) {
+        this.state = state;
+    }
+    
+    public String getPaymentId() {
+        return paymentId;
+    }
+    
+    public void setPaymentId(String paymentId) {
+        this.paymentId = paymentId;
+    }
+    
+    public String getPaymentUrl() {
+        return paymentUrl;
+    }
+    
+    public void setPaymentUrl(String paymentUrl) {
+        this.paymentUrl = paymentUrl;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public void setError(String error) {
+        this.error = error;
+    }
+    
+    public LocalDateTime getQueuedAt() {
+        return queuedAt;
+    }
+    
+    public void setQueuedAt(LocalDateTime queuedAt) {
+        this.queuedAt = queuedAt;
+    }
+    
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+    
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+    
+    public Long getGatewayLatencyMillis() {
+        return gatewayLatencyMillis;
+    }
+    
+    public void setGatewayLatencyMillis(Long gatewayLatencyMillis) {
+        this.gatewayLatencyMillis = gatewayLatencyMillis;
+    }
+    
+    public String getPollToken() {
+        return pollToken;
+    }
+    
+    public void setPollToken(String pollToken) {
+        this.pollToken = pollToken;
+    }
+    
+    // Creation State Enum
+    public enum State {
+        QUEUED,
+        PROCESSING,
+        // Stored, but no gateway order yet and no worker on this node tracking it
+        PENDING,
+        COMPLETED,
+        FAILED
+    }
+}
\ No newline at end of file
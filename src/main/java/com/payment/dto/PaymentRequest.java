@@ -3,6 +3,9 @@ package com.payment.dto;
 import jakarta.validation.constraints.*;
 import java.math.BigDecimal;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.payment.util.Money;
+
 public class PaymentRequest {
     
     @NotBlank(message = "Customer name is required")
@@ -74,6 +77,9 @@ public class PaymentRequest {
     
     private Integer timeoutSeconds = 300;
     
+    // Built from amount and currency on first use and reset when either changes
+    private Money money;
+    
     // Default constructor
     public PaymentRequest() {}
     
@@ -120,6 +126,27 @@ public class PaymentRequest {
     
     public void setAmount(BigDecimal amount) {
         this.amount = amount;
+        this.money = null;
+    }
+    
+    /**
+     * @return The amount in the currency's minor units, or null until both are set
+     */
+    @JsonIgnore
+    public Money getMoney() {
+        if (money == null && amount != null && currency != null) {
+            money = Money.of(amount, currency);
+        }
+        return money;
+    }
+    
+    /**
+     * Money would round 100.50 JPY to 101; refuse such amounts instead of charging a different one
+     */
+    @JsonIgnore
+    @AssertTrue(message = "Amount has more decimal places than the currency allows")
+    public boolean isAmountWithinCurrencyPrecision() {
+        return amount == null || currency == null || amount.stripTrailingZeros().scale() <= Money.exponent(currency);
     }
     
     public String getCurrency() {
@@ -128,6 +155,7 @@ public class PaymentRequest {
     
     public void setCurrency(String currency) {
         this.currency = currency;
+        this.money = null;
     }
     
     public String getDescription() {
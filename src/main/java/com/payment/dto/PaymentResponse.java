@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 import com.payment.entity.Payment;
+import com.payment.util.Money;
 
 public class PaymentResponse {
     
@@ -22,6 +23,8 @@ public class PaymentResponse {
     private String notes;
     private String paymentUrl;
     private String message;
+    // Built from amount and currency on first use and reset when either changes
+    private Money money;
     
     // Default constructor
     public PaymentResponse() {}
@@ -36,6 +39,7 @@ public class PaymentResponse {
         this.customerPhone = payment.getCustomerPhone();
         this.amount = payment.getAmount();
         this.currency = payment.getCurrency();
+        this.money = payment.getMoney();
         this.status = payment.getStatus();
         this.createdAt = payment.getCreatedAt();
         this.updatedAt = payment.getUpdatedAt();
@@ -43,6 +47,43 @@ public class PaymentResponse {
         this.notes = payment.getNotes();
     }
     
+    // Constructor from a read projection
+    public PaymentResponse(PaymentView payment) {
+        this.id = payment.getId();
+        this.orderId = payment.getOrderId();
+        this.paymentId = payment.getPaymentId();
+        this.customerName = payment.getCustomerName();
+        this.customerEmail = payment.getCustomerEmail();
+        this.customerPhone = payment.getCustomerPhone();
+        this.amount = payment.getAmount();
+        this.currency = payment.getCurrency();
+        this.status = payment.getStatus();
+        this.createdAt = payment.getCreatedAt();
+        this.updatedAt = payment.getUpdatedAt();
+        this.description = payment.getDescription();
+        this.notes = payment.getNotes();
+    }
+    
+    // Copy constructor, so a cached instance is never shared with callers
+    public PaymentResponse(PaymentResponse other) {
+        this.id = other.id;
+        this.orderId = other.orderId;
+        this.paymentId = other.paymentId;
+        this.customerName = other.customerName;
+        this.customerEmail = other.customerEmail;
+        this.customerPhone = other.customerPhone;
+        this.amount = other.amount;
+        this.currency = other.currency;
+        this.money = other.money;
+        this.status = other.status;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.description = other.description;
+        this.notes = other.notes;
+        this.paymentUrl = other.paymentUrl;
+        this.message = other.message;
+    }
+    
     // Constructor with payment URL for new payments
     public PaymentResponse(Payment payment, String paymentUrl) {
         this(payment);
@@ -109,6 +150,17 @@ public class PaymentResponse {
     
     public void setAmount(BigDecimal amount) {
         this.amount = amount;
+        this.money = null;
+    }
+    
+    /**
+     * Exact minor-unit form of amount, serialized alongside it for clients that avoid decimals
+     */
+    public Money getMoney() {
+        if (money == null && amount != null && currency != null) {
+            money = Money.of(amount, currency);
+        }
+        return money;
     }
     
     public String getCurrency() {
@@ -117,6 +169,7 @@ public class PaymentResponse {
     
     public void setCurrency(String currency) {
         this.currency = currency;
+        this.money = null;
     }
     
     public Payment.PaymentStatus getStatus() {
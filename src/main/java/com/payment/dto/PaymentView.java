@@ -0,0 +1,46 @@
+package com.payment.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import com.payment.entity.Payment;
+
+/**
+ * Read-only projection of the payment columns that PaymentResponse exposes.
+ *
+ * Read endpoints select straight into this view, so the remaining columns (gateway
+ * response, transaction and refund details) are never fetched and no managed entity or
+ * dirty-checking snapshot is created per row.
+ */
+public interface PaymentView {
+    
+    Long getId();
+    
+    String getOrderId();
+    
+    String getPaymentId();
+    
+    String getCustomerName();
+    
+    String getCustomerEmail();
+    
+    String getCustomerPhone();
+    
+    BigDecimal getAmount();
+    
+    Long getAmountMinor();
+    
+    String getCurrency();
+    
+    Payment.PaymentStatus getStatus();
+    
+    LocalDateTime getCreatedAt();
+    
+    LocalDateTime getUpdatedAt();
+    
+    String getDescription();
+    
+    String getNotes();
+    
+    String getMerchantId();
+}
@@ -2,6 +2,7 @@ package com.payment.dto;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 
 public class RazorpayPaymentVerificationRequest {
     
@@ -14,10 +15,17 @@ public class RazorpayPaymentVerificationRequest {
     @NotBlank(message = "Signature is required")
     private String razorpaySignature;
     
-    // Additional client data
+    // Additional client data, limited to the payments column lengths
+    @Size(max = 100, message = "Customer name cannot exceed 100 characters")
     private String customerName;
+    
+    @Size(max = 100, message = "Customer email cannot exceed 100 characters")
     private String customerEmail;
+    
+    @Size(max = 20, message = "Customer phone cannot exceed 20 characters")
     private String customerPhone;
+    
+    @Size(max = 500, message = "Description cannot exceed 500 characters")
     private String description;
     
     // Default constructor
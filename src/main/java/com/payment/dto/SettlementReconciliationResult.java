@@ -0,0 +1,121 @@
+package com.payment.dto;
+
+/**
+ * Summary of one settlement file reconciliation. Mismatch rows are stored under runId;
+ * at most the configured maximum are stored, but every one is counted.
+ */
+public class SettlementReconciliationResult {
+    
+    private String runId;
+    private String settlementFile;
+    private long rows;
+    private long matched;
+    private long missingPayments;
+    private long amountDrifts;
+    private long statusDrifts;
+    private long skippedRows;
+    private long malformedRows;
+    private long mismatchesStored;
+    private long indexedPayments;
+    private long elapsedMillis;
+    
+    // Default constructor
+    public SettlementReconciliationResult() {}
+    
+    // Getters and Setters
+    public String getRunId() {
+        return runId;
+    }
+    
+    public void setRunId(String runId) {
+        this.runId = runId;
+    }
+    
+    public String getSettlementFile() {
+        return settlementFile;
+    }
+    
+    public void setSettlementFile(String settlementFile) {
+        this.settlementFile = settlementFile;
+    }
+    
+    public long getRows() {
+        return rows;
+    }
+    
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+    
+    public long getMatched() {
+        return matched;
+    }
+    
+    public void setMatched(long matched) {
+        this.matched = matched;
+    }
+    
+    public long getMissingPayments() {
+        return missingPayments;
+    }
+    
+    public void setMissingPayments(long missingPayments) {
+        this.missingPayments = missingPayments;
+    }
+    
+    public long getAmountDrifts() {
+        return amountDrifts;
+    }
+    
+    public void setAmountDrifts(long amountDrifts) {
+        this.amountDrifts = amountDrifts;
+    }
+    
+    public long getStatusDrifts() {
+        return statusDrifts;
+    }
+    
+    public void setStatusDrifts(long statusDrifts) {
+        this.statusDrifts = statusDrifts;
+    }
+    
+    public long getSkippedRows() {
+        return skippedRows;
+    }
+    
+    public void setSkippedRows(long skippedRows) {
+        this.skippedRows = skippedRows;
+    }
+    
+    public long getMalformedRows() {
+        return malformedRows;
+    }
+    
+    public void setMalformedRows(long malformedRows) {
+        this.malformedRows = malformedRows;
+    }
+    
+    public long getMismatchesStored() {
+        return mismatchesStored;
+    }
+    
+    public void setMismatchesStored(long mismatchesStored) {
+        this.mismatchesStored = mismatchesStored;
+    }
+    
+    public long getIndexedPayments() {
+        return indexedPayments;
+    }
+    
+    public void setIndexedPayments(long indexedPayments) {
+        this.indexedPayments = indexedPayments;
+    }
+    
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+    
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+}
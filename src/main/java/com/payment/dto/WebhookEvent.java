@@ -0,0 +1,84 @@
+package com.payment.dto;
+
+/**
+ * The fields of a Razorpay webhook that payment processing needs
+ */
+public class WebhookEvent {
+    
+    private String eventId;
+    private String event;
+    private String paymentId;
+    private String orderId;
+    private String status;
+    private long receivedAt;
+    
+    // Default constructor
+    public WebhookEvent() {}
+    
+    public WebhookEvent(String event, String paymentId, String orderId, String status) {
+        this.event = event;
+        this.paymentId = paymentId;
+        this.orderId = orderId;
+        this.status = status;
+    }
+    
+    // Getters and Setters
+    public String getEventId() {
+        return eventId;
+    }
+    
+    public void setEventId(String eventId) {
+        this.eventId = eventId;
+    }
+    
+    public String getEvent() {
+        return event;
+    }
+    
+    public void setEvent(String event) {
+        this.event = event;
+    }
+    
+    public String getPaymentId() {
+        return paymentId;
+    }
+    
+    public void setPaymentId(String paymentId) {
+        this.paymentId = paymentId;
+    }
+    
+    public String getOrderId() {
+        return orderId;
+    }
+    
+    public void setOrderId(String orderId) {
+        this.orderId = orderId;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public long getReceivedAt() {
+        return receivedAt;
+    }
+    
+    public void setReceivedAt(long receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+    
+    @Override
+    public String toString() {
+        return "WebhookEvent{" +
+                "eventId='" + eventId + '\'' +
+                ", event='" + event + '\'' +
+                ", paymentId='" + paymentId + '\'' +
+                ", orderId='" + orderId + '\'' +
+                ", status='" + status + '\'' +
+                '}';
+    }
+}
@@ -18,7 +18,8 @@ import jakarta.persistence.PreUpdate;
 @Table(name = "merchants", indexes = {
     @Index(name = "idx_merchant_id", columnList = "merchantId"),
     @Index(name = "idx_email", columnList = "email"),
-    @Index(name = "idx_status", columnList = "status")
+    @Index(name = "idx_merchant_status_created_at", columnList = "status, createdAt, id"),
+    @Index(name = "idx_merchant_created_at", columnList = "createdAt, id")
 })
 public class Merchant {
     
@@ -2,8 +2,16 @@ package com.payment.entity;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
 
+import jakarta.persistence.AttributeOverride;
+import jakarta.persistence.AttributeOverrides;
 import jakarta.persistence.Column;
+import jakarta.persistence.Embedded;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
@@ -14,22 +22,30 @@ import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
+
+import com.payment.util.Money;
 
 @Entity
 @Table(name = "payments", indexes = {
     @Index(name = "idx_order_id", columnList = "orderId"),
     @Index(name = "idx_payment_id", columnList = "paymentId"),
-    @Index(name = "idx_customer_email", columnList = "customerEmail"),
-    @Index(name = "idx_status", columnList = "status"),
-    @Index(name = "idx_created_at", columnList = "createdAt")
+    @Index(name = "idx_customer_email", columnList = "customerEmail, createdAt, id"),
+    @Index(name = "idx_status", columnList = "status, createdAt, id"),
+    @Index(name = "idx_created_at", columnList = "createdAt, id"),
+    @Index(name = "idx_updated_at", columnList = "updatedAt")
 })
 public class Payment {
     
+    // Pooled sequence: IDs are known before INSERT, so inserts can be JDBC-batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_seq")
+    @SequenceGenerator(name = "payment_seq", sequenceName = "payment_seq", allocationSize = 50)
     private Long id;
     
-    @Column(nullable = false, unique = true, length = 50)
+    // Unique, but not declared here: a partitioned Postgres table cannot carry a unique
+    // constraint without created_at. PaymentPartitionManager enforces it per database.
+    @Column(nullable = false, length = 50)
     private String orderId;
     
     @Column(nullable = false, length = 50)
@@ -44,12 +60,21 @@ public class Payment {
     @Column(nullable = false, length = 20)
     private String customerPhone;
     
+    // Two-place decimal kept for SQL aggregates and reports; money holds the exact amount
     @Column(nullable = false, precision = 10, scale = 2)
     private BigDecimal amount;
     
     @Column(nullable = false, length = 3)
     private String currency;
     
+    // Derived from amount and currency when either is set; shares the currency column
+    @Embedded
+    @AttributeOverrides({
+        @AttributeOverride(name = "minorUnits", column = @Column(name = "amount_minor", nullable = false)),
+        @AttributeOverride(name = "currency", column = @Column(name = "currency", insertable = false, updatable = false))
+    })
+    private Money money;
+    
     @Enumerated(EnumType.STRING)
     @Column(nullable = false, length = 20)
     private PaymentStatus status;
@@ -102,6 +127,18 @@ public class Payment {
     @Column(length = 50)
     private String merchantOrderId;
     
+    // Razorpay order ID; null while an async creation is still waiting for its gateway order
+    @Column(length = 50)
+    private String gatewayOrderId;
+    
+    // Set by async creation until its gateway order is stored; only these rows are ever recovered
+    @Column(nullable = false)
+    private boolean awaitingGatewayOrder;
+    
+    // Handed only to the async creator; required to poll the creation status
+    @Column(length = 32)
+    private String pollToken;
+    
     // Default constructor
     public Payment() {
         this.createdAt = LocalDateTime.now();
@@ -111,11 +148,13 @@ public class Payment {
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
+        getMoney();
     }
     
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        getMoney();
     }
     
     // Getters and Setters
@@ -173,6 +212,23 @@ public class Payment {
     
     public void setAmount(BigDecimal amount) {
         this.amount = amount;
+        this.money = null;
+    }
+    
+    /**
+     * @return The amount in the currency's minor units, or null until both are set
+     */
+    public Money getMoney() {
+        if (money == null && amount != null && currency != null) {
+            money = Money.of(amount, currency);
+        }
+        return money;
+    }
+    
+    public void setMoney(Money money) {
+        this.amount = money.toBigDecimal();
+        this.currency = money.getCurrency();
+        this.money = money;
     }
     
     public String getCurrency() {
@@ -181,6 +237,7 @@ public class Payment {
     
     public void setCurrency(String currency) {
         this.currency = currency;
+        this.money = null;
     }
     
     public PaymentStatus getStatus() {
@@ -320,6 +377,30 @@ public class Payment {
         this.merchantOrderId = merchantOrderId;
     }
     
+    public String getGatewayOrderId() {
+        return gatewayOrderId;
+    }
+    
+    public void setGatewayOrderId(String gatewayOrderId) {
+        this.gatewayOrderId = gatewayOrderId;
+    }
+    
+    public boolean isAwaitingGatewayOrder() {
+        return awaitingGatewayOrder;
+    }
+    
+    public void setAwaitingGatewayOrder(boolean awaitingGatewayOrder) {
+        this.awaitingGatewayOrder = awaitingGatewayOrder;
+    }
+    
+    public String getPollToken() {
+        return pollToken;
+    }
+    
+    public void setPollToken(String pollToken) {
+        this.pollToken = pollToken;
+    }
+    
     // Payment Status Enum
     public enum PaymentStatus {
         PENDING,
@@ -330,6 +411,30 @@ public class Payment {
         CANCELLED,
         REFUNDED,
         PARTIALLY_REFUNDED,
-        EXPIRED
+        EXPIRED;
+        
+        // Legal moves out of each status; CANCELLED, REFUNDED and EXPIRED are final
+        private static final Map<PaymentStatus, Set<PaymentStatus>> ALLOWED_TRANSITIONS = new EnumMap<>(PaymentStatus.class);
+        
+        static {
+            for (PaymentStatus status : values()) {
+                ALLOWED_TRANSITIONS.put(status, EnumSet.noneOf(PaymentStatus.class));
+            }
+            allow(PENDING, AUTHORIZED, CAPTURED, SUCCESS, FAILED, CANCELLED, EXPIRED);
+            allow(AUTHORIZED, CAPTURED, SUCCESS, FAILED, CANCELLED, EXPIRED);
+            allow(CAPTURED, SUCCESS, FAILED, REFUNDED, PARTIALLY_REFUNDED);
+            allow(SUCCESS, REFUNDED, PARTIALLY_REFUNDED);
+            allow(PARTIALLY_REFUNDED, REFUNDED);
+            // A customer may retry on the same order after a failed attempt
+            allow(FAILED, AUTHORIZED, CAPTURED, SUCCESS);
+        }
+        
+        private static void allow(PaymentStatus from, PaymentStatus... to) {
+            ALLOWED_TRANSITIONS.get(from).addAll(Arrays.asList(to));
+        }
+        
+        public boolean canTransitionTo(PaymentStatus next) {
+            return ALLOWED_TRANSITIONS.get(this).contains(next);
+        }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,157 @@
+package com.payment.entity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * Aggregate of one closed day's payments for a merchant, currency, payment method and status.
+ * Amounts are in minor units (paise, cents). Rows for a day are always rewritten together.
+ */
+@Entity
+@Table(name = "payment_daily_rollups", indexes = {
+    @Index(name = "idx_rollup_date_status", columnList = "rollupDate, status")
+}, uniqueConstraints = {
+    @UniqueConstraint(name = "uk_rollup_group", columnNames = {"rollupDate", "merchantId", "currency", "paymentMethod", "status"})
+})
+public class PaymentDailyRollup {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_rollup_seq")
+    @SequenceGenerator(name = "payment_rollup_seq", sequenceName = "payment_rollup_seq", allocationSize = 50)
+    private Long id;
+    
+    @Column(nullable = false)
+    private LocalDate rollupDate;
+    
+    @Column(length = 50)
+    private String merchantId;
+    
+    @Column(nullable = false, length = 3)
+    private String currency;
+    
+    @Column(length = 50)
+    private String paymentMethod;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Payment.PaymentStatus status;
+    
+    @Column(nullable = false)
+    private long paymentCount;
+    
+    @Column(nullable = false)
+    private long amountMinor;
+    
+    @Column(nullable = false)
+    private long minAmountMinor;
+    
+    @Column(nullable = false)
+    private long maxAmountMinor;
+    
+    @Column(nullable = false)
+    private LocalDateTime computedAt;
+    
+    // Default constructor
+    public PaymentDailyRollup() {}
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public LocalDate getRollupDate() {
+        return rollupDate;
+    }
+    
+    public void setRollupDate(LocalDate rollupDate) {
+        this.rollupDate = rollupDate;
+    }
+    
+    public String getMerchantId() {
+        return merchantId;
+    }
+    
+    public void setMerchantId(String merchantId) {
+        this.merchantId = merchantId;
+    }
+    
+    public String getCurrency() {
+        return currency;
+    }
+    
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+    
+    public String getPaymentMethod() {
+        return paymentMethod;
+    }
+    
+    public void setPaymentMethod(String paymentMethod) {
+        this.paymentMethod = paymentMethod;
+    }
+    
+    public Payment.PaymentStatus getStatus() {
+        return status;
+    }
+    
+    public void setStatus(Payment.PaymentStatus status) {
+        this.status = status;
+    }
+    
+    public long getPaymentCount() {
+        return paymentCount;
+    }
+    
+    public void setPaymentCount(long paymentCount) {
+        this.paymentCount = paymentCount;
+    }
+    
+    public long getAmountMinor() {
+        return amountMinor;
+    }
+    
+    public void setAmountMinor(long amountMinor) {
+        this.amountMinor = amountMinor;
+    }
+    
+    public long getMinAmountMinor() {
+        return minAmountMinor;
+    }
+    
+    public void setMinAmountMinor(long minAmountMinor) {
+        this.minAmountMinor = minAmountMinor;
+    }
+    
+    public long getMaxAmountMinor() {
+        return maxAmountMinor;
+    }
+    
+    public void setMaxAmountMinor(long maxAmountMinor) {
+        this.maxAmountMinor = maxAmountMinor;
+    }
+    
+    public LocalDateTime getComputedAt() {
+        return computedAt;
+    }
+    
+    public void setComputedAt(LocalDateTime computedAt) {
+        this.computedAt = computedAt;
+    }
+}
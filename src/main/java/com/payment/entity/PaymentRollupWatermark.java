@@ -0,0 +1,69 @@
+package com.payment.entity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+
+/**
+ * Progress of the daily rollup job: the last closed day that has been rolled up and the
+ * time of the last scan for payments that changed after their day was rolled up.
+ * The job locks this row while it runs, which serializes it across nodes.
+ */
+@Entity
+@Table(name = "payment_rollup_watermarks")
+public class PaymentRollupWatermark {
+    
+    @Id
+    @Column(length = 50)
+    private String name;
+    
+    @Column
+    private LocalDate rolledThrough;
+    
+    @Column
+    private LocalDateTime scannedAt;
+    
+    @Version
+    private Long version;
+    
+    // Default constructor
+    public PaymentRollupWatermark() {}
+    
+    public PaymentRollupWatermark(String name) {
+        this.name = name;
+    }
+    
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public LocalDate getRolledThrough() {
+        return rolledThrough;
+    }
+    
+    public void setRolledThrough(LocalDate rolledThrough) {
+        this.rolledThrough = rolledThrough;
+    }
+    
+    public LocalDateTime getScannedAt() {
+        return scannedAt;
+    }
+    
+    public void setScannedAt(LocalDateTime scannedAt) {
+        this.scannedAt = scannedAt;
+    }
+    
+    public Long getVersion() {
+        return version;
+    }
+}
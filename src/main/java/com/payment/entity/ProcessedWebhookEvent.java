@@ -0,0 +1,101 @@
+package com.payment.entity;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.domain.Persistable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+
+/**
+ * Durable record of a webhook that has already been applied, keyed by its dedup key
+ * (the Razorpay event ID, or event name and payment ID when no event ID was sent)
+ */
+@Entity
+@Table(name = "processed_webhook_events", indexes = {
+    @Index(name = "idx_processed_webhook_processed_at", columnList = "processedAt")
+})
+public class ProcessedWebhookEvent implements Persistable<String> {
+    
+    @Id
+    @Column(length = 150)
+    private String eventKey;
+    
+    @Column(nullable = false, length = 50)
+    private String event;
+    
+    @Column(length = 100)
+    private String paymentId;
+    
+    @Column(nullable = false)
+    private LocalDateTime processedAt;
+    
+    // Keys are assigned, so tell Spring Data to INSERT directly instead of merging
+    @Transient
+    private boolean newEntity = true;
+    
+    // Default constructor
+    public ProcessedWebhookEvent() {}
+    
+    public ProcessedWebhookEvent(String eventKey, String event, String paymentId) {
+        this.eventKey = eventKey;
+        this.event = event;
+        this.paymentId = paymentId;
+        this.processedAt = LocalDateTime.now();
+    }
+    
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newEntity = false;
+    }
+    
+    @Override
+    public String getId() {
+        return eventKey;
+    }
+    
+    @Override
+    public boolean isNew() {
+        return newEntity;
+    }
+    
+    // Getters and Setters
+    public String getEventKey() {
+        return eventKey;
+    }
+    
+    public void setEventKey(String eventKey) {
+        this.eventKey = eventKey;
+    }
+    
+    public String getEvent() {
+        return event;
+    }
+    
+    public void setEvent(String event) {
+        this.event = event;
+    }
+    
+    public String getPaymentId() {
+        return paymentId;
+    }
+    
+    public void setPaymentId(String paymentId) {
+        this.paymentId = paymentId;
+    }
+    
+    public LocalDateTime getProcessedAt() {
+        return processedAt;
+    }
+    
+    public void setProcessedAt(LocalDateTime processedAt) {
+        this.processedAt = processedAt;
+    }
+}
@@ -0,0 +1,173 @@
+package com.payment.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+/**
+ * A settlement report row that does not agree with our payments, found by a reconciliation run.
+ * Amounts are in minor units (paise, cents).
+ */
+@Entity
+@Table(name = "settlement_mismatches", indexes = {
+    @Index(name = "idx_settlement_mismatch_run", columnList = "runId, type")
+})
+public class SettlementMismatch {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "settlement_mismatch_seq")
+    @SequenceGenerator(name = "settlement_mismatch_seq", sequenceName = "settlement_mismatch_seq", allocationSize = 50)
+    private Long id;
+    
+    @Column(nullable = false, length = 50)
+    private String runId;
+    
+    @Column(nullable = false, length = 255)
+    private String settlementFile;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private MismatchType type;
+    
+    // Byte offset of the row in the settlement file
+    @Column(nullable = false)
+    private long fileOffset;
+    
+    @Column(length = 100)
+    private String settlementPaymentId;
+    
+    @Column(length = 100)
+    private String settlementOrderId;
+    
+    private Long settledAmountMinor;
+    
+    // Our side; null for MISSING_PAYMENT
+    private Long paymentRecordId;
+    
+    private Long expectedAmountMinor;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private Payment.PaymentStatus paymentStatus;
+    
+    @Column(nullable = false)
+    private LocalDateTime detectedAt;
+    
+    // Default constructor
+    public SettlementMismatch() {}
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getRunId() {
+        return runId;
+    }
+    
+    public void setRunId(String runId) {
+        this.runId = runId;
+    }
+    
+    public String getSettlementFile() {
+        return settlementFile;
+    }
+    
+    public void setSettlementFile(String settlementFile) {
+        this.settlementFile = settlementFile;
+    }
+    
+    public MismatchType getType() {
+        return type;
+    }
+    
+    public void setType(MismatchType type) {
+        this.type = type;
+    }
+    
+    public long getFileOffset() {
+        return fileOffset;
+    }
+    
+    public void setFileOffset(long fileOffset) {
+        this.fileOffset = fileOffset;
+    }
+    
+    public String getSettlementPaymentId() {
+        return settlementPaymentId;
+    }
+    
+    public void setSettlementPaymentId(String settlementPaymentId) {
+        this.settlementPaymentId = settlementPaymentId;
+    }
+    
+    public String getSettlementOrderId() {
+        return settlementOrderId;
+    }
+    
+    public void setSettlementOrderId(String settlementOrderId) {
+        this.settlementOrderId = settlementOrderId;
+    }
+    
+    public Long getSettledAmountMinor() {
+        return settledAmountMinor;
+    }
+    
+    public void setSettledAmountMinor(Long settledAmountMinor) {
+        this.settledAmountMinor = settledAmountMinor;
+    }
+    
+    public Long getPaymentRecordId() {
+        return paymentRecordId;
+    }
+    
+    public void setPaymentRecordId(Long paymentRecordId) {
+        this.paymentRecordId = paymentRecordId;
+    }
+    
+    public Long getExpectedAmountMinor() {
+        return expectedAmountMinor;
+    }
+    
+    public void setExpectedAmountMinor(Long expectedAmountMinor) {
+        this.expectedAmountMinor = expectedAmountMinor;
+    }
+    
+    public Payment.PaymentStatus getPaymentStatus() {
+        return paymentStatus;
+    }
+    
+    public void setPaymentStatus(Payment.PaymentStatus paymentStatus) {
+        this.paymentStatus = paymentStatus;
+    }
+    
+    public LocalDateTime getDetectedAt() {
+        return detectedAt;
+    }
+    
+    public void setDetectedAt(LocalDateTime detectedAt) {
+        this.detectedAt = detectedAt;
+    }
+    
+    public enum MismatchType {
+        // No payment with the row's payment or order ID
+        MISSING_PAYMENT,
+        // Settled amount differs from the payment amount
+        AMOUNT_DRIFT,
+        // Settled as a payment but not captured here, or as a refund but not refunded here
+        STATUS_DRIFT
+    }
+}
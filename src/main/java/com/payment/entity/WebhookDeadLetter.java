@@ -0,0 +1,145 @@
+package com.payment.entity;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.Length;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+/**
+ * A journaled webhook that can never be applied: its payload does not parse, or applying
+ * it on its own was rejected. Infrastructure failures never land here; those batches stay
+ * in the journal and are retried.
+ */
+@Entity
+@Table(name = "webhook_dead_letters", indexes = {
+    @Index(name = "idx_webhook_dead_letter_created_at", columnList = "createdAt")
+})
+public class WebhookDeadLetter {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "webhook_dead_letter_seq")
+    @SequenceGenerator(name = "webhook_dead_letter_seq", sequenceName = "webhook_dead_letter_seq", allocationSize = 50)
+    private Long id;
+    
+    // Journal record sequence, for tracing the entry in the journal file
+    @Column(nullable = false)
+    private long journalSequence;
+    
+    @Column(length = 100)
+    private String eventId;
+    
+    @Column(length = 50)
+    private String event;
+    
+    @Column(length = 100)
+    private String orderId;
+    
+    // Raw webhook body as received
+    @Column(nullable = false, length = Length.LONG32)
+    private String payload;
+    
+    @Column(length = 500)
+    private String error;
+    
+    @Column(nullable = false)
+    private LocalDateTime receivedAt;
+    
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+    
+    // Default constructor
+    public WebhookDeadLetter() {}
+    
+    public WebhookDeadLetter(long journalSequence, String eventId, String event, String orderId,
+                             String payload, String error, LocalDateTime receivedAt) {
+        this.journalSequence = journalSequence;
+        this.eventId = eventId;
+        this.event = event;
+        this.orderId = orderId;
+        this.payload = payload;
+        this.error = error;
+        this.receivedAt = receivedAt;
+        this.createdAt = LocalDateTime.now();
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public long getJournalSequence() {
+        return journalSequence;
+    }
+    
+    public void setJournalSequence(long journalSequence) {
+        this.journalSequence = journalSequence;
+    }
+    
+    public String getEventId() {
+        return eventId;
+    }
+    
+    public void setEventId(String eventId) {
+        this.eventId = eventId;
+    }
+    
+    public String getEvent() {
+        return event;
+    }
+    
+    public void setEvent(String event) {
+        this.event = event;
+    }
+    
+    public String getOrderId() {
+        return orderId;
+    }
+    
+    public void setOrderId(String orderId) {
+        this.orderId = orderId;
+    }
+    
+    public String getPayload() {
+        return payload;
+    }
+    
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public void setError(String error) {
+        this.error = error;
+    }
+    
+    public LocalDateTime getReceivedAt() {
+        return receivedAt;
+    }
+    
+    public void setReceivedAt(LocalDateTime receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
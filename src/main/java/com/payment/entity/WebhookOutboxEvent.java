@@ -0,0 +1,184 @@
+package com.payment.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+/**
+ * A merchant webhook waiting to be delivered, written in the same transaction as the payment
+ * status change it reports. The dispatcher claims due rows by pushing nextAttemptAt past the
+ * claim lease, so a row whose dispatcher died becomes due again once the lease runs out.
+ */
+@Entity
+@Table(name = "webhook_outbox", indexes = {
+    @Index(name = "idx_webhook_outbox_due", columnList = "status, nextAttemptAt, id"),
+    @Index(name = "idx_webhook_outbox_claim", columnList = "claimToken")
+})
+public class WebhookOutboxEvent {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "webhook_outbox_seq")
+    @SequenceGenerator(name = "webhook_outbox_seq", sequenceName = "webhook_outbox_seq", allocationSize = 50)
+    private Long id;
+    
+    @Column(nullable = false, length = 50)
+    private String merchantId;
+    
+    @Column(nullable = false)
+    private Long paymentRecordId;
+    
+    @Column(nullable = false, length = 50)
+    private String event;
+    
+    @Column(nullable = false, length = 2000)
+    private String payload;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private OutboxStatus status = OutboxStatus.PENDING;
+    
+    // Delivery attempts made so far
+    @Column(nullable = false)
+    private int attempts;
+    
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+    
+    @Column(length = 36)
+    private String claimToken;
+    
+    @Column(length = 500)
+    private String lastError;
+    
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+    
+    private LocalDateTime deliveredAt;
+    
+    // Default constructor
+    public WebhookOutboxEvent() {}
+    
+    public WebhookOutboxEvent(String merchantId, Long paymentRecordId, String event, String payload) {
+        this.merchantId = merchantId;
+        this.paymentRecordId = paymentRecordId;
+        this.event = event;
+        this.payload = payload;
+        this.createdAt = LocalDateTime.now();
+        this.nextAttemptAt = createdAt;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getMerchantId() {
+        return merchantId;
+    }
+    
+    public void setMerchantId(String merchantId) {
+        this.merchantId = merchantId;
+    }
+    
+    public Long getPaymentRecordId() {
+        return paymentRecordId;
+    }
+    
+    public void setPaymentRecordId(Long paymentRecordId) {
+        this.paymentRecordId = paymentRecordId;
+    }
+    
+    public String getEvent() {
+        return event;
+    }
+    
+    public void setEvent(String event) {
+        this.event = event;
+    }
+    
+    public String getPayload() {
+        return payload;
+    }
+    
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+    
+    public OutboxStatus getStatus() {
+        return status;
+    }
+    
+    public void setStatus(OutboxStatus status) {
+        this.status = status;
+    }
+    
+    public int getAttempts() {
+        return attempts;
+    }
+    
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+    
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+    
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+    
+    public String getClaimToken() {
+        return claimToken;
+    }
+    
+    public void setClaimToken(String claimToken) {
+        this.claimToken = claimToken;
+    }
+    
+    public String getLastError() {
+        return lastError;
+    }
+    
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getDeliveredAt() {
+        return deliveredAt;
+    }
+    
+    public void setDeliveredAt(LocalDateTime deliveredAt) {
+        this.deliveredAt = deliveredAt;
+    }
+    
+    public enum OutboxStatus {
+        PENDING,
+        DELIVERED,
+        // Retries exhausted
+        FAILED,
+        // Merchant gone, inactive or without a webhook URL
+        DISCARDED
+    }
+}
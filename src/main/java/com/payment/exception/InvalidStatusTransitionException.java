@@ -0,0 +1,26 @@
+package com.payment.exception;
+
+import com.payment.entity.Payment;
+
+/**
+ * Thrown when the transition table does not allow a payment to move from its current status
+ */
+public class InvalidStatusTransitionException extends PaymentException {
+    
+    private final Payment.PaymentStatus from;
+    private final Payment.PaymentStatus to;
+    
+    public InvalidStatusTransitionException(Payment.PaymentStatus from, Payment.PaymentStatus to, String message) {
+        super(message);
+        this.from = from;
+        this.to = to;
+    }
+    
+    public Payment.PaymentStatus getFrom() {
+        return from;
+    }
+    
+    public Payment.PaymentStatus getTo() {
+        return to;
+    }
+}
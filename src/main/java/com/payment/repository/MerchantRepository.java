@@ -1,8 +1,11 @@
 package com.payment.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -17,6 +20,8 @@ public interface MerchantRepository extends JpaRepository<Merchant, Long> {
     
     Optional<Merchant> findByMerchantId(String merchantId);
     
+    List<Merchant> findByMerchantIdIn(Collection<String> merchantIds);
+    
     Optional<Merchant> findByEmail(String email);
     
     Optional<Merchant> findByApiKey(String apiKey);
@@ -50,6 +55,22 @@ public interface MerchantRepository extends JpaRepository<Merchant, Long> {
     @Query("SELECT m FROM Merchant m WHERE m.businessName LIKE %:businessName%")
     Page<Merchant> findByBusinessNameContaining(@Param("businessName") String businessName, Pageable pageable);
     
+    // Keyset pagination, newest first; see PaymentRepository
+    List<Merchant> findAllByOrderByCreatedAtDescIdDesc(Limit limit);
+    
+    @Query("SELECT m FROM Merchant m WHERE m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id) ORDER BY m.createdAt DESC, m.id DESC")
+    List<Merchant> findAllBefore(@Param("createdAt") LocalDateTime createdAt,
+                                 @Param("id") Long id,
+                                 Limit limit);
+    
+    List<Merchant> findByStatusOrderByCreatedAtDescIdDesc(Merchant.MerchantStatus status, Limit limit);
+    
+    @Query("SELECT m FROM Merchant m WHERE m.status = :status AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) ORDER BY m.createdAt DESC, m.id DESC")
+    List<Merchant> findByStatusBefore(@Param("status") Merchant.MerchantStatus status,
+                                      @Param("createdAt") LocalDateTime createdAt,
+                                      @Param("id") Long id,
+                                      Limit limit);
+    
     // Analytics queries
     @Query("SELECT m.country, COUNT(m) FROM Merchant m GROUP BY m.country")
     List<Object[]> getMerchantStatsByCountry();
@@ -0,0 +1,37 @@
+package com.payment.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.payment.entity.Payment;
+import com.payment.entity.PaymentDailyRollup;
+
+@Repository
+public interface PaymentDailyRollupRepository extends JpaRepository<PaymentDailyRollup, Long> {
+    
+    @Modifying
+    @Query("DELETE FROM PaymentDailyRollup r WHERE r.rollupDate = :rollupDate")
+    int deleteByRollupDate(@Param("rollupDate") LocalDate rollupDate);
+    
+    // Analytics over closed days: [key, currency, count, sum, min, max] with amounts in the currency's minor units
+    @Query("SELECT r.rollupDate, r.currency, SUM(r.paymentCount), SUM(r.amountMinor), MIN(r.minAmountMinor), MAX(r.maxAmountMinor) FROM PaymentDailyRollup r WHERE r.status = :status AND r.rollupDate BETWEEN :startDay AND :endDay GROUP BY r.rollupDate, r.currency")
+    List<Object[]> sumByDay(@Param("status") Payment.PaymentStatus status,
+                            @Param("startDay") LocalDate startDay,
+                            @Param("endDay") LocalDate endDay);
+    
+    @Query("SELECT r.currency, r.currency, SUM(r.paymentCount), SUM(r.amountMinor), MIN(r.minAmountMinor), MAX(r.maxAmountMinor) FROM PaymentDailyRollup r WHERE r.status = :status AND r.rollupDate BETWEEN :startDay AND :endDay GROUP BY r.currency")
+    List<Object[]> sumByCurrency(@Param("status") Payment.PaymentStatus status,
+                                 @Param("startDay") LocalDate startDay,
+                                 @Param("endDay") LocalDate endDay);
+    
+    @Query("SELECT r.paymentMethod, r.currency, SUM(r.paymentCount), SUM(r.amountMinor), MIN(r.minAmountMinor), MAX(r.maxAmountMinor) FROM PaymentDailyRollup r WHERE r.status = :status AND r.rollupDate BETWEEN :startDay AND :endDay GROUP BY r.paymentMethod, r.currency")
+    List<Object[]> sumByMethod(@Param("status") Payment.PaymentStatus status,
+                               @Param("startDay") LocalDate startDay,
+                               @Param("endDay") LocalDate endDay);
+}
@@ -2,23 +2,37 @@ package com.payment.repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.payment.dto.PaymentView;
 import com.payment.entity.Payment;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
     
     Optional<Payment> findByOrderId(String orderId);
     
+    @Query("SELECT p.pollToken FROM Payment p WHERE p.orderId = :orderId")
+    Optional<String> findPollTokenByOrderId(@Param("orderId") String orderId);
+    
     Optional<Payment> findByPaymentId(String paymentId);
     
     List<Payment> findByCustomerEmail(String customerEmail);
@@ -30,11 +44,11 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     List<Payment> findByMerchantIdAndStatus(String merchantId, Payment.PaymentStatus status);
     
     @Query("SELECT p FROM Payment p WHERE p.createdAt BETWEEN :startDate AND :endDate")
-    List<Payment> findByDateRange(@Param("startDate") LocalDateTime startDate, 
+    List<Payment> findByDateRange(@Param("startDate") LocalDateTime startDate,
                                   @Param("endDate") LocalDateTime endDate);
     
     @Query("SELECT p FROM Payment p WHERE p.customerEmail = :email AND p.status = :status")
-    List<Payment> findByCustomerEmailAndStatus(@Param("email") String email, 
+    List<Payment> findByCustomerEmailAndStatus(@Param("email") String email,
                                               @Param("status") Payment.PaymentStatus status);
     
     @Query("SELECT p FROM Payment p WHERE p.merchantId = :merchantId AND p.createdAt BETWEEN :startDate AND :endDate")
@@ -45,18 +59,28 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     @Query("SELECT COUNT(p) FROM Payment p WHERE p.status = :status")
     long countByStatus(@Param("status") Payment.PaymentStatus status);
     
+    // Seeds and reconciles PaymentStatsRegistry: one row per status
+    @Query("SELECT p.status, COUNT(p) FROM Payment p GROUP BY p.status")
+    List<Object[]> countGroupedByStatus();
+    
+    // Seeds and reconciles PaymentStatsRegistry: (currency, year, month, day, hour, minute, SUM(minor units))
+    // of recent successful payments, at most one row per currency per minute
+    @Query("SELECT p.currency, YEAR(p.createdAt), MONTH(p.createdAt), DAY(p.createdAt), HOUR(p.createdAt), MINUTE(p.createdAt), SUM(p.money.minorUnits) FROM Payment p WHERE p.status = 'SUCCESS' AND p.createdAt >= :since GROUP BY p.currency, YEAR(p.createdAt), MONTH(p.createdAt), DAY(p.createdAt), HOUR(p.createdAt), MINUTE(p.createdAt)")
+    List<Object[]> sumSuccessAmountsByCurrencyAndMinuteSince(@Param("since") LocalDateTime since);
+    
     @Query("SELECT COUNT(p) FROM Payment p WHERE p.merchantId = :merchantId AND p.status = :status")
-    long countByMerchantIdAndStatus(@Param("merchantId") String merchantId, 
+    long countByMerchantIdAndStatus(@Param("merchantId") String merchantId,
                                    @Param("status") Payment.PaymentStatus status);
     
-    @Query("SELECT SUM(p.amount) FROM Payment p WHERE p.status = 'SUCCESS' AND p.createdAt BETWEEN :startDate AND :endDate")
-    BigDecimal getTotalAmountByDateRange(@Param("startDate") LocalDateTime startDate, 
-                                        @Param("endDate") LocalDateTime endDate);
+    // Successful totals: [currency, SUM(minor units)]; convert each with Money.ofMinor before adding them up
+    @Query("SELECT p.currency, SUM(p.money.minorUnits) FROM Payment p WHERE p.status = 'SUCCESS' AND p.createdAt BETWEEN :startDate AND :endDate GROUP BY p.currency")
+    List<Object[]> getTotalAmountByDateRange(@Param("startDate") LocalDateTime startDate,
+                                             @Param("endDate") LocalDateTime endDate);
     
-    @Query("SELECT SUM(p.amount) FROM Payment p WHERE p.merchantId = :merchantId AND p.status = 'SUCCESS' AND p.createdAt BETWEEN :startDate AND :endDate")
-    BigDecimal getTotalAmountByMerchantIdAndDateRange(@Param("merchantId") String merchantId,
-                                                     @Param("startDate") LocalDateTime startDate,
-                                                     @Param("endDate") LocalDateTime endDate);
+    @Query("SELECT p.currency, SUM(p.money.minorUnits) FROM Payment p WHERE p.merchantId = :merchantId AND p.status = 'SUCCESS' AND p.createdAt BETWEEN :startDate AND :endDate GROUP BY p.currency")
+    List<Object[]> getTotalAmountByMerchantIdAndDateRange(@Param("merchantId") String merchantId,
+                                                         @Param("startDate") LocalDateTime startDate,
+                                                         @Param("endDate") LocalDateTime endDate);
     
     @Query("SELECT p FROM Payment p WHERE p.amount BETWEEN :minAmount AND :maxAmount AND p.status = :status")
     List<Payment> findByAmountRangeAndStatus(@Param("minAmount") BigDecimal minAmount,
@@ -71,6 +95,67 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     List<Payment> findByCurrencyAndStatus(@Param("currency") String currency,
                                          @Param("status") Payment.PaymentStatus status);
     
+    // Columns behind PaymentView; read endpoints select only these
+    String VIEW_COLUMNS = "p.id AS id, p.orderId AS orderId, p.paymentId AS paymentId, p.customerName AS customerName, "
+            + "p.customerEmail AS customerEmail, p.customerPhone AS customerPhone, p.amount AS amount, "
+            + "p.money.minorUnits AS amountMinor, p.currency AS currency, p.status AS status, p.createdAt AS createdAt, "
+            + "p.updatedAt AS updatedAt, p.description AS description, p.notes AS notes, p.merchantId AS merchantId";
+    
+    @Query("SELECT " + VIEW_COLUMNS + " FROM Payment p WHERE p.id = :id")
+    Optional<PaymentView> findViewById(@Param("id") Long id);
+    
+    @Query("SELECT " + VIEW_COLUMNS + " FROM Payment p WHERE p.orderId = :orderId")
+    Optional<PaymentView> findViewByOrderId(@Param("orderId") String orderId);
+    
+    @Query("SELECT " + VIEW_COLUMNS + " FROM Payment p WHERE p.paymentId = :paymentId")
+    Optional<PaymentView> findViewByPaymentId(@Param("paymentId") String paymentId);
+    
+    // Conditional status transitions: each matches only while the payment is still in the status the
+    // caller observed, so a concurrent transition makes it update nothing instead of being overwritten.
+    // capturedAt/refundedAt keep their first value; pass null to leave them alone.
+    @Modifying
+    @Query("UPDATE Payment p SET p.status = :to, p.updatedAt = :now, "
+            + "p.capturedAt = COALESCE(p.capturedAt, :capturedAt), p.refundedAt = COALESCE(p.refundedAt, :refundedAt) "
+            + "WHERE p.id = :id AND p.status = :from")
+    int transitionStatus(@Param("id") Long id,
+                         @Param("from") Payment.PaymentStatus from,
+                         @Param("to") Payment.PaymentStatus to,
+                         @Param("now") LocalDateTime now,
+                         @Param("capturedAt") LocalDateTime capturedAt,
+                         @Param("refundedAt") LocalDateTime refundedAt);
+    
+    // Client-verified success: also stores the gateway payment ID. Customer details follow
+    // separately through PaymentEnrichmentBuffer.
+    @Modifying
+    @Query("UPDATE Payment p SET p.status = com.payment.entity.Payment.PaymentStatus.SUCCESS, p.paymentId = :paymentId, "
+            + "p.capturedAt = :now, p.updatedAt = :now WHERE p.id = :id AND p.status = :from")
+    int completeVerifiedPayment(@Param("id") Long id,
+                                @Param("from") Payment.PaymentStatus from,
+                                @Param("paymentId") String paymentId,
+                                @Param("now") LocalDateTime now);
+    
+    // Async creation: store the gateway order unless another worker already did
+    @Modifying
+    @Query("UPDATE Payment p SET p.paymentId = :gatewayOrderId, p.gatewayOrderId = :gatewayOrderId, p.awaitingGatewayOrder = false, "
+            + "p.updatedAt = :now WHERE p.id = :id AND p.awaitingGatewayOrder = true AND p.gatewayOrderId IS NULL")
+    int attachGatewayOrder(@Param("id") Long id,
+                           @Param("gatewayOrderId") String gatewayOrderId,
+                           @Param("now") LocalDateTime now);
+    
+    // Async creations still without a gateway order and untouched since the cutoff, oldest first.
+    // Payments created synchronously (including those from before gatewayOrderId existed) never match.
+    @Query("SELECT p FROM Payment p WHERE p.status = 'PENDING' AND p.awaitingGatewayOrder = true "
+            + "AND p.gatewayOrderId IS NULL AND COALESCE(p.updatedAt, p.createdAt) < :cutoff ORDER BY p.createdAt, p.id")
+    List<Payment> findAwaitingGatewayOrder(@Param("cutoff") LocalDateTime cutoff, Limit limit);
+    
+    // Claims a stranded creation for recovery; touching updatedAt makes every other node's claim match nothing
+    @Modifying
+    @Query("UPDATE Payment p SET p.updatedAt = :now WHERE p.id = :id AND p.status = 'PENDING' AND p.awaitingGatewayOrder = true "
+            + "AND p.gatewayOrderId IS NULL AND COALESCE(p.updatedAt, p.createdAt) < :cutoff")
+    int claimGatewayOrderRecovery(@Param("id") Long id,
+                                  @Param("cutoff") LocalDateTime cutoff,
+                                  @Param("now") LocalDateTime now);
+    
     // Pagination support
     Page<Payment> findByStatus(Payment.PaymentStatus status, Pageable pageable);
     
@@ -83,16 +168,121 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
                                   @Param("endDate") LocalDateTime endDate,
                                   Pageable pageable);
     
-    // Analytics queries
-    @Query("SELECT p.currency, COUNT(p), SUM(p.amount) FROM Payment p WHERE p.status = 'SUCCESS' AND p.createdAt BETWEEN :startDate AND :endDate GROUP BY p.currency")
+    // Keyset pagination, newest first. Callers pass limit + 1 to learn whether another page exists;
+    // the *Before variants continue strictly after the (createdAt, id) of the previous page's last row.
+    @Query("SELECT " + VIEW_COLUMNS + " FROM Payment p WHERE p.status = :status ORDER BY p.createdAt DESC, p.id DESC")
+    List<PaymentView> findViewsByStatus(@Param("status") Payment.PaymentStatus status, Limit limit);
+    
+    @Query("SELECT " + VIEW_COLUMNS + " FROM Payment p WHERE p.status = :status AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) ORDER BY p.createdAt DESC, p.id DESC")
+    List<PaymentView> findViewsByStatusBefore(@Param("status") Payment.PaymentStatus status,
+                                              @Param("createdAt") LocalDateTime createdAt,
+                                              @Param("id") Long id,
+                                              Limit limit);
+    
+    @Query("SELECT " + VIEW_COLUMNS + " FROM Payment p WHERE p.customerEmail = :email ORDER BY p.createdAt DESC, p.id DESC")
+    List<PaymentView> findViewsByCustomerEmail(@Param("email") String email, Limit limit);
+    
+    @Query("SELECT " + VIEW_COLUMNS + " FROM Payment p WHERE p.customerEmail = :email AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) ORDER BY p.createdAt DESC, p.id DESC")
+    List<PaymentView> findViewsByCustomerEmailBefore(@Param("email") String email,
+                                                     @Param("createdAt") LocalDateTime createdAt,
+                                                     @Param("id") Long id,
+                                                     Limit limit);
+    
+    @Query("SELECT " + VIEW_COLUMNS + " FROM Payment p WHERE p.createdAt BETWEEN :startDate AND :endDate ORDER BY p.createdAt DESC, p.id DESC")
+    List<PaymentView> findViewsByDateRange(@Param("startDate") LocalDateTime startDate,
+                                           @Param("endDate") LocalDateTime endDate,
+                                           Limit limit);
+    
+    @Query("SELECT " + VIEW_COLUMNS + " FROM Payment p WHERE p.createdAt BETWEEN :startDate AND :endDate AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) ORDER BY p.createdAt DESC, p.id DESC")
+    List<PaymentView> findViewsByDateRangeBefore(@Param("startDate") LocalDateTime startDate,
+                                                 @Param("endDate") LocalDateTime endDate,
+                                                 @Param("createdAt") LocalDateTime createdAt,
+                                                 @Param("id") Long id,
+                                                 Limit limit);
+    
+    // Streaming exports: forward-only, read-only, fetched from the driver in chunks
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM Payment p WHERE p.createdAt BETWEEN :startDate AND :endDate ORDER BY p.createdAt, p.id")
+    Stream<Payment> streamByDateRange(@Param("startDate") LocalDateTime startDate,
+                                      @Param("endDate") LocalDateTime endDate);
+    
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM Payment p WHERE p.status = :status ORDER BY p.createdAt, p.id")
+    Stream<Payment> streamByStatus(@Param("status") Payment.PaymentStatus status);
+    
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM Payment p WHERE p.customerEmail = :email ORDER BY p.createdAt, p.id")
+    Stream<Payment> streamByCustomerEmail(@Param("email") String email);
+    
+    // Analytics store rebuild: [id, createdAt, amount in minor units, status, currency, paymentMethod, merchantId]
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p.id, p.createdAt, p.money.minorUnits, p.status, p.currency, p.paymentMethod, p.merchantId FROM Payment p")
+    Stream<Object[]> streamAnalyticsRows();
+    
+    // Analytics store refresh: the same columns for rows changed since the last refresh
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p.id, p.createdAt, p.money.minorUnits, p.status, p.currency, p.paymentMethod, p.merchantId FROM Payment p WHERE p.updatedAt >= :since")
+    Stream<Object[]> streamAnalyticsRowsUpdatedSince(@Param("since") LocalDateTime since);
+    
+    // Settlement reconciliation index: [id, paymentId, orderId, amount in minor units, status, currency]
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p.id, p.paymentId, p.orderId, p.money.minorUnits, p.status, p.currency FROM Payment p WHERE p.createdAt >= :since")
+    Stream<Object[]> streamSettlementRows(@Param("since") LocalDateTime since);
+    
+    // Analytics queries: [key, currency, count, SUM(minor units)], so amounts of different currencies are never added
+    @Query("SELECT p.currency, p.currency, COUNT(p), SUM(p.money.minorUnits) FROM Payment p WHERE p.status = 'SUCCESS' AND p.createdAt BETWEEN :startDate AND :endDate GROUP BY p.currency")
     List<Object[]> getPaymentStatsByCurrency(@Param("startDate") LocalDateTime startDate,
                                             @Param("endDate") LocalDateTime endDate);
     
-    @Query("SELECT p.paymentMethod, COUNT(p), SUM(p.amount) FROM Payment p WHERE p.status = 'SUCCESS' AND p.createdAt BETWEEN :startDate AND :endDate GROUP BY p.paymentMethod")
+    @Query("SELECT p.paymentMethod, p.currency, COUNT(p), SUM(p.money.minorUnits) FROM Payment p WHERE p.status = 'SUCCESS' AND p.createdAt BETWEEN :startDate AND :endDate GROUP BY p.paymentMethod, p.currency")
     List<Object[]> getPaymentStatsByMethod(@Param("startDate") LocalDateTime startDate,
                                           @Param("endDate") LocalDateTime endDate);
     
-    @Query("SELECT DATE(p.createdAt), COUNT(p), SUM(p.amount) FROM Payment p WHERE p.status = 'SUCCESS' AND p.createdAt BETWEEN :startDate AND :endDate GROUP BY DATE(p.createdAt) ORDER BY DATE(p.createdAt)")
+    @Query("SELECT DATE(p.createdAt), p.currency, COUNT(p), SUM(p.money.minorUnits) FROM Payment p WHERE p.status = 'SUCCESS' AND p.createdAt BETWEEN :startDate AND :endDate GROUP BY DATE(p.createdAt), p.currency ORDER BY DATE(p.createdAt)")
     List<Object[]> getDailyPaymentStats(@Param("startDate") LocalDateTime startDate,
                                        @Param("endDate") LocalDateTime endDate);
-} 
\ No newline at end of file
+    
+    // Daily rollups: one row per merchant, currency, method and status for [start, end), amounts in minor units
+    @Query("SELECT p.merchantId, p.currency, p.paymentMethod, p.status, COUNT(p), SUM(p.money.minorUnits), MIN(p.money.minorUnits), MAX(p.money.minorUnits) FROM Payment p WHERE p.createdAt >= :start AND p.createdAt < :end GROUP BY p.merchantId, p.currency, p.paymentMethod, p.status")
+    List<Object[]> aggregateForRollup(@Param("start") LocalDateTime start,
+                                      @Param("end") LocalDateTime end);
+    
+    @Query("SELECT p.createdAt FROM Payment p WHERE p.updatedAt >= :since AND p.createdAt < :before")
+    List<LocalDateTime> findCreatedAtOfPaymentsUpdatedSince(@Param("since") LocalDateTime since,
+                                                            @Param("before") LocalDateTime before);
+    
+    // Archiver: finalized payments untouched since the cutoff, oldest first, locked until the batch is moved
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Payment p WHERE p.status IN :statuses AND p.createdAt < :cutoff "
+            + "AND (p.updatedAt IS NULL OR p.updatedAt < :cutoff) ORDER BY p.createdAt, p.id")
+    List<Payment> findArchivable(@Param("statuses") Collection<Payment.PaymentStatus> statuses,
+                                 @Param("cutoff") LocalDateTime cutoff,
+                                 Limit limit);
+    
+    @Query("SELECT MIN(p.createdAt) FROM Payment p")
+    LocalDateTime findEarliestCreatedAt();
+    
+    // Part of an analytics range not covered by rollups: [currency, method, count, sum, min, max] in minor units
+    @Query("SELECT p.currency, p.paymentMethod, COUNT(p), SUM(p.money.minorUnits), MIN(p.money.minorUnits), MAX(p.money.minorUnits) FROM Payment p WHERE p.status = :status AND p.createdAt >= :start AND p.createdAt < :end GROUP BY p.currency, p.paymentMethod")
+    List<Object[]> aggregateByCurrencyAndMethod(@Param("status") Payment.PaymentStatus status,
+                                                @Param("start") LocalDateTime start,
+                                                @Param("end") LocalDateTime end);
+}
\ No newline at end of file
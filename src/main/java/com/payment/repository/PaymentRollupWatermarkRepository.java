@@ -0,0 +1,22 @@
+package com.payment.repository;
+
+import java.util.Optional;
+
+import jakarta.persistence.LockModeType;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.payment.entity.PaymentRollupWatermark;
+
+@Repository
+public interface PaymentRollupWatermarkRepository extends JpaRepository<PaymentRollupWatermark, String> {
+    
+    // Rollup job: held until the transaction ends, so one node at a time rewrites rollups
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM PaymentRollupWatermark w WHERE w.name = :name")
+    Optional<PaymentRollupWatermark> findForUpdate(@Param("name") String name);
+}
@@ -0,0 +1,25 @@
+package com.payment.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.payment.entity.ProcessedWebhookEvent;
+
+@Repository
+public interface ProcessedWebhookEventRepository extends JpaRepository<ProcessedWebhookEvent, String> {
+    
+    // Keys only, one page at a time, for seeding the in-memory Bloom filter
+    @Query("SELECT e.eventKey FROM ProcessedWebhookEvent e WHERE e.eventKey > :after ORDER BY e.eventKey")
+    List<String> findKeysAfter(@Param("after") String after, Pageable pageable);
+    
+    @Modifying
+    @Query("DELETE FROM ProcessedWebhookEvent e WHERE e.processedAt < :cutoff")
+    int deleteProcessedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,16 @@
+package com.payment.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.payment.entity.SettlementMismatch;
+
+@Repository
+public interface SettlementMismatchRepository extends JpaRepository<SettlementMismatch, Long> {
+    
+    List<SettlementMismatch> findByRunIdOrderByFileOffset(String runId);
+    
+    long countByRunIdAndType(String runId, SettlementMismatch.MismatchType type);
+}
@@ -0,0 +1,14 @@
+package com.payment.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.payment.entity.WebhookDeadLetter;
+
+@Repository
+public interface WebhookDeadLetterRepository extends JpaRepository<WebhookDeadLetter, Long> {
+    
+    List<WebhookDeadLetter> findByOrderId(String orderId);
+}
@@ -0,0 +1,65 @@
+package com.payment.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.payment.entity.WebhookOutboxEvent;
+
+@Repository
+public interface WebhookOutboxRepository extends JpaRepository<WebhookOutboxEvent, Long> {
+    
+    // Postgres: lock due rows for the claim UPDATE, skipping rows another dispatcher is claiming
+    @Query(value = "SELECT id FROM webhook_outbox WHERE status = 'PENDING' AND next_attempt_at <= :now "
+            + "ORDER BY next_attempt_at, id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockDueIds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+    
+    // Other databases: candidates only; the conditional claim UPDATE decides who gets each row
+    @Query("SELECT e.id FROM WebhookOutboxEvent e WHERE e.status = 'PENDING' AND e.nextAttemptAt <= :now ORDER BY e.nextAttemptAt, e.id")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Limit limit);
+    
+    // Claiming counts the attempt, so one whose outcome is lost to an expired lease still counts
+    @Modifying
+    @Query("UPDATE WebhookOutboxEvent e SET e.claimToken = :token, e.nextAttemptAt = :leaseUntil, e.attempts = e.attempts + 1 "
+            + "WHERE e.id IN :ids AND e.status = 'PENDING' AND e.nextAttemptAt <= :now")
+    int claim(@Param("ids") Collection<Long> ids,
+              @Param("token") String token,
+              @Param("leaseUntil") LocalDateTime leaseUntil,
+              @Param("now") LocalDateTime now);
+    
+    List<WebhookOutboxEvent> findByClaimToken(String claimToken);
+    
+    // Record an attempt's outcome, unless the lease ran out and another dispatcher took the row
+    @Modifying
+    @Query("UPDATE WebhookOutboxEvent e SET e.status = :status, e.attempts = :attempts, e.nextAttemptAt = :nextAttemptAt, "
+            + "e.lastError = :lastError, e.deliveredAt = :deliveredAt, e.claimToken = NULL "
+            + "WHERE e.id = :id AND e.claimToken = :token")
+    int recordAttempt(@Param("id") Long id,
+                      @Param("token") String token,
+                      @Param("status") WebhookOutboxEvent.OutboxStatus status,
+                      @Param("attempts") int attempts,
+                      @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                      @Param("lastError") String lastError,
+                      @Param("deliveredAt") LocalDateTime deliveredAt);
+    
+    // Hand claimed rows back unsent: the claim's attempt is undone and they are due again at once
+    @Modifying
+    @Query("UPDATE WebhookOutboxEvent e SET e.claimToken = NULL, e.nextAttemptAt = :now, e.attempts = e.attempts - 1 "
+            + "WHERE e.id IN :ids AND e.claimToken = :token")
+    int release(@Param("ids") Collection<Long> ids,
+                @Param("token") String token,
+                @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("DELETE FROM WebhookOutboxEvent e WHERE e.status = 'DELIVERED' AND e.deliveredAt < :before")
+    int deleteDeliveredBefore(@Param("before") LocalDateTime before);
+    
+    long countByStatus(WebhookOutboxEvent.OutboxStatus status);
+}
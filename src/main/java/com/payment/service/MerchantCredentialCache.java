@@ -0,0 +1,152 @@
+package com.payment.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.payment.entity.Merchant;
+import com.payment.repository.MerchantRepository;
+import com.payment.util.HexCodec;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Resolves merchants by API key for request authentication without a database round
+ * trip per request.
+ *
+ * Entries are keyed by the SHA-256 of the key, so raw API keys are never held in the
+ * cache. Unknown keys are cached too (for a shorter time) so a client retrying a bad key
+ * cannot turn every request into a query. MerchantController invalidates a merchant's
+ * entry whenever it registers or changes one.
+ *
+ * That invalidation only reaches this node's cache. On every other node a suspended
+ * merchant keeps authenticating, and a newly registered key keeps being refused, until the
+ * entry expires: at most ttl-seconds (default 15) for known keys and negative-ttl-seconds
+ * for unknown ones. Those two settings are the bound on cross-node staleness, so keep them
+ * in seconds; each costs at most one query per active key per node per TTL.
+ */
+@Component
+public class MerchantCredentialCache {
+    
+    private static final MerchantCredential UNKNOWN = new MerchantCredential(null, null, null);
+    
+    @Value("${merchant.auth.cache.max-size:10000}")
+    private long maxSize;
+    
+    @Value("${merchant.auth.cache.ttl-seconds:15}")
+    private long ttlSeconds;
+    
+    @Value("${merchant.auth.cache.negative-ttl-seconds:30}")
+    private long negativeTtlSeconds;
+    
+    @Autowired
+    private MerchantRepository merchantRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(MerchantCredentialCache::newDigest);
+    private Cache<String, MerchantCredential> credentials;
+    
+    @PostConstruct
+    void init() {
+        long ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        long negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+        credentials = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, MerchantCredential>() {
+                    @Override
+                    public long expireAfterCreate(String key, MerchantCredential value, long currentTime) {
+                        return value == UNKNOWN ? negativeTtlNanos : ttlNanos;
+                    }
+                    
+                    @Override
+                    public long expireAfterUpdate(String key, MerchantCredential value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+                    
+                    @Override
+                    public long expireAfterRead(String key, MerchantCredential value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, credentials, "merchant.credentials");
+    }
+    
+    /**
+     * @return The merchant owning the key, or null if no merchant has it
+     */
+    public MerchantCredential resolve(String apiKey) {
+        MerchantCredential credential = credentials.get(hash(apiKey), key ->
+                merchantRepository.findByApiKey(apiKey).map(MerchantCredential::of).orElse(UNKNOWN));
+        return credential == UNKNOWN ? null : credential;
+    }
+    
+    /**
+     * Forget whatever is cached for the merchant's API key
+     */
+    public void invalidate(Merchant merchant) {
+        if (merchant.getApiKey() != null) {
+            credentials.invalidate(hash(merchant.getApiKey()));
+        }
+    }
+    
+    private String hash(String apiKey) {
+        return HexCodec.encode(sha256.get().digest(apiKey.getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    /**
+     * The parts of a merchant that authentication needs
+     */
+    public static final class MerchantCredential {
+        private final Long id;
+        private final String merchantId;
+        private final Merchant.MerchantStatus status;
+        
+        private MerchantCredential(Long id, String merchantId, Merchant.MerchantStatus status) {
+            this.id = id;
+            this.merchantId = merchantId;
+            this.status = status;
+        }
+        
+        private static MerchantCredential of(Merchant merchant) {
+            return new MerchantCredential(merchant.getId(), merchant.getMerchantId(), merchant.getStatus());
+        }
+        
+        public Long getId() {
+            return id;
+        }
+        
+        public String getMerchantId() {
+            return merchantId;
+        }
+        
+        public Merchant.MerchantStatus getStatus() {
+            return status;
+        }
+        
+        public boolean isActive() {
+            return status == Merchant.MerchantStatus.ACTIVE;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.payment.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Per-merchant token bucket for the payments API, sized by rate.limit.requests-per-minute
+ * (refill rate) and rate.limit.burst-capacity (bucket size).
+ *
+ * Each bucket is kept as a single theoretical arrival time (GCRA), which admits exactly
+ * the same requests as a token bucket but can be updated with one CAS, so admitting a
+ * request never takes a lock. Buckets live in a bounded Caffeine map and are dropped once
+ * idle long enough to have refilled completely, so eviction never changes a decision.
+ */
+@Component
+public class MerchantRateLimiter {
+    
+    @Value("${rate.limit.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${rate.limit.requests-per-minute:100}")
+    private long requestsPerMinute;
+    
+    @Value("${rate.limit.burst-capacity:200}")
+    private long burstCapacity;
+    
+    @Value("${rate.limit.max-tracked-keys:100000}")
+    private long maxTrackedKeys;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // Time for one token to refill, and the time for a full bucket to refill
+    private long emissionIntervalNanos;
+    private long burstWindowNanos;
+    private Cache<String, Bucket> buckets;
+    private Counter anonymousRejections;
+    
+    @PostConstruct
+    void init() {
+        emissionIntervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, requestsPerMinute);
+        burstWindowNanos = emissionIntervalNanos * Math.max(1, burstCapacity);
+        buckets = Caffeine.newBuilder()
+                .maximumSize(maxTrackedKeys)
+                .expireAfterAccess(burstWindowNanos + TimeUnit.MINUTES.toNanos(1), TimeUnit.NANOSECONDS)
+                .build();
+        anonymousRejections = rejectionCounter("anonymous");
+        Gauge.builder("rate.limit.tracked.keys", buckets, cache -> cache.estimatedSize())
+                .description("Merchants and clients with a live rate limit bucket")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Take one token from the caller's bucket
+     *
+     * @param key Merchant ID, or a client address for unauthenticated callers
+     * @param merchant Whether the key is a merchant ID (tags the rejection counter)
+     * @return 0 if the request is admitted, otherwise nanoseconds until it would be
+     */
+    public long tryAcquire(String key, boolean merchant) {
+        if (!enabled) {
+            return 0;
+        }
+        Bucket bucket = buckets.get(key, k -> new Bucket(merchant ? k : null));
+        long now = System.nanoTime();
+        while (true) {
+            long tat = bucket.theoreticalArrival.get();
+            long next = Math.max(tat, now) + emissionIntervalNanos;
+            long wait = next - now - burstWindowNanos;
+            if (wait > 0) {
+                rejections(bucket).increment();
+                return wait;
+            }
+            if (bucket.theoreticalArrival.compareAndSet(tat, next)) {
+                return 0;
+            }
+        }
+    }
+    
+    public long getRequestsPerMinute() {
+        return requestsPerMinute;
+    }
+    
+    private Counter rejections(Bucket bucket) {
+        if (bucket.merchantId == null) {
+            return anonymousRejections;
+        }
+        Counter counter = bucket.rejections;
+        if (counter == null) {
+            // Registered on first rejection so well-behaved merchants add no series
+            counter = rejectionCounter(bucket.merchantId);
+            bucket.rejections = counter;
+        }
+        return counter;
+    }
+    
+    private Counter rejectionCounter(String merchantId) {
+        return Counter.builder("rate.limit.rejections")
+                .description("Requests rejected with 429 by the payments API rate limiter")
+                .tag("merchant", merchantId)
+                .register(meterRegistry);
+    }
+    
+    private static final class Bucket {
+        // Starts far enough in the past that a new bucket is full
+        private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE / 2);
+        private final String merchantId;
+        private volatile Counter rejections;
+        
+        private Bucket(String merchantId) {
+            this.merchantId = merchantId;
+        }
+    }
+}
@@ -0,0 +1,553 @@
+package com.payment.service;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.payment.entity.Merchant;
+import com.payment.entity.WebhookOutboxEvent;
+import com.payment.repository.MerchantRepository;
+import com.payment.repository.WebhookOutboxRepository;
+import com.payment.util.HexCodec;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Delivers outbox events to merchant webhook URLs.
+ *
+ * Each run claims due events in batches. The claim moves them past a lease and tags them
+ * with a claim token, so concurrent dispatchers on other nodes pass them over. On
+ * Postgres the candidates are read with FOR UPDATE SKIP LOCKED. Elsewhere, a
+ * conditional UPDATE settles who wins a race. A batch is posted through one pooled,
+ * async HttpClient, with at most max-concurrency-per-host requests open to any one
+ * host. The body is signed with HMAC-SHA256 under the merchant's webhook secret.
+ *
+ * Before sending, the URL's host is resolved and refused if any address is loopback,
+ * private or link-local, so a merchant URL cannot reach internal services. HttpClient
+ * resolves the name again when it connects, so a DNS answer that changes in between is
+ * not caught. Events for a merchant that is not active stay pending and are checked
+ * again later, with growing gaps, in case the merchant is reactivated.
+ *
+ * Each outcome is recorded as soon as its request completes. A host gets no more of a
+ * batch than its lanes can finish within half the lease even if every request times
+ * out; the rest are handed back for the next batch, so one slow host cannot hold the
+ * batch past its lease.
+ *
+ * A non-2xx reply or an error is retried up to webhook.retry.attempts times. The delay
+ * starts at webhook.retry.delay, doubles with each retry and has equal jitter. The claim
+ * itself counts the attempt, so an event whose outcome is lost to an expired lease is
+ * still abandoned once it runs out of retries. Delivery is at least once: an event whose
+ * lease runs out mid-delivery is sent again, so receivers should dedupe on X-Webhook-Id.
+ */
+@Component
+public class MerchantWebhookDispatcher {
+    
+    static final String SIGNATURE_HEADER = "X-Webhook-Signature";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    
+    @Value("${webhook.retry.attempts:3}")
+    private int retryAttempts;
+    
+    @Value("${webhook.retry.delay:5000}")
+    private long retryDelayMillis;
+    
+    @Value("${webhook.retry.max-delay-ms:3600000}")
+    private long maxRetryDelayMillis;
+    
+    @Value("${webhook.outbox.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${webhook.outbox.batch-size:200}")
+    private int batchSize;
+    
+    @Value("${webhook.outbox.max-batches-per-run:50}")
+    private int maxBatchesPerRun;
+    
+    @Value("${webhook.outbox.lease-seconds:120}")
+    private int leaseSeconds;
+    
+    @Value("${webhook.outbox.max-concurrency-per-host:8}")
+    private int maxConcurrencyPerHost;
+    
+    @Value("${webhook.outbox.http-threads:4}")
+    private int httpThreads;
+    
+    @Value("${webhook.outbox.connect-timeout-ms:5000}")
+    private long connectTimeoutMillis;
+    
+    @Value("${webhook.outbox.request-timeout-ms:10000}")
+    private long requestTimeoutMillis;
+    
+    @Value("${webhook.outbox.retention-days:7}")
+    private int retentionDays;
+    
+    // Only for local receivers in development and tests
+    @Value("${webhook.outbox.allow-private-targets:false}")
+    private boolean allowPrivateTargets;
+    
+    @Autowired
+    private WebhookOutboxRepository outboxRepository;
+    
+    @Autowired
+    private MerchantRepository merchantRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private ExecutorService httpExecutor;
+    private HttpClient httpClient;
+    private boolean skipLocked;
+    
+    private Counter deliveredCounter;
+    private Counter retriedCounter;
+    private Counter failedCounter;
+    private Counter discardedCounter;
+    private Counter leaseExpiredCounter;
+    private Counter deferredCounter;
+    
+    @PostConstruct
+    void start() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        skipLocked = "PostgreSQL".equals(product);
+        
+        AtomicInteger threadNumber = new AtomicInteger();
+        httpExecutor = Executors.newFixedThreadPool(Math.max(1, httpThreads), runnable -> {
+            Thread thread = new Thread(runnable, "merchant-webhook-http-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // One client for every merchant: it keeps a pool of keep-alive connections per host
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(httpExecutor)
+                .build();
+        
+        deliveredCounter = Counter.builder("payment.webhook.delivered")
+                .description("Merchant webhooks acknowledged with a 2xx")
+                .register(meterRegistry);
+        retriedCounter = Counter.builder("payment.webhook.retried")
+                .description("Merchant webhook attempts that failed and were rescheduled")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("payment.webhook.failed")
+                .description("Merchant webhooks abandoned after the last retry")
+                .register(meterRegistry);
+        discardedCounter = Counter.builder("payment.webhook.discarded")
+                .description("Merchant webhooks dropped because the merchant has no usable webhook URL")
+                .register(meterRegistry);
+        leaseExpiredCounter = Counter.builder("payment.webhook.lease.expired")
+                .description("Merchant webhook outcomes dropped because the claim's lease had run out")
+                .register(meterRegistry);
+        deferredCounter = Counter.builder("payment.webhook.deferred")
+                .description("Merchant webhooks held back because the merchant is not active")
+                .register(meterRegistry);
+    }
+    
+    @PreDestroy
+    void stop() {
+        httpExecutor.shutdown();
+    }
+    
+    /**
+     * Deliver due outbox events, a bounded number of batches per run
+     *
+     * @return Number of events delivered
+     */
+    @Scheduled(fixedDelayString = "${webhook.outbox.poll-interval-ms:1000}")
+    public synchronized int dispatch() {
+        if (!enabled) {
+            return 0;
+        }
+        int delivered = 0;
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            // Taken before the claim, so it never runs past the lease the database holds
+            long leaseDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(leaseSeconds);
+            String token = UUID.randomUUID().toString();
+            List<WebhookOutboxEvent> batch = claimBatch(token);
+            if (batch.isEmpty()) {
+                break;
+            }
+            delivered += deliver(batch, token, leaseDeadline);
+            if (batch.size() < batchSize) {
+                break;
+            }
+        }
+        return delivered;
+    }
+    
+    @Scheduled(cron = "${webhook.outbox.cleanup-cron:0 20 3 * * *}")
+    public void purgeDelivered() {
+        LocalDateTime before = LocalDateTime.now().minusDays(Math.max(1, retentionDays));
+        Integer purged = transactionTemplate.execute(status -> outboxRepository.deleteDeliveredBefore(before));
+        if (purged != null && purged > 0) {
+            System.out.println("Purged " + purged + " delivered merchant webhooks");
+        }
+    }
+    
+    private List<WebhookOutboxEvent> claimBatch(String token) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer claimed = transactionTemplate.execute(status -> {
+            List<Long> ids = skipLocked
+                    ? outboxRepository.lockDueIds(now, batchSize)
+                    : outboxRepository.findDueIds(now, Limit.of(batchSize));
+            return ids.isEmpty() ? 0 : outboxRepository.claim(ids, token, now.plusSeconds(leaseSeconds), now);
+        });
+        return claimed == null || claimed == 0 ? List.of() : outboxRepository.findByClaimToken(token);
+    }
+    
+    private int deliver(List<WebhookOutboxEvent> batch, String token, long leaseDeadline) {
+        Set<String> merchantIds = batch.stream().map(WebhookOutboxEvent::getMerchantId).collect(Collectors.toSet());
+        Map<String, Merchant> merchants = new HashMap<>();
+        for (Merchant merchant : merchantRepository.findByMerchantIdIn(merchantIds)) {
+            merchants.put(merchant.getMerchantId(), merchant);
+        }
+        
+        List<Outcome> settled = new ArrayList<>();
+        List<Long> overflow = new ArrayList<>();
+        Map<String, Queue<Delivery>> byHost = new LinkedHashMap<>();
+        Map<String, Mac> macs = new HashMap<>();
+        Map<String, Boolean> publicHosts = new HashMap<>();
+        int hostLimit = hostLimit();
+        for (WebhookOutboxEvent event : batch) {
+            // Claims count attempts, so more than one past the last retry means earlier outcomes were lost
+            if (event.getAttempts() > retryAttempts + 1) {
+                settled.add(new Outcome(event, 0, "Lease ran out before the outcome was recorded", Outcome.Kind.LOST));
+                continue;
+            }
+            Merchant merchant = merchants.get(event.getMerchantId());
+            if (merchant != null && merchant.getStatus() != Merchant.MerchantStatus.ACTIVE) {
+                settled.add(new Outcome(event, 0, "Merchant is " + merchant.getStatus(), Outcome.Kind.DEFER));
+                continue;
+            }
+            if (merchant == null || merchant.getWebhookUrl() == null || merchant.getWebhookUrl().isBlank()) {
+                settled.add(new Outcome(event, 0, "Merchant has no webhook URL", Outcome.Kind.DISCARD));
+                continue;
+            }
+            URI uri;
+            try {
+                uri = URI.create(merchant.getWebhookUrl().trim());
+            } catch (IllegalArgumentException e) {
+                settled.add(new Outcome(event, 0, "Invalid webhook URL", Outcome.Kind.DISCARD));
+                continue;
+            }
+            if (uri.getHost() == null || !("http".equals(uri.getScheme()) || "https".equals(uri.getScheme()))) {
+                settled.add(new Outcome(event, 0, "Invalid webhook URL", Outcome.Kind.DISCARD));
+                continue;
+            }
+            if (!allowPrivateTargets) {
+                // Looked up once per host per batch; a failed lookup is remembered too
+                if (!publicHosts.containsKey(uri.getHost())) {
+                    publicHosts.put(uri.getHost(), resolvesToPublic(uri.getHost()));
+                }
+                Boolean isPublic = publicHosts.get(uri.getHost());
+                if (isPublic == null) {
+                    settled.add(new Outcome(event, 0, "Cannot resolve webhook host " + uri.getHost(), Outcome.Kind.ATTEMPTED));
+                    continue;
+                }
+                if (!isPublic) {
+                    settled.add(new Outcome(event, 0, "Webhook URL resolves to a private address", Outcome.Kind.DISCARD));
+                    continue;
+                }
+            }
+            String host = uri.getScheme() + "://" + uri.getAuthority();
+            Queue<Delivery> deliveries = byHost.computeIfAbsent(host, key -> new ConcurrentLinkedQueue<>());
+            if (deliveries.size() >= hostLimit) {
+                overflow.add(event.getId());
+                continue;
+            }
+            
+            byte[] body = event.getPayload().getBytes(StandardCharsets.UTF_8);
+            HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofMillis(requestTimeoutMillis))
+                    .header("Content-Type", "application/json")
+                    .header("X-Webhook-Id", String.valueOf(event.getId()))
+                    .header("X-Webhook-Event", event.getEvent())
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+            String secret = merchant.getWebhookSecret();
+            if (secret != null && !secret.isEmpty()) {
+                Mac mac = macs.computeIfAbsent(merchant.getMerchantId(), key -> newMac(secret));
+                request.header(SIGNATURE_HEADER, HexCodec.encode(mac.doFinal(body)));
+            }
+            deliveries.add(new Delivery(event, request.build()));
+        }
+        
+        // Events past a host's share go back to the queue for the next batch instead of risking the lease
+        if (!overflow.isEmpty()) {
+            LocalDateTime now = LocalDateTime.now();
+            transactionTemplate.executeWithoutResult(status -> outboxRepository.release(overflow, token, now));
+        }
+        int delivered = settled.isEmpty() ? 0 : record(settled);
+        
+        // Each lane sends one request at a time, so a host never has more than its lanes in flight
+        BlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<>();
+        AtomicBoolean stopped = new AtomicBoolean();
+        int inFlight = 0;
+        for (Queue<Delivery> deliveries : byHost.values()) {
+            inFlight += deliveries.size();
+            for (int i = Math.min(Math.max(1, maxConcurrencyPerHost), deliveries.size()); i > 0; i--) {
+                runLane(deliveries, outcomes, stopped);
+            }
+        }
+        
+        // Record outcomes as they arrive rather than when the slowest host is done
+        List<Outcome> done = new ArrayList<>();
+        try {
+            while (inFlight > 0) {
+                Outcome first = outcomes.poll(leaseDeadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    System.err.println("Merchant webhooks: lease ran out with " + inFlight + " deliveries unrecorded");
+                    break;
+                }
+                done.clear();
+                done.add(first);
+                outcomes.drainTo(done);
+                inFlight -= done.size();
+                delivered += record(done);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Lanes stop taking new deliveries; the rows go back to the queue when the lease runs out
+            stopped.set(true);
+        }
+        return delivered;
+    }
+    
+    /**
+     * Most deliveries one host may take from a batch: as many as its lanes can finish within
+     * half the lease even if every request runs to its timeouts
+     */
+    private int hostLimit() {
+        long perRequest = Math.max(1, connectTimeoutMillis + requestTimeoutMillis);
+        long perLane = Math.max(1, TimeUnit.SECONDS.toMillis(leaseSeconds) / 2 / perRequest);
+        return (int) Math.min(Math.max(1, batchSize), perLane * Math.max(1, maxConcurrencyPerHost));
+    }
+    
+    private void runLane(Queue<Delivery> deliveries, BlockingQueue<Outcome> outcomes, AtomicBoolean stopped) {
+        Delivery delivery = stopped.get() ? null : deliveries.poll();
+        if (delivery == null) {
+            return;
+        }
+        httpClient.sendAsync(delivery.request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        outcomes.add(new Outcome(delivery.event, 0, cause.getClass().getSimpleName() + ": " + cause.getMessage(),
+                                Outcome.Kind.ATTEMPTED));
+                    } else {
+                        outcomes.add(new Outcome(delivery.event, response.statusCode(), "HTTP " + response.statusCode(),
+                                Outcome.Kind.ATTEMPTED));
+                    }
+                    runLane(deliveries, outcomes, stopped);
+                });
+    }
+    
+    private int record(List<Outcome> outcomes) {
+        LocalDateTime now = LocalDateTime.now();
+        // delivered, retried, failed, discarded, lost, unrecorded, deferred
+        int[] tally = new int[7];
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Outcome outcome : outcomes) {
+                WebhookOutboxEvent event = outcome.event;
+                int attempts = event.getAttempts();
+                int updated;
+                if (outcome.kind == Outcome.Kind.DISCARD) {
+                    tally[3]++;
+                    updated = outboxRepository.recordAttempt(event.getId(), event.getClaimToken(),
+                            WebhookOutboxEvent.OutboxStatus.DISCARDED, attempts - 1, now, outcome.error, null);
+                } else if (outcome.kind == Outcome.Kind.DEFER) {
+                    tally[6]++;
+                    LocalDateTime next = now.plus(Duration.ofMillis(deferMillis(event, now)));
+                    updated = outboxRepository.recordAttempt(event.getId(), event.getClaimToken(),
+                            WebhookOutboxEvent.OutboxStatus.PENDING, attempts - 1, next, outcome.error, null);
+                } else if (outcome.kind == Outcome.Kind.LOST) {
+                    tally[4]++;
+                    updated = outboxRepository.recordAttempt(event.getId(), event.getClaimToken(),
+                            WebhookOutboxEvent.OutboxStatus.FAILED, attempts - 1, now, outcome.error, null);
+                } else if (outcome.statusCode >= 200 && outcome.statusCode < 300) {
+                    tally[0]++;
+                    updated = outboxRepository.recordAttempt(event.getId(), event.getClaimToken(),
+                            WebhookOutboxEvent.OutboxStatus.DELIVERED, attempts, now, null, now);
+                } else if (attempts > retryAttempts) {
+                    tally[2]++;
+                    updated = outboxRepository.recordAttempt(event.getId(), event.getClaimToken(),
+                            WebhookOutboxEvent.OutboxStatus.FAILED, attempts, now, truncate(outcome.error), null);
+                } else {
+                    tally[1]++;
+                    LocalDateTime next = now.plus(Duration.ofMillis(backoffMillis(attempts)));
+                    updated = outboxRepository.recordAttempt(event.getId(), event.getClaimToken(),
+                            WebhookOutboxEvent.OutboxStatus.PENDING, attempts, next, truncate(outcome.error), null);
+                }
+                if (updated == 0) {
+                    tally[5]++;
+                }
+            }
+        });
+        
+        deliveredCounter.increment(tally[0]);
+        retriedCounter.increment(tally[1]);
+        failedCounter.increment(tally[2] + tally[4]);
+        discardedCounter.increment(tally[3]);
+        leaseExpiredCounter.increment(tally[5]);
+        deferredCounter.increment(tally[6]);
+        if (tally[2] > 0) {
+            System.err.println("Merchant webhooks: " + tally[2] + " abandoned after " + retryAttempts + " retries");
+        }
+        if (tally[4] > 0) {
+            System.err.println("Merchant webhooks: " + tally[4] + " abandoned after their leases kept running out");
+        }
+        if (tally[5] > 0) {
+            System.err.println("Merchant webhooks: " + tally[5] + " outcomes arrived after the lease and were dropped");
+        }
+        return tally[0];
+    }
+    
+    /**
+     * Delay before retry number attempt: the base delay doubled per earlier retry, capped,
+     * then drawn uniformly from the upper half so retries from one outage spread out
+     */
+    long backoffMillis(int attempt) {
+        long base = Math.max(1, retryDelayMillis);
+        long delay = base << Math.min(Math.max(attempt - 1, 0), 30);
+        if (delay <= 0 || delay > maxRetryDelayMillis) {
+            delay = Math.max(base, maxRetryDelayMillis);
+        }
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+    
+    /**
+     * How long to hold an event for an inactive merchant: as long again as it has waited so
+     * far, between the retry delay and the max delay, so checks thin out as the merchant stays inactive
+     */
+    long deferMillis(WebhookOutboxEvent event, LocalDateTime now) {
+        long base = Math.max(1, retryDelayMillis);
+        long waited = event.getCreatedAt() == null ? 0 : Duration.between(event.getCreatedAt(), now).toMillis();
+        return Math.min(Math.max(waited, base), Math.max(base, maxRetryDelayMillis));
+    }
+    
+    /**
+     * @return Whether every address the host resolves to is public, or null if it does not resolve
+     */
+    private static Boolean resolvesToPublic(String host) {
+        try {
+            for (InetAddress address : InetAddress.getAllByName(host)) {
+                if (!isPublicAddress(address)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * False for loopback, private (site-local and unique-local), link-local, wildcard and multicast addresses
+     */
+    static boolean isPublicAddress(InetAddress address) {
+        if (address.isLoopbackAddress() || address.isSiteLocalAddress() || address.isLinkLocalAddress()
+                || address.isAnyLocalAddress() || address.isMulticastAddress()) {
+            return false;
+        }
+        // IPv6 unique local addresses (fc00::/7), which isSiteLocalAddress does not cover
+        byte[] bytes = address.getAddress();
+        return !(bytes.length == 16 && (bytes[0] & 0xfe) == 0xfc);
+    }
+    
+    private static Mac newMac(String secret) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            return mac;
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot initialise webhook signing", e);
+        }
+    }
+    
+    private static String truncate(String error) {
+        return error == null || error.length() <= 500 ? error : error.substring(0, 500);
+    }
+    
+    private static final class Delivery {
+        private final WebhookOutboxEvent event;
+        private final HttpRequest request;
+        
+        private Delivery(WebhookOutboxEvent event, HttpRequest request) {
+            this.event = event;
+            this.request = request;
+        }
+    }
+    
+    private static final class Outcome {
+        private enum Kind {
+            // Posted or tried to be; statusCode is the reply, or 0 for an error
+            ATTEMPTED,
+            // Not sendable; dropped without counting an attempt
+            DISCARD,
+            // Merchant not active; held back without counting an attempt
+            DEFER,
+            // Claimed past the last retry because earlier outcomes never got recorded
+            LOST
+        }
+        
+        private final WebhookOutboxEvent event;
+        private final int statusCode;
+        private final String error;
+        private final Kind kind;
+        
+        private Outcome(WebhookOutboxEvent event, int statusCode, String error, Kind kind) {
+            this.event = event;
+            this.statusCode = statusCode;
+            this.error = error;
+            this.kind = kind;
+        }
+    }
+}
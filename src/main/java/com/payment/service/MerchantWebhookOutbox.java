@@ -0,0 +1,56 @@
+package com.payment.service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.dto.PaymentView;
+import com.payment.entity.Payment;
+import com.payment.entity.WebhookOutboxEvent;
+import com.payment.repository.WebhookOutboxRepository;
+
+/**
+ * Writes merchant webhook events to the outbox table for MerchantWebhookDispatcher.
+ *
+ * Events are written inside the transaction that changes the payment status. An event
+ * exists exactly when the change commits, and a failed write rolls the change back.
+ * Payments that do not belong to a merchant produce no event.
+ */
+@Component
+public class MerchantWebhookOutbox {
+    
+    @Autowired
+    private WebhookOutboxRepository outboxRepository;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    public void recordStatusChange(PaymentView payment, Payment.PaymentStatus from, Payment.PaymentStatus to) {
+        if (payment.getMerchantId() == null) {
+            return;
+        }
+        String event = "payment." + to.name().toLowerCase(Locale.ROOT);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("event", event);
+        body.put("orderId", payment.getOrderId());
+        body.put("paymentId", payment.getPaymentId());
+        body.put("status", to);
+        body.put("previousStatus", from);
+        body.put("amount", payment.getMoney());
+        body.put("occurredAt", LocalDateTime.now());
+        
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize webhook for payment " + payment.getId(), e);
+        }
+        outboxRepository.save(new WebhookOutboxEvent(payment.getMerchantId(), payment.getId(), event, payload));
+    }
+}
@@ -0,0 +1,167 @@
+package com.payment.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.payment.dto.PaymentAggregate;
+import com.payment.entity.Payment;
+import com.payment.repository.PaymentDailyRollupRepository;
+import com.payment.repository.PaymentRepository;
+import com.payment.util.Money;
+
+/**
+ * Successful-payment analytics by day, currency and payment method.
+ *
+ * Whole days that the rollup job has covered are read from payment_daily_rollups, which
+ * every node shares. Only the partial days at either end of the range (normally just
+ * today) are aggregated from this node's PaymentAnalyticsStore, or from the raw payments
+ * table while the store is loading or disabled. Ranges are inclusive on both ends, like
+ * the original BETWEEN queries.
+ *
+ * Rollups hold each currency's minor units, so their rows are converted back to decimal
+ * amounts with that currency's exponent before groups that mix currencies are combined.
+ */
+@Service
+public class PaymentAnalyticsService {
+    
+    // Group keys are all LocalDate or all String within one query
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final Comparator<Object> KEY_ORDER = (a, b) -> ((Comparable) a).compareTo(b);
+    
+    @Autowired
+    private PaymentRepository paymentRepository;
+    
+    @Autowired
+    private PaymentDailyRollupRepository rollupRepository;
+    
+    @Autowired
+    private PaymentRollupService rollupService;
+    
+    @Autowired
+    private PaymentAnalyticsStore analyticsStore;
+    
+    public List<PaymentAggregate> getDailyStats(LocalDateTime startDate, LocalDateTime endDate) {
+        return aggregate(startDate, endDate, rollupRepository::sumByDay, PaymentAnalyticsStore.Dimension.DAY, null);
+    }
+    
+    public List<PaymentAggregate> getStatsByCurrency(LocalDateTime startDate, LocalDateTime endDate) {
+        return aggregate(startDate, endDate, rollupRepository::sumByCurrency, PaymentAnalyticsStore.Dimension.CURRENCY,
+                row -> row[0]);
+    }
+    
+    public List<PaymentAggregate> getStatsByMethod(LocalDateTime startDate, LocalDateTime endDate) {
+        return aggregate(startDate, endDate, rollupRepository::sumByMethod, PaymentAnalyticsStore.Dimension.METHOD,
+                row -> row[1]);
+    }
+    
+    private List<PaymentAggregate> aggregate(LocalDateTime startDate, LocalDateTime endDate, RollupQuery rollupQuery,
+                                             PaymentAnalyticsStore.Dimension dimension, Function<Object[], Object> rawKey) {
+        // rawKey picks the group from a raw [currency, method, ...] row; null groups by day
+        Map<Object, Accumulator> groups = new TreeMap<>(Comparator.nullsFirst(KEY_ORDER));
+        LocalDateTime endExclusive = endDate.plusNanos(1);
+        
+        // Whole days inside the range that the rollups already cover
+        LocalDate firstFullDay = startDate.equals(startDate.toLocalDate().atStartOfDay())
+                ? startDate.toLocalDate() : startDate.toLocalDate().plusDays(1);
+        LocalDate lastFullDay = endExclusive.toLocalDate().minusDays(1);
+        LocalDate rolledThrough = rollupService.getRolledThrough();
+        if (rolledThrough == null || rolledThrough.isBefore(lastFullDay)) {
+            lastFullDay = rolledThrough;
+        }
+        
+        if (lastFullDay == null || lastFullDay.isBefore(firstFullDay)) {
+            addRaw(groups, startDate, endExclusive, dimension, rawKey);
+        } else {
+            for (Object[] row : rollupQuery.query(Payment.PaymentStatus.SUCCESS, firstFullDay, lastFullDay)) {
+                String currency = (String) row[1];
+                groups.computeIfAbsent(row[0], k -> new Accumulator()).add((Long) row[2],
+                        Money.ofMinor((Long) row[3], currency).toBigDecimal(),
+                        Money.ofMinor((Long) row[4], currency).toBigDecimal(),
+                        Money.ofMinor((Long) row[5], currency).toBigDecimal());
+            }
+            addRaw(groups, startDate, firstFullDay.atStartOfDay(), dimension, rawKey);
+            addRaw(groups, lastFullDay.plusDays(1).atStartOfDay(), endExclusive, dimension, rawKey);
+        }
+        
+        List<PaymentAggregate> result = new ArrayList<>(groups.size());
+        for (Map.Entry<Object, Accumulator> group : groups.entrySet()) {
+            result.add(group.getValue().toAggregate(group.getKey()));
+        }
+        return result;
+    }
+    
+    /**
+     * Aggregate [start, end) from the analytics store, or from raw payments with one query per
+     * calendar day when grouping by day
+     */
+    private void addRaw(Map<Object, Accumulator> groups, LocalDateTime start, LocalDateTime end,
+                        PaymentAnalyticsStore.Dimension dimension, Function<Object[], Object> rawKey) {
+        if (!start.isBefore(end)) {
+            return;
+        }
+        if (analyticsStore.isReady()) {
+            for (PaymentAggregate aggregate : analyticsStore.aggregate(dimension, start, end.minusNanos(1),
+                    Payment.PaymentStatus.SUCCESS)) {
+                groups.computeIfAbsent(aggregate.getKey(), k -> new Accumulator()).add(aggregate.getCount(),
+                        aggregate.getTotalAmount(), aggregate.getMinAmount(), aggregate.getMaxAmount());
+            }
+            return;
+        }
+        LocalDateTime from = start;
+        while (from.isBefore(end)) {
+            LocalDateTime nextDay = from.toLocalDate().plusDays(1).atStartOfDay();
+            LocalDateTime to = rawKey == null && nextDay.isBefore(end) ? nextDay : end;
+            for (Object[] row : paymentRepository.aggregateByCurrencyAndMethod(Payment.PaymentStatus.SUCCESS, from, to)) {
+                Object key = rawKey == null ? from.toLocalDate() : rawKey.apply(row);
+                String currency = (String) row[0];
+                groups.computeIfAbsent(key, k -> new Accumulator()).add((Long) row[2],
+                        Money.ofMinor((Long) row[3], currency).toBigDecimal(),
+                        Money.ofMinor((Long) row[4], currency).toBigDecimal(),
+                        Money.ofMinor((Long) row[5], currency).toBigDecimal());
+            }
+            from = to;
+        }
+    }
+    
+    @FunctionalInterface
+    private interface RollupQuery {
+        List<Object[]> query(Payment.PaymentStatus status, LocalDate startDay, LocalDate endDay);
+    }
+    
+    /**
+     * Running totals for one group; amounts keep the scale of whichever currency has the most digits
+     */
+    private static final class Accumulator {
+        private long count;
+        private BigDecimal sum = BigDecimal.ZERO;
+        private BigDecimal min;
+        private BigDecimal max;
+        
+        private void add(long count, BigDecimal sum, BigDecimal min, BigDecimal max) {
+            this.count += count;
+            if (sum != null) {
+                this.sum = this.sum.add(sum);
+            }
+            if (min != null && (this.min == null || min.compareTo(this.min) < 0)) {
+                this.min = min;
+            }
+            if (max != null && (this.max == null || max.compareTo(this.max) > 0)) {
+                this.max = max;
+            }
+        }
+        
+        private PaymentAggregate toAggregate(Object key) {
+            return new PaymentAggregate(key, count, sum, min, max);
+        }
+    }
+}
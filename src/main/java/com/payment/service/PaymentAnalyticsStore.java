@@ -0,0 +1,683 @@
+package com.payment.service;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.payment.dto.PaymentAggregate;
+import com.payment.entity.Payment;
+import com.payment.repository.PaymentRepository;
+import com.payment.util.DirectMemory;
+import com.payment.util.LongIntHashMap;
+import com.payment.util.Money;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * In-process mirror of every payment (live and archived) for analytics scans.
+ *
+ * Rows are stored column by column in off-heap chunks of 65536: creation time in epoch
+ * millis and amount in the minor units of its currency as longs, the merchant as an int
+ * code and status, currency and method as byte codes, 23 bytes per payment in all.
+ * Counts, sums and group-bys scan the chunks in parallel on the common fork-join pool and
+ * never touch the database or allocate per row. Sums are kept per currency and converted
+ * with each currency's exponent, so JPY and KWD amounts are not read as hundredths.
+ *
+ * The store is fed by PaymentService after each commit. It is loaded in full from the
+ * database and the archive once, by the first refresh after startup (queries fall back
+ * until then), and afterwards refreshed from the rows whose updatedAt moved since the
+ * last refresh, which picks up writes made by other nodes or outside PaymentService
+ * within payment.analytics.refresh-interval-ms. Each node holds its own copy, so
+ * PaymentAnalyticsService serves rolled-up days from the shared rollup table and only
+ * the recent remainder from here. Changes recorded while a full load is running are
+ * replayed onto the new store before it is swapped in, and the replaced store's direct
+ * memory is freed once no query is scanning it. Ranges are inclusive on both ends, like
+ * the BETWEEN queries they replace.
+ */
+@Component
+public class PaymentAnalyticsStore {
+    
+    static final int CHUNK_ROWS = 1 << 16;
+    
+    // Column offsets within a chunk
+    private static final int CREATED_AT = 0;
+    private static final int AMOUNT = CHUNK_ROWS * 8;
+    private static final int MERCHANT = CHUNK_ROWS * 16;
+    private static final int STATUS = CHUNK_ROWS * 20;
+    private static final int CURRENCY = CHUNK_ROWS * 21;
+    private static final int METHOD = CHUNK_ROWS * 22;
+    private static final int CHUNK_BYTES = CHUNK_ROWS * 23;
+    
+    // Amounts are compared across currencies at Money's finest minor unit
+    private static final int MAX_EXPONENT = 4;
+    private static final int GROUP_FIELDS = 5;
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final Comparator<Object> KEY_ORDER = Comparator.nullsFirst((a, b) -> ((Comparable) a).compareTo(b));
+    
+    public enum Dimension {
+        DAY, CURRENCY, METHOD, MERCHANT
+    }
+    
+    @Value("${payment.analytics.store.enabled:true}")
+    private boolean enabled;
+    
+    // Re-read rows updated this long before the previous refresh, for transactions that
+    // committed after it with an earlier updatedAt
+    @Value("${payment.analytics.refresh-overlap-ms:60000}")
+    private long refreshOverlapMs;
+    
+    @Autowired
+    private PaymentRepository paymentRepository;
+    
+    @Autowired
+    private PaymentArchiveService archiveService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private final Object writeLock = new Object();
+    private volatile Store store = new Store();
+    private volatile boolean ready;
+    // Guarded by writeLock; non-null while a rebuild is running
+    private List<Consumer<Store>> replay;
+    // Lower bound on updatedAt for the next incremental refresh
+    private LocalDateTime refreshFrom;
+    
+    @PostConstruct
+    void init() {
+        Gauge.builder("payment.analytics.rows", this, owner -> owner.store.size)
+                .description("Payments mirrored in the analytics store")
+                .register(meterRegistry);
+        Gauge.builder("payment.analytics.offheap.bytes", this, owner -> owner.store.chunks.length * (double) CHUNK_BYTES)
+                .description("Direct memory held by the analytics store")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Whether queries can be served from the store (false when disabled)
+     */
+    public boolean isReady() {
+        return ready;
+    }
+    
+    public void recordCreated(Payment payment) {
+        if (!enabled) {
+            return;
+        }
+        long id = payment.getId();
+        long createdAt = toMillis(payment.getCreatedAt());
+        Payment.PaymentStatus status = payment.getStatus();
+        String currency = payment.getCurrency();
+        long amount = payment.getMoney().getMinorUnits();
+        String method = payment.getPaymentMethod();
+        String merchantId = payment.getMerchantId();
+        afterCommit(target -> target.append(id, createdAt, amount, status, currency, method, merchantId));
+    }
+    
+    public void recordTransition(Long id, Payment.PaymentStatus to) {
+        if (!enabled || id == null) {
+            return;
+        }
+        afterCommit(target -> target.setStatus(id, to));
+    }
+    
+    /**
+     * Load the store in full on the first run, then apply the rows updated since the last one
+     */
+    @Scheduled(fixedDelayString = "${payment.analytics.refresh-interval-ms:30000}")
+    public synchronized void refresh() {
+        if (!enabled) {
+            return;
+        }
+        if (!ready) {
+            rebuild();
+            return;
+        }
+        LocalDateTime since = refreshFrom;
+        LocalDateTime next = LocalDateTime.now().minusNanos(refreshOverlapMs * 1_000_000L);
+        int[] updated = new int[1];
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Object[]> rows = paymentRepository.streamAnalyticsRowsUpdatedSince(since)) {
+                rows.forEach(row -> {
+                    long id = (Long) row[0];
+                    long createdAt = toMillis((LocalDateTime) row[1]);
+                    long amount = (Long) row[2];
+                    apply(target -> target.put(id, createdAt, amount, (Payment.PaymentStatus) row[3],
+                            (String) row[4], (String) row[5], (String) row[6]));
+                    updated[0]++;
+                });
+            }
+        });
+        refreshFrom = next;
+        if (updated[0] > 0) {
+            System.out.println("Analytics store refreshed " + updated[0] + " payments updated since " + since);
+        }
+    }
+    
+    /**
+     * Reload the store from the database and the archive and swap it in
+     */
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (writeLock) {
+            replay = new ArrayList<>();
+        }
+        LocalDateTime next = LocalDateTime.now().minusNanos(refreshOverlapMs * 1_000_000L);
+        Store fresh = new Store();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<Object[]> rows = paymentRepository.streamAnalyticsRows()) {
+                    rows.forEach(row -> fresh.append((Long) row[0], toMillis((LocalDateTime) row[1]),
+                            (Long) row[2], (Payment.PaymentStatus) row[3],
+                            (String) row[4], (String) row[5], (String) row[6]));
+                }
+            });
+            archiveService.forEachRow((id, createdAt, amountMinor, status, currency, method, merchantId) -> {
+                // A payment briefly in both places (archived while the table was read) is counted once
+                if (!fresh.contains(id)) {
+                    fresh.append(id, toMillis(createdAt), amountMinor, status, currency, method, merchantId);
+                }
+            });
+        } catch (RuntimeException e) {
+            synchronized (writeLock) {
+                replay = null;
+            }
+            fresh.retire();
+            throw e;
+        }
+        Store replaced;
+        synchronized (writeLock) {
+            for (Consumer<Store> change : replay) {
+                change.accept(fresh);
+            }
+            replay = null;
+            replaced = store;
+            store = fresh;
+        }
+        replaced.retire();
+        refreshFrom = next;
+        ready = true;
+    }
+    
+    /**
+     * Number of payments created in [startDate, endDate] with the status (null bounds or status match all)
+     */
+    public long count(LocalDateTime startDate, LocalDateTime endDate, Payment.PaymentStatus status) {
+        Store snapshot = acquire();
+        try {
+            return totals(snapshot, startDate, endDate, status)[0];
+        } finally {
+            snapshot.release();
+        }
+    }
+    
+    /**
+     * Sum of payment amounts created in [startDate, endDate] with the status, across currencies
+     */
+    public BigDecimal sumAmount(LocalDateTime startDate, LocalDateTime endDate, Payment.PaymentStatus status) {
+        Store snapshot = acquire();
+        try {
+            long[] totals = totals(snapshot, startDate, endDate, status);
+            BigDecimal sum = BigDecimal.ZERO;
+            for (int code = 1; code < totals.length; code++) {
+                if (totals[code] != 0) {
+                    sum = sum.add(BigDecimal.valueOf(totals[code], exponent(snapshot.currencies, code - 1)));
+                }
+            }
+            return sum;
+        } finally {
+            snapshot.release();
+        }
+    }
+    
+    /**
+     * Count, total, min and max per group for payments created in [startDate, endDate] with
+     * the status, ordered by group key (days as LocalDate, everything else as String)
+     */
+    public List<PaymentAggregate> aggregate(Dimension dimension, LocalDateTime startDate, LocalDateTime endDate,
+                                            Payment.PaymentStatus status) {
+        long from = toMillis(startDate);
+        long to = toMillis(endDate);
+        if (to < from) {
+            return List.of();
+        }
+        Store snapshot = acquire();
+        try {
+            return aggregate(snapshot, dimension, startDate, endDate, from, to, status);
+        } finally {
+            snapshot.release();
+        }
+    }
+    
+    public int size() {
+        return store.size;
+    }
+    
+    private List<PaymentAggregate> aggregate(Store snapshot, Dimension dimension, LocalDateTime startDate,
+                                             LocalDateTime endDate, long from, long to, Payment.PaymentStatus status) {
+        int rows = snapshot.size;
+        int statusCode = status == null ? -1 : status.ordinal();
+        long[] factors = factors(snapshot.currencies);
+        int width = GROUP_FIELDS + factors.length;
+        
+        // Group index per row: day offset for DAY, dictionary code otherwise (0 is null)
+        long[] dayStarts = null;
+        int groups;
+        Dictionary dictionary = null;
+        if (dimension == Dimension.DAY) {
+            LocalDate first = startDate.toLocalDate();
+            int days = (int) (endDate.toLocalDate().toEpochDay() - first.toEpochDay()) + 1;
+            dayStarts = new long[days + 1];
+            for (int i = 0; i <= days; i++) {
+                dayStarts[i] = toMillis(first.plusDays(i).atStartOfDay());
+            }
+            groups = days;
+        } else {
+            dictionary = dimension == Dimension.CURRENCY ? snapshot.currencies
+                    : dimension == Dimension.METHOD ? snapshot.methods : snapshot.merchants;
+            groups = dictionary.size() + 1;
+        }
+        
+        long[] days = dayStarts;
+        int groupCount = groups;
+        long[] merged = IntStream.range(0, chunkCount(rows)).parallel()
+                .mapToObj(chunk -> scanGroups(snapshot.chunks[chunk], rowsIn(chunk, rows), from, to, statusCode,
+                        dimension, days, groupCount, factors))
+                .reduce((a, b) -> mergeGroups(a, b, width))
+                .orElseGet(() -> newGroups(groupCount, width));
+        
+        List<PaymentAggregate> result = new ArrayList<>();
+        for (int group = 0; group < groupCount; group++) {
+            int base = group * width;
+            long count = merged[base];
+            if (count == 0) {
+                continue;
+            }
+            int minCode = (int) merged[base + 2];
+            int maxCode = (int) merged[base + 4];
+            BigDecimal sum = BigDecimal.valueOf(0, exponent(snapshot.currencies, minCode));
+            for (int code = 0; code < factors.length; code++) {
+                long minor = merged[base + GROUP_FIELDS + code];
+                if (minor != 0) {
+                    sum = sum.add(BigDecimal.valueOf(minor, exponent(snapshot.currencies, code)));
+                }
+            }
+            Object key = dimension == Dimension.DAY ? startDate.toLocalDate().plusDays(group) : dictionary.value(group);
+            result.add(new PaymentAggregate(key, count, sum,
+                    BigDecimal.valueOf(merged[base + 1] / factors[minCode], exponent(snapshot.currencies, minCode)),
+                    BigDecimal.valueOf(merged[base + 3] / factors[maxCode], exponent(snapshot.currencies, maxCode))));
+        }
+        if (dimension != Dimension.DAY) {
+            result.sort(Comparator.comparing(PaymentAggregate::getKey, KEY_ORDER));
+        }
+        return result;
+    }
+    
+    /**
+     * [count, then the sum in minor units for each currency code]
+     */
+    private static long[] totals(Store snapshot, LocalDateTime startDate, LocalDateTime endDate,
+                                 Payment.PaymentStatus status) {
+        int rows = snapshot.size;
+        long from = startDate == null ? Long.MIN_VALUE : toMillis(startDate);
+        long to = endDate == null ? Long.MAX_VALUE : toMillis(endDate);
+        int statusCode = status == null ? -1 : status.ordinal();
+        int currencies = snapshot.currencies.size() + 1;
+        return IntStream.range(0, chunkCount(rows)).parallel()
+                .mapToObj(chunk -> scanTotals(snapshot.chunks[chunk], rowsIn(chunk, rows), from, to, statusCode, currencies))
+                .reduce((a, b) -> {
+                    for (int i = 0; i < a.length; i++) {
+                        a[i] += b[i];
+                    }
+                    return a;
+                })
+                .orElse(new long[1 + currencies]);
+    }
+    
+    private static long[] scanTotals(ByteBuffer chunk, int rows, long from, long to, int statusCode, int currencies) {
+        long[] totals = new long[1 + currencies];
+        for (int row = 0; row < rows; row++) {
+            long createdAt = chunk.getLong(CREATED_AT + row * 8);
+            if (createdAt < from || createdAt > to) {
+                continue;
+            }
+            if (statusCode >= 0 && chunk.get(STATUS + row) != statusCode) {
+                continue;
+            }
+            int currency = chunk.get(CURRENCY + row) & 0xFF;
+            if (currency >= currencies) {
+                // A currency first seen after the scan started
+                continue;
+            }
+            totals[0]++;
+            totals[1 + currency] += chunk.getLong(AMOUNT + row * 8);
+        }
+        return totals;
+    }
+    
+    private static long[] scanGroups(ByteBuffer chunk, int rows, long from, long to, int statusCode,
+                                     Dimension dimension, long[] dayStarts, int groupCount, long[] factors) {
+        int width = GROUP_FIELDS + factors.length;
+        long[] groups = newGroups(groupCount, width);
+        for (int row = 0; row < rows; row++) {
+            long createdAt = chunk.getLong(CREATED_AT + row * 8);
+            if (createdAt < from || createdAt > to) {
+                continue;
+            }
+            if (statusCode >= 0 && chunk.get(STATUS + row) != statusCode) {
+                continue;
+            }
+            int currency = chunk.get(CURRENCY + row) & 0xFF;
+            if (currency >= factors.length) {
+                continue;
+            }
+            int group;
+            switch (dimension) {
+                case DAY:
+                    int index = Arrays.binarySearch(dayStarts, createdAt);
+                    group = index >= 0 ? index : -index - 2;
+                    break;
+                case CURRENCY:
+                    group = currency;
+                    break;
+                case METHOD:
+                    group = chunk.get(METHOD + row) & 0xFF;
+                    break;
+                default:
+                    group = chunk.getInt(MERCHANT + row * 4);
+                    break;
+            }
+            if (group < 0 || group >= groupCount) {
+                continue;
+            }
+            long amount = chunk.getLong(AMOUNT + row * 8);
+            long comparable = amount * factors[currency];
+            int base = group * width;
+            groups[base]++;
+            if (comparable < groups[base + 1]) {
+                groups[base + 1] = comparable;
+                groups[base + 2] = currency;
+            }
+            if (comparable > groups[base + 3]) {
+                groups[base + 3] = comparable;
+                groups[base + 4] = currency;
+            }
+            groups[base + GROUP_FIELDS + currency] += amount;
+        }
+        return groups;
+    }
+    
+    /**
+     * Flat [count, min, min's currency, max, max's currency, then the sum per currency code]
+     * per group, min and max scaled to MAX_EXPONENT so currencies compare
+     */
+    private static long[] newGroups(int groupCount, int width) {
+        long[] groups = new long[groupCount * width];
+        for (int base = 0; base < groups.length; base += width) {
+            groups[base + 1] = Long.MAX_VALUE;
+            groups[base + 3] = Long.MIN_VALUE;
+        }
+        return groups;
+    }
+    
+    private static long[] mergeGroups(long[] a, long[] b, int width) {
+        for (int base = 0; base < a.length; base += width) {
+            a[base] += b[base];
+            if (b[base + 1] < a[base + 1]) {
+                a[base + 1] = b[base + 1];
+                a[base + 2] = b[base + 2];
+            }
+            if (b[base + 3] > a[base + 3]) {
+                a[base + 3] = b[base + 3];
+                a[base + 4] = b[base + 4];
+            }
+            for (int i = base + GROUP_FIELDS; i < base + width; i++) {
+                a[i] += b[i];
+            }
+        }
+        return a;
+    }
+    
+    /**
+     * Multiplier per currency code that brings its minor units to MAX_EXPONENT
+     */
+    private static long[] factors(Dictionary currencies) {
+        long[] factors = new long[currencies.size() + 1];
+        for (int code = 0; code < factors.length; code++) {
+            factors[code] = 1;
+            for (int digits = exponent(currencies, code); digits < MAX_EXPONENT; digits++) {
+                factors[code] *= 10;
+            }
+        }
+        return factors;
+    }
+    
+    private static int exponent(Dictionary currencies, int code) {
+        String currency = currencies.value(code);
+        return currency == null ? 0 : Money.exponent(currency);
+    }
+    
+    private static int chunkCount(int rows) {
+        return (rows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+    }
+    
+    private static int rowsIn(int chunk, int rows) {
+        return Math.min(CHUNK_ROWS, rows - chunk * CHUNK_ROWS);
+    }
+    
+    private void afterCommit(Consumer<Store> change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(change);
+                }
+            });
+        } else {
+            apply(change);
+        }
+    }
+    
+    /**
+     * Pin the current store so its memory is not freed while the caller scans it
+     */
+    private Store acquire() {
+        while (true) {
+            Store current = store;
+            if (current.pin()) {
+                return current;
+            }
+            // Freed between the read and the pin; a newer store has been swapped in
+        }
+    }
+    
+    private void apply(Consumer<Store> change) {
+        synchronized (writeLock) {
+            change.accept(store);
+            if (replay != null) {
+                replay.add(change);
+            }
+        }
+    }
+    
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    /**
+     * One generation of rows; written under writeLock, read without locking. A row is
+     * fully written before size is raised past it. Readers pin the store while scanning;
+     * once it is retired, the last reader out frees its chunks.
+     */
+    private static final class Store {
+        private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+        private volatile int size;
+        // Scans in progress, or -1 once the chunks are freed
+        private final AtomicInteger pins = new AtomicInteger();
+        private volatile boolean retired;
+        private final LongIntHashMap rowsById = new LongIntHashMap(1024);
+        private final Dictionary currencies = new Dictionary(255);
+        private final Dictionary methods = new Dictionary(255);
+        private final Dictionary merchants = new Dictionary(Integer.MAX_VALUE);
+        
+        private boolean contains(long id) {
+            return rowsById.get(id, -1) >= 0;
+        }
+        
+        private void append(long id, long createdAt, long amount, Payment.PaymentStatus status,
+                            String currency, String method, String merchantId) {
+            if (contains(id)) {
+                return;
+            }
+            int row = size;
+            int chunkIndex = row / CHUNK_ROWS;
+            if (chunkIndex == chunks.length) {
+                ByteBuffer[] grown = Arrays.copyOf(chunks, chunkIndex + 1);
+                grown[chunkIndex] = ByteBuffer.allocateDirect(CHUNK_BYTES);
+                chunks = grown;
+            }
+            ByteBuffer chunk = chunks[chunkIndex];
+            int offset = row % CHUNK_ROWS;
+            chunk.putLong(CREATED_AT + offset * 8, createdAt);
+            chunk.putLong(AMOUNT + offset * 8, amount);
+            chunk.putInt(MERCHANT + offset * 4, merchants.code(merchantId));
+            chunk.put(STATUS + offset, (byte) status.ordinal());
+            chunk.put(CURRENCY + offset, (byte) currencies.code(currency));
+            chunk.put(METHOD + offset, (byte) methods.code(method));
+            rowsById.put(id, row);
+            size = row + 1;
+        }
+        
+        /**
+         * Append a new payment or overwrite every column of a known one
+         */
+        private void put(long id, long createdAt, long amount, Payment.PaymentStatus status,
+                         String currency, String method, String merchantId) {
+            int row = rowsById.get(id, -1);
+            if (row < 0) {
+                append(id, createdAt, amount, status, currency, method, merchantId);
+                return;
+            }
+            ByteBuffer chunk = chunks[row / CHUNK_ROWS];
+            int offset = row % CHUNK_ROWS;
+            chunk.putLong(CREATED_AT + offset * 8, createdAt);
+            chunk.putLong(AMOUNT + offset * 8, amount);
+            chunk.putInt(MERCHANT + offset * 4, merchants.code(merchantId));
+            chunk.put(STATUS + offset, (byte) status.ordinal());
+            chunk.put(CURRENCY + offset, (byte) currencies.code(currency));
+            chunk.put(METHOD + offset, (byte) methods.code(method));
+        }
+        
+        private boolean pin() {
+            while (true) {
+                int current = pins.get();
+                if (current < 0) {
+                    return false;
+                }
+                if (pins.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+        
+        private void release() {
+            if (pins.decrementAndGet() == 0 && retired) {
+                free();
+            }
+        }
+        
+        /**
+         * Called once the store is no longer current; frees now or when the last scan ends
+         */
+        private void retire() {
+            retired = true;
+            free();
+        }
+        
+        private void free() {
+            if (pins.compareAndSet(0, -1)) {
+                for (ByteBuffer chunk : chunks) {
+                    DirectMemory.free(chunk);
+                }
+            }
+        }
+        
+        private void setStatus(long id, Payment.PaymentStatus status) {
+            int row = rowsById.get(id, -1);
+            if (row >= 0) {
+                chunks[row / CHUNK_ROWS].put(STATUS + row % CHUNK_ROWS, (byte) status.ordinal());
+            }
+        }
+    }
+    
+    /**
+     * String to code mapping; code 0 is null (and values past capacity)
+     */
+    private static final class Dictionary {
+        private final int capacity;
+        private final Map<String, Integer> codes = new HashMap<>();
+        private volatile String[] values = new String[16];
+        private volatile int count;
+        
+        private Dictionary(int capacity) {
+            this.capacity = capacity;
+        }
+        
+        private int code(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                if (codes.size() >= capacity) {
+                    return 0;
+                }
+                code = codes.size() + 1;
+                codes.put(value, code);
+                if (code == values.length) {
+                    values = Arrays.copyOf(values, code * 2);
+                }
+                values[code] = value;
+                count = code;
+            }
+            return code;
+        }
+        
+        private int size() {
+            return count;
+        }
+        
+        private String value(int code) {
+            String[] snapshot = values;
+            return code < snapshot.length ? snapshot[code] : null;
+        }
+    }
+}
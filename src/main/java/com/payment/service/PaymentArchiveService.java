@@ -0,0 +1,638 @@
+package com.payment.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.LongBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.payment.dto.PaymentResponse;
+import com.payment.entity.Payment;
+import com.payment.repository.PaymentRepository;
+import com.payment.util.ColumnarSegment;
+import com.payment.util.ColumnarSegmentWriter;
+import com.payment.util.Money;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Cold storage for payments past the hot window.
+ *
+ * The archiver moves finalized payments that have not changed for payment.archive.after-days
+ * out of the payments table into immutable columnar segments under payment.archive.dir,
+ * which must be an absolute path on storage that outlives the process (a mounted volume
+ * or shared file system). Each batch writes one new segment per month of createdAt, so
+ * archiving never rewrites what is already on disk. Currency, status and payment method
+ * are dictionary-encoded; timestamps and amounts (in each currency's minor units) are raw
+ * long columns that scans read straight from the memory mapping, and order and payment IDs are found through hash
+ * indexes in the file rather than on the heap.
+ *
+ * A batch's segments are written as .pending files, synced and read back before its rows
+ * are deleted, in the same transaction that locked them; only after the commit are they
+ * renamed into place. On startup a pending file whose rows are still in the table is
+ * discarded and any other is promoted, so a payment is never lost or archived twice.
+ * Archived payments are read-only: lookups fall through to them, but status changes
+ * report them as not found.
+ */
+@Service
+public class PaymentArchiveService {
+    
+    // Final once the hot window has passed
+    static final Set<Payment.PaymentStatus> ARCHIVABLE_STATUSES = EnumSet.of(Payment.PaymentStatus.SUCCESS,
+            Payment.PaymentStatus.FAILED, Payment.PaymentStatus.REFUNDED, Payment.PaymentStatus.PARTIALLY_REFUNDED,
+            Payment.PaymentStatus.CANCELLED, Payment.PaymentStatus.EXPIRED);
+    
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final String SEGMENT_PREFIX = "payments-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String PENDING_SUFFIX = ".pending";
+    
+    private static final String[] STRING_COLUMNS = {"orderId", "paymentId", "customerName", "customerEmail",
+            "customerPhone", "description", "notes", "gatewayResponse", "transactionId", "bankCode", "cardNetwork",
+            "cardLast4", "refundReason", "merchantId", "merchantOrderId", "gatewayOrderId"};
+    
+    @Value("${payment.archive.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${payment.archive.dir:}")
+    private String directory;
+    
+    @Value("${payment.archive.after-days:365}")
+    private int afterDays;
+    
+    @Value("${payment.archive.batch-size:10000}")
+    private int batchSize;
+    
+    @Value("${payment.archive.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+    
+    @Autowired
+    private PaymentRepository paymentRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private PaymentCache paymentCache;
+    
+    // Segments of each month, one per archive batch that had rows in it
+    private final ConcurrentSkipListMap<YearMonth, List<MonthSegment>> segments = new ConcurrentSkipListMap<>();
+    private Path archiveDir;
+    
+    @PostConstruct
+    void open() throws IOException {
+        if (directory.isBlank()) {
+            if (enabled) {
+                throw new IllegalStateException("payment.archive.enabled requires payment.archive.dir, "
+                        + "an absolute path on a mounted volume or shared storage");
+            }
+            return;
+        }
+        archiveDir = Paths.get(directory);
+        if (!archiveDir.isAbsolute()) {
+            // A relative path resolves inside the container and is lost with it
+            throw new IllegalStateException("payment.archive.dir must be an absolute path on durable storage: " + directory);
+        }
+        Files.createDirectories(archiveDir);
+        int opened = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(archiveDir, SEGMENT_PREFIX + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    // Left over from a write interrupted before its move
+                    Files.delete(file);
+                } else if (name.endsWith(PENDING_SUFFIX)) {
+                    opened += recoverPending(file) ? 1 : 0;
+                } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                    register(monthOf(name), ColumnarSegment.open(file));
+                    opened++;
+                }
+            }
+        }
+        ColumnarSegmentWriter.syncDirectory(archiveDir);
+        if (opened > 0) {
+            System.out.println("Payment archive opened: " + opened + " segments in " + archiveDir);
+        }
+    }
+    
+    /**
+     * Move archivable payments out of the table, a bounded number of batches per run
+     *
+     * @return Number of payments archived
+     */
+    @Scheduled(cron = "${payment.archive.cron:0 45 2 * * *}")
+    public synchronized int archive() {
+        if (!enabled) {
+            return 0;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(Math.max(1, afterDays));
+        int archived = 0;
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            List<PendingSegment> pending = new ArrayList<>();
+            Integer moved;
+            try {
+                moved = transactionTemplate.execute(status -> archiveBatch(cutoff, pending));
+            } catch (RuntimeException e) {
+                // Usually a rollback, but a failed commit may still have deleted the rows
+                pending.forEach(this::settle);
+                throw e;
+            }
+            pending.forEach(this::promote);
+            archived += moved == null ? 0 : moved;
+            if (moved == null || moved < batchSize) {
+                break;
+            }
+        }
+        if (archived > 0) {
+            System.out.println("Archived " + archived + " payments created before " + cutoff);
+        }
+        return archived;
+    }
+    
+    public Optional<PaymentResponse> findById(Long id) {
+        for (MonthSegment segment : newestFirst()) {
+            int row = segment.rowOf(id);
+            if (row >= 0) {
+                return Optional.of(new PaymentResponse(segment.toPayment(row)));
+            }
+        }
+        return Optional.empty();
+    }
+    
+    public Optional<PaymentResponse> findByOrderId(String orderId) {
+        for (MonthSegment segment : newestFirst()) {
+            int row = segment.segment.findRow("orderId", orderId);
+            if (row >= 0) {
+                return Optional.of(new PaymentResponse(segment.toPayment(row)));
+            }
+        }
+        return Optional.empty();
+    }
+    
+    public Optional<PaymentResponse> findByPaymentId(String paymentId) {
+        for (MonthSegment segment : newestFirst()) {
+            int row = segment.segment.findRow("paymentId", paymentId);
+            if (row >= 0) {
+                return Optional.of(new PaymentResponse(segment.toPayment(row)));
+            }
+        }
+        return Optional.empty();
+    }
+    
+    public long countByStatus(Payment.PaymentStatus status) {
+        long count = 0;
+        for (MonthSegment segment : oldestFirst()) {
+            ColumnarSegment.Dictionary statuses = segment.statuses;
+            int code = statuses.indexOf(status.name());
+            if (code < 0) {
+                continue;
+            }
+            for (int row = 0; row < segment.rowCount; row++) {
+                if (statuses.code(row) == code) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Total of archived successful payments created in [startDate, endDate], like the BETWEEN query
+     */
+    public BigDecimal sumSuccessfulAmount(LocalDateTime startDate, LocalDateTime endDate) {
+        long from = toMicros(startDate);
+        long to = toMicros(endDate);
+        BigDecimal sum = BigDecimal.ZERO;
+        for (MonthSegment segment : overlapping(startDate, endDate)) {
+            int success = segment.statuses.indexOf(Payment.PaymentStatus.SUCCESS.name());
+            if (success < 0) {
+                continue;
+            }
+            // Amounts are in each currency's minor units, so sum per currency code first
+            long[] sums = new long[segment.currencies.size()];
+            for (int row = 0; row < segment.rowCount; row++) {
+                long createdAt = segment.createdAt.get(row);
+                if (createdAt >= from && createdAt <= to && segment.statuses.code(row) == success) {
+                    sums[segment.currencies.code(row)] += segment.amounts.get(row);
+                }
+            }
+            for (int code = 0; code < sums.length; code++) {
+                sum = sum.add(Money.ofMinor(sums[code], segment.currencies.value(code)).toBigDecimal());
+            }
+        }
+        return sum;
+    }
+    
+    /**
+     * Archived payments in [start, end) grouped like PaymentRepository.aggregateForRollup:
+     * [merchantId, currency, method, status, count, sum, min, max], amounts in minor units
+     */
+    public List<Object[]> aggregateForRollup(LocalDateTime start, LocalDateTime end) {
+        long from = toMicros(start);
+        long to = toMicros(end);
+        Map<List<Object>, long[]> groups = new LinkedHashMap<>();
+        for (MonthSegment segment : overlapping(start, end)) {
+            String[] merchantIds = null;
+            for (int row = 0; row < segment.rowCount; row++) {
+                long createdAt = segment.createdAt.get(row);
+                if (createdAt < from || createdAt >= to) {
+                    continue;
+                }
+                if (merchantIds == null) {
+                    merchantIds = segment.segment.stringColumn("merchantId");
+                }
+                List<Object> key = Arrays.asList(merchantIds[row], segment.currencies.get(row),
+                        segment.methods.get(row), Payment.PaymentStatus.valueOf(segment.statuses.get(row)));
+                long amount = segment.amounts.get(row);
+                long[] totals = groups.computeIfAbsent(key, k -> new long[] {0, 0, Long.MAX_VALUE, Long.MIN_VALUE});
+                totals[0]++;
+                totals[1] += amount;
+                totals[2] = Math.min(totals[2], amount);
+                totals[3] = Math.max(totals[3], amount);
+            }
+        }
+        
+        List<Object[]> result = new ArrayList<>(groups.size());
+        for (Map.Entry<List<Object>, long[]> group : groups.entrySet()) {
+            List<Object> key = group.getKey();
+            long[] totals = group.getValue();
+            result.add(new Object[] {key.get(0), key.get(1), key.get(2), key.get(3), totals[0], totals[1], totals[2], totals[3]});
+        }
+        return result;
+    }
+    
+    public LocalDateTime findEarliestCreatedAt() {
+        long earliest = Long.MAX_VALUE;
+        for (List<MonthSegment> month : segments.values()) {
+            // Months are in order, so the first non-empty month holds the earliest payment
+            for (MonthSegment segment : month) {
+                for (int row = 0; row < segment.rowCount; row++) {
+                    earliest = Math.min(earliest, segment.createdAt.get(row));
+                }
+            }
+            if (earliest != Long.MAX_VALUE) {
+                return fromMicros(earliest);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Visit the analytics columns of every archived payment, oldest month first
+     */
+    public void forEachRow(ArchivedRowVisitor visitor) {
+        for (MonthSegment segment : oldestFirst()) {
+            String[] merchantIds = segment.segment.stringColumn("merchantId");
+            for (int row = 0; row < segment.rowCount; row++) {
+                visitor.visit(segment.ids.get(row), fromMicros(segment.createdAt.get(row)), segment.amounts.get(row),
+                        Payment.PaymentStatus.valueOf(segment.statuses.get(row)), segment.currencies.get(row),
+                        segment.methods.get(row), merchantIds[row]);
+            }
+        }
+    }
+    
+    public long getArchivedCount() {
+        long count = 0;
+        for (MonthSegment segment : oldestFirst()) {
+            count += segment.rowCount;
+        }
+        return count;
+    }
+    
+    private Integer archiveBatch(LocalDateTime cutoff, List<PendingSegment> pending) {
+        List<Payment> batch = paymentRepository.findArchivable(ARCHIVABLE_STATUSES, cutoff, Limit.of(batchSize));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Map<YearMonth, List<Payment>> byMonth = new TreeMap<>();
+        List<Long> ids = new ArrayList<>(batch.size());
+        for (Payment payment : batch) {
+            byMonth.computeIfAbsent(YearMonth.from(payment.getCreatedAt()), month -> new ArrayList<>()).add(payment);
+            ids.add(payment.getId());
+        }
+        try {
+            for (Map.Entry<YearMonth, List<Payment>> month : byMonth.entrySet()) {
+                pending.add(writePending(month.getKey(), month.getValue()));
+            }
+            ColumnarSegmentWriter.syncDirectory(archiveDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write payment archive segment", e);
+        }
+        paymentRepository.deleteAllByIdInBatch(ids);
+        ids.forEach(paymentCache::evict);
+        return batch.size();
+    }
+    
+    /**
+     * Write a month's rows of one batch to a new pending segment and read it back, so the
+     * rows are only deleted once the archive is known to hold every one of them
+     */
+    private PendingSegment writePending(YearMonth month, List<Payment> rows) throws IOException {
+        rows.sort(Comparator.comparing(Payment::getId));
+        Path file = archiveDir.resolve(SEGMENT_PREFIX + month.format(MONTH) + "-" + rows.get(0).getId()
+                + SEGMENT_SUFFIX + PENDING_SUFFIX);
+        write(rows, file);
+        ColumnarSegment segment = ColumnarSegment.open(file);
+        LongBuffer ids = segment.longColumn("id");
+        boolean complete = segment.getRowCount() == rows.size();
+        for (int row = 0; complete && row < rows.size(); row++) {
+            complete = ids.get(row) == rows.get(row).getId();
+        }
+        if (!complete) {
+            Files.deleteIfExists(file);
+            throw new IOException("Archive segment did not read back as written: " + file);
+        }
+        return new PendingSegment(month, file, segment);
+    }
+    
+    /**
+     * Make a committed batch's segment visible and rename it into place; if the rename
+     * fails the mapping still serves reads, and the next startup promotes the file
+     */
+    private void promote(PendingSegment pending) {
+        register(pending.month, pending.segment);
+        try {
+            Files.move(pending.file, committedPath(pending.file), StandardCopyOption.ATOMIC_MOVE);
+            ColumnarSegmentWriter.syncDirectory(archiveDir);
+        } catch (IOException e) {
+            System.err.println("Failed to promote archive segment " + pending.file + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Settle a pending segment whose batch may not have committed: it did if and only if its
+     * rows are gone from the table. If the table cannot be asked, the file stays pending
+     * for the next startup to settle.
+     */
+    private void settle(PendingSegment pending) {
+        try {
+            if (paymentRepository.existsById(pending.segment.longColumn("id").get(0))) {
+                pending.discard();
+            } else {
+                promote(pending);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Left archive segment " + pending.file + " pending: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Settle a pending segment left by a crash
+     *
+     * @return Whether the segment was kept
+     */
+    private boolean recoverPending(Path file) throws IOException {
+        PendingSegment pending = new PendingSegment(monthOf(file.getFileName().toString()), file, ColumnarSegment.open(file));
+        settle(pending);
+        return Files.exists(committedPath(file));
+    }
+    
+    private void register(YearMonth month, ColumnarSegment segment) {
+        MonthSegment added = new MonthSegment(segment);
+        segments.merge(month, List.of(added), (current, ignored) -> {
+            List<MonthSegment> updated = new ArrayList<>(current);
+            updated.add(added);
+            return List.copyOf(updated);
+        });
+    }
+    
+    private static Path committedPath(Path pending) {
+        String name = pending.getFileName().toString();
+        return pending.resolveSibling(name.substring(0, name.length() - PENDING_SUFFIX.length()));
+    }
+    
+    private static YearMonth monthOf(String fileName) {
+        return YearMonth.parse(fileName.substring(SEGMENT_PREFIX.length(), SEGMENT_PREFIX.length() + 6), MONTH);
+    }
+    
+    private static void write(List<Payment> payments, Path file) throws IOException {
+        int count = payments.size();
+        long[] ids = new long[count];
+        long[] createdAt = new long[count];
+        long[] updatedAt = new long[count];
+        long[] capturedAt = new long[count];
+        long[] refundedAt = new long[count];
+        long[] amounts = new long[count];
+        long[] refundAmounts = new long[count];
+        String[] currencies = new String[count];
+        String[] statuses = new String[count];
+        String[] methods = new String[count];
+        String[][] strings = new String[STRING_COLUMNS.length][count];
+        for (int i = 0; i < count; i++) {
+            Payment payment = payments.get(i);
+            ids[i] = payment.getId();
+            createdAt[i] = toMicros(payment.getCreatedAt());
+            updatedAt[i] = toMicros(payment.getUpdatedAt());
+            capturedAt[i] = toMicros(payment.getCapturedAt());
+            refundedAt[i] = toMicros(payment.getRefundedAt());
+            amounts[i] = payment.getMoney().getMinorUnits();
+            refundAmounts[i] = payment.getRefundAmount() == null
+                    ? ColumnarSegment.NULL_LONG : Money.of(payment.getRefundAmount(), payment.getCurrency()).getMinorUnits();
+            currencies[i] = payment.getCurrency();
+            statuses[i] = payment.getStatus().name();
+            methods[i] = payment.getPaymentMethod();
+            String[] values = {payment.getOrderId(), payment.getPaymentId(), payment.getCustomerName(),
+                    payment.getCustomerEmail(), payment.getCustomerPhone(), payment.getDescription(), payment.getNotes(),
+                    payment.getGatewayResponse(), payment.getTransactionId(), payment.getBankCode(),
+                    payment.getCardNetwork(), payment.getCardLast4(), payment.getRefundReason(),
+                    payment.getMerchantId(), payment.getMerchantOrderId(), payment.getGatewayOrderId()};
+            for (int c = 0; c < values.length; c++) {
+                strings[c][i] = values[c];
+            }
+        }
+        
+        ColumnarSegmentWriter writer = new ColumnarSegmentWriter(count)
+                .addLongColumn("id", ids)
+                .addLongColumn("createdAt", createdAt)
+                .addLongColumn("updatedAt", updatedAt)
+                .addLongColumn("capturedAt", capturedAt)
+                .addLongColumn("refundedAt", refundedAt)
+                .addLongColumn("amount", amounts)
+                .addLongColumn("refundAmount", refundAmounts)
+                .addDictionaryColumn("currency", currencies)
+                .addDictionaryColumn("status", statuses)
+                .addDictionaryColumn("paymentMethod", methods);
+        for (int c = 0; c < STRING_COLUMNS.length; c++) {
+            if (STRING_COLUMNS[c].equals("orderId") || STRING_COLUMNS[c].equals("paymentId")) {
+                writer.addIndexedStringColumn(STRING_COLUMNS[c], strings[c]);
+            } else {
+                writer.addStringColumn(STRING_COLUMNS[c], strings[c]);
+            }
+        }
+        writer.writeTo(file);
+    }
+    
+    private List<MonthSegment> overlapping(LocalDateTime start, LocalDateTime end) {
+        if (end.isBefore(start)) {
+            return List.of();
+        }
+        return flatten(segments.subMap(YearMonth.from(start), true, YearMonth.from(end), true).values());
+    }
+    
+    private List<MonthSegment> oldestFirst() {
+        return flatten(segments.values());
+    }
+    
+    private List<MonthSegment> newestFirst() {
+        return flatten(segments.descendingMap().values());
+    }
+    
+    private static List<MonthSegment> flatten(Collection<List<MonthSegment>> months) {
+        List<MonthSegment> result = new ArrayList<>();
+        months.forEach(result::addAll);
+        return result;
+    }
+    
+    static long toMicros(LocalDateTime time) {
+        if (time == null) {
+            return ColumnarSegment.NULL_LONG;
+        }
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1_000;
+    }
+    
+    static LocalDateTime fromMicros(long micros) {
+        if (micros == ColumnarSegment.NULL_LONG) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+    
+    /**
+     * Receives archived rows; amountMinor is in the minor units of the row's currency
+     */
+    @FunctionalInterface
+    public interface ArchivedRowVisitor {
+        void visit(long id, LocalDateTime createdAt, long amountMinor, Payment.PaymentStatus status,
+                   String currency, String paymentMethod, String merchantId);
+    }
+    
+    /**
+     * A pending segment written and verified inside a batch's transaction
+     */
+    private static final class PendingSegment {
+        private final YearMonth month;
+        private final Path file;
+        private final ColumnarSegment segment;
+        
+        private PendingSegment(YearMonth month, Path file, ColumnarSegment segment) {
+            this.month = month;
+            this.file = file;
+            this.segment = segment;
+        }
+        
+        private void discard() {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // The next startup finds the rows still in the table and deletes it then
+                System.err.println("Failed to delete archive segment " + file + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * One mapped segment of a month, rows ordered by ID
+     */
+    private static final class MonthSegment {
+        private final ColumnarSegment segment;
+        private final int rowCount;
+        private final LongBuffer ids;
+        private final LongBuffer createdAt;
+        private final LongBuffer amounts;
+        private final ColumnarSegment.Dictionary currencies;
+        private final ColumnarSegment.Dictionary statuses;
+        private final ColumnarSegment.Dictionary methods;
+        
+        private MonthSegment(ColumnarSegment segment) {
+            this.segment = segment;
+            this.rowCount = segment.getRowCount();
+            this.ids = segment.longColumn("id");
+            this.createdAt = segment.longColumn("createdAt");
+            this.amounts = segment.longColumn("amount");
+            this.currencies = segment.dictionaryColumn("currency");
+            this.statuses = segment.dictionaryColumn("status");
+            this.methods = segment.dictionaryColumn("paymentMethod");
+        }
+        
+        private int rowOf(long id) {
+            int low = 0;
+            int high = rowCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long value = ids.get(mid);
+                if (value < id) {
+                    low = mid + 1;
+                } else if (value > id) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+        
+        private Payment toPayment(int row) {
+            Payment payment = new Payment();
+            payment.setId(ids.get(row));
+            payment.setCreatedAt(fromMicros(createdAt.get(row)));
+            payment.setUpdatedAt(fromMicros(segment.longColumn("updatedAt").get(row)));
+            payment.setCapturedAt(fromMicros(segment.longColumn("capturedAt").get(row)));
+            payment.setRefundedAt(fromMicros(segment.longColumn("refundedAt").get(row)));
+            String currency = currencies.get(row);
+            payment.setMoney(Money.ofMinor(amounts.get(row), currency));
+            long refundAmount = segment.longColumn("refundAmount").get(row);
+            payment.setRefundAmount(refundAmount == ColumnarSegment.NULL_LONG
+                    ? null : Money.ofMinor(refundAmount, currency).toBigDecimal());
+            payment.setStatus(Payment.PaymentStatus.valueOf(statuses.get(row)));
+            payment.setPaymentMethod(methods.get(row));
+            payment.setOrderId(segment.stringValue("orderId", row));
+            payment.setPaymentId(segment.stringValue("paymentId", row));
+            payment.setCustomerName(segment.stringValue("customerName", row));
+            payment.setCustomerEmail(segment.stringValue("customerEmail", row));
+            payment.setCustomerPhone(segment.stringValue("customerPhone", row));
+            payment.setDescription(segment.stringValue("description", row));
+            payment.setNotes(segment.stringValue("notes", row));
+            payment.setGatewayResponse(segment.stringValue("gatewayResponse", row));
+            payment.setTransactionId(segment.stringValue("transactionId", row));
+            payment.setBankCode(segment.stringValue("bankCode", row));
+            payment.setCardNetwork(segment.stringValue("cardNetwork", row));
+            payment.setCardLast4(segment.stringValue("cardLast4", row));
+            payment.setRefundReason(segment.stringValue("refundReason", row));
+            payment.setMerchantId(segment.stringValue("merchantId", row));
+            payment.setMerchantOrderId(segment.stringValue("merchantOrderId", row));
+            // Segments written before the column existed read back as null
+            if (segment.hasColumn("gatewayOrderId")) {
+                payment.setGatewayOrderId(segment.stringValue("gatewayOrderId", row));
+            }
+            return payment;
+        }
+    }
+}
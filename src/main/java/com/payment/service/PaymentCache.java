@@ -0,0 +1,405 @@
+package com.payment.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.payment.dto.PaymentResponse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Read-through cache for single-payment lookups (by id, order ID and gateway payment ID).
+ *
+ * L1 is an in-process Caffeine cache (size-bounded, W-TinyLFU eviction, short TTL); L2 is
+ * shared through Redis, or a second in-process cache when payment.cache.l2.type=memory or no
+ * Redis template is available. Redis errors are counted and treated as misses. Payments
+ * are stored once under their id; order and payment IDs are
+ * aliases to that id, and an alias hit is only used if the cached payment still carries
+ * the ID that was asked for, so a changed gateway payment ID never serves stale data.
+ *
+ * PaymentService evicts a payment on every mutation, both immediately and after commit.
+ * Every eviction also bumps a per-payment generation in L2, and a load only writes to L2
+ * if that generation is unchanged since before it read the database (checked atomically
+ * in Redis), so a load on one node can never put back an entry another node evicted. L1
+ * checks a local generation of the payment's stripe the same way. A load that overlapped an
+ * eviction of the same payment is returned but not cached. An alias lookup that finds no
+ * alias loads once without caching the payment and records the alias, so the next lookup
+ * goes through the id and fills both tiers. Other nodes' L1 entries expire within the L1
+ * TTL. Misses are not cached. Callers always get their own copy of a cached payment.
+ */
+@Component
+public class PaymentCache {
+    
+    private static final String KEY_PREFIX = "payment:";
+    private static final int GENERATION_STRIPES = 4096;
+    
+    // KEYS: generation, id, order alias, payment alias; ARGV: expected generation, json, ttl seconds, id
+    private static final RedisScript<Long> PUT_IF_GENERATION = new DefaultRedisScript<>(
+            "if (redis.call('GET', KEYS[1]) or '0') ~= ARGV[1] then return 0 end "
+            + "redis.call('SET', KEYS[2], ARGV[2], 'EX', ARGV[3]) "
+            + "redis.call('SET', KEYS[3], ARGV[4], 'EX', ARGV[3]) "
+            + "redis.call('SET', KEYS[4], ARGV[4], 'EX', ARGV[3]) "
+            + "return 1", Long.class);
+    
+    @Value("${payment.cache.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${payment.cache.l1.max-size:10000}")
+    private long l1MaxSize;
+    
+    @Value("${payment.cache.l1.ttl-seconds:5}")
+    private long l1TtlSeconds;
+    
+    @Value("${payment.cache.l2.type:memory}")
+    private String l2Type;
+    
+    @Value("${payment.cache.l2.max-size:100000}")
+    private long l2MaxSize;
+    
+    @Value("${payment.cache.l2.ttl-seconds:60}")
+    private long l2TtlSeconds;
+    
+    @Autowired
+    private ObjectProvider<StringRedisTemplate> redisTemplate;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private Cache<Long, PaymentResponse> l1;
+    private Cache<String, Long> l1Aliases;
+    private Tier l2;
+    // Bumped when a payment of the stripe is evicted; a load that saw it change may have read pre-commit data
+    private final AtomicLongArray localGenerations = new AtomicLongArray(GENERATION_STRIPES);
+    
+    private Counter l2Hits;
+    private Counter l2Misses;
+    private Counter l2Errors;
+    
+    @PostConstruct
+    void init() {
+        l1 = Caffeine.newBuilder()
+                .maximumSize(l1MaxSize)
+                .expireAfterWrite(l1TtlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        l1Aliases = Caffeine.newBuilder()
+                .maximumSize(l1MaxSize * 2)
+                .expireAfterWrite(l1TtlSeconds, TimeUnit.SECONDS)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, l1, "payment.l1");
+        
+        StringRedisTemplate redis = "redis".equalsIgnoreCase(l2Type) ? redisTemplate.getIfAvailable() : null;
+        l2 = redis != null ? new RedisTier(redis) : new MemoryTier();
+        l2Hits = Counter.builder("payment.cache.l2.requests").tag("result", "hit").register(meterRegistry);
+        l2Misses = Counter.builder("payment.cache.l2.requests").tag("result", "miss").register(meterRegistry);
+        l2Errors = Counter.builder("payment.cache.l2.errors")
+                .description("L2 cache operations that failed and fell back to the database")
+                .register(meterRegistry);
+        System.out.println("Payment cache: L1 " + l1MaxSize + " entries / " + l1TtlSeconds + "s, L2 "
+                + (redis != null ? "redis" : "memory") + " / " + l2TtlSeconds + "s"
+                + (enabled ? "" : " (disabled)"));
+    }
+    
+    public Optional<PaymentResponse> getById(Long id, Supplier<Optional<PaymentResponse>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        PaymentResponse cached = get(id);
+        return cached != null ? Optional.of(new PaymentResponse(cached)) : load(id, loader);
+    }
+    
+    public Optional<PaymentResponse> getByOrderId(String orderId, Supplier<Optional<PaymentResponse>> loader) {
+        return getByAlias("order:" + orderId, payment -> orderId.equals(payment.getOrderId()), loader);
+    }
+    
+    public Optional<PaymentResponse> getByPaymentId(String paymentId, Supplier<Optional<PaymentResponse>> loader) {
+        return getByAlias("pay:" + paymentId, payment -> paymentId.equals(payment.getPaymentId()), loader);
+    }
+    
+    /**
+     * Drop a payment from both tiers, now and again after the current transaction commits
+     */
+    public void evict(Long id) {
+        if (!enabled || id == null) {
+            return;
+        }
+        evictNow(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(id);
+                }
+            });
+        }
+    }
+    
+    private void evictNow(Long id) {
+        localGenerations.incrementAndGet(stripe(id));
+        l1.invalidate(id);
+        try {
+            l2.evict(id);
+        } catch (RuntimeException e) {
+            l2Errors.increment();
+        }
+    }
+    
+    private Optional<PaymentResponse> getByAlias(String alias, Predicate<PaymentResponse> matches,
+                                                 Supplier<Optional<PaymentResponse>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Long id = l1Aliases.getIfPresent(alias);
+        if (id == null) {
+            try {
+                id = l2.getAlias(alias);
+            } catch (RuntimeException e) {
+                l2Errors.increment();
+            }
+        }
+        if (id != null) {
+            PaymentResponse cached = get(id);
+            if (cached != null && matches.test(cached)) {
+                l1Aliases.put(alias, id);
+                return Optional.of(new PaymentResponse(cached));
+            }
+            // A stale alias (changed gateway payment ID) fails the id check in load and is not cached
+            return load(id, loader);
+        }
+        // Without an id there is no generation to check, so only remember where the alias points
+        Optional<PaymentResponse> loaded = loader.get();
+        if (loaded.isPresent() && loaded.get().getId() != null && matches.test(loaded.get())) {
+            l1Aliases.put(alias, loaded.get().getId());
+            try {
+                l2.putAlias(alias, loaded.get().getId());
+            } catch (RuntimeException e) {
+                l2Errors.increment();
+            }
+        }
+        return loaded;
+    }
+    
+    private PaymentResponse get(Long id) {
+        PaymentResponse cached = l1.getIfPresent(id);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            cached = l2.get(id);
+        } catch (RuntimeException e) {
+            l2Errors.increment();
+            return null;
+        }
+        if (cached == null) {
+            l2Misses.increment();
+            return null;
+        }
+        l2Hits.increment();
+        l1.put(id, cached);
+        return cached;
+    }
+    
+    /**
+     * @param id The payment's id; its local and L2 generations are read before loading, and the
+     *           result is only cached if it is that payment and neither generation moved
+     */
+    private Optional<PaymentResponse> load(Long id, Supplier<Optional<PaymentResponse>> loader) {
+        int stripe = stripe(id);
+        long generation = localGenerations.get(stripe);
+        Long l2Generation = null;
+        try {
+            l2Generation = l2.generation(id);
+        } catch (RuntimeException e) {
+            l2Errors.increment();
+        }
+        Optional<PaymentResponse> loaded = loader.get();
+        if (loaded.isPresent() && id.equals(loaded.get().getId()) && localGenerations.get(stripe) == generation) {
+            put(new PaymentResponse(loaded.get()), l2Generation);
+        }
+        return loaded;
+    }
+    
+    private static int stripe(Long id) {
+        return (Long.hashCode(id) * 0x9E3779B9 >>> 20) & (GENERATION_STRIPES - 1);
+    }
+    
+    private void put(PaymentResponse payment, Long l2Generation) {
+        if (l2Generation != null) {
+            try {
+                if (!l2.putIfGeneration(payment, l2Generation)) {
+                    // Evicted elsewhere while we were loading; what we read may be stale
+                    return;
+                }
+            } catch (RuntimeException e) {
+                l2Errors.increment();
+            }
+        }
+        l1.put(payment.getId(), payment);
+        l1Aliases.put("order:" + payment.getOrderId(), payment.getId());
+        l1Aliases.put("pay:" + payment.getPaymentId(), payment.getId());
+    }
+    
+    private interface Tier {
+        PaymentResponse get(Long id);
+        
+        Long getAlias(String alias);
+        
+        void putAlias(String alias, Long id);
+        
+        /**
+         * @return How many times the payment has been evicted recently; 0 if never
+         */
+        long generation(Long id);
+        
+        /**
+         * Store the payment unless it was evicted since generation() returned the given value
+         *
+         * @return false if the write was rejected
+         */
+        boolean putIfGeneration(PaymentResponse payment, long generation);
+        
+        /**
+         * Bump the payment's generation, then drop it
+         */
+        void evict(Long id);
+    }
+    
+    private final class MemoryTier implements Tier {
+        private final Cache<Long, PaymentResponse> payments = Caffeine.newBuilder()
+                .maximumSize(l2MaxSize)
+                .expireAfterWrite(l2TtlSeconds, TimeUnit.SECONDS)
+                .build();
+        private final Cache<String, Long> aliases = Caffeine.newBuilder()
+                .maximumSize(l2MaxSize * 2)
+                .expireAfterWrite(l2TtlSeconds, TimeUnit.SECONDS)
+                .build();
+        private final Cache<Long, Long> generations = Caffeine.newBuilder()
+                .maximumSize(l2MaxSize)
+                .expireAfterWrite(l2TtlSeconds, TimeUnit.SECONDS)
+                .build();
+        
+        @Override
+        public PaymentResponse get(Long id) {
+            return payments.getIfPresent(id);
+        }
+        
+        @Override
+        public Long getAlias(String alias) {
+            return aliases.getIfPresent(alias);
+        }
+        
+        @Override
+        public void putAlias(String alias, Long id) {
+            aliases.put(alias, id);
+        }
+        
+        @Override
+        public long generation(Long id) {
+            Long generation = generations.getIfPresent(id);
+            return generation == null ? 0 : generation;
+        }
+        
+        @Override
+        public synchronized boolean putIfGeneration(PaymentResponse payment, long generation) {
+            if (generation(payment.getId()) != generation) {
+                return false;
+            }
+            payments.put(payment.getId(), payment);
+            aliases.put("order:" + payment.getOrderId(), payment.getId());
+            aliases.put("pay:" + payment.getPaymentId(), payment.getId());
+            return true;
+        }
+        
+        @Override
+        public synchronized void evict(Long id) {
+            generations.put(id, generation(id) + 1);
+            payments.invalidate(id);
+        }
+    }
+    
+    private final class RedisTier implements Tier {
+        private final StringRedisTemplate redis;
+        
+        private RedisTier(StringRedisTemplate redis) {
+            this.redis = redis;
+        }
+        
+        @Override
+        public PaymentResponse get(Long id) {
+            String json = redis.opsForValue().get(KEY_PREFIX + "id:" + id);
+            if (json == null) {
+                return null;
+            }
+            try {
+                return objectMapper.readValue(json, PaymentResponse.class);
+            } catch (Exception e) {
+                throw new IllegalStateException("Unreadable cached payment " + id, e);
+            }
+        }
+        
+        @Override
+        public Long getAlias(String alias) {
+            String id = redis.opsForValue().get(KEY_PREFIX + alias);
+            return id == null ? null : Long.valueOf(id);
+        }
+        
+        @Override
+        public void putAlias(String alias, Long id) {
+            redis.opsForValue().set(KEY_PREFIX + alias, String.valueOf(id), Duration.ofSeconds(l2TtlSeconds));
+        }
+        
+        @Override
+        public long generation(Long id) {
+            String generation = redis.opsForValue().get(KEY_PREFIX + "gen:" + id);
+            return generation == null ? 0 : Long.parseLong(generation);
+        }
+        
+        @Override
+        public boolean putIfGeneration(PaymentResponse payment, long generation) {
+            String json;
+            try {
+                json = objectMapper.writeValueAsString(payment);
+            } catch (Exception e) {
+                throw new IllegalStateException("Cannot cache payment " + payment.getId(), e);
+            }
+            String id = String.valueOf(payment.getId());
+            Long stored = redis.execute(PUT_IF_GENERATION,
+                    List.of(KEY_PREFIX + "gen:" + id, KEY_PREFIX + "id:" + id,
+                            KEY_PREFIX + "order:" + payment.getOrderId(), KEY_PREFIX + "pay:" + payment.getPaymentId()),
+                    String.valueOf(generation), json, String.valueOf(l2TtlSeconds), id);
+            return stored != null && stored == 1L;
+        }
+        
+        @Override
+        public void evict(Long id) {
+            // Generation first: a put that checks after this is rejected, one that ran before is deleted below
+            redis.opsForValue().increment(KEY_PREFIX + "gen:" + id);
+            redis.expire(KEY_PREFIX + "gen:" + id, Duration.ofSeconds(l2TtlSeconds));
+            redis.delete(KEY_PREFIX + "id:" + id);
+        }
+    }
+}
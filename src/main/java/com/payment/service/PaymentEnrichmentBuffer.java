@@ -0,0 +1,320 @@
+package com.payment.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Write-behind buffer for customer details supplied when a payment is verified
+ * (name, email, phone, description).
+ *
+ * These fields are not needed to confirm the payment, so handleSecurePaymentSuccess only
+ * flips the status synchronously and hands them here. Updates are coalesced per order
+ * (the latest non-null value of each field wins) and written by a background thread in
+ * one JDBC batch per flush, either every flush interval or as soon as max-pending orders
+ * are waiting. The buffer is drained on shutdown.
+ *
+ * Values longer than their columns are rejected by enqueue. If a batch fails because the
+ * database is unavailable its entries are put back for the next flush; any other failure
+ * is narrowed down by writing the rows one at a time, and a row that still fails is
+ * dead-lettered (counted and logged) rather than retried forever. At most max-buffered
+ * orders are held; beyond that an update is written inline by the caller.
+ *
+ * Until the next flush (by default well under a second) reads still show the old values.
+ */
+@Component
+public class PaymentEnrichmentBuffer {
+    
+    private static final String UPDATE_SQL = "UPDATE payments SET customer_name = COALESCE(?, customer_name), "
+            + "customer_email = COALESCE(?, customer_email), customer_phone = COALESCE(?, customer_phone), "
+            + "description = COALESCE(?, description), updated_at = ? WHERE order_id = ?";
+    
+    @Value("${payment.enrichment.flush-interval-ms:500}")
+    private long flushIntervalMillis;
+    
+    @Value("${payment.enrichment.max-pending:500}")
+    private int maxPending;
+    
+    @Value("${payment.enrichment.max-buffered:10000}")
+    private int maxBuffered;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private PaymentCache paymentCache;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private final Map<String, Enrichment> pending = new ConcurrentHashMap<>();
+    private final Object signal = new Object();
+    private volatile boolean running;
+    private Thread flusher;
+    
+    private Counter flushedCounter;
+    private Counter coalescedCounter;
+    private Counter deadLetteredCounter;
+    private Counter overflowCounter;
+    
+    @PostConstruct
+    void start() {
+        flushedCounter = Counter.builder("payment.enrichment.flushed")
+                .description("Orders whose buffered customer details were written")
+                .register(meterRegistry);
+        coalescedCounter = Counter.builder("payment.enrichment.coalesced")
+                .description("Customer detail updates merged into one already waiting for the same order")
+                .register(meterRegistry);
+        deadLetteredCounter = Counter.builder("payment.enrichment.dead_lettered")
+                .description("Orders whose customer details were dropped because their row could not be written")
+                .register(meterRegistry);
+        overflowCounter = Counter.builder("payment.enrichment.overflow")
+                .description("Updates written inline because the buffer was full")
+                .register(meterRegistry);
+        Gauge.builder("payment.enrichment.pending", pending, Map::size)
+                .description("Orders with customer details waiting to be written")
+                .register(meterRegistry);
+        
+        running = true;
+        flusher = new Thread(this::run, "payment-enrichment-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+    
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        synchronized (signal) {
+            signal.notify();
+        }
+        // Not interrupted, so a flush in progress finishes its batch
+        flusher.join(10000);
+        // Final drain on the shutdown thread; the data source is still open at this point
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.err.println("Payment enrichment final flush failed: " + e.getMessage());
+        }
+        if (!pending.isEmpty()) {
+            System.err.println("Payment enrichment buffer: " + pending.size() + " orders could not be written at shutdown");
+        }
+    }
+    
+    /**
+     * Queue customer details for an order; null fields are left unchanged
+     *
+     * @throws IllegalArgumentException if a value is longer than its column
+     */
+    public void enqueue(Long paymentId, String orderId, String customerName, String customerEmail,
+                        String customerPhone, String description) {
+        checkLength("customerName", customerName, 100);
+        checkLength("customerEmail", customerEmail, 100);
+        checkLength("customerPhone", customerPhone, 20);
+        checkLength("description", description, 500);
+        Enrichment update = new Enrichment(paymentId, customerName, customerEmail, customerPhone, description);
+        if (update.isEmpty()) {
+            return;
+        }
+        if (pending.size() >= maxBuffered && !pending.containsKey(orderId)) {
+            // Full: write this one now rather than let the buffer grow without bound
+            overflowCounter.increment();
+            writeInline(orderId, update);
+            return;
+        }
+        pending.merge(orderId, update, (waiting, latest) -> {
+            coalescedCounter.increment();
+            return waiting.overlay(latest);
+        });
+        if (pending.size() >= maxPending) {
+            synchronized (signal) {
+                signal.notify();
+            }
+        }
+    }
+    
+    private static void checkLength(String field, String value, int max) {
+        if (value != null && value.length() > max) {
+            throw new IllegalArgumentException(field + " cannot exceed " + max + " characters");
+        }
+    }
+    
+    private void writeInline(String orderId, Enrichment update) {
+        try {
+            writeRow(orderId, update, Timestamp.valueOf(LocalDateTime.now()));
+            paymentCache.evict(update.paymentId);
+            flushedCounter.increment();
+        } catch (RuntimeException e) {
+            if (WebhookEventProcessor.isInfrastructureFailure(e)) {
+                // Keep it over the bound rather than lose it; the flusher retries
+                pending.merge(orderId, update, (waiting, latest) -> waiting.overlay(latest));
+            } else {
+                deadLetter(orderId, update, e);
+            }
+        }
+    }
+    
+    private void run() {
+        while (running) {
+            try {
+                synchronized (signal) {
+                    if (pending.size() < maxPending) {
+                        signal.wait(flushIntervalMillis);
+                    }
+                }
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Payment enrichment flush failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Write everything currently buffered in one batch
+     *
+     * @return Number of orders written
+     */
+    synchronized int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        List<String> orderIds = new ArrayList<>();
+        List<Enrichment> updates = new ArrayList<>();
+        Iterator<Map.Entry<String, Enrichment>> entries = pending.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, Enrichment> entry = entries.next();
+            // Remove only the value we saw, so an update merged in meanwhile stays queued
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                orderIds.add(entry.getKey());
+                updates.add(entry.getValue());
+            }
+        }
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(orderIds.size());
+        for (int i = 0; i < orderIds.size(); i++) {
+            Enrichment update = updates.get(i);
+            rows.add(new Object[] {update.customerName, update.customerEmail, update.customerPhone,
+                    update.description, now, orderIds.get(i)});
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPDATE_SQL, rows));
+        } catch (RuntimeException e) {
+            if (WebhookEventProcessor.isInfrastructureFailure(e)) {
+                // Put them back under anything that arrived since, then let the caller report it
+                for (int i = 0; i < orderIds.size(); i++) {
+                    requeue(orderIds.get(i), updates.get(i));
+                }
+                throw e;
+            }
+            System.err.println("Payment enrichment batch of " + orderIds.size() + " failed, writing rows one at a time: "
+                    + e.getMessage());
+            return flushRowByRow(orderIds, updates, now);
+        }
+        for (Enrichment update : updates) {
+            paymentCache.evict(update.paymentId);
+        }
+        flushedCounter.increment(orderIds.size());
+        return orderIds.size();
+    }
+    
+    /**
+     * Isolate the rows that broke a batch: each is written on its own, an unavailable
+     * database puts it back, and any other failure dead-letters just that row
+     */
+    private int flushRowByRow(List<String> orderIds, List<Enrichment> updates, Timestamp now) {
+        int written = 0;
+        for (int i = 0; i < orderIds.size(); i++) {
+            String orderId = orderIds.get(i);
+            Enrichment update = updates.get(i);
+            try {
+                writeRow(orderId, update, now);
+                paymentCache.evict(update.paymentId);
+                written++;
+            } catch (RuntimeException e) {
+                if (WebhookEventProcessor.isInfrastructureFailure(e)) {
+                    requeue(orderId, update);
+                } else {
+                    deadLetter(orderId, update, e);
+                }
+            }
+        }
+        flushedCounter.increment(written);
+        return written;
+    }
+    
+    private void writeRow(String orderId, Enrichment update, Timestamp now) {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(UPDATE_SQL, update.customerName,
+                update.customerEmail, update.customerPhone, update.description, now, orderId));
+    }
+    
+    private void requeue(String orderId, Enrichment failed) {
+        pending.merge(orderId, failed, (newer, old) -> old.overlay(newer));
+    }
+    
+    private void deadLetter(String orderId, Enrichment update, RuntimeException error) {
+        deadLetteredCounter.increment();
+        // Customer details are not logged; the order and payment ids are enough to find the request
+        System.err.println("Payment enrichment dead-lettered for order " + orderId + " (payment " + update.paymentId
+                + "): " + error.getMessage());
+    }
+    
+    /**
+     * Pending field values for one order; immutable so it can be merged with compare-and-set
+     */
+    private static final class Enrichment {
+        private final Long paymentId;
+        private final String customerName;
+        private final String customerEmail;
+        private final String customerPhone;
+        private final String description;
+        
+        private Enrichment(Long paymentId, String customerName, String customerEmail,
+                           String customerPhone, String description) {
+            this.paymentId = paymentId;
+            this.customerName = customerName;
+            this.customerEmail = customerEmail;
+            this.customerPhone = customerPhone;
+            this.description = description;
+        }
+        
+        private boolean isEmpty() {
+            return customerName == null && customerEmail == null && customerPhone == null && description == null;
+        }
+        
+        /**
+         * This update with any non-null field of the later one applied on top
+         */
+        private Enrichment overlay(Enrichment later) {
+            return new Enrichment(later.paymentId != null ? later.paymentId : paymentId,
+                    later.customerName != null ? later.customerName : customerName,
+                    later.customerEmail != null ? later.customerEmail : customerEmail,
+                    later.customerPhone != null ? later.customerPhone : customerPhone,
+                    later.description != null ? later.description : description);
+        }
+    }
+}
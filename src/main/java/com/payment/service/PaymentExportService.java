@@ -0,0 +1,227 @@
+package com.payment.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.payment.entity.Payment;
+import com.payment.repository.PaymentRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Streams payments to an output stream as NDJSON or CSV.
+ *
+ * Rows come from a forward-only repository Stream with a JDBC fetch size inside a
+ * read-only transaction, are written straight to the response without an intermediate
+ * DTO list, and the persistence context is cleared every clear-interval rows so heap
+ * use stays flat regardless of how many payments are exported.
+ */
+@Service
+public class PaymentExportService {
+    
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    
+    private static final String[] CSV_COLUMNS = {
+        "id", "orderId", "paymentId", "customerName", "customerEmail", "customerPhone", "amount",
+        "currency", "status", "paymentMethod", "merchantId", "createdAt", "updatedAt", "capturedAt", "description"
+    };
+    
+    @Value("${payment.export.clear-interval:500}")
+    private int clearInterval;
+    
+    @Autowired
+    private PaymentRepository paymentRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    private TransactionTemplate readOnlyTransaction;
+    
+    @PostConstruct
+    void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+    
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+        
+        private final String contentType;
+        private final String extension;
+        
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+        
+        public String getContentType() {
+            return contentType;
+        }
+        
+        public String getExtension() {
+            return extension;
+        }
+    }
+    
+    public long exportByDateRange(LocalDateTime startDate, LocalDateTime endDate, Format format, OutputStream out) throws IOException {
+        return export(repository -> repository.streamByDateRange(startDate, endDate), format, out);
+    }
+    
+    public long exportByStatus(Payment.PaymentStatus status, Format format, OutputStream out) throws IOException {
+        return export(repository -> repository.streamByStatus(status), format, out);
+    }
+    
+    public long exportByCustomerEmail(String email, Format format, OutputStream out) throws IOException {
+        return export(repository -> repository.streamByCustomerEmail(email), format, out);
+    }
+    
+    /**
+     * @return Number of payments written
+     */
+    private long export(Function<PaymentRepository, Stream<Payment>> query, Format format, OutputStream out) throws IOException {
+        try {
+            Long written = readOnlyTransaction.execute(status -> {
+                try (Stream<Payment> payments = query.apply(paymentRepository)) {
+                    return format == Format.CSV
+                            ? writeCsv(payments.iterator(), out)
+                            : writeNdjson(payments.iterator(), out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return written == null ? 0 : written;
+        } catch (UncheckedIOException e) {
+            // Usually the client went away mid-download
+            throw e.getCause();
+        }
+    }
+    
+    private long writeNdjson(Iterator<Payment> payments, OutputStream out) throws IOException {
+        long count = 0;
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.setRootValueSeparator(null);
+            while (payments.hasNext()) {
+                Payment payment = payments.next();
+                json.writeStartObject();
+                json.writeNumberField("id", payment.getId());
+                json.writeStringField("orderId", payment.getOrderId());
+                json.writeStringField("paymentId", payment.getPaymentId());
+                json.writeStringField("customerName", payment.getCustomerName());
+                json.writeStringField("customerEmail", payment.getCustomerEmail());
+                json.writeStringField("customerPhone", payment.getCustomerPhone());
+                json.writeNumberField("amount", payment.getAmount());
+                json.writeStringField("currency", payment.getCurrency());
+                json.writeStringField("status", payment.getStatus().name());
+                json.writeStringField("paymentMethod", payment.getPaymentMethod());
+                json.writeStringField("merchantId", payment.getMerchantId());
+                json.writeStringField("createdAt", format(payment.getCreatedAt()));
+                json.writeStringField("updatedAt", format(payment.getUpdatedAt()));
+                json.writeStringField("capturedAt", format(payment.getCapturedAt()));
+                json.writeStringField("description", payment.getDescription());
+                json.writeEndObject();
+                json.writeRaw('\n');
+                count = afterRow(count);
+            }
+        }
+        return count;
+    }
+    
+    private long writeCsv(Iterator<Payment> payments, OutputStream out) throws IOException {
+        long count = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16 * 1024);
+        writer.write(String.join(",", CSV_COLUMNS));
+        writer.write("\r\n");
+        while (payments.hasNext()) {
+            Payment payment = payments.next();
+            writer.write(String.valueOf(payment.getId()));
+            writeCsvField(writer, payment.getOrderId());
+            writeCsvField(writer, payment.getPaymentId());
+            writeCsvField(writer, payment.getCustomerName());
+            writeCsvField(writer, payment.getCustomerEmail());
+            writeCsvField(writer, payment.getCustomerPhone());
+            writeCsvField(writer, payment.getAmount() == null ? null : payment.getAmount().toPlainString());
+            writeCsvField(writer, payment.getCurrency());
+            writeCsvField(writer, payment.getStatus().name());
+            writeCsvField(writer, payment.getPaymentMethod());
+            writeCsvField(writer, payment.getMerchantId());
+            writeCsvField(writer, format(payment.getCreatedAt()));
+            writeCsvField(writer, format(payment.getUpdatedAt()));
+            writeCsvField(writer, format(payment.getCapturedAt()));
+            writeCsvField(writer, payment.getDescription());
+            writer.write("\r\n");
+            count = afterRow(count);
+        }
+        writer.flush();
+        return count;
+    }
+    
+    private long afterRow(long count) {
+        count++;
+        if (count % clearInterval == 0) {
+            // Drop the entities already written so the persistence context does not grow
+            entityManager.clear();
+        }
+        return count;
+    }
+    
+    /**
+     * Write one cell. Cells a spreadsheet would evaluate as a formula (leading =, +, -, @, tab
+     * or carriage return) get a leading apostrophe, so exported customer text cannot run in Excel
+     */
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        writer.write(',');
+        if (value == null) {
+            return;
+        }
+        if (!value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+    
+    private static String format(LocalDateTime time) {
+        return time == null ? null : time.toString();
+    }
+}
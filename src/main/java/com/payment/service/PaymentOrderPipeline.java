@@ -0,0 +1,221 @@
+package com.payment.service;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.payment.dto.PaymentCreationStatus;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Bounded worker pipeline that creates Razorpay orders off the request thread.
+ *
+ * Each submitted payment gets a ticket keyed by its order ID that clients can poll
+ * (or wait on) until the gateway call has completed. Queue depth, active workers,
+ * queue wait and end-to-end latency are published as Micrometer metrics.
+ *
+ * Tickets and the queue live in memory only. Work that is still queued when the node
+ * stops is not lost for good: the payment stays PENDING without a gateway order, and
+ * PaymentService.recoverPendingCreations resubmits it.
+ */
+@Component
+public class PaymentOrderPipeline {
+    
+    @Value("${payment.async.workers:8}")
+    private int workers;
+    
+    @Value("${payment.async.queue-capacity:1000}")
+    private int queueCapacity;
+    
+    @Value("${payment.async.ticket-retention-seconds:600}")
+    private long ticketRetentionSeconds;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private final ConcurrentHashMap<String, Ticket> tickets = new ConcurrentHashMap<>();
+    
+    private ThreadPoolExecutor executor;
+    private Timer queueWaitTimer;
+    private Timer latencyTimer;
+    private Counter completedCounter;
+    private Counter failedCounter;
+    private Counter rejectedCounter;
+    
+    @PostConstruct
+    void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "payment-order-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        
+        Gauge.builder("payment.order.pipeline.queue.depth", executor, e -> e.getQueue().size())
+                .description("Payments waiting for a gateway order")
+                .register(meterRegistry);
+        Gauge.builder("payment.order.pipeline.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Workers currently calling the gateway")
+                .register(meterRegistry);
+        Gauge.builder("payment.order.pipeline.tickets", tickets, ConcurrentHashMap::size)
+                .description("Tracked creation tickets")
+                .register(meterRegistry);
+        queueWaitTimer = Timer.builder("payment.order.pipeline.wait")
+                .description("Time a payment spends queued before a worker picks it up")
+                .register(meterRegistry);
+        latencyTimer = Timer.builder("payment.order.pipeline.latency")
+                .description("Time from submission until the gateway order is stored")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        completedCounter = Counter.builder("payment.order.pipeline.outcome").tag("result", "completed").register(meterRegistry);
+        failedCounter = Counter.builder("payment.order.pipeline.outcome").tag("result", "failed").register(meterRegistry);
+        rejectedCounter = Counter.builder("payment.order.pipeline.outcome").tag("result", "rejected").register(meterRegistry);
+    }
+    
+    /**
+     * Queue the gateway order creation for a persisted payment
+     *
+     * @param id Payment ID
+     * @param orderId Our order ID, used as the ticket key
+     * @param gatewayCall Creates the gateway order, stores it and returns the payment ID
+     * @return Snapshot of the queued ticket
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public PaymentCreationStatus submit(Long id, String orderId, Callable<String> gatewayCall) {
+        Ticket ticket = new Ticket(id, orderId);
+        tickets.put(orderId, ticket);
+        try {
+            executor.execute(() -> run(ticket, gatewayCall));
+        } catch (RejectedExecutionException e) {
+            tickets.remove(orderId);
+            rejectedCounter.increment();
+            throw e;
+        }
+        return ticket.snapshot();
+    }
+    
+    /**
+     * Current status of a tracked creation, if the ticket has not been evicted yet
+     */
+    public Optional<PaymentCreationStatus> getStatus(String orderId) {
+        Ticket ticket = tickets.get(orderId);
+        return ticket == null ? Optional.empty() : Optional.of(ticket.snapshot());
+    }
+    
+    /**
+     * Completion handle for a tracked creation
+     */
+    public Optional<CompletableFuture<PaymentCreationStatus>> getCompletion(String orderId) {
+        Ticket ticket = tickets.get(orderId);
+        return ticket == null ? Optional.empty() : Optional.of(ticket.completion);
+    }
+    
+    /**
+     * Whether this node is still queued on, or working on, the creation
+     */
+    public boolean isInFlight(String orderId) {
+        Ticket ticket = tickets.get(orderId);
+        return ticket != null && ticket.completedNanos == 0;
+    }
+    
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+    
+    private void run(Ticket ticket, Callable<String> gatewayCall) {
+        long startedAt = System.nanoTime();
+        queueWaitTimer.record(startedAt - ticket.queuedNanos, TimeUnit.NANOSECONDS);
+        ticket.state = PaymentCreationStatus.State.PROCESSING;
+        try {
+            ticket.paymentId = gatewayCall.call();
+            ticket.state = PaymentCreationStatus.State.COMPLETED;
+            completedCounter.increment();
+        } catch (Exception e) {
+            ticket.error = e.getMessage();
+            ticket.state = PaymentCreationStatus.State.FAILED;
+            failedCounter.increment();
+            System.err.println("Async payment creation failed for " + ticket.orderId + ": " + e.getMessage());
+        } finally {
+            long finishedAt = System.nanoTime();
+            ticket.gatewayLatencyMillis = TimeUnit.NANOSECONDS.toMillis(finishedAt - startedAt);
+            ticket.completedAt = LocalDateTime.now();
+            ticket.completedNanos = finishedAt;
+            latencyTimer.record(finishedAt - ticket.queuedNanos, TimeUnit.NANOSECONDS);
+            ticket.completion.complete(ticket.snapshot());
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${payment.async.ticket-cleanup-interval-ms:60000}")
+    void evictCompletedTickets() {
+        long cutoff = System.nanoTime() - TimeUnit.SECONDS.toNanos(ticketRetentionSeconds);
+        tickets.values().removeIf(ticket -> ticket.completedNanos != 0 && ticket.completedNanos - cutoff < 0);
+    }
+    
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            System.err.println("Payment order pipeline did not drain; " + executor.getQueue().size()
+                    + " payments left pending for the recovery sweep");
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Mutable tracking state for one submission; fields are written by a single worker
+     */
+    private static final class Ticket {
+        private final Long id;
+        private final String orderId;
+        private final LocalDateTime queuedAt = LocalDateTime.now();
+        private final long queuedNanos = System.nanoTime();
+        private final CompletableFuture<PaymentCreationStatus> completion = new CompletableFuture<>();
+        
+        private volatile PaymentCreationStatus.State state = PaymentCreationStatus.State.QUEUED;
+        private volatile String paymentId;
+        private volatile String error;
+        private volatile LocalDateTime completedAt;
+        private volatile Long gatewayLatencyMillis;
+        private volatile long completedNanos;
+        
+        private Ticket(Long id, String orderId) {
+            this.id = id;
+            this.orderId = orderId;
+        }
+        
+        private PaymentCreationStatus snapshot() {
+            PaymentCreationStatus status = new PaymentCreationStatus(id, orderId, state);
+            status.setPaymentId(paymentId);
+            if (paymentId != null) {
+                status.setPaymentUrl("https://checkout.razorpay.com/v1/" + paymentId);
+            }
+            status.setError(error);
+            status.setQueuedAt(queuedAt);
+            status.setCompletedAt(completedAt);
+            status.setGatewayLatencyMillis(gatewayLatencyMillis);
+            return status;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,219 @@
+package com.payment.service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Keeps the monthly partitions of the payments table in step with the calendar on
+ * Postgres (see schema-postgres.sql).
+ *
+ * On startup and then daily it creates the partitions for the current month and the
+ * next months-ahead months, so inserts never fall through to payments_default. With a
+ * retention period set, month partitions that ended before it are detached (left as
+ * standalone tables for archiving) or dropped. Date-range queries on createdAt only
+ * touch the partitions overlapping the range.
+ *
+ * It also enforces that order_id is unique, which the Payment entity cannot declare. On a
+ * partitioned table every unique index must include created_at, so an AFTER INSERT trigger
+ * reserves each order_id in payment_order_ids and a duplicate fails the INSERT. On any
+ * other table (H2, or Postgres without partitioning) a plain unique index on order_id is
+ * created. Partition maintenance itself only runs on a partitioned table.
+ */
+@Service
+@DependsOn("entityManagerFactory")
+public class PaymentPartitionManager {
+    
+    static final String PARENT_TABLE = "payments";
+    static final String ORDER_ID_TABLE = "payment_order_ids";
+    
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final String PARTITION_PREFIX = PARENT_TABLE + "_p";
+    
+    @Value("${payment.partition.months-ahead:3}")
+    private int monthsAhead;
+    
+    // 0 keeps every partition
+    @Value("${payment.partition.retention-months:0}")
+    private int retentionMonths;
+    
+    // detach or drop
+    @Value("${payment.partition.retention-action:detach}")
+    private String retentionAction;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    private boolean partitioned;
+    
+    @PostConstruct
+    void init() {
+        partitioned = detectPartitionedTable();
+        enforceUniqueOrderIds();
+        if (partitioned) {
+            maintain();
+        }
+    }
+    
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+    
+    /**
+     * Create upcoming month partitions and retire those past the retention period
+     */
+    @Scheduled(cron = "${payment.partition.maintenance-cron:0 15 0 * * *}")
+    public synchronized void maintain() {
+        if (!partitioned) {
+            return;
+        }
+        YearMonth current = YearMonth.now();
+        int created = 0;
+        for (YearMonth month : monthsToCreate(current, monthsAhead)) {
+            if (createPartition(month)) {
+                created++;
+            }
+        }
+        
+        int retired = 0;
+        if (retentionMonths > 0) {
+            for (String partition : listMonthPartitions()) {
+                if (isPastRetention(partition, current, retentionMonths) && retirePartition(partition)) {
+                    retired++;
+                }
+            }
+        }
+        if (created > 0 || retired > 0) {
+            System.out.println("Payment partitions maintained: " + created + " created, " + retired + " "
+                    + ("drop".equalsIgnoreCase(retentionAction) ? "dropped" : "detached"));
+        }
+    }
+    
+    /**
+     * @return Whether the partition was created by this call
+     */
+    private boolean createPartition(YearMonth month) {
+        String name = partitionName(month);
+        if (partitionExists(name)) {
+            return false;
+        }
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        try {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + PARENT_TABLE
+                    + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+            return true;
+        } catch (DataAccessException e) {
+            // Typically rows for this month already sit in payments_default
+            System.err.println("Could not create payment partition " + name + ": " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private boolean retirePartition(String name) {
+        try {
+            jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + name);
+            if ("drop".equalsIgnoreCase(retentionAction)) {
+                jdbcTemplate.execute("DROP TABLE " + name);
+            }
+            return true;
+        } catch (DataAccessException e) {
+            System.err.println("Could not retire payment partition " + name + ": " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private void enforceUniqueOrderIds() {
+        try {
+            if (!partitioned) {
+                jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS uk_payments_order_id ON " + PARENT_TABLE + " (order_id)");
+                return;
+            }
+            // schema-postgres.sql creates the table; fill it with rows that predate the trigger
+            jdbcTemplate.execute("INSERT INTO " + ORDER_ID_TABLE + " (order_id, payment_id, created_at) "
+                    + "SELECT order_id, id, created_at FROM " + PARENT_TABLE + " ON CONFLICT (order_id) DO NOTHING");
+            jdbcTemplate.execute("CREATE OR REPLACE FUNCTION payments_reserve_order_id() RETURNS trigger "
+                    + "LANGUAGE plpgsql AS $$ BEGIN "
+                    + "INSERT INTO " + ORDER_ID_TABLE + " (order_id, payment_id, created_at) "
+                    + "VALUES (NEW.order_id, NEW.id, NEW.created_at); "
+                    + "RETURN NULL; END $$");
+            jdbcTemplate.execute("CREATE OR REPLACE TRIGGER payments_reserve_order_id AFTER INSERT ON " + PARENT_TABLE
+                    + " FOR EACH ROW EXECUTE FUNCTION payments_reserve_order_id()");
+        } catch (DataAccessException e) {
+            // Typically duplicate order IDs already stored; the application keeps running without the guarantee
+            System.err.println("Could not enforce unique payment order IDs: " + e.getMessage());
+        }
+    }
+    
+    private boolean partitionExists(String name) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "WHERE i.inhparent = ?::regclass AND c.relname = ?",
+                Integer.class, PARENT_TABLE, name);
+        return count != null && count > 0;
+    }
+    
+    private List<String> listMonthPartitions() {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "WHERE i.inhparent = ?::regclass AND c.relname ~ ? ORDER BY c.relname",
+                String.class, PARENT_TABLE, "^" + PARTITION_PREFIX + "[0-9]{6}$");
+    }
+    
+    private boolean detectPartitionedTable() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(product)) {
+            return false;
+        }
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid WHERE c.relname = ?",
+                Integer.class, PARENT_TABLE);
+        if (count == null || count == 0) {
+            System.err.println("Table " + PARENT_TABLE + " is not partitioned; partition maintenance disabled");
+            return false;
+        }
+        return true;
+    }
+    
+    static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(SUFFIX);
+    }
+    
+    /**
+     * @return The current month and the monthsAhead months after it
+     */
+    static List<YearMonth> monthsToCreate(YearMonth current, int monthsAhead) {
+        List<YearMonth> months = new ArrayList<>();
+        for (int i = 0; i <= monthsAhead; i++) {
+            months.add(current.plusMonths(i));
+        }
+        return months;
+    }
+    
+    /**
+     * @param partition A month partition name, e.g. payments_p202401
+     * @param retentionMonths Months kept before the current one; 0 keeps everything
+     * @return Whether the partition's month ended before the retention period
+     */
+    static boolean isPastRetention(String partition, YearMonth current, int retentionMonths) {
+        if (retentionMonths <= 0) {
+            return false;
+        }
+        YearMonth month = YearMonth.parse(partition.substring(PARTITION_PREFIX.length()), SUFFIX);
+        return month.isBefore(current.minusMonths(retentionMonths));
+    }
+}
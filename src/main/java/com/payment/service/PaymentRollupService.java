@@ -0,0 +1,194 @@
+package com.payment.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.payment.entity.Payment;
+import com.payment.entity.PaymentDailyRollup;
+import com.payment.entity.PaymentRollupWatermark;
+import com.payment.repository.PaymentDailyRollupRepository;
+import com.payment.repository.PaymentRepository;
+import com.payment.repository.PaymentRollupWatermarkRepository;
+
+/**
+ * Maintains payment_daily_rollups, one row per day, merchant, currency, method and status.
+ *
+ * Each run first re-rolls any covered day with a payment that changed since the previous
+ * run (found through the updatedAt index), then rolls up closed days that are not covered
+ * yet, backfilling history a bounded number of days at a time, and advances the watermark. A day is always rewritten whole from a single
+ * GROUP BY over that day's rows, so min/max stay exact when a payment leaves a group.
+ *
+ * A day counts as closed once the close delay has passed after midnight, so
+ * transactions still committing around midnight are not missed.
+ *
+ * Every node schedules the job, so each run and each rollUp holds a row lock on the
+ * watermark for its whole transaction; the unique index on the rollup groups backs this up.
+ */
+@Service
+public class PaymentRollupService {
+    
+    static final String WATERMARK = "payment_daily";
+    
+    @Value("${payment.rollup.backfill-days-per-run:31}")
+    private int backfillDaysPerRun;
+    
+    @Value("${payment.rollup.close-delay-minutes:5}")
+    private long closeDelayMinutes;
+    
+    @Value("${payment.rollup.scan-overlap-seconds:60}")
+    private long scanOverlapSeconds;
+    
+    @Autowired
+    private PaymentRepository paymentRepository;
+    
+    @Autowired
+    private PaymentDailyRollupRepository rollupRepository;
+    
+    @Autowired
+    private PaymentRollupWatermarkRepository watermarkRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private PaymentArchiveService archiveService;
+    
+    @Scheduled(fixedDelayString = "${payment.rollup.refresh-interval-ms:60000}", initialDelay = 10000)
+    public void refresh() {
+        createWatermarkIfMissing();
+        transactionTemplate.executeWithoutResult(status -> refreshLocked());
+    }
+    
+    /**
+     * One run of the job; the caller's transaction holds the watermark lock until it ends,
+     * so a node that waited on the lock reads the advanced watermark and finds little left
+     */
+    private void refreshLocked() {
+        PaymentRollupWatermark watermark = lockWatermark();
+        LocalDateTime scanStartedAt = LocalDateTime.now();
+        LocalDate lastClosedDay = scanStartedAt.minusMinutes(closeDelayMinutes).toLocalDate().minusDays(1);
+        
+        // Step 1: Re-roll closed days whose payments changed since the last scan
+        TreeSet<LocalDate> dirtyDays = new TreeSet<>();
+        if (watermark.getRolledThrough() != null && watermark.getScannedAt() != null) {
+            LocalDateTime since = watermark.getScannedAt().minusSeconds(scanOverlapSeconds);
+            LocalDateTime before = watermark.getRolledThrough().plusDays(1).atStartOfDay();
+            for (LocalDateTime createdAt : paymentRepository.findCreatedAtOfPaymentsUpdatedSince(since, before)) {
+                dirtyDays.add(createdAt.toLocalDate());
+            }
+        }
+        for (LocalDate day : dirtyDays) {
+            rollUp(day);
+        }
+        
+        // Step 2: Extend coverage to the last closed day, backfilling in bounded chunks
+        LocalDate next = watermark.getRolledThrough() == null ? firstDay() : watermark.getRolledThrough().plusDays(1);
+        LocalDate rolledThrough = watermark.getRolledThrough();
+        int rolled = 0;
+        while (next != null && !next.isAfter(lastClosedDay) && rolled < backfillDaysPerRun) {
+            rollUp(next);
+            rolledThrough = next;
+            next = next.plusDays(1);
+            rolled++;
+        }
+        if (rolledThrough == null) {
+            // Nothing to roll up before the first payment (or at all, if there are none yet)
+            rolledThrough = next == null ? lastClosedDay : next.minusDays(1);
+        }
+        
+        watermark.setRolledThrough(rolledThrough);
+        watermark.setScannedAt(scanStartedAt);
+        watermarkRepository.save(watermark);
+        if (!dirtyDays.isEmpty() || rolled > 0) {
+            System.out.println("Payment rollups refreshed: " + dirtyDays.size() + " days re-rolled, "
+                    + rolled + " new days, covered through " + rolledThrough);
+        }
+    }
+    
+    /**
+     * Last day fully covered by rollups, or null before the first run
+     */
+    public LocalDate getRolledThrough() {
+        return watermarkRepository.findById(WATERMARK).map(PaymentRollupWatermark::getRolledThrough).orElse(null);
+    }
+    
+    /**
+     * Rewrite all rollup rows for one day from the raw payments, under the watermark lock
+     */
+    public void rollUp(LocalDate day) {
+        LocalDateTime start = day.atStartOfDay();
+        LocalDateTime end = day.plusDays(1).atStartOfDay();
+        createWatermarkIfMissing();
+        transactionTemplate.executeWithoutResult(status -> {
+            lockWatermark();
+            LocalDateTime computedAt = LocalDateTime.now();
+            // Archived payments of the day are merged in, so re-rolling a day never drops them
+            List<Object[]> groups = new ArrayList<>(paymentRepository.aggregateForRollup(start, end));
+            groups.addAll(archiveService.aggregateForRollup(start, end));
+            Map<List<Object>, PaymentDailyRollup> rollups = new LinkedHashMap<>();
+            for (Object[] group : groups) {
+                List<Object> key = Arrays.asList(group[0], group[1], group[2], group[3]);
+                PaymentDailyRollup existing = rollups.get(key);
+                if (existing != null) {
+                    existing.setPaymentCount(existing.getPaymentCount() + (Long) group[4]);
+                    existing.setAmountMinor(existing.getAmountMinor() + (Long) group[5]);
+                    existing.setMinAmountMinor(Math.min(existing.getMinAmountMinor(), (Long) group[6]));
+                    existing.setMaxAmountMinor(Math.max(existing.getMaxAmountMinor(), (Long) group[7]));
+                    continue;
+                }
+                PaymentDailyRollup rollup = new PaymentDailyRollup();
+                rollup.setRollupDate(day);
+                rollup.setMerchantId((String) group[0]);
+                rollup.setCurrency((String) group[1]);
+                rollup.setPaymentMethod((String) group[2]);
+                rollup.setStatus((Payment.PaymentStatus) group[3]);
+                rollup.setPaymentCount((Long) group[4]);
+                rollup.setAmountMinor((Long) group[5]);
+                rollup.setMinAmountMinor((Long) group[6]);
+                rollup.setMaxAmountMinor((Long) group[7]);
+                rollup.setComputedAt(computedAt);
+                rollups.put(key, rollup);
+            }
+            rollupRepository.deleteByRollupDate(day);
+            rollupRepository.saveAll(rollups.values());
+        });
+    }
+    
+    private PaymentRollupWatermark lockWatermark() {
+        return watermarkRepository.findForUpdate(WATERMARK)
+                .orElseThrow(() -> new IllegalStateException("Rollup watermark " + WATERMARK + " is missing"));
+    }
+    
+    private void createWatermarkIfMissing() {
+        if (watermarkRepository.existsById(WATERMARK)) {
+            return;
+        }
+        try {
+            watermarkRepository.saveAndFlush(new PaymentRollupWatermark(WATERMARK));
+        } catch (DataIntegrityViolationException e) {
+            // Another node created it first
+        }
+    }
+    
+    private LocalDate firstDay() {
+        LocalDateTime earliest = paymentRepository.findEarliestCreatedAt();
+        LocalDateTime archived = archiveService.findEarliestCreatedAt();
+        if (earliest == null || (archived != null && archived.isBefore(earliest))) {
+            earliest = archived;
+        }
+        return earliest == null ? null : earliest.toLocalDate();
+    }
+}
@@ -0,0 +1,248 @@
+package com.payment.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.payment.entity.Payment;
+import com.payment.repository.PaymentRepository;
+import com.payment.util.Money;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * In-memory payment counters behind /stats/dashboard.
+ *
+ * Every status transition made through PaymentService moves one count between striped
+ * LongAdders, and successful amounts are kept in per-minute buckets (by payment creation
+ * time) covering the last 30 days, so the dashboard never touches the database. Amounts
+ * are held in minor units with one ring of buckets per currency, so each currency keeps
+ * its own exponent.
+ *
+ * Counters are seeded from the database at startup and rebuilt on a schedule to correct
+ * drift from writes made outside PaymentService or transitions that committed while a
+ * rebuild query was running. The rebuild reads one aggregated row per currency and minute
+ * rather than every payment in the window. Updates made inside a transaction are applied after commit.
+ */
+@Component
+public class PaymentStatsRegistry {
+    
+    static final int WINDOW_DAYS = 30;
+    private static final int BUCKETS = WINDOW_DAYS * 24 * 60;
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    
+    @Autowired
+    private PaymentRepository paymentRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private volatile Counters counters = new Counters();
+    private volatile LocalDateTime lastReconciledAt;
+    private Counter driftCounter;
+    
+    @PostConstruct
+    void init() {
+        driftCounter = Counter.builder("payment.stats.reconcile.drift")
+                .description("Payments by which the in-memory counters differed from the database at reconciliation")
+                .register(meterRegistry);
+        counters = load();
+        lastReconciledAt = LocalDateTime.now();
+    }
+    
+    /**
+     * Count a newly inserted payment
+     */
+    public void recordCreated(Payment payment) {
+        Money money = payment.getMoney();
+        recordTransition(null, payment.getStatus(), payment.getCreatedAt(), money == null ? 0 : money.getMinorUnits(),
+                payment.getCurrency());
+    }
+    
+    /**
+     * Move a payment from one status to another
+     *
+     * @param from Previous status, or null for a new payment
+     * @param to New status
+     * @param createdAt Payment creation time, which selects the amount bucket
+     * @param amountMinor Payment amount in minor units of the currency
+     * @param currency Payment currency
+     */
+    public void recordTransition(Payment.PaymentStatus from, Payment.PaymentStatus to, LocalDateTime createdAt,
+                                 long amountMinor, String currency) {
+        if (from == to) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    counters.apply(from, to, createdAt, amountMinor, currency);
+                }
+            });
+        } else {
+            counters.apply(from, to, createdAt, amountMinor, currency);
+        }
+    }
+    
+    public long getCount(Payment.PaymentStatus status) {
+        return counters.counts.get(status).sum();
+    }
+    
+    /**
+     * Sum of successful payments created in the last 30 days, to the minute, across currencies
+     */
+    public BigDecimal getSuccessAmountLast30Days() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal amount : getSuccessAmountsLast30DaysByCurrency().values()) {
+            total = total.add(amount);
+        }
+        return total;
+    }
+    
+    /**
+     * Sum of successful payments created in the last 30 days, to the minute, per currency
+     */
+    public Map<String, BigDecimal> getSuccessAmountsLast30DaysByCurrency() {
+        long now = currentMinute();
+        Map<String, BigDecimal> amounts = new TreeMap<>();
+        counters.amounts.forEach((currency, ring) ->
+                amounts.put(currency, Money.ofMinor(ring.sum(now), currency).toBigDecimal()));
+        return amounts;
+    }
+    
+    public LocalDateTime getLastReconciledAt() {
+        return lastReconciledAt;
+    }
+    
+    /**
+     * Rebuild the counters from the database and swap them in
+     */
+    @Scheduled(fixedDelayString = "${payment.stats.reconcile-interval-ms:300000}",
+               initialDelayString = "${payment.stats.reconcile-interval-ms:300000}")
+    void reconcile() {
+        Counters fresh = load();
+        Counters stale = counters;
+        long drift = 0;
+        for (Payment.PaymentStatus status : Payment.PaymentStatus.values()) {
+            drift += Math.abs(fresh.counts.get(status).sum() - stale.counts.get(status).sum());
+        }
+        counters = fresh;
+        lastReconciledAt = LocalDateTime.now();
+        if (drift > 0) {
+            driftCounter.increment(drift);
+            System.out.println("Payment stats reconciled; counters were off by " + drift + " payments");
+        }
+    }
+    
+    private Counters load() {
+        Counters loaded = new Counters();
+        for (Object[] row : paymentRepository.countGroupedByStatus()) {
+            loaded.counts.get((Payment.PaymentStatus) row[0]).add((Long) row[1]);
+        }
+        LocalDateTime since = LocalDateTime.now().minusDays(WINDOW_DAYS);
+        List<Object[]> amounts = paymentRepository.sumSuccessAmountsByCurrencyAndMinuteSince(since);
+        long now = currentMinute();
+        for (Object[] row : amounts) {
+            String currency = (String) row[0];
+            LocalDateTime minute = LocalDateTime.of(((Number) row[1]).intValue(), ((Number) row[2]).intValue(),
+                    ((Number) row[3]).intValue(), ((Number) row[4]).intValue(), ((Number) row[5]).intValue());
+            loaded.addAmount(currency, minuteOf(minute), (Long) row[6], now);
+        }
+        return loaded;
+    }
+    
+    private static long currentMinute() {
+        return System.currentTimeMillis() / MINUTE_MILLIS;
+    }
+    
+    private static long minuteOf(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() / MINUTE_MILLIS;
+    }
+    
+    /**
+     * One generation of counters; replaced wholesale on reconciliation
+     */
+    private static final class Counters {
+        private final Map<Payment.PaymentStatus, LongAdder> counts = new EnumMap<>(Payment.PaymentStatus.class);
+        private final Map<String, MinuteRing> amounts = new ConcurrentHashMap<>();
+        
+        private Counters() {
+            for (Payment.PaymentStatus status : Payment.PaymentStatus.values()) {
+                counts.put(status, new LongAdder());
+            }
+        }
+        
+        private void apply(Payment.PaymentStatus from, Payment.PaymentStatus to, LocalDateTime createdAt,
+                           long amountMinor, String currency) {
+            if (from != null) {
+                counts.get(from).decrement();
+            }
+            counts.get(to).increment();
+            if (createdAt != null && currency != null
+                    && (from == Payment.PaymentStatus.SUCCESS || to == Payment.PaymentStatus.SUCCESS)) {
+                addAmount(currency, minuteOf(createdAt), to == Payment.PaymentStatus.SUCCESS ? amountMinor : -amountMinor,
+                        currentMinute());
+            }
+        }
+        
+        private void addAmount(String currency, long minute, long minor, long now) {
+            if (minute <= now - BUCKETS || minute > now) {
+                return;
+            }
+            amounts.computeIfAbsent(currency, code -> new MinuteRing()).add(minute, minor);
+        }
+    }
+    
+    /**
+     * Per-minute SUCCESS totals of one currency in minor units; stamps hold the minute each slot belongs to
+     */
+    private static final class MinuteRing {
+        private final AtomicLongArray minuteStamps = new AtomicLongArray(BUCKETS);
+        private final AtomicLongArray minuteAmounts = new AtomicLongArray(BUCKETS);
+        
+        private void add(long minute, long minor) {
+            int slot = (int) (minute % BUCKETS);
+            if (minuteStamps.get(slot) != minute) {
+                synchronized (this) {
+                    // Reclaim the slot from a minute that has left the window
+                    if (minuteStamps.get(slot) < minute) {
+                        minuteAmounts.set(slot, 0);
+                        minuteStamps.set(slot, minute);
+                    } else if (minuteStamps.get(slot) != minute) {
+                        return;
+                    }
+                }
+            }
+            minuteAmounts.addAndGet(slot, minor);
+        }
+        
+        private long sum(long now) {
+            long oldest = now - BUCKETS;
+            long total = 0;
+            for (int slot = 0; slot < BUCKETS; slot++) {
+                long minute = minuteStamps.get(slot);
+                if (minute > oldest && minute <= now) {
+                    total += minuteAmounts.get(slot);
+                }
+            }
+            return total;
+        }
+    }
+}
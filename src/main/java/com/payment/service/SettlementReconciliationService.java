@@ -0,0 +1,309 @@
+package com.payment.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.payment.dto.SettlementReconciliationResult;
+import com.payment.entity.Payment;
+import com.payment.entity.SettlementMismatch;
+import com.payment.repository.PaymentRepository;
+import com.payment.repository.SettlementMismatchRepository;
+import com.payment.util.IdGenerator;
+import com.payment.util.LongIntHashMap;
+import com.payment.util.Money;
+import com.payment.util.SettlementFileScanner;
+
+/**
+ * Reconciles Razorpay settlement reports against the payments table.
+ *
+ * Payments created within the lookback window are bulk-loaded into an index first. The
+ * index maps a 64-bit hash of each payment ID and order ID to a slot in parallel arrays
+ * of amounts (in each payment's currency minor units), currency exponents and statuses. The settlement file is then scanned in parallel chunks by
+ * SettlementFileScanner. Each payment or refund row is looked up by payment_id, then by
+ * order_id, with no per-row allocation unless the row is a mismatch. Mismatches are
+ * stored in settlement_mismatches under a run ID.
+ *
+ * A 64-bit hash collision between two IDs would match a row to the wrong payment. With
+ * ten million rows against ten million payments the odds are a few in a million per
+ * run, so the IDs themselves are not kept to check against.
+ */
+@Service
+public class SettlementReconciliationService {
+    
+    // A settled payment may since have been refunded; it was still captured
+    private static final Set<Payment.PaymentStatus> CAPTURED_STATUSES = EnumSet.of(Payment.PaymentStatus.CAPTURED,
+            Payment.PaymentStatus.SUCCESS, Payment.PaymentStatus.REFUNDED, Payment.PaymentStatus.PARTIALLY_REFUNDED);
+    private static final Set<Payment.PaymentStatus> REFUNDED_STATUSES = EnumSet.of(Payment.PaymentStatus.REFUNDED,
+            Payment.PaymentStatus.PARTIALLY_REFUNDED);
+    private static final int SAVE_BATCH = 1000;
+    
+    @Value("${payment.settlement.lookback-days:60}")
+    private int lookbackDays;
+    
+    @Value("${payment.settlement.chunk-bytes:67108864}")
+    private int chunkBytes;
+    
+    @Value("${payment.settlement.max-mismatches:100000}")
+    private long maxMismatches;
+    
+    @Value("${payment.settlement.inbox-dir:}")
+    private String inboxDir;
+    
+    @Autowired
+    private PaymentRepository paymentRepository;
+    
+    @Autowired
+    private SettlementMismatchRepository mismatchRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    /**
+     * Reconcile one settlement file and store its mismatches
+     *
+     * @throws IOException if the file cannot be read or is not a settlement report
+     */
+    public SettlementReconciliationResult reconcile(Path file) throws IOException {
+        long startedAt = System.currentTimeMillis();
+        String runId = IdGenerator.getDefault().next("SETTLE_");
+        String fileName = file.getFileName().toString();
+        
+        PaymentIndex index = loadIndex(LocalDateTime.now().minusDays(Math.max(1, lookbackDays)));
+        
+        LongAdder matched = new LongAdder();
+        LongAdder missing = new LongAdder();
+        LongAdder amountDrifts = new LongAdder();
+        LongAdder statusDrifts = new LongAdder();
+        LongAdder skipped = new LongAdder();
+        LongAdder malformed = new LongAdder();
+        AtomicLong stored = new AtomicLong();
+        Queue<SettlementMismatch> mismatches = new ConcurrentLinkedQueue<>();
+        LocalDateTime detectedAt = LocalDateTime.now();
+        
+        long rows = new SettlementFileScanner(chunkBytes).scan(file, row -> {
+            SettlementFileScanner.RowType type = row.type();
+            if (type == SettlementFileScanner.RowType.OTHER) {
+                skipped.increment();
+                return;
+            }
+            if (!row.hasPaymentId() && !row.hasOrderId()) {
+                malformed.increment();
+                return;
+            }
+            
+            int slot = index.find(row);
+            // Read the amount in the matched payment's currency, or the row's own when nothing matches
+            long amount = row.amountMinor(slot >= 0 ? index.exponents[slot] : Money.exponent(row.currency()));
+            if (amount == SettlementFileScanner.INVALID_AMOUNT) {
+                malformed.increment();
+                return;
+            }
+            if (slot < 0) {
+                missing.increment();
+                record(mismatches, stored, SettlementMismatch.MismatchType.MISSING_PAYMENT, row, amount, -1, index);
+                return;
+            }
+            Payment.PaymentStatus status = index.status(slot);
+            boolean agrees = true;
+            if (type == SettlementFileScanner.RowType.PAYMENT ? !CAPTURED_STATUSES.contains(status)
+                    : !REFUNDED_STATUSES.contains(status)) {
+                statusDrifts.increment();
+                record(mismatches, stored, SettlementMismatch.MismatchType.STATUS_DRIFT, row, amount, slot, index);
+                agrees = false;
+            }
+            // Refund rows may be partial, so only payment rows are held to the payment amount
+            if (type == SettlementFileScanner.RowType.PAYMENT && amount != index.amounts[slot]) {
+                amountDrifts.increment();
+                record(mismatches, stored, SettlementMismatch.MismatchType.AMOUNT_DRIFT, row, amount, slot, index);
+                agrees = false;
+            }
+            if (agrees) {
+                matched.increment();
+            }
+        });
+        
+        List<SettlementMismatch> batch = new ArrayList<>(SAVE_BATCH);
+        for (SettlementMismatch mismatch : mismatches) {
+            mismatch.setRunId(runId);
+            mismatch.setSettlementFile(fileName);
+            mismatch.setDetectedAt(detectedAt);
+            batch.add(mismatch);
+            if (batch.size() == SAVE_BATCH) {
+                saveBatch(batch);
+            }
+        }
+        saveBatch(batch);
+        
+        SettlementReconciliationResult result = new SettlementReconciliationResult();
+        result.setRunId(runId);
+        result.setSettlementFile(fileName);
+        result.setRows(rows);
+        result.setMatched(matched.sum());
+        result.setMissingPayments(missing.sum());
+        result.setAmountDrifts(amountDrifts.sum());
+        result.setStatusDrifts(statusDrifts.sum());
+        result.setSkippedRows(skipped.sum());
+        result.setMalformedRows(malformed.sum());
+        result.setMismatchesStored(mismatches.size());
+        result.setIndexedPayments(index.size);
+        result.setElapsedMillis(System.currentTimeMillis() - startedAt);
+        
+        System.out.println("Settlement " + fileName + " reconciled as " + runId + ": " + rows + " rows, "
+                + result.getMatched() + " matched, " + result.getMissingPayments() + " missing, "
+                + result.getAmountDrifts() + " amount drifts, " + result.getStatusDrifts() + " status drifts, "
+                + result.getMalformedRows() + " malformed in " + result.getElapsedMillis() + "ms");
+        if (stored.get() > maxMismatches) {
+            System.err.println("Settlement " + runId + ": only the first " + maxMismatches + " of "
+                    + stored.get() + " mismatches were stored");
+        }
+        return result;
+    }
+    
+    /**
+     * Reconcile every .csv in the inbox directory, renaming each to .done (or .failed) afterwards
+     */
+    @Scheduled(cron = "${payment.settlement.cron:0 30 6 * * *}")
+    public synchronized void reconcileInbox() {
+        if (inboxDir == null || inboxDir.isBlank()) {
+            return;
+        }
+        Path inbox = Paths.get(inboxDir);
+        if (!Files.isDirectory(inbox)) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> listing = Files.newDirectoryStream(inbox, "*.csv")) {
+            listing.forEach(files::add);
+        } catch (IOException e) {
+            System.err.println("Cannot list settlement inbox " + inbox + ": " + e.getMessage());
+            return;
+        }
+        files.sort(null);
+        for (Path file : files) {
+            String suffix = ".done";
+            try {
+                reconcile(file);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Settlement reconciliation of " + file + " failed: " + e.getMessage());
+                suffix = ".failed";
+            }
+            try {
+                Files.move(file, file.resolveSibling(file.getFileName() + suffix), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                System.err.println("Cannot rename settlement file " + file + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    private void record(Queue<SettlementMismatch> mismatches, AtomicLong stored, SettlementMismatch.MismatchType type,
+                        SettlementFileScanner.SettlementRow row, long amount, int slot, PaymentIndex index) {
+        if (stored.incrementAndGet() > maxMismatches) {
+            return;
+        }
+        SettlementMismatch mismatch = new SettlementMismatch();
+        mismatch.setType(type);
+        mismatch.setFileOffset(row.getFileOffset());
+        mismatch.setSettlementPaymentId(row.paymentId());
+        mismatch.setSettlementOrderId(row.orderId());
+        mismatch.setSettledAmountMinor(amount);
+        if (slot >= 0) {
+            mismatch.setPaymentRecordId(index.ids[slot]);
+            mismatch.setExpectedAmountMinor(index.amounts[slot]);
+            mismatch.setPaymentStatus(index.status(slot));
+        }
+        mismatches.add(mismatch);
+    }
+    
+    private void saveBatch(List<SettlementMismatch> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> mismatchRepository.saveAll(batch));
+        batch.clear();
+    }
+    
+    private PaymentIndex loadIndex(LocalDateTime since) {
+        PaymentIndex index = new PaymentIndex();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Object[]> rows = paymentRepository.streamSettlementRows(since)) {
+                rows.forEach(row -> index.add((Long) row[0], (String) row[1], (String) row[2],
+                        (Long) row[3], (Payment.PaymentStatus) row[4], (String) row[5]));
+            }
+        });
+        return index;
+    }
+    
+    /**
+     * Payments by ID hash; read-only once loaded, so the scan threads share it without locking
+     */
+    private static final class PaymentIndex {
+        private static final Payment.PaymentStatus[] STATUSES = Payment.PaymentStatus.values();
+        
+        private final LongIntHashMap byPaymentId = new LongIntHashMap(1 << 16);
+        private final LongIntHashMap byOrderId = new LongIntHashMap(1 << 16);
+        private long[] ids = new long[1 << 16];
+        private long[] amounts = new long[1 << 16];
+        private byte[] exponents = new byte[1 << 16];
+        private byte[] statuses = new byte[1 << 16];
+        private int size;
+        
+        private void add(Long id, String paymentId, String orderId, long amountMinor, Payment.PaymentStatus status,
+                         String currency) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                amounts = Arrays.copyOf(amounts, size * 2);
+                exponents = Arrays.copyOf(exponents, size * 2);
+                statuses = Arrays.copyOf(statuses, size * 2);
+            }
+            ids[size] = id;
+            amounts[size] = amountMinor;
+            exponents[size] = (byte) Money.exponent(currency);
+            statuses[size] = (byte) status.ordinal();
+            if (paymentId != null) {
+                byPaymentId.put(SettlementFileScanner.hash(paymentId), size);
+            }
+            if (orderId != null) {
+                byOrderId.put(SettlementFileScanner.hash(orderId), size);
+            }
+            size++;
+        }
+        
+        /**
+         * @return The slot of the row's payment, or -1
+         */
+        private int find(SettlementFileScanner.SettlementRow row) {
+            if (row.hasPaymentId()) {
+                int slot = byPaymentId.get(row.paymentIdHash(), -1);
+                if (slot >= 0) {
+                    return slot;
+                }
+            }
+            return row.hasOrderId() ? byOrderId.get(row.orderIdHash(), -1) : -1;
+        }
+        
+        private Payment.PaymentStatus status(int slot) {
+            return STATUSES[statuses[slot]];
+        }
+    }
+}
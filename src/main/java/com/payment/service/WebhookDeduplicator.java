@@ -0,0 +1,236 @@
+package com.payment.service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.payment.dto.WebhookEvent;
+import com.payment.entity.ProcessedWebhookEvent;
+import com.payment.repository.ProcessedWebhookEventRepository;
+import com.payment.util.BloomFilter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Remembers which webhooks have already been applied so Razorpay redeliveries are
+ * acknowledged without touching the payments table.
+ *
+ * Lookups go through three tiers: a time-windowed set of recently applied keys, a Bloom
+ * filter over every key in the processed_webhook_events table, and finally the table
+ * itself. The Bloom filter answers "never seen" for almost all new events, so the table
+ * is only read for real duplicates and the rare false positive.
+ *
+ * The window is two generations of concurrent sets. Writes go to the current one and
+ * lookups check both; when the current generation is half a window old or full, the
+ * older one is dropped. Memory is therefore bounded by twice the generation size.
+ */
+@Component
+public class WebhookDeduplicator {
+    
+    private static final int SEED_PAGE_SIZE = 10000;
+    // Rough per-entry cost of a ConcurrentHashMap key set node plus the String header
+    private static final int ENTRY_OVERHEAD_BYTES = 80;
+    
+    @Value("${webhook.dedup.window-seconds:3600}")
+    private long windowSeconds;
+    
+    @Value("${webhook.dedup.window-max-entries:100000}")
+    private int windowMaxEntries;
+    
+    @Value("${webhook.dedup.bloom.expected-entries:1000000}")
+    private long bloomExpectedEntries;
+    
+    @Value("${webhook.dedup.bloom.false-positive-rate:0.001}")
+    private double bloomFalsePositiveRate;
+    
+    @Value("${webhook.dedup.retention-days:30}")
+    private int retentionDays;
+    
+    @Autowired
+    private ProcessedWebhookEventRepository processedEventRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private volatile Generation current = new Generation();
+    private volatile Generation previous = new Generation();
+    private volatile BloomFilter bloomFilter;
+    private final AtomicLong rotations = new AtomicLong();
+    
+    private Counter memoryHitCounter;
+    private Counter storeHitCounter;
+    private Counter missCounter;
+    
+    @PostConstruct
+    void init() {
+        // Seed before the webhook consumer starts so replayed events are recognised
+        bloomFilter = loadBloomFilter();
+        
+        memoryHitCounter = Counter.builder("webhook.dedup.lookups").tag("result", "hit").tag("tier", "memory").register(meterRegistry);
+        storeHitCounter = Counter.builder("webhook.dedup.lookups").tag("result", "hit").tag("tier", "store").register(meterRegistry);
+        missCounter = Counter.builder("webhook.dedup.lookups").tag("result", "miss").tag("tier", "none").register(meterRegistry);
+        Gauge.builder("webhook.dedup.hit.ratio", this, WebhookDeduplicator::getHitRatio)
+                .description("Share of webhook lookups that were duplicates")
+                .register(meterRegistry);
+        Gauge.builder("webhook.dedup.window.entries", this, d -> d.current.keys.size() + d.previous.keys.size())
+                .description("Keys held in the in-memory dedup window")
+                .register(meterRegistry);
+        Gauge.builder("webhook.dedup.memory.bytes", this, WebhookDeduplicator::getMemoryBytes)
+                .description("Estimated heap used by the dedup window and Bloom filter")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        FunctionCounter.builder("webhook.dedup.window.rotations", this, d -> d.rotations.get())
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Dedup key for a webhook: the Razorpay event ID when present, otherwise event and payment ID
+     */
+    public static String keyFor(String eventId, String event, String paymentId) {
+        if (eventId != null && !eventId.isEmpty()) {
+            return eventId;
+        }
+        return event + ":" + paymentId;
+    }
+    
+    public static String keyFor(WebhookEvent event) {
+        return keyFor(event.getEventId(), event.getEvent(), event.getPaymentId());
+    }
+    
+    /**
+     * Whether the webhook with this key has already been applied
+     */
+    public boolean isDuplicate(String key) {
+        if (current.keys.contains(key) || previous.keys.contains(key)) {
+            memoryHitCounter.increment();
+            return true;
+        }
+        if (!bloomFilter.mightContain(key)) {
+            missCounter.increment();
+            return false;
+        }
+        if (processedEventRepository.existsById(key)) {
+            storeHitCounter.increment();
+            addToWindow(key);
+            return true;
+        }
+        // Bloom filter false positive
+        missCounter.increment();
+        return false;
+    }
+    
+    /**
+     * Persist the key in the caller's transaction, alongside the payment update it guards
+     */
+    public void recordProcessed(String key, WebhookEvent event) {
+        processedEventRepository.save(new ProcessedWebhookEvent(key, event.getEvent(), event.getPaymentId()));
+    }
+    
+    /**
+     * Make committed keys visible to the in-memory tiers
+     */
+    public void remember(Collection<String> keys) {
+        BloomFilter filter = bloomFilter;
+        for (String key : keys) {
+            filter.add(key);
+            addToWindow(key);
+        }
+    }
+    
+    public double getHitRatio() {
+        double hits = memoryHitCounter.count() + storeHitCounter.count();
+        double total = hits + missCounter.count();
+        return total == 0 ? 0 : hits / total;
+    }
+    
+    public long getMemoryBytes() {
+        return current.bytes.get() + previous.bytes.get() + bloomFilter.getSizeInBytes();
+    }
+    
+    /**
+     * Drop persisted keys past the retention period and rebuild the Bloom filter without them
+     */
+    @Scheduled(cron = "${webhook.dedup.purge-cron:0 30 3 * * *}")
+    void purgeExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        Integer deleted = transactionTemplate.execute(status -> processedEventRepository.deleteProcessedBefore(cutoff));
+        if (deleted != null && deleted > 0) {
+            System.out.println("Purged " + deleted + " processed webhook keys older than " + cutoff);
+            BloomFilter rebuilt = loadBloomFilter();
+            // Keys committed while rebuilding are still in the window; carry them over
+            for (Generation generation : List.of(previous, current)) {
+                generation.keys.forEach(rebuilt::add);
+            }
+            bloomFilter = rebuilt;
+        }
+    }
+    
+    private BloomFilter loadBloomFilter() {
+        BloomFilter filter = new BloomFilter(bloomExpectedEntries, bloomFalsePositiveRate);
+        long loaded = 0;
+        String after = "";
+        while (true) {
+            List<String> keys = processedEventRepository.findKeysAfter(after, PageRequest.of(0, SEED_PAGE_SIZE));
+            for (String key : keys) {
+                filter.add(key);
+            }
+            loaded += keys.size();
+            if (keys.size() < SEED_PAGE_SIZE) {
+                break;
+            }
+            after = keys.get(keys.size() - 1);
+        }
+        if (loaded > bloomExpectedEntries) {
+            System.err.println("Webhook dedup Bloom filter holds " + loaded + " keys but is sized for "
+                    + bloomExpectedEntries + "; raise webhook.dedup.bloom.expected-entries");
+        }
+        return filter;
+    }
+    
+    private void addToWindow(String key) {
+        Generation generation = current;
+        long halfWindowNanos = TimeUnit.SECONDS.toNanos(windowSeconds) / 2;
+        if (System.nanoTime() - generation.startedNanos > halfWindowNanos || generation.keys.size() >= windowMaxEntries) {
+            generation = rotate(generation);
+        }
+        if (generation.keys.add(key)) {
+            generation.bytes.addAndGet(ENTRY_OVERHEAD_BYTES + 2L * key.length());
+        }
+    }
+    
+    private synchronized Generation rotate(Generation observed) {
+        if (current == observed) {
+            previous = observed;
+            current = new Generation();
+            rotations.incrementAndGet();
+        }
+        return current;
+    }
+    
+    /**
+     * One half of the dedup window
+     */
+    private static final class Generation {
+        private final Set<String> keys = ConcurrentHashMap.newKeySet();
+        private final AtomicLong bytes = new AtomicLong();
+        private final long startedNanos = System.nanoTime();
+    }
+}
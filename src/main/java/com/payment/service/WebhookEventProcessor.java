@@ -0,0 +1,289 @@
+package com.payment.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import com.payment.dto.WebhookEvent;
+import com.payment.entity.WebhookDeadLetter;
+import com.payment.repository.WebhookDeadLetterRepository;
+import com.payment.util.WebhookPayloadParser;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Applies journaled webhooks to payments.
+ *
+ * A single reader tails the journal in batches; each batch is split by order ID across
+ * the worker pool (so events for one order stay in order) and every partition is applied
+ * in one transaction. The batch is acknowledged only after all partitions finished, so a
+ * crash replays it on the next start. Entries before the ack are never re-applied.
+ *
+ * When a partition fails because the database or a connection is unavailable, the batch
+ * stays unacknowledged and is retried with exponential backoff; partitions that already
+ * landed are skipped on the replay by the deduplicator. Any other failure is narrowed
+ * down event by event, and only an event that is rejected on its own (or does not parse)
+ * is moved to the dead-letter table.
+ */
+@Component
+public class WebhookEventProcessor {
+    
+    @Value("${webhook.consumer.workers:4}")
+    private int workers;
+    
+    @Value("${webhook.consumer.batch-size:200}")
+    private int batchSize;
+    
+    @Value("${webhook.consumer.retry-delay-ms:1000}")
+    private long retryDelayMillis;
+    
+    @Value("${webhook.consumer.retry-max-delay-ms:60000}")
+    private long maxRetryDelayMillis;
+    
+    @Autowired
+    private WebhookJournal journal;
+    
+    @Autowired
+    private PaymentService paymentService;
+    
+    @Autowired
+    private WebhookDeadLetterRepository deadLetterRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // Journal positions of entries dead-lettered since the last ack, so a replayed batch does not store them twice
+    private final Set<Long> deadLettered = ConcurrentHashMap.newKeySet();
+    
+    private ExecutorService workerPool;
+    private Thread reader;
+    private volatile boolean running;
+    
+    private Counter appliedCounter;
+    private Counter failedCounter;
+    private Counter retriedCounter;
+    private Timer lagTimer;
+    
+    @PostConstruct
+    void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "webhook-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("webhook.journal.backlog.bytes", journal, WebhookJournal::getBacklogBytes)
+                .description("Journaled webhook bytes not yet applied")
+                .register(meterRegistry);
+        appliedCounter = Counter.builder("webhook.events.applied").register(meterRegistry);
+        failedCounter = Counter.builder("webhook.events.failed")
+                .description("Webhooks moved to the dead-letter table")
+                .register(meterRegistry);
+        retriedCounter = Counter.builder("webhook.batches.retried")
+                .description("Journal batches left unacknowledged after an infrastructure failure")
+                .register(meterRegistry);
+        lagTimer = Timer.builder("webhook.events.lag")
+                .description("Time from journal append until the event was applied")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Start consuming once the application is fully up, replaying anything left unacknowledged
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        reader = new Thread(this::consume, "webhook-journal-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+    
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (reader != null) {
+            reader.interrupt();
+            reader.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        workerPool.shutdown();
+        workerPool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+    
+    private void consume() {
+        long position = journal.getAckedPosition();
+        long delay = retryDelayMillis;
+        while (running) {
+            try {
+                List<WebhookJournal.JournalEntry> batch = journal.read(position, batchSize);
+                if (batch.isEmpty()) {
+                    journal.awaitData(position, 500);
+                    continue;
+                }
+                applyBatch(batch);
+                position = journal.acknowledge(batch.get(batch.size() - 1).getEndPosition());
+                deadLettered.clear();
+                delay = retryDelayMillis;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // Leave the batch unacknowledged and retry it, backing off while the outage lasts
+                Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+                retriedCounter.increment();
+                System.err.println("Webhook batch left in the journal, retrying in " + delay + " ms: " + cause.getMessage());
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                delay = Math.min(delay * 2, Math.max(retryDelayMillis, maxRetryDelayMillis));
+            }
+        }
+    }
+    
+    private void applyBatch(List<WebhookJournal.JournalEntry> batch) throws Exception {
+        List<List<WebhookEvent>> partitions = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        Map<WebhookEvent, WebhookJournal.JournalEntry> sources = new IdentityHashMap<>();
+        for (WebhookJournal.JournalEntry entry : batch) {
+            WebhookEvent event;
+            try {
+                event = parse(entry);
+            } catch (Exception e) {
+                deadLetter(entry, null, e);
+                continue;
+            }
+            sources.put(event, entry);
+            int partition = Math.floorMod(event.getOrderId().hashCode(), workers);
+            partitions.get(partition).add(event);
+        }
+        
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (List<WebhookEvent> partition : partitions) {
+            if (!partition.isEmpty()) {
+                futures.add(workerPool.submit(() -> applyPartition(partition, sources)));
+            }
+        }
+        // Wait for every partition before failing, so none is still running when the batch is replayed
+        Exception failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    private void applyPartition(List<WebhookEvent> events, Map<WebhookEvent, WebhookJournal.JournalEntry> sources) {
+        try {
+            paymentService.applyWebhookEvents(events);
+            recordApplied(events);
+            return;
+        } catch (RuntimeException e) {
+            if (isInfrastructureFailure(e)) {
+                throw e;
+            }
+            System.err.println("Failed to apply " + events.size() + " webhook events, isolating: " + e.getMessage());
+        }
+        // Something in the partition was rejected; apply one by one so only that event is set aside
+        for (WebhookEvent event : events) {
+            try {
+                paymentService.applyWebhookEvents(List.of(event));
+                recordApplied(List.of(event));
+            } catch (RuntimeException e) {
+                if (isInfrastructureFailure(e)) {
+                    throw e;
+                }
+                deadLetter(sources.get(event), event, e);
+            }
+        }
+    }
+    
+    private void deadLetter(WebhookJournal.JournalEntry entry, WebhookEvent event, Exception error) {
+        if (deadLettered.contains(entry.getEndPosition())) {
+            return;
+        }
+        String message = error.getClass().getSimpleName() + ": " + error.getMessage();
+        deadLetterRepository.save(new WebhookDeadLetter(entry.getSequence(), entry.getEventId(),
+                event == null ? null : event.getEvent(), event == null ? null : event.getOrderId(),
+                new String(entry.getPayload(), StandardCharsets.UTF_8),
+                message.length() > 500 ? message.substring(0, 500) : message,
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.getReceivedAt()), ZoneId.systemDefault())));
+        deadLettered.add(entry.getEndPosition());
+        failedCounter.increment();
+        System.err.println("Dead-lettered webhook #" + entry.getSequence() + ": " + message);
+    }
+    
+    /**
+     * Whether a failure says nothing about the event itself: the database, a connection or the
+     * transaction manager was unavailable. Such events are retried, never dead-lettered.
+     */
+    static boolean isInfrastructureFailure(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof TransientDataAccessException
+                    || cause instanceof RecoverableDataAccessException
+                    || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof CannotCreateTransactionException
+                    || cause instanceof SQLTransientException
+                    || cause instanceof SQLRecoverableException
+                    || cause instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void recordApplied(List<WebhookEvent> events) {
+        long now = System.currentTimeMillis();
+        for (WebhookEvent event : events) {
+            lagTimer.record(now - event.getReceivedAt(), TimeUnit.MILLISECONDS);
+        }
+        appliedCounter.increment(events.size());
+    }
+    
+    private WebhookEvent parse(WebhookJournal.JournalEntry entry) throws IOException {
+        WebhookEvent event = WebhookPayloadParser.parse(entry.getPayload());
+        event.setEventId(entry.getEventId());
+        event.setReceivedAt(entry.getReceivedAt());
+        return event;
+    }
+}
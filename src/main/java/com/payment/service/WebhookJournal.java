@@ -0,0 +1,337 @@
+package com.payment.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Append-only, fsync-batched journal for incoming webhooks.
+ *
+ * Record layout: [int length][long sequence][long receivedAt][short idLength][id bytes][payload][int crc32]
+ * where length covers everything between the length prefix and the checksum.
+ *
+ * Appenders write under a short lock and then share fsyncs: whichever thread gets the
+ * sync lock forces everything written so far, so concurrent webhooks are made durable
+ * by a single force. The consumer tails the file up to the synced position and records
+ * its progress in a separate ack file; on startup everything after the ack is replayed
+ * and a torn record at the tail (crash mid-write) is truncated. Once the consumer has
+ * caught up and the file is large, it is truncated back to empty.
+ */
+@Component
+public class WebhookJournal {
+    
+    private static final String JOURNAL_FILE = "webhooks.journal";
+    private static final String ACK_FILE = "webhooks.ack";
+    private static final int RECORD_OVERHEAD = 4 + 8 + 8 + 2 + 4;
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+    private static final long ACK_MAGIC = 0x5745424b41434b31L;
+    
+    @Value("${webhook.journal.dir:data/webhook-journal}")
+    private String directory;
+    
+    @Value("${webhook.journal.compact-threshold-bytes:67108864}")
+    private long compactThresholdBytes;
+    
+    private FileChannel channel;
+    private FileChannel ackChannel;
+    
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+    private final Object dataMonitor = new Object();
+    
+    // Guarded by writeLock
+    private long writePosition;
+    private long nextSequence;
+    
+    private volatile long syncedPosition;
+    private volatile long ackedPosition;
+    
+    @PostConstruct
+    void open() throws IOException {
+        Path dir = Paths.get(directory);
+        Files.createDirectories(dir);
+        channel = FileChannel.open(dir.resolve(JOURNAL_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ackChannel = FileChannel.open(dir.resolve(ACK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+    }
+    
+    @PreDestroy
+    void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                channel.force(false);
+                channel.close();
+                ackChannel.close();
+            }
+        }
+    }
+    
+    /**
+     * Append a webhook and return once it is durable on disk
+     *
+     * @param eventId Razorpay event ID header (may be null)
+     * @param payload Raw request body
+     * @return The journaled entry
+     * @throws IOException if the entry could not be written or synced
+     */
+    public JournalEntry append(String eventId, byte[] payload) throws IOException {
+        byte[] id = eventId == null ? new byte[0] : eventId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > Short.MAX_VALUE || payload.length + id.length + RECORD_OVERHEAD > MAX_RECORD_BYTES) {
+            throw new IOException("Webhook too large to journal: " + payload.length + " bytes");
+        }
+        long receivedAt = System.currentTimeMillis();
+        long sequence;
+        long end;
+        synchronized (writeLock) {
+            sequence = nextSequence;
+            ByteBuffer record = encode(sequence, receivedAt, id, payload);
+            long position = writePosition;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            nextSequence = sequence + 1;
+            writePosition = position;
+            end = position;
+        }
+        sync(end);
+        synchronized (dataMonitor) {
+            dataMonitor.notifyAll();
+        }
+        return new JournalEntry(sequence, receivedAt, eventId, payload, end);
+    }
+    
+    /**
+     * Read up to maxEntries durable entries starting at a record boundary
+     */
+    public List<JournalEntry> read(long fromPosition, int maxEntries) throws IOException {
+        List<JournalEntry> entries = new ArrayList<>();
+        long limit = syncedPosition;
+        long position = fromPosition;
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        while (position < limit && entries.size() < maxEntries) {
+            lengthBuffer.clear();
+            readFully(lengthBuffer, position);
+            int length = lengthBuffer.getInt(0);
+            ByteBuffer body = ByteBuffer.allocate(length + 4);
+            readFully(body, position + 4);
+            JournalEntry entry = decode(body, length, position + 4 + length + 4);
+            if (entry == null) {
+                throw new IOException("Corrupt webhook journal record at offset " + position);
+            }
+            entries.add(entry);
+            position = entry.getEndPosition();
+        }
+        return entries;
+    }
+    
+    /**
+     * Block until entries beyond the given position are durable, or the timeout elapses
+     */
+    public void awaitData(long position, long timeoutMillis) throws InterruptedException {
+        synchronized (dataMonitor) {
+            if (syncedPosition <= position) {
+                dataMonitor.wait(timeoutMillis);
+            }
+        }
+    }
+    
+    /**
+     * Record that every entry up to position has been applied.
+     *
+     * @return The position the consumer should continue reading from (0 after compaction)
+     */
+    public long acknowledge(long position) throws IOException {
+        writeAck(position);
+        ackedPosition = position;
+        if (position >= compactThresholdBytes) {
+            synchronized (syncLock) {
+                synchronized (writeLock) {
+                    if (writePosition == position) {
+                        // Fully consumed: start over with an empty file
+                        channel.truncate(0);
+                        channel.force(true);
+                        writePosition = 0;
+                        syncedPosition = 0;
+                        writeAck(0);
+                        ackedPosition = 0;
+                        return 0;
+                    }
+                }
+            }
+        }
+        return position;
+    }
+    
+    public long getAckedPosition() {
+        return ackedPosition;
+    }
+    
+    /**
+     * Bytes journaled but not yet acknowledged by the consumer
+     */
+    public long getBacklogBytes() {
+        return Math.max(0, syncedPosition - ackedPosition);
+    }
+    
+    private void sync(long position) throws IOException {
+        if (syncedPosition >= position) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedPosition >= position) {
+                // Another appender's force covered this record
+                return;
+            }
+            long target;
+            synchronized (writeLock) {
+                target = writePosition;
+            }
+            channel.force(false);
+            syncedPosition = target;
+        }
+    }
+    
+    private void recover() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        long lastSequence = -1;
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        while (position + RECORD_OVERHEAD <= size) {
+            lengthBuffer.clear();
+            readFully(lengthBuffer, position);
+            int length = lengthBuffer.getInt(0);
+            if (length < RECORD_OVERHEAD - 8 || length > MAX_RECORD_BYTES || position + 4 + length + 4 > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(length + 4);
+            readFully(body, position + 4);
+            JournalEntry entry = decode(body, length, position + 4 + length + 4);
+            if (entry == null) {
+                break;
+            }
+            lastSequence = entry.getSequence();
+            position = entry.getEndPosition();
+        }
+        if (position < size) {
+            System.err.println("Truncating " + (size - position) + " bytes of incomplete webhook journal data");
+            channel.truncate(position);
+            channel.force(true);
+        }
+        writePosition = position;
+        syncedPosition = position;
+        nextSequence = lastSequence + 1;
+        
+        long acked = readAck();
+        ackedPosition = Math.min(acked, position);
+        if (ackedPosition < position) {
+            System.out.println("Replaying " + (position - ackedPosition) + " bytes of unacknowledged webhooks");
+        }
+    }
+    
+    private ByteBuffer encode(long sequence, long receivedAt, byte[] id, byte[] payload) {
+        int length = 8 + 8 + 2 + id.length + payload.length;
+        ByteBuffer buffer = ByteBuffer.allocate(4 + length + 4);
+        buffer.putInt(length);
+        buffer.putLong(sequence);
+        buffer.putLong(receivedAt);
+        buffer.putShort((short) id.length);
+        buffer.put(id);
+        buffer.put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, length);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+    
+    private JournalEntry decode(ByteBuffer body, int length, long endPosition) {
+        CRC32 crc = new CRC32();
+        crc.update(body.array(), 0, length);
+        if ((int) crc.getValue() != body.getInt(length)) {
+            return null;
+        }
+        body.rewind();
+        long sequence = body.getLong();
+        long receivedAt = body.getLong();
+        int idLength = body.getShort();
+        if (idLength < 0 || 18 + idLength > length) {
+            return null;
+        }
+        String eventId = idLength == 0 ? null : new String(body.array(), 18, idLength, StandardCharsets.UTF_8);
+        byte[] payload = new byte[length - 18 - idLength];
+        System.arraycopy(body.array(), 18 + idLength, payload, 0, payload.length);
+        return new JournalEntry(sequence, receivedAt, eventId, payload, endPosition);
+    }
+    
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of webhook journal at offset " + position);
+            }
+        }
+    }
+    
+    private long readAck() throws IOException {
+        if (ackChannel.size() < 16) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        while (buffer.hasRemaining() && ackChannel.read(buffer, buffer.position()) >= 0) {
+            // keep reading
+        }
+        long position = buffer.getLong(0);
+        // The second word guards against a torn or garbage ack
+        return (position ^ ACK_MAGIC) == buffer.getLong(8) ? position : 0;
+    }
+    
+    private void writeAck(long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(position).putLong(position ^ ACK_MAGIC).flip();
+        while (buffer.hasRemaining()) {
+            ackChannel.write(buffer, buffer.position());
+        }
+        ackChannel.force(false);
+    }
+    
+    /**
+     * A journaled webhook and the file position just past it
+     */
+    public static class JournalEntry {
+        private final long sequence;
+        private final long receivedAt;
+        private final String eventId;
+        private final byte[] payload;
+        private final long endPosition;
+        
+        public JournalEntry(long sequence, long receivedAt, String eventId, byte[] payload, long endPosition) {
+            this.sequence = sequence;
+            this.receivedAt = receivedAt;
+            this.eventId = eventId;
+            this.payload = payload;
+            this.endPosition = endPosition;
+        }
+        
+        public long getSequence() { return sequence; }
+        public long getReceivedAt() { return receivedAt; }
+        public String getEventId() { return eventId; }
+        public byte[] getPayload() { return payload; }
+        public long getEndPosition() { return endPosition; }
+    }
+}
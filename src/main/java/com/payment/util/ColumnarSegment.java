@@ -0,0 +1,267 @@
+package com.payment.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only, memory-mapped view of a segment written by ColumnarSegmentWriter.
+ *
+ * Long and dictionary columns are read in place from the mapping, so scanning them
+ * costs no copies and no heap beyond the dictionaries. String columns are inflated one
+ * chunk at a time on each call and nothing decoded is kept, so an open segment holds no
+ * more heap than its dictionaries whatever its size. The mapping stays valid after the file is replaced or
+ * deleted, so a reader can keep scanning while a newer segment is swapped in.
+ */
+public class ColumnarSegment {
+    
+    public static final long NULL_LONG = Long.MIN_VALUE;
+    
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int rowCount;
+    private final Map<String, Column> columns = new HashMap<>();
+    private final Map<String, Dictionary> dictionaries = new ConcurrentHashMap<>();
+    
+    private ColumnarSegment(Path path, MappedByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.capacity() < 24 || buffer.getLong(0) != ColumnarSegmentWriter.MAGIC
+                || buffer.getLong(buffer.capacity() - 8) != ColumnarSegmentWriter.MAGIC) {
+            throw new IOException("Not a complete columnar segment: " + path);
+        }
+        rowCount = buffer.getInt(8);
+        int columnCount = buffer.getInt(12);
+        ByteBuffer header = buffer.duplicate();
+        header.position(16);
+        for (int i = 0; i < columnCount; i++) {
+            byte[] name = new byte[header.getShort()];
+            header.get(name);
+            byte type = header.get();
+            long offset = header.getLong();
+            int length = header.getInt();
+            header.getInt();
+            if (offset + length > buffer.capacity() - 8) {
+                throw new IOException("Column block past end of segment: " + path);
+            }
+            columns.put(new String(name, StandardCharsets.UTF_8), new Column(type, (int) offset, length));
+        }
+    }
+    
+    /**
+     * Map a segment file; the file can be replaced or deleted afterwards
+     *
+     * @throws IOException if the file cannot be read or is not a complete segment
+     */
+    public static ColumnarSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Segment too large to map: " + path);
+            }
+            return new ColumnarSegment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+    
+    public Path getPath() {
+        return path;
+    }
+    
+    public int getRowCount() {
+        return rowCount;
+    }
+    
+    public boolean hasColumn(String name) {
+        return columns.containsKey(name);
+    }
+    
+    /**
+     * @return A read-only view of the column, positioned at row 0
+     */
+    public LongBuffer longColumn(String name) {
+        Column column = column(name, ColumnarSegmentWriter.TYPE_LONG);
+        return buffer.slice(column.offset, column.length).asLongBuffer();
+    }
+    
+    public Dictionary dictionaryColumn(String name) {
+        return dictionaries.computeIfAbsent(name, key -> {
+            Column column = column(key, ColumnarSegmentWriter.TYPE_DICTIONARY);
+            ByteBuffer block = buffer.slice(column.offset, column.length);
+            String[] values = new String[block.getInt()];
+            for (int i = 0; i < values.length; i++) {
+                byte[] bytes = new byte[block.getShort()];
+                block.get(bytes);
+                values[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return new Dictionary(values, block.slice());
+        });
+    }
+    
+    /**
+     * @return Every value of the column by row, decoded afresh on each call
+     */
+    public String[] stringColumn(String name) {
+        Column column = column(name, ColumnarSegmentWriter.TYPE_STRING);
+        String[] values = new String[rowCount];
+        int chunks = buffer.getInt(column.offset);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            ByteBuffer raw = inflateChunk(name, column, chunk);
+            for (int row = chunk * ColumnarSegmentWriter.STRING_CHUNK_ROWS; raw.hasRemaining(); row++) {
+                values[row] = readString(raw);
+            }
+        }
+        return values;
+    }
+    
+    /**
+     * @return One value of a string column, inflating only the chunk that holds it
+     */
+    public String stringValue(String name, int row) {
+        Column column = column(name, ColumnarSegmentWriter.TYPE_STRING);
+        ByteBuffer raw = inflateChunk(name, column, row / ColumnarSegmentWriter.STRING_CHUNK_ROWS);
+        for (int i = row % ColumnarSegmentWriter.STRING_CHUNK_ROWS; i > 0; i--) {
+            int length = raw.getInt();
+            raw.position(raw.position() + Math.max(length, 0));
+        }
+        return readString(raw);
+    }
+    
+    /**
+     * Look a value up through the hash index of a column added with addIndexedStringColumn
+     *
+     * @return The first row holding the value, or -1 if none does
+     */
+    public int findRow(String name, String value) {
+        LongBuffer index = longColumn(name + ColumnarSegmentWriter.INDEX_SUFFIX);
+        int hash = value.hashCode();
+        long key = (long) hash << 32;
+        int low = 0;
+        int high = index.limit();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (index.get(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < index.limit() && (int) (index.get(i) >> 32) == hash; i++) {
+            int row = (int) index.get(i);
+            if (value.equals(stringValue(name, row))) {
+                return row;
+            }
+        }
+        return -1;
+    }
+    
+    private ByteBuffer inflateChunk(String name, Column column, int chunk) {
+        int entry = column.offset + 4 + chunk * 12;
+        int offset = buffer.getInt(entry);
+        int length = buffer.getInt(entry + 4);
+        ByteBuffer raw = ByteBuffer.allocate(buffer.getInt(entry + 8));
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(buffer.slice(column.offset + offset, length));
+            while (raw.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(raw) == 0 && inflater.needsInput()) {
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt string column " + name + " in " + path, e);
+        } finally {
+            inflater.end();
+        }
+        if (raw.hasRemaining()) {
+            throw new IllegalStateException("Truncated string column " + name + " in " + path);
+        }
+        return raw.flip();
+    }
+    
+    private static String readString(ByteBuffer raw) {
+        int length = raw.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(raw.array(), raw.position(), length, StandardCharsets.UTF_8);
+        raw.position(raw.position() + length);
+        return value;
+    }
+    
+    private Column column(String name, byte type) {
+        Column column = columns.get(name);
+        if (column == null || column.type != type) {
+            throw new IllegalArgumentException("No column " + name + " of type " + type + " in " + path);
+        }
+        return column;
+    }
+    
+    /**
+     * Distinct values of a dictionary column plus the per-row codes, read from the mapping
+     */
+    public static final class Dictionary {
+        private final String[] values;
+        private final ByteBuffer codes;
+        
+        private Dictionary(String[] values, ByteBuffer codes) {
+            this.values = values;
+            this.codes = codes;
+        }
+        
+        /**
+         * @return The row's code, or -1 for null
+         */
+        public int code(int row) {
+            return codes.getShort(row * 2);
+        }
+        
+        public String get(int row) {
+            int code = code(row);
+            return code < 0 ? null : values[code];
+        }
+        
+        /**
+         * @return Number of distinct non-null values; codes run from 0 to size() - 1
+         */
+        public int size() {
+            return values.length;
+        }
+        
+        public String value(int code) {
+            return values[code];
+        }
+        
+        /**
+         * @return The code of the value, or -1 if no row has it
+         */
+        public int indexOf(String value) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i].equals(value)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+    
+    private static final class Column {
+        private final byte type;
+        private final int offset;
+        private final int length;
+        
+        private Column(byte type, int offset, int length) {
+            this.type = type;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.payment.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes an immutable column-oriented segment file, read back with ColumnarSegment.
+ *
+ * The file is a header (magic, row count and a directory of columns) followed by one
+ * block per column, each starting on an 8-byte boundary, and the magic again as a
+ * trailer. Long columns are stored raw so readers can map them straight into a
+ * LongBuffer; dictionary columns store each distinct value once plus a 2-byte code per
+ * row; string columns are length-prefixed UTF-8, deflated in chunks of 256 rows behind
+ * a table of chunk offsets, so one value can be read without inflating the column.
+ *
+ * The file is written next to the target, synced and moved into place, so readers only
+ * ever see complete segments; syncDirectory makes the move itself durable.
+ */
+public class ColumnarSegmentWriter {
+    
+    static final long MAGIC = 0x5041595345473032L;
+    static final byte TYPE_LONG = 1;
+    static final byte TYPE_DICTIONARY = 2;
+    static final byte TYPE_STRING = 3;
+    static final short NULL_CODE = -1;
+    static final int STRING_CHUNK_ROWS = 256;
+    static final String INDEX_SUFFIX = ".index";
+    
+    private final int rowCount;
+    private final Map<String, Block> columns = new LinkedHashMap<>();
+    
+    public ColumnarSegmentWriter(int rowCount) {
+        this.rowCount = rowCount;
+    }
+    
+    /**
+     * Add a column of longs; use ColumnarSegment.NULL_LONG for missing values
+     */
+    public ColumnarSegmentWriter addLongColumn(String name, long[] values) {
+        checkLength(name, values.length);
+        ByteBuffer block = ByteBuffer.allocate(values.length * 8);
+        block.asLongBuffer().put(values);
+        return add(name, new Block(TYPE_LONG, block.array(), block.capacity()));
+    }
+    
+    /**
+     * Add a low-cardinality string column (at most 32767 distinct values); nulls are allowed
+     */
+    public ColumnarSegmentWriter addDictionaryColumn(String name, String[] values) {
+        checkLength(name, values.length);
+        Map<String, Short> codes = new HashMap<>();
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream();
+        short[] rows = new short[values.length];
+        try (DataOutputStream out = new DataOutputStream(dictionary)) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null) {
+                    rows[i] = NULL_CODE;
+                    continue;
+                }
+                Short code = codes.get(values[i]);
+                if (code == null) {
+                    if (codes.size() == Short.MAX_VALUE) {
+                        throw new IllegalArgumentException("Too many distinct values for dictionary column " + name);
+                    }
+                    code = (short) codes.size();
+                    codes.put(values[i], code);
+                    byte[] bytes = values[i].getBytes(StandardCharsets.UTF_8);
+                    out.writeShort(bytes.length);
+                    out.write(bytes);
+                }
+                rows[i] = code;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        
+        ByteBuffer block = ByteBuffer.allocate(4 + dictionary.size() + rows.length * 2);
+        block.putInt(codes.size());
+        block.put(dictionary.toByteArray());
+        for (short code : rows) {
+            block.putShort(code);
+        }
+        return add(name, new Block(TYPE_DICTIONARY, block.array(), block.capacity()));
+    }
+    
+    /**
+     * Add a free-text string column; nulls are allowed
+     */
+    public ColumnarSegmentWriter addStringColumn(String name, String[] values) {
+        checkLength(name, values.length);
+        int chunks = (values.length + STRING_CHUNK_ROWS - 1) / STRING_CHUNK_ROWS;
+        ByteBuffer table = ByteBuffer.allocate(4 + chunks * 12);
+        table.putInt(chunks);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        int largestChunk = 0;
+        Deflater deflater = new Deflater();
+        try {
+            byte[] buffer = new byte[8192];
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                int from = chunk * STRING_CHUNK_ROWS;
+                byte[] input = encodeStrings(values, from, Math.min(values.length, from + STRING_CHUNK_ROWS));
+                deflater.reset();
+                deflater.setInput(input);
+                deflater.finish();
+                int start = data.size();
+                while (!deflater.finished()) {
+                    data.write(buffer, 0, deflater.deflate(buffer));
+                }
+                table.putInt(table.capacity() + start);
+                table.putInt(data.size() - start);
+                table.putInt(input.length);
+                largestChunk = Math.max(largestChunk, input.length);
+            }
+        } finally {
+            deflater.end();
+        }
+        
+        ByteArrayOutputStream block = new ByteArrayOutputStream(table.capacity() + data.size());
+        block.write(table.array(), 0, table.capacity());
+        block.write(data.toByteArray(), 0, data.size());
+        return add(name, new Block(TYPE_STRING, block.toByteArray(), largestChunk));
+    }
+    
+    /**
+     * Add a string column plus a sorted hash index over it, so ColumnarSegment.findRow can
+     * look a value up through the mapping instead of an index held on the heap
+     */
+    public ColumnarSegmentWriter addIndexedStringColumn(String name, String[] values) {
+        addStringColumn(name, values);
+        long[] index = new long[values.length];
+        for (int row = 0; row < values.length; row++) {
+            int hash = values[row] == null ? 0 : values[row].hashCode();
+            index[row] = ((long) hash << 32) | row;
+        }
+        Arrays.sort(index);
+        return addLongColumn(name + INDEX_SUFFIX, index);
+    }
+    
+    /**
+     * Write the segment to a temporary file, sync it, and atomically move it to the target
+     */
+    public void writeTo(Path target) throws IOException {
+        int headerSize = 8 + 4 + 4;
+        for (String name : columns.keySet()) {
+            headerSize += 2 + name.getBytes(StandardCharsets.UTF_8).length + 1 + 8 + 4 + 4;
+        }
+        
+        ByteBuffer header = ByteBuffer.allocate(headerSize);
+        header.putLong(MAGIC);
+        header.putInt(rowCount);
+        header.putInt(columns.size());
+        long offset = align(headerSize);
+        for (Map.Entry<String, Block> column : columns.entrySet()) {
+            byte[] name = column.getKey().getBytes(StandardCharsets.UTF_8);
+            Block block = column.getValue();
+            header.putShort((short) name.length);
+            header.put(name);
+            header.put(block.type);
+            header.putLong(offset);
+            header.putInt(block.data.length);
+            header.putInt(block.rawLength);
+            offset = align(offset + block.data.length);
+        }
+        header.flip();
+        
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = writeFully(channel, header, 0);
+            for (Block block : columns.values()) {
+                position = writeFully(channel, ByteBuffer.wrap(block.data), align(position));
+            }
+            writeFully(channel, ByteBuffer.allocate(8).putLong(0, MAGIC), align(position));
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    /**
+     * Sync a directory so renames and deletes of the files in it survive a crash
+     */
+    public static void syncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+    
+    private ColumnarSegmentWriter add(String name, Block block) {
+        if (columns.putIfAbsent(name, block) != null) {
+            throw new IllegalArgumentException("Duplicate column " + name);
+        }
+        return this;
+    }
+    
+    private static byte[] encodeStrings(String[] values, int from, int to) {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(raw)) {
+            for (int i = from; i < to; i++) {
+                if (values[i] == null) {
+                    out.writeInt(-1);
+                } else {
+                    byte[] bytes = values[i].getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return raw.toByteArray();
+    }
+    
+    private void checkLength(String name, int length) {
+        if (length != rowCount) {
+            throw new IllegalArgumentException("Column " + name + " has " + length + " values, expected " + rowCount);
+        }
+    }
+    
+    private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return position;
+    }
+    
+    static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+    
+    private static final class Block {
+        private final byte type;
+        private final byte[] data;
+        private final int rawLength;
+        
+        private Block(byte type, byte[] data, int rawLength) {
+            this.type = type;
+            this.data = data;
+            this.rawLength = rawLength;
+        }
+    }
+}
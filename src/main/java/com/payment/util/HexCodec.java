@@ -0,0 +1,73 @@
+package com.payment.util;
+
+/**
+ * Lookup-table based hex encoding used by the signature code paths.
+ * Encoding allocates only the resulting string and comparison decodes the
+ * provided hex in place, so neither path creates per-byte garbage.
+ */
+public class HexCodec {
+    
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    
+    // Maps an ASCII character to its nibble value, or -1 when it is not a hex digit
+    private static final byte[] NIBBLES = new byte[128];
+    
+    static {
+        java.util.Arrays.fill(NIBBLES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            NIBBLES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            NIBBLES['a' + i] = (byte) (10 + i);
+            NIBBLES['A' + i] = (byte) (10 + i);
+        }
+    }
+    
+    public static String encode(byte[] bytes) {
+        return encode(bytes, 0, bytes.length);
+    }
+    
+    public static String encode(byte[] bytes, int offset, int length) {
+        char[] chars = new char[length << 1];
+        for (int i = 0; i < length; i++) {
+            int b = bytes[offset + i] & 0xff;
+            chars[i << 1] = HEX_DIGITS[b >>> 4];
+            chars[(i << 1) + 1] = HEX_DIGITS[b & 0x0f];
+        }
+        return new String(chars);
+    }
+    
+    /**
+     * Compare raw bytes against a hex string without building the expected string.
+     * Runs in time that depends only on the lengths, never on where the first
+     * differing byte is, so it is safe for comparing signatures.
+     *
+     * @param expected Raw expected bytes
+     * @param offset Offset into expected
+     * @param length Number of bytes to compare
+     * @param hex Provided hex string (case-insensitive)
+     * @return true if hex decodes to exactly the expected bytes
+     */
+    public static boolean constantTimeEquals(byte[] expected, int offset, int length, CharSequence hex) {
+        if (hex == null || hex.length() != length << 1) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < length; i++) {
+            int hi = nibble(hex.charAt(i << 1));
+            int lo = nibble(hex.charAt((i << 1) + 1));
+            // An invalid digit yields -1, which sets bits outside the low byte
+            diff |= (hi | lo) & ~0x0f;
+            diff |= ((hi << 4) | (lo & 0x0f)) ^ (expected[offset + i] & 0xff);
+        }
+        return diff == 0;
+    }
+    
+    public static boolean constantTimeEquals(byte[] expected, CharSequence hex) {
+        return constantTimeEquals(expected, 0, expected.length, hex);
+    }
+    
+    private static int nibble(char c) {
+        return c < 128 ? NIBBLES[c] : -1;
+    }
+}
@@ -0,0 +1,151 @@
+package com.payment.util;
+
+import java.net.InetAddress;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free, time-ordered 63-bit IDs in the Snowflake layout:
+ * 41 bits of milliseconds since 2024-01-01 UTC, 10 bits of node ID and a 12-bit sequence.
+ *
+ * Timestamp and sequence share one AtomicLong, so generation is a single CAS. When the
+ * sequence for the current millisecond is exhausted, or the clock steps backwards, the
+ * generator keeps counting into the next millisecond instead of waiting, which keeps IDs
+ * unique and monotonic per node.
+ *
+ * String form is the ID in Crockford base32, fixed at 13 characters after the prefix, so
+ * string order matches numeric order and inserts land at the right edge of the index.
+ *
+ * Two nodes sharing a node ID can issue the same ID, so in the application IdGeneratorConfig
+ * installs the default generator from payment.node-id (PAYMENT_NODE_ID) and refuses to start
+ * without one outside the dev and test profiles. Used without Spring, the default reads the
+ * payment.node-id system property, then the PAYMENT_NODE_ID environment variable, and falls
+ * back to a hash of the host name.
+ */
+public class IdGenerator {
+    
+    static final long EPOCH_MILLIS = 1704067200000L;
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    static final int ENCODED_LENGTH = 13;
+    
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final char[] CROCKFORD = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    
+    private static volatile IdGenerator defaultGenerator;
+    
+    private final long node;
+    // (milliseconds since epoch << SEQUENCE_BITS) | sequence of the last issued ID
+    private final AtomicLong state = new AtomicLong();
+    
+    public IdGenerator(long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.node = nodeId;
+    }
+    
+    /**
+     * Process-wide generator used by PaymentUtils and the services
+     */
+    public static IdGenerator getDefault() {
+        IdGenerator generator = defaultGenerator;
+        if (generator == null) {
+            synchronized (IdGenerator.class) {
+                if (defaultGenerator == null) {
+                    defaultGenerator = new IdGenerator(resolveNodeId());
+                }
+                generator = defaultGenerator;
+            }
+        }
+        return generator;
+    }
+    
+    /**
+     * Replace the process-wide generator; called once at startup, before any ID is issued
+     */
+    public static synchronized void setDefault(IdGenerator generator) {
+        defaultGenerator = generator;
+    }
+    
+    public long nextId() {
+        long last;
+        long next;
+        do {
+            last = state.get();
+            long now = System.currentTimeMillis() - EPOCH_MILLIS;
+            next = now > (last >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : last + 1;
+        } while (!state.compareAndSet(last, next));
+        long millis = next >>> SEQUENCE_BITS;
+        return (millis << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+    }
+    
+    /**
+     * Next ID rendered as prefix followed by 13 Crockford base32 characters
+     */
+    public String next(String prefix) {
+        return encode(prefix, nextId());
+    }
+    
+    public static String encode(String prefix, long id) {
+        int prefixLength = prefix.length();
+        char[] chars = new char[prefixLength + ENCODED_LENGTH];
+        prefix.getChars(0, prefixLength, chars, 0);
+        for (int i = chars.length - 1; i >= prefixLength; i--) {
+            chars[i] = CROCKFORD[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+    
+    /**
+     * Wall-clock time encoded in an ID, in epoch milliseconds
+     */
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+    
+    public long getNodeId() {
+        return node;
+    }
+    
+    /**
+     * Parse a configured node ID
+     *
+     * @throws IllegalStateException naming the setting if the value is not an integer in range
+     */
+    public static long parseNodeId(String configured) {
+        try {
+            long nodeId = Long.parseLong(configured.trim());
+            if (nodeId >= 0 && nodeId <= MAX_NODE_ID) {
+                return nodeId;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below together with out-of-range values
+        }
+        throw new IllegalStateException("payment.node-id (PAYMENT_NODE_ID) must be an integer between 0 and "
+                + MAX_NODE_ID + ", got '" + configured + "'");
+    }
+    
+    /**
+     * Node ID derived from the host name; distinct hosts can collide, so only for single-node use
+     */
+    public static long hostNodeId() {
+        try {
+            return InetAddress.getLocalHost().getHostName().hashCode() & MAX_NODE_ID;
+        } catch (Exception e) {
+            long random = ThreadLocalRandom.current().nextLong(MAX_NODE_ID + 1);
+            System.err.println("Could not resolve host name for ID generation, using random node " + random);
+            return random;
+        }
+    }
+    
+    private static long resolveNodeId() {
+        String configured = System.getProperty("payment.node-id", System.getenv("PAYMENT_NODE_ID"));
+        if (configured != null && !configured.isBlank()) {
+            return parseNodeId(configured);
+        }
+        return hostNodeId();
+    }
+}
@@ -0,0 +1,221 @@
+package com.payment.util;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import jakarta.persistence.Embeddable;
+
+/**
+ * Immutable amount of money held as a long count of minor units plus an ISO 4217 code.
+ *
+ * The number of minor units per major unit comes from the currency (JPY has none, INR
+ * and USD have two, KWD has three) rather than being fixed at 100. Arithmetic is exact
+ * long arithmetic and throws on overflow; mixing currencies throws
+ * IllegalArgumentException. Serialized to JSON as {"minor": 10050, "currency": "INR"}.
+ *
+ * Also a JPA embeddable with the attributes minorUnits and currency; an entity maps them
+ * onto its own columns with @AttributeOverride, as Payment does.
+ */
+@Embeddable
+@JsonSerialize(using = Money.Serializer.class)
+@JsonDeserialize(using = Money.Deserializer.class)
+public final class Money implements Comparable<Money> {
+    
+    private static final int DEFAULT_EXPONENT = 2;
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L};
+    private static final Map<String, Integer> EXPONENTS = new ConcurrentHashMap<>();
+    
+    // Not final only so that JPA can populate an embedded Money; never changed after construction
+    private long minorUnits;
+    private String currency;
+    
+    // For JPA
+    protected Money() {
+    }
+    
+    private Money(long minorUnits, String currency) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+    
+    public static Money ofMinor(long minorUnits, String currency) {
+        return new Money(minorUnits, Objects.requireNonNull(currency, "currency"));
+    }
+    
+    public static Money zero(String currency) {
+        return ofMinor(0, currency);
+    }
+    
+    /**
+     * Convert a decimal amount, rounding half-up to the currency's minor unit
+     *
+     * @throws ArithmeticException if the amount does not fit in a long of minor units
+     */
+    public static Money of(BigDecimal amount, String currency) {
+        Objects.requireNonNull(amount, "amount");
+        int exponent = exponent(currency);
+        return new Money(amount.setScale(exponent, RoundingMode.HALF_UP).unscaledValue().longValueExact(), currency);
+    }
+    
+    /**
+     * @return Digits after the decimal point for the currency; 2 for null and for codes the JDK does not know
+     */
+    public static int exponent(String currency) {
+        if (currency == null) {
+            return DEFAULT_EXPONENT;
+        }
+        return EXPONENTS.computeIfAbsent(currency, code -> {
+            try {
+                int digits = Currency.getInstance(code).getDefaultFractionDigits();
+                return digits >= 0 && digits < POWERS_OF_TEN.length ? digits : DEFAULT_EXPONENT;
+            } catch (IllegalArgumentException e) {
+                return DEFAULT_EXPONENT;
+            }
+        });
+    }
+    
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+    
+    public String getCurrency() {
+        return currency;
+    }
+    
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+    
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+    
+    public Money times(long factor) {
+        return new Money(Math.multiplyExact(minorUnits, factor), currency);
+    }
+    
+    public Money negate() {
+        return new Money(Math.negateExact(minorUnits), currency);
+    }
+    
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+    
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+    
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, exponent(currency));
+    }
+    
+    /**
+     * @return The currency code and the amount to its minor unit, e.g. "INR 1234.50" or "JPY 500"
+     */
+    public String format() {
+        int exponent = exponent(currency);
+        long unit = POWERS_OF_TEN[exponent];
+        long major = Math.abs(minorUnits / unit);
+        long fraction = Math.abs(minorUnits % unit);
+        
+        StringBuilder out = new StringBuilder(currency.length() + 24).append(currency).append(' ');
+        if (minorUnits < 0) {
+            out.append('-');
+        }
+        out.append(major);
+        if (exponent > 0) {
+            out.append('.');
+            String digits = Long.toString(fraction);
+            for (int i = digits.length(); i < exponent; i++) {
+                out.append('0');
+            }
+            out.append(digits);
+        }
+        return out.toString();
+    }
+    
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money)) {
+            return false;
+        }
+        Money other = (Money) o;
+        return minorUnits == other.minorUnits && currency.equals(other.currency);
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(minorUnits) + currency.hashCode();
+    }
+    
+    @Override
+    public String toString() {
+        return format();
+    }
+    
+    private void requireSameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " vs " + other.currency);
+        }
+    }
+    
+    public static final class Serializer extends StdSerializer<Money> {
+        
+        public Serializer() {
+            super(Money.class);
+        }
+        
+        @Override
+        public void serialize(Money value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeNumberField("minor", value.minorUnits);
+            gen.writeStringField("currency", value.currency);
+            gen.writeEndObject();
+        }
+    }
+    
+    public static final class Deserializer extends StdDeserializer<Money> {
+        
+        public Deserializer() {
+            super(Money.class);
+        }
+        
+        @Override
+        public Money deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonNode node = parser.readValueAsTree();
+            JsonNode minor = node.get("minor");
+            JsonNode currency = node.get("currency");
+            if (minor == null || !minor.canConvertToLong() || currency == null || !currency.isTextual()) {
+                return context.reportInputMismatch(Money.class, "Money needs a numeric minor and a currency code");
+            }
+            return ofMinor(minor.asLong(), currency.asText());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.payment.util;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+import com.payment.exception.PaymentException;
+
+/**
+ * Position in a listing ordered by (createdAt, id), carried between requests as an opaque
+ * URL-safe token.
+ *
+ * The token is the base64url form of the epoch second, nanos and id of the last row on
+ * the previous page; the next page is everything strictly after that row in the listing
+ * order, so it is read straight from the (..., createdAt, id) index however deep it is.
+ */
+public final class PageCursor {
+    
+    private static final int ENCODED_BYTES = Long.BYTES + Integer.BYTES + Long.BYTES;
+    
+    private final LocalDateTime createdAt;
+    private final long id;
+    
+    public PageCursor(LocalDateTime createdAt, long id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public long getId() {
+        return id;
+    }
+    
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODED_BYTES);
+        buffer.putLong(createdAt.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(createdAt.getNano());
+        buffer.putLong(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+    
+    /**
+     * @throws IllegalArgumentException if the token was not produced by encode()
+     */
+    public static PageCursor decode(String token) {
+        byte[] bytes = Base64.getUrlDecoder().decode(token);
+        if (bytes.length != ENCODED_BYTES) {
+            throw new IllegalArgumentException("Malformed page cursor");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long epochSecond = buffer.getLong();
+        int nanos = buffer.getInt();
+        long id = buffer.getLong();
+        if (nanos < 0 || nanos > 999_999_999) {
+            throw new IllegalArgumentException("Malformed page cursor");
+        }
+        return new PageCursor(LocalDateTime.ofEpochSecond(epochSecond, nanos, ZoneOffset.UTC), id);
+    }
+    
+    /**
+     * Decode a cursor taken from a request parameter
+     *
+     * @return The cursor, or null for the first page when no token was given
+     * @throws PaymentException if the token is malformed
+     */
+    public static PageCursor fromRequest(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            return decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new PaymentException("Invalid page cursor");
+        }
+    }
+    
+    /**
+     * @return The requested page size clamped to 1..maxPageSize
+     */
+    public static int pageSize(int limit, int maxPageSize) {
+        return Math.max(1, Math.min(limit, maxPageSize));
+    }
+}
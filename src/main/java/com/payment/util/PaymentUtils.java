@@ -1,7 +1,8 @@
 package com.payment.util;
 
 import java.math.BigDecimal;
-import java.util.UUID;
+import java.security.SecureRandom;
+import java.util.Base64;
 import java.util.regex.Pattern;
 
 import com.payment.exception.PaymentException;
@@ -10,17 +11,27 @@ public class PaymentUtils {
     
     private static final Pattern EMAIL_PATTERN = Pattern.compile("^[A-Za-z0-9+_.-]+@(.+)$");
     private static final Pattern PHONE_PATTERN = Pattern.compile("^[+]?[0-9]{10,15}$");
+    private static final SecureRandom TOKEN_RANDOM = new SecureRandom();
     
     public static String generateOrderId() {
-        return "ORDER_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16).toUpperCase();
+        return IdGenerator.getDefault().next("ORDER_");
     }
     
     public static String generatePaymentId() {
-        return "PAY_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16).toUpperCase();
+        return IdGenerator.getDefault().next("PAY_");
     }
     
     public static String generateTransactionId() {
-        return "TXN_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16).toUpperCase();
+        return IdGenerator.getDefault().next("TXN_");
+    }
+    
+    /**
+     * 128 random bits, URL-safe; order IDs are time-ordered and guessable, these are not
+     */
+    public static String generatePollToken() {
+        byte[] bytes = new byte[16];
+        TOKEN_RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
     }
     
     public static boolean isValidEmail(String email) {
@@ -39,7 +50,7 @@ public class PaymentUtils {
         return currency != null && currency.length() == 3 && currency.matches("[A-Z]{3}");
     }
     
-    public static void validatePaymentRequest(String customerName, String customerEmail, 
+    public static void validatePaymentRequest(String customerName, String customerEmail,
                                            String customerPhone, BigDecimal amount, String currency) {
         if (customerName == null || customerName.trim().isEmpty()) {
             throw new PaymentException("Customer name is required");
@@ -62,12 +73,15 @@ public class PaymentUtils {
         }
     }
     
-    public static BigDecimal convertToSmallestUnit(BigDecimal amount) {
-        return amount.multiply(BigDecimal.valueOf(100)); // Convert to paise for INR
+    /**
+     * Convert to the currency's minor unit (paise for INR, yen for JPY), rounding half-up
+     */
+    public static long convertToSmallestUnit(BigDecimal amount, String currency) {
+        return Money.of(amount, currency).getMinorUnits();
     }
     
-    public static BigDecimal convertFromSmallestUnit(BigDecimal amount) {
-        return amount.divide(BigDecimal.valueOf(100), 2, BigDecimal.ROUND_HALF_UP);
+    public static BigDecimal convertFromSmallestUnit(long minorUnits, String currency) {
+        return Money.ofMinor(minorUnits, currency).toBigDecimal();
     }
     
     public static String maskCardNumber(String cardNumber) {
@@ -82,6 +96,6 @@ public class PaymentUtils {
     }
     
     public static String formatAmount(BigDecimal amount, String currency) {
-        return String.format("%s %.2f", currency, amount);
+        return Money.of(amount, currency).format();
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
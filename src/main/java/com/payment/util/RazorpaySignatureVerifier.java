@@ -1,6 +1,10 @@
 package com.payment.util;
 
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -8,16 +12,33 @@ import org.springframework.stereotype.Component;
 /**
  * Utility class for verifying Razorpay payment signatures
  * This ensures that payment responses are authentic and not tampered with
+ *
+ * The HMAC key is expanded once at startup and every thread keeps its own
+ * initialised Mac (cloned from a prototype), so verification does no key
+ * setup, no provider lookup and no hex string building per call.
+ *
+ * Payment signatures use the API key secret; Razorpay signs webhooks with the
+ * separately configured webhook secret, so each key has its own engines.
  */
 @Component
 public class RazorpaySignatureVerifier {
     
-    @Value("${razorpay.key.secret}")
-    private String razorpaySecret;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int DIGEST_LENGTH = 32;
+    private static final int SCRATCH_SIZE = 256;
+    
+    private final ThreadLocal<HmacState> hmacState;
+    private final ThreadLocal<HmacState> webhookHmacState;
+    
+    public RazorpaySignatureVerifier(@Value("${razorpay.key.secret}") String razorpaySecret,
+                                     @Value("${razorpay.webhook.secret}") String webhookSecret) {
+        this.hmacState = engines(razorpaySecret);
+        this.webhookHmacState = engines(webhookSecret);
+    }
     
     /**
      * Verify Razorpay payment signature
-     * 
+     *
      * @param paymentId Razorpay payment ID
      * @param orderId Razorpay order ID
      * @param signature Razorpay signature
@@ -25,12 +46,16 @@ public class RazorpaySignatureVerifier {
      */
     public boolean verifyPaymentSignature(String paymentId, String orderId, String signature) {
         try {
-            // Create the expected signature
-            String expectedSignature = generateSignature(paymentId + "|" + orderId);
+            // Sign "paymentId|orderId" without concatenating the strings
+            HmacState state = begin(hmacState);
+            state.update(paymentId);
+            state.mac.update((byte) '|');
+            state.update(orderId);
+            state.doFinal();
             
             // Compare signatures
-            return expectedSignature.equals(signature);
-            
+            return HexCodec.constantTimeEquals(state.digest, 0, DIGEST_LENGTH, signature);
+        
         } catch (Exception e) {
             // Log the error for debugging
             System.err.println("Error verifying Razorpay signature: " + e.getMessage());
@@ -40,15 +65,37 @@ public class RazorpaySignatureVerifier {
     
     /**
      * Verify webhook signature
-     * 
+     *
      * @param payload Raw webhook payload
      * @param signature Webhook signature
      * @return true if signature is valid, false otherwise
      */
     public boolean verifyWebhookSignature(String payload, String signature) {
         try {
-            String expectedSignature = generateSignature(payload);
-            return expectedSignature.equals(signature);
+            HmacState state = begin(webhookHmacState);
+            state.update(payload);
+            state.doFinal();
+            return HexCodec.constantTimeEquals(state.digest, 0, DIGEST_LENGTH, signature);
+        } catch (Exception e) {
+            System.err.println("Error verifying webhook signature: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Verify webhook signature over the raw request bytes, so the body never
+     * has to be decoded to a String first
+     *
+     * @param payload Raw webhook payload bytes
+     * @param signature Webhook signature
+     * @return true if signature is valid, false otherwise
+     */
+    public boolean verifyWebhookSignature(byte[] payload, String signature) {
+        try {
+            HmacState state = begin(webhookHmacState);
+            state.mac.update(payload);
+            state.doFinal();
+            return HexCodec.constantTimeEquals(state.digest, 0, DIGEST_LENGTH, signature);
         } catch (Exception e) {
             System.err.println("Error verifying webhook signature: " + e.getMessage());
             return false;
@@ -57,28 +104,31 @@ public class RazorpaySignatureVerifier {
     
     /**
      * Generate HMAC SHA256 signature for testing purposes
-     * 
+     *
      * @param data Data to sign
      * @return HMAC SHA256 signature
      */
     public String generateSignature(String data) {
+        return sign(hmacState, data);
+    }
+    
+    /**
+     * Generate the signature Razorpay would send for a webhook payload, for testing purposes
+     *
+     * @param payload Webhook payload
+     * @return HMAC SHA256 signature under the webhook secret
+     */
+    public String generateWebhookSignature(String payload) {
+        return sign(webhookHmacState, payload);
+    }
+    
+    private String sign(ThreadLocal<HmacState> engines, String data) {
         try {
-            javax.crypto.Mac mac = javax.crypto.Mac.getInstance("HmacSHA256");
-            javax.crypto.spec.SecretKeySpec secretKeySpec = new javax.crypto.spec.SecretKeySpec(
-                razorpaySecret.getBytes(), "HmacSHA256");
-            mac.init(secretKeySpec);
-            byte[] hash = mac.doFinal(data.getBytes());
-            
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            return hexString.toString();
-            
+            HmacState state = begin(engines);
+            state.update(data);
+            state.doFinal();
+            return HexCodec.encode(state.digest, 0, DIGEST_LENGTH);
+        
         } catch (Exception e) {
             System.err.println("Error generating signature: " + e.getMessage());
             return null;
@@ -87,7 +137,7 @@ public class RazorpaySignatureVerifier {
     
     /**
      * Validate payment data integrity
-     * 
+     *
      * @param paymentId Payment ID
      * @param orderId Order ID
      * @param amount Amount in paise
@@ -114,4 +164,78 @@ public class RazorpaySignatureVerifier {
         
         return true;
     }
-} 
\ No newline at end of file
+    
+    /**
+     * This thread's engine, cleared of anything a call that failed part-way left in it
+     */
+    private static HmacState begin(ThreadLocal<HmacState> engines) {
+        HmacState state = engines.get();
+        state.mac.reset();
+        return state;
+    }
+    
+    private static ThreadLocal<HmacState> engines(String secret) {
+        SecretKeySpec key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        Mac prototype = initMac(key);
+        return ThreadLocal.withInitial(() -> new HmacState(newMac(prototype, key)));
+    }
+    
+    private static Mac initMac(SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialise " + HMAC_ALGORITHM, e);
+        }
+    }
+    
+    private static Mac newMac(Mac prototype, SecretKeySpec key) {
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            // Provider does not support cloning; fall back to a fresh init with the same key
+            return initMac(key);
+        }
+    }
+    
+    /**
+     * Per-thread HMAC engine with reusable digest and encoding buffers
+     */
+    private static final class HmacState {
+        private final Mac mac;
+        private final byte[] digest = new byte[DIGEST_LENGTH];
+        private final byte[] scratch = new byte[SCRATCH_SIZE];
+        
+        private HmacState(Mac mac) {
+            this.mac = mac;
+        }
+        
+        /**
+         * Feed a string into the MAC. IDs and most payloads are ASCII, so those are
+         * narrowed into the scratch buffer; anything else goes through UTF-8 encoding.
+         */
+        private void update(String value) {
+            int length = value.length();
+            int pos = 0;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    mac.update(scratch, 0, pos);
+                    mac.update(value.substring(i).getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                scratch[pos++] = (byte) c;
+                if (pos == SCRATCH_SIZE) {
+                    mac.update(scratch, 0, pos);
+                    pos = 0;
+                }
+            }
+            mac.update(scratch, 0, pos);
+        }
+        
+        private void doFinal() throws GeneralSecurityException {
+            mac.doFinal(digest, 0);
+        }
+    }
+}
\ No newline at end of file
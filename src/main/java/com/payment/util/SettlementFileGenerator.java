@@ -0,0 +1,108 @@
+package com.payment.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+/**
+ * Writes settlement report CSVs in the layout of a Razorpay settlement report, for tests
+ * and for local load runs of the reconciliation:
+ *
+ *     java -cp ... com.payment.util.SettlementFileGenerator settlement.csv 10000000
+ */
+public class SettlementFileGenerator implements Closeable {
+    
+    public static final String HEADER = "entity_id,type,debit,credit,amount,currency,fee,tax,on_hold,settled,"
+            + "created_at,settled_at,settlement_id,description,payment_id,order_id";
+    
+    // Razorpay settles in INR
+    private static final String CURRENCY = "INR";
+    
+    private final BufferedWriter out;
+    private final StringBuilder line = new StringBuilder(256);
+    private long rows;
+    
+    private SettlementFileGenerator(BufferedWriter out) throws IOException {
+        this.out = out;
+        out.write(HEADER);
+        out.write('\n');
+    }
+    
+    public static SettlementFileGenerator create(Path file) throws IOException {
+        return new SettlementFileGenerator(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+    }
+    
+    public SettlementFileGenerator payment(String paymentId, String orderId, BigDecimal amount) throws IOException {
+        return row("payment", paymentId, orderId, Money.of(amount, CURRENCY));
+    }
+    
+    public SettlementFileGenerator refund(String paymentId, String orderId, BigDecimal amount) throws IOException {
+        return row("refund", paymentId, orderId, Money.of(amount, CURRENCY));
+    }
+    
+    /**
+     * Append payment rows with made-up IDs and amounts between 1.00 and 100000.00
+     */
+    public SettlementFileGenerator randomPayments(long count, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        String prefix = Long.toHexString(seed);
+        for (long i = 0; i < count; i++) {
+            row("payment", "pay_" + prefix + "_" + i, "order_" + prefix + "_" + i,
+                    Money.ofMinor(random.nextLong(100, 10_000_001), CURRENCY));
+        }
+        return this;
+    }
+    
+    public long getRowCount() {
+        return rows;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+    
+    private SettlementFileGenerator row(String type, String paymentId, String orderId, Money money) throws IOException {
+        String amount = format(money);
+        long created = 1_700_000_000L + rows;
+        line.setLength(0);
+        line.append("setl_row_").append(rows).append(',')
+                .append(type).append(',')
+                .append(type.equals("refund") ? amount : "0").append(',')
+                .append(type.equals("refund") ? "0" : amount).append(',')
+                .append(amount).append(',').append(money.getCurrency()).append(',')
+                .append(format(Money.ofMinor(money.getMinorUnits() / 50, money.getCurrency()))).append(',')
+                .append(format(Money.ofMinor(money.getMinorUnits() * 9 / 1250, money.getCurrency()))).append(",0,1,")
+                .append(created).append(',').append(created + 86_400).append(",setl_")
+                .append(Long.toHexString(created / 86_400)).append(',')
+                // Quoted with a comma inside, as free-text columns appear in real reports
+                .append("\"Order ").append(orderId).append(", settled\",")
+                .append(paymentId == null ? "" : paymentId).append(',')
+                .append(orderId == null ? "" : orderId).append('\n');
+        out.append(line);
+        rows++;
+        return this;
+    }
+    
+    private static String format(Money money) {
+        return money.toBigDecimal().toPlainString();
+    }
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SettlementFileGenerator <file> <rows> [seed]");
+            System.exit(1);
+        }
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42L;
+        try (SettlementFileGenerator generator = create(Paths.get(args[0]))) {
+            generator.randomPayments(Long.parseLong(args[1]), seed);
+            System.out.println("Wrote " + generator.getRowCount() + " settlement rows to " + args[0]);
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package com.payment.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel reader for settlement report CSVs that does not build a String per line.
+ *
+ * The file is cut into chunks of about chunkBytes, each ending on a line break. Each
+ * chunk is memory-mapped and parsed on the common fork-join pool. The visitor gets a
+ * reused SettlementRow that reads straight from the mapping: it hashes the ID columns,
+ * parses the amount, and decodes text only when asked.
+ *
+ * The first line must be a header. The payment_id, order_id, amount, type and currency
+ * columns are recognised in any order; other columns are skipped. Fields may be
+ * double-quoted, but a record must not span lines. Amounts are decimals in the major
+ * unit and are returned in the minor units of a currency exponent the caller supplies,
+ * normally that of the matched payment or of the row's currency column.
+ */
+public class SettlementFileScanner {
+    
+    public static final long INVALID_AMOUNT = Long.MIN_VALUE;
+    
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    
+    // Column roles; index 0 means the column is not read
+    private static final int PAYMENT_ID = 1;
+    private static final int ORDER_ID = 2;
+    private static final int AMOUNT = 3;
+    private static final int TYPE = 4;
+    private static final int CURRENCY = 5;
+    
+    private static final byte[] PAYMENT = "payment".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] REFUND = "refund".getBytes(StandardCharsets.US_ASCII);
+    
+    /**
+     * Called concurrently from the chunk workers; the row is reused, so do not keep it
+     */
+    @FunctionalInterface
+    public interface RowVisitor {
+        void visit(SettlementRow row);
+    }
+    
+    public enum RowType {
+        PAYMENT,
+        REFUND,
+        OTHER
+    }
+    
+    private final int chunkBytes;
+    
+    public SettlementFileScanner(int chunkBytes) {
+        if (chunkBytes < 1 || chunkBytes > (1 << 30)) {
+            throw new IllegalArgumentException("Chunk size must be between 1 byte and 1 GiB: " + chunkBytes);
+        }
+        this.chunkBytes = chunkBytes;
+    }
+    
+    /**
+     * @return Number of data rows visited; blank lines are not counted
+     * @throws IOException if the file cannot be read or its header lacks the needed columns
+     */
+    public long scan(Path file, RowVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long headerEnd = nextLineStart(channel, 0, Math.min(size, MAX_HEADER_BYTES));
+            if (headerEnd < 0) {
+                if (size == 0 || size > MAX_HEADER_BYTES) {
+                    throw new IOException("Settlement file has no header line: " + file);
+                }
+                headerEnd = size;
+            }
+            byte[] roles = readHeader(channel, headerEnd, file);
+            
+            List<long[]> chunks = new ArrayList<>();
+            long start = headerEnd;
+            while (start < size) {
+                long end = size;
+                if (size - start > chunkBytes) {
+                    end = nextLineStart(channel, start + chunkBytes - 1, size);
+                    end = end < 0 ? size : end;
+                }
+                if (end - start > Integer.MAX_VALUE) {
+                    throw new IOException("Line too long to map at offset " + start + " in " + file);
+                }
+                chunks.add(new long[] {start, end});
+                start = end;
+            }
+            
+            LongAdder rows = new LongAdder();
+            try {
+                IntStream.range(0, chunks.size()).parallel().forEach(i -> {
+                    long[] chunk = chunks.get(i);
+                    try {
+                        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+                        rows.add(scanChunk(buffer, chunk[0], roles, visitor));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return rows.sum();
+        }
+    }
+    
+    /**
+     * 64-bit FNV-1a of the UTF-8 bytes of an ID, equal to SettlementRow's hash of the same ID
+     */
+    public static long hash(String id) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c >= 0x80) {
+                byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+                return hash(ByteBuffer.wrap(bytes), 0, bytes.length);
+            }
+            h = (h ^ c) * FNV_PRIME;
+        }
+        return h;
+    }
+    
+    static long hash(ByteBuffer buffer, int from, int to) {
+        long h = FNV_OFFSET;
+        for (int i = from; i < to; i++) {
+            h = (h ^ (buffer.get(i) & 0xff)) * FNV_PRIME;
+        }
+        return h;
+    }
+    
+    /**
+     * Parse a decimal amount into minor units with the given number of decimals, rounding
+     * half-up past the last one
+     *
+     * @return The amount, or INVALID_AMOUNT if the field is empty, not a number or out of range
+     */
+    static long parseAmount(ByteBuffer buffer, int from, int to, int exponent) {
+        int pos = from;
+        boolean negative = false;
+        if (pos < to && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+            negative = buffer.get(pos) == '-';
+            pos++;
+        }
+        long value = 0;
+        int digits = 0;
+        int decimals = -1;
+        boolean roundUp = false;
+        for (; pos < to; pos++) {
+            byte b = buffer.get(pos);
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+            if (b < '0' || b > '9') {
+                return INVALID_AMOUNT;
+            }
+            digits++;
+            if (decimals < exponent) {
+                if (value > (Long.MAX_VALUE - 9) / 10) {
+                    return INVALID_AMOUNT;
+                }
+                value = value * 10 + (b - '0');
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else if (decimals == exponent) {
+                roundUp = b >= '5';
+                decimals++;
+            }
+        }
+        if (digits == 0) {
+            return INVALID_AMOUNT;
+        }
+        for (int scale = Math.max(decimals, 0); scale < exponent; scale++) {
+            if (value > Long.MAX_VALUE / 10) {
+                return INVALID_AMOUNT;
+            }
+            value *= 10;
+        }
+        if (roundUp) {
+            value++;
+        }
+        return negative ? -value : value;
+    }
+    
+    private static long scanChunk(ByteBuffer buffer, long base, byte[] roles, RowVisitor visitor) {
+        SettlementRow row = new SettlementRow(buffer, roles);
+        int limit = buffer.limit();
+        int pos = 0;
+        long rows = 0;
+        while (pos < limit) {
+            int lineStart = pos;
+            int field = 0;
+            int fieldStart = pos;
+            boolean quoted = false;
+            row.reset(base + pos);
+            while (pos < limit) {
+                byte b = buffer.get(pos);
+                if (b == '\n') {
+                    break;
+                }
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (b == ',' && !quoted) {
+                    row.field(field++, fieldStart, pos);
+                    fieldStart = pos + 1;
+                }
+                pos++;
+            }
+            row.field(field, fieldStart, pos);
+            boolean blank = pos == lineStart || (pos == lineStart + 1 && buffer.get(lineStart) == '\r');
+            pos++;
+            if (!blank) {
+                visitor.visit(row);
+                rows++;
+            }
+        }
+        return rows;
+    }
+    
+    private static byte[] readHeader(FileChannel channel, long headerEnd, Path file) throws IOException {
+        byte[] bytes = new byte[(int) headerEnd];
+        channel.map(FileChannel.MapMode.READ_ONLY, 0, headerEnd).get(bytes);
+        String header = new String(bytes, StandardCharsets.UTF_8);
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+        String[] names = header.trim().split(",", -1);
+        byte[] roles = new byte[names.length];
+        boolean hasId = false;
+        boolean hasAmount = false;
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i].trim().replace("\"", "").toLowerCase(Locale.ROOT);
+            switch (name) {
+                case "payment_id":
+                    roles[i] = PAYMENT_ID;
+                    hasId = true;
+                    break;
+                case "order_id":
+                    roles[i] = ORDER_ID;
+                    hasId = true;
+                    break;
+                case "amount":
+                    roles[i] = AMOUNT;
+                    hasAmount = true;
+                    break;
+                case "type":
+                    roles[i] = TYPE;
+                    break;
+                case "currency":
+                    roles[i] = CURRENCY;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (!hasId || !hasAmount) {
+            throw new IOException("Settlement file header needs amount and payment_id or order_id columns: " + file);
+        }
+        return roles;
+    }
+    
+    /**
+     * @return The position just past the first line break at or after from, or -1 if there is none before limit
+     */
+    private static long nextLineStart(FileChannel channel, long from, long limit) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(8192);
+        long position = from;
+        while (position < limit) {
+            block.clear();
+            block.limit((int) Math.min(block.capacity(), limit - position));
+            int read = channel.read(block, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (block.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return -1;
+    }
+    
+    /**
+     * One line of a settlement file, read in place from the mapped chunk
+     */
+    public static final class SettlementRow {
+        private final ByteBuffer buffer;
+        private final byte[] roles;
+        private final boolean hasTypeColumn;
+        private final int[] starts = new int[CURRENCY + 1];
+        private final int[] ends = new int[CURRENCY + 1];
+        private long fileOffset;
+        
+        private SettlementRow(ByteBuffer buffer, byte[] roles) {
+            this.buffer = buffer;
+            this.roles = roles;
+            boolean typed = false;
+            for (byte role : roles) {
+                typed |= role == TYPE;
+            }
+            this.hasTypeColumn = typed;
+        }
+        
+        private void reset(long fileOffset) {
+            this.fileOffset = fileOffset;
+            Arrays.fill(starts, 0);
+            Arrays.fill(ends, 0);
+        }
+        
+        private void field(int index, int start, int end) {
+            if (index >= roles.length || roles[index] == 0) {
+                return;
+            }
+            while (end > start && (buffer.get(end - 1) == '\r' || buffer.get(end - 1) == ' ')) {
+                end--;
+            }
+            while (start < end && buffer.get(start) == ' ') {
+                start++;
+            }
+            if (end - start >= 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"') {
+                start++;
+                end--;
+            }
+            starts[roles[index]] = start;
+            ends[roles[index]] = end;
+        }
+        
+        /**
+         * @return Byte offset of the line in the file
+         */
+        public long getFileOffset() {
+            return fileOffset;
+        }
+        
+        public boolean hasPaymentId() {
+            return ends[PAYMENT_ID] > starts[PAYMENT_ID];
+        }
+        
+        public long paymentIdHash() {
+            return hash(buffer, starts[PAYMENT_ID], ends[PAYMENT_ID]);
+        }
+        
+        /**
+         * @return The payment ID as text, or null if the field is empty
+         */
+        public String paymentId() {
+            return text(PAYMENT_ID);
+        }
+        
+        public boolean hasOrderId() {
+            return ends[ORDER_ID] > starts[ORDER_ID];
+        }
+        
+        public long orderIdHash() {
+            return hash(buffer, starts[ORDER_ID], ends[ORDER_ID]);
+        }
+        
+        public String orderId() {
+            return text(ORDER_ID);
+        }
+        
+        /**
+         * @param exponent Digits after the decimal point in the currency, e.g. 2 for INR and 0 for JPY
+         * @return The amount in minor units, or INVALID_AMOUNT
+         */
+        public long amountMinor(int exponent) {
+            return parseAmount(buffer, starts[AMOUNT], ends[AMOUNT], exponent);
+        }
+        
+        /**
+         * @return The currency code, or null if the file has no currency column or the field is empty
+         */
+        public String currency() {
+            return text(CURRENCY);
+        }
+        
+        /**
+         * @return The row type; PAYMENT when the file has no type column
+         */
+        public RowType type() {
+            if (!hasTypeColumn || matches(TYPE, PAYMENT)) {
+                return RowType.PAYMENT;
+            }
+            return matches(TYPE, REFUND) ? RowType.REFUND : RowType.OTHER;
+        }
+        
+        private boolean matches(int role, byte[] expected) {
+            if (ends[role] - starts[role] != expected.length) {
+                return false;
+            }
+            for (int i = 0; i < expected.length; i++) {
+                if ((buffer.get(starts[role] + i) | 0x20) != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private String text(int role) {
+            int length = ends[role] - starts[role];
+            if (length <= 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(starts[role], bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
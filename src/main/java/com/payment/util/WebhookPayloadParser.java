@@ -0,0 +1,101 @@
+package com.payment.util;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.payment.dto.WebhookEvent;
+
+/**
+ * Single-pass extractor for the few webhook fields payment processing needs.
+ *
+ * Works directly on the raw request bytes with a streaming parser: only event,
+ * payment id/status and order id are materialised, everything else (card details,
+ * notes, the rest of the entity objects) is skipped without building any tree.
+ * Accepts both Razorpay's wrapped form (payload.payment.entity.id) and the flat
+ * form (payload.payment.id).
+ */
+public class WebhookPayloadParser {
+    
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    
+    public static WebhookEvent parse(byte[] payload) throws IOException {
+        return parse(payload, 0, payload.length);
+    }
+    
+    public static WebhookEvent parse(byte[] payload, int offset, int length) throws IOException {
+        WebhookEvent event = new WebhookEvent();
+        try (JsonParser parser = JSON_FACTORY.createParser(payload, offset, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Webhook payload is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("event".equals(name)) {
+                    event.setEvent(parser.getValueAsString());
+                } else if ("payload".equals(name) && value == JsonToken.START_OBJECT) {
+                    readPayload(parser, event);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        
+        if (event.getEvent() == null) {
+            throw new IOException("Webhook payload has no event");
+        }
+        if (event.getPaymentId() == null || event.getOrderId() == null) {
+            throw new IOException("Webhook payload is missing payment or order ID");
+        }
+        return event;
+    }
+    
+    private static void readPayload(JsonParser parser, WebhookEvent event) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("payment".equals(name) && value == JsonToken.START_OBJECT) {
+                readPayment(parser, event);
+            } else if ("order".equals(name) && value == JsonToken.START_OBJECT) {
+                readOrder(parser, event);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+    
+    private static void readPayment(JsonParser parser, WebhookEvent event) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("entity".equals(name) && value == JsonToken.START_OBJECT) {
+                readPayment(parser, event);
+            } else if ("id".equals(name)) {
+                event.setPaymentId(parser.getValueAsString());
+            } else if ("status".equals(name)) {
+                event.setStatus(parser.getValueAsString());
+            } else if ("order_id".equals(name) && event.getOrderId() == null) {
+                // Payment-only events (e.g. payment.failed) carry the order here
+                event.setOrderId(parser.getValueAsString());
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+    
+    private static void readOrder(JsonParser parser, WebhookEvent event) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("entity".equals(name) && value == JsonToken.START_OBJECT) {
+                readOrder(parser, event);
+            } else if ("id".equals(name)) {
+                event.setOrderId(parser.getValueAsString());
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+-- Payments are range-partitioned by month on created_at (Postgres only; H2 keeps the
+-- plain table Hibernate generates). Runs on every start of the docker profile, so every
+-- statement is idempotent. Monthly partitions are created and retired by
+-- PaymentPartitionManager; rows outside every monthly partition land in payments_default.
+--
+-- Postgres requires the partition key in every unique index, so the primary key is
+-- (id, created_at) and the unique index on order_id includes created_at. Uniqueness of
+-- order_id alone is enforced through payment_order_ids: PaymentPartitionManager installs
+-- a trigger (plpgsql needs dollar quoting, which this script's splitter does not handle)
+-- that reserves each new order_id there, so a duplicate fails the INSERT. Reservations
+-- outlive archived, detached and dropped payments, so order IDs are never reused.
+--
+-- An existing unpartitioned payments table is left alone (and payments_default then
+-- fails to create); migrate it by hand before switching to this schema.
+
+CREATE SEQUENCE IF NOT EXISTS payment_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS payments (
+    id BIGINT NOT NULL,
+    order_id VARCHAR(50) NOT NULL,
+    payment_id VARCHAR(50) NOT NULL,
+    customer_name VARCHAR(100) NOT NULL,
+    customer_email VARCHAR(100) NOT NULL,
+    customer_phone VARCHAR(20) NOT NULL,
+    amount NUMERIC(10, 2) NOT NULL,
+    amount_minor BIGINT NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    updated_at TIMESTAMP(6),
+    description VARCHAR(500),
+    notes VARCHAR(1000),
+    gateway_response VARCHAR(100),
+    transaction_id VARCHAR(50),
+    payment_method VARCHAR(20),
+    bank_code VARCHAR(50),
+    card_network VARCHAR(50),
+    card_last4 VARCHAR(10),
+    captured_at TIMESTAMP(6),
+    refunded_at TIMESTAMP(6),
+    refund_amount NUMERIC(10, 2),
+    refund_reason VARCHAR(100),
+    merchant_id VARCHAR(50),
+    merchant_order_id VARCHAR(50),
+    gateway_order_id VARCHAR(50),
+    awaiting_gateway_order BOOLEAN NOT NULL DEFAULT FALSE,
+    poll_token VARCHAR(32),
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE IF NOT EXISTS payments_default PARTITION OF payments DEFAULT;
+
+-- Exact amount in the currency's minor units (the embedded Money on Payment). Tables
+-- created before it are backfilled from the two-place amount using ISO 4217 exponents.
+ALTER TABLE payments ADD COLUMN IF NOT EXISTS amount_minor BIGINT;
+UPDATE payments SET amount_minor = ROUND(amount * CASE
+    WHEN currency IN ('BIF', 'CLP', 'DJF', 'GNF', 'ISK', 'JPY', 'KMF', 'KRW', 'PYG', 'RWF', 'UGX', 'UYI', 'VND', 'VUV', 'XAF', 'XOF', 'XPF') THEN 1
+    WHEN currency IN ('BHD', 'IQD', 'JOD', 'KWD', 'LYD', 'OMR', 'TND') THEN 1000
+    WHEN currency IN ('CLF', 'UYW') THEN 10000
+    ELSE 100 END) WHERE amount_minor IS NULL;
+ALTER TABLE payments ALTER COLUMN amount_minor SET NOT NULL;
+
+-- Marks async creations still waiting for their Razorpay order. Rows from before it are
+-- false, so payments whose paymentId already is the Razorpay order are never re-ordered.
+ALTER TABLE payments ADD COLUMN IF NOT EXISTS awaiting_gateway_order BOOLEAN NOT NULL DEFAULT FALSE;
+ALTER TABLE payments ADD COLUMN IF NOT EXISTS poll_token VARCHAR(32);
+
+-- Same names as the indexes declared on the Payment entity, so Hibernate leaves them be
+CREATE INDEX IF NOT EXISTS idx_order_id ON payments (order_id);
+CREATE INDEX IF NOT EXISTS idx_payment_id ON payments (payment_id);
+CREATE INDEX IF NOT EXISTS idx_customer_email ON payments (customer_email, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_status ON payments (status, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_created_at ON payments (created_at, id);
+CREATE INDEX IF NOT EXISTS idx_updated_at ON payments (updated_at);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_payments_order_id_created_at ON payments (order_id, created_at);
+
+CREATE TABLE IF NOT EXISTS payment_order_ids (
+    order_id VARCHAR(50) PRIMARY KEY,
+    payment_id BIGINT NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL
+);
+
+-- Daily rollups are rewritten a whole day at a time by PaymentRollupService, which holds
+-- the watermark row lock while it runs. The unique index (same name as on the entity) makes
+-- any second writer fail instead of doubling a day; duplicates left by nodes that rolled up
+-- concurrently before it existed are dropped first. NULLS NOT DISTINCT needs Postgres 15.
+CREATE SEQUENCE IF NOT EXISTS payment_rollup_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS payment_daily_rollups (
+    id BIGINT PRIMARY KEY,
+    rollup_date DATE NOT NULL,
+    merchant_id VARCHAR(50),
+    currency VARCHAR(3) NOT NULL,
+    payment_method VARCHAR(50),
+    status VARCHAR(20) NOT NULL,
+    payment_count BIGINT NOT NULL,
+    amount_minor BIGINT NOT NULL,
+    min_amount_minor BIGINT NOT NULL,
+    max_amount_minor BIGINT NOT NULL,
+    computed_at TIMESTAMP(6) NOT NULL
+);
+
+DELETE FROM payment_daily_rollups a USING payment_daily_rollups b
+    WHERE a.rollup_date = b.rollup_date AND a.merchant_id IS NOT DISTINCT FROM b.merchant_id
+    AND a.currency = b.currency AND a.payment_method IS NOT DISTINCT FROM b.payment_method
+    AND a.status = b.status AND a.id < b.id;
+CREATE UNIQUE INDEX IF NOT EXISTS uk_rollup_group ON payment_daily_rollups
+    (rollup_date, merchant_id, currency, payment_method, status) NULLS NOT DISTINCT;
+
+-- Existing watermark rows start at version 0 for the @Version column
+CREATE TABLE IF NOT EXISTS payment_rollup_watermarks (
+    name VARCHAR(50) PRIMARY KEY,
+    rolled_through DATE,
+    scanned_at TIMESTAMP(6),
+    version BIGINT NOT NULL DEFAULT 0
+);
+ALTER TABLE payment_rollup_watermarks ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
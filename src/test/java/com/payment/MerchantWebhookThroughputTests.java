@@ -0,0 +1,118 @@
+package com.payment;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import com.sun.net.httpserver.HttpServer;
+
+import com.payment.dto.PaymentRequest;
+import com.payment.entity.Merchant;
+import com.payment.entity.Payment;
+import com.payment.entity.WebhookOutboxEvent;
+import com.payment.repository.MerchantRepository;
+import com.payment.repository.WebhookOutboxRepository;
+import com.payment.service.MerchantWebhookDispatcher;
+import com.payment.service.PaymentService;
+
+/**
+ * Merchant webhook delivery rate against a local receiver with a fixed reply latency.
+ * Tagged perf and skipped by the default build; run with: mvn -Pperf test
+ */
+@Tag("perf")
+@SpringBootTest
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:webhookperf",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.profiles.active=test",
+    "razorpay.key.id=rzp_test_test",
+    "razorpay.key.secret=test_secret",
+    "webhook.outbox.allow-private-targets=true",
+    // Only the measured dispatch() calls deliver after the first scheduled run
+    "webhook.outbox.poll-interval-ms=3600000"
+})
+class MerchantWebhookThroughputTests {
+
+    private static final int EVENTS = 2000;
+    private static final long REPLY_LATENCY_MILLIS = 10;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private MerchantRepository merchantRepository;
+
+    @Autowired
+    private WebhookOutboxRepository outboxRepository;
+
+    @Autowired
+    private MerchantWebhookDispatcher webhookDispatcher;
+
+    @Test
+    void testDeliveryThroughput() throws Exception {
+        AtomicInteger received = new AtomicInteger();
+        HttpServer receiver = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        receiver.createContext("/hooks", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                in.readAllBytes();
+            }
+            try {
+                Thread.sleep(REPLY_LATENCY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.incrementAndGet();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        ExecutorService receiverThreads = Executors.newFixedThreadPool(16);
+        receiver.setExecutor(receiverThreads);
+        receiver.start();
+        try {
+            Merchant merchant = new Merchant();
+            merchant.setMerchantId("MERCH_HOOK_PERF");
+            merchant.setBusinessName("Perf Hook Store");
+            merchant.setContactName("Hook Tester");
+            merchant.setEmail("hook-perf@example.com");
+            merchant.setPhone("+3434343436");
+            merchant.setApiKey("key_hook_perf");
+            merchant.setWebhookUrl("http://localhost:" + receiver.getAddress().getPort() + "/hooks");
+            merchant.setWebhookSecret("hook_secret");
+            merchantRepository.save(merchant);
+
+            for (int i = 0; i < EVENTS; i++) {
+                PaymentRequest request = new PaymentRequest("Perf Customer " + i, "perf" + i + "@example.com",
+                        "+3636363637", new BigDecimal("10.00"), "INR", "Hooked", null);
+                request.setMerchantId("MERCH_HOOK_PERF");
+                paymentService.updatePaymentStatus(paymentService.createPayment(request).getId(), Payment.PaymentStatus.SUCCESS);
+            }
+
+            long start = System.nanoTime();
+            long deadline = start + TimeUnit.MINUTES.toNanos(5);
+            while (outboxRepository.countByStatus(WebhookOutboxEvent.OutboxStatus.DELIVERED) < EVENTS
+                    && System.nanoTime() < deadline) {
+                webhookDispatcher.dispatch();
+            }
+            long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            System.out.println("Delivered " + received.get() + " merchant webhooks in " + elapsedMillis + " ms ("
+                    + received.get() * 1000L / elapsedMillis + "/s at " + REPLY_LATENCY_MILLIS + " ms per reply)");
+
+            // Assertions
+            assertEquals(EVENTS, outboxRepository.countByStatus(WebhookOutboxEvent.OutboxStatus.DELIVERED));
+        } finally {
+            receiver.stop(0);
+            receiverThreads.shutdown();
+        }
+    }
+}
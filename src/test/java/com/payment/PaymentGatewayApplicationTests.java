@@ -1,10 +1,31 @@
 package com.payment;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import org.junit.jupiter.api.Test;
@@ -12,14 +33,56 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.context.TestPropertySource;
 
+import com.sun.net.httpserver.HttpServer;
+
+import com.payment.dto.BatchPaymentResponse;
+import com.payment.dto.CursorPage;
+import com.payment.dto.PaymentAggregate;
+import com.payment.dto.PaymentCreationStatus;
 import com.payment.dto.PaymentRequest;
 import com.payment.dto.PaymentResponse;
+import com.payment.dto.RazorpayPaymentVerificationRequest;
+import com.payment.dto.SettlementReconciliationResult;
+import com.payment.entity.Merchant;
 import com.payment.entity.Payment;
+import com.payment.entity.SettlementMismatch;
+import com.payment.entity.WebhookOutboxEvent;
+import com.payment.exception.InvalidStatusTransitionException;
+import com.payment.exception.PaymentException;
+import com.payment.repository.MerchantRepository;
+import com.payment.repository.PaymentRepository;
+import com.payment.repository.SettlementMismatchRepository;
+import com.payment.repository.WebhookDeadLetterRepository;
+import com.payment.repository.WebhookOutboxRepository;
+import com.payment.service.MerchantCredentialCache;
+import com.payment.service.MerchantRateLimiter;
+import com.payment.service.MerchantWebhookDispatcher;
+import com.payment.service.PaymentAnalyticsService;
+import com.payment.service.PaymentAnalyticsStore;
+import com.payment.service.PaymentArchiveService;
+import com.payment.service.PaymentEnrichmentBuffer;
+import com.payment.service.PaymentExportService;
+import com.payment.service.PaymentRollupService;
+import com.payment.service.PaymentPartitionManager;
 import com.payment.service.PaymentService;
+import com.payment.service.PaymentStatsRegistry;
+import com.payment.service.SettlementReconciliationService;
+import com.payment.service.WebhookJournal;
+import com.payment.util.HexCodec;
+import com.payment.util.SettlementFileGenerator;
+
+import jakarta.validation.Validator;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @TestPropertySource(properties = {
@@ -27,19 +90,87 @@ import com.payment.service.PaymentService;
     "spring.jpa.hibernate.ddl-auto=create-drop",
     "spring.profiles.active=test",
     "razorpay.key.id=rzp_test_test",
-    "razorpay.key.secret=test_secret"
+    "razorpay.key.secret=test_secret",
+    "webhook.outbox.allow-private-targets=true"
 })
 class PaymentGatewayApplicationTests {
 
     @Autowired
     private PaymentService paymentService;
 
+    @Autowired
+    private PaymentStatsRegistry statsRegistry;
+
+    @Autowired
+    private PaymentAnalyticsService analyticsService;
+
+    @Autowired
+    private PaymentRollupService rollupService;
+
+    @Autowired
+    private PaymentExportService exportService;
+
+    @Autowired
+    private PaymentEnrichmentBuffer enrichmentBuffer;
+
+    @Autowired
+    private PaymentArchiveService archiveService;
+
+    @Autowired
+    private PaymentAnalyticsStore analyticsStore;
+
+    @Autowired
+    private SettlementReconciliationService settlementService;
+
+    @Autowired
+    private SettlementMismatchRepository mismatchRepository;
+
+    @Autowired
+    private MerchantWebhookDispatcher webhookDispatcher;
+
+    @Autowired
+    private WebhookOutboxRepository outboxRepository;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private PaymentPartitionManager partitionManager;
+
+    @Autowired
+    private WebhookJournal webhookJournal;
+
+    @Autowired
+    private WebhookDeadLetterRepository deadLetterRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MerchantRepository merchantRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private MerchantCredentialCache credentialCache;
+
+    @Autowired
+    private MerchantRateLimiter rateLimiter;
+
     @Autowired
     private TestRestTemplate restTemplate;
 
     @LocalServerPort
     private int port;
 
+    @DynamicPropertySource
+    static void archiveDirectory(DynamicPropertyRegistry registry) throws IOException {
+        String dir = Files.createTempDirectory("payment-archive").toString();
+        registry.add("payment.archive.enabled", () -> "true");
+        registry.add("payment.archive.dir", () -> dir);
+    }
+
     @Test
     void contextLoads() {
         // Test that the application context loads successfully
@@ -146,7 +277,7 @@ class PaymentGatewayApplicationTests {
         paymentService.createPayment(request2);
 
         // Get payments by customer email
-        List<PaymentResponse> payments = paymentService.getPaymentsByCustomerEmail(customerEmail);
+        List<PaymentResponse> payments = paymentService.getPaymentsByCustomerEmail(customerEmail, null, 50).getItems();
 
         // Assertions
         assertNotNull(payments);
@@ -184,6 +315,25 @@ class PaymentGatewayApplicationTests {
         assertEquals(createdResponse.getId(), updatedResponse.getId());
     }
 
+    @Test
+    void testIllegalStatusTransitionIsRejected() {
+        PaymentRequest request = new PaymentRequest("Transition Customer", "transition@example.com", "+1212121212",
+                new BigDecimal("30.00"), "INR", "Transition payment", null);
+        PaymentResponse created = paymentService.createPayment(request);
+        paymentService.updatePaymentStatus(created.getId(), Payment.PaymentStatus.SUCCESS);
+        paymentService.refundPayment(created.getId());
+
+        InvalidStatusTransitionException rejected = assertThrows(InvalidStatusTransitionException.class,
+                () -> paymentService.updatePaymentStatus(created.getId(), Payment.PaymentStatus.SUCCESS));
+
+        // Assertions
+        assertEquals("Invalid status transition from REFUNDED to SUCCESS", rejected.getMessage());
+        assertEquals(Payment.PaymentStatus.REFUNDED, rejected.getFrom());
+        assertEquals(Payment.PaymentStatus.REFUNDED, paymentService.getPaymentById(created.getId()).getStatus());
+        assertTrue(Payment.PaymentStatus.PENDING.canTransitionTo(Payment.PaymentStatus.SUCCESS));
+        assertFalse(Payment.PaymentStatus.EXPIRED.canTransitionTo(Payment.PaymentStatus.PENDING));
+    }
+
     @Test
     void testRefundPayment() {
         // Create a payment
@@ -261,6 +411,45 @@ class PaymentGatewayApplicationTests {
         assertNotNull(response.getBody());
     }
 
+    @Test
+    void testMerchantApiKeyAuthentication() {
+        Merchant merchant = new Merchant();
+        merchant.setMerchantId("MERCH_AUTH_TEST");
+        merchant.setBusinessName("Auth Test Store");
+        merchant.setContactName("Auth Tester");
+        merchant.setEmail("auth@example.com");
+        merchant.setPhone("+2222222222");
+        merchant.setApiKey("key_auth_test");
+        merchant = merchantRepository.save(merchant);
+        String url = "http://localhost:" + port + "/api/merchants/" + merchant.getId();
+
+        HttpHeaders validKey = new HttpHeaders();
+        validKey.set("X-Api-Key", "key_auth_test");
+        ResponseEntity<String> accepted = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(validKey), String.class);
+        HttpHeaders unknownKey = new HttpHeaders();
+        unknownKey.set("X-Api-Key", "key_nobody_has");
+        ResponseEntity<String> rejected = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(unknownKey), String.class);
+
+        // Assertions
+        assertEquals(HttpStatus.OK, accepted.getStatusCode());
+        assertEquals(HttpStatus.UNAUTHORIZED, rejected.getStatusCode());
+        assertNotNull(credentialCache.resolve("key_auth_test"));
+    }
+
+    @Test
+    void testRateLimiterAdmitsBurstThenRejects() {
+        // Default limits: 100 per minute with a burst of 200
+        for (int i = 0; i < 200; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("MERCH_RATE_TEST", true), "request " + i + " should be admitted");
+        }
+        long waitNanos = rateLimiter.tryAcquire("MERCH_RATE_TEST", true);
+
+        // Assertions
+        assertTrue(waitNanos > 0);
+        assertTrue(waitNanos <= TimeUnit.SECONDS.toNanos(1));
+        assertEquals(0, rateLimiter.tryAcquire("MERCH_OTHER_TEST", true));
+    }
+
     @Test
     void testDashboardStatsEndpoint() {
         String url = "http://localhost:" + port + "/api/payments/stats/dashboard";
@@ -270,6 +459,522 @@ class PaymentGatewayApplicationTests {
         assertNotNull(response.getBody());
     }
 
+    @Test
+    void testDashboardCountersTrackTransitions() {
+        long pendingBefore = statsRegistry.getCount(Payment.PaymentStatus.PENDING);
+        long successBefore = statsRegistry.getCount(Payment.PaymentStatus.SUCCESS);
+        long refundedBefore = statsRegistry.getCount(Payment.PaymentStatus.REFUNDED);
+        BigDecimal amountBefore = statsRegistry.getSuccessAmountLast30Days();
+
+        PaymentRequest request = new PaymentRequest("Stats Customer", "stats@example.com", "+9999999999",
+                new BigDecimal("42.50"), "INR", "Dashboard counter payment", null);
+        PaymentResponse created = paymentService.createPayment(request);
+        assertEquals(pendingBefore + 1, statsRegistry.getCount(Payment.PaymentStatus.PENDING));
+
+        paymentService.updatePaymentStatus(created.getId(), Payment.PaymentStatus.SUCCESS);
+        assertEquals(pendingBefore, statsRegistry.getCount(Payment.PaymentStatus.PENDING));
+        assertEquals(successBefore + 1, statsRegistry.getCount(Payment.PaymentStatus.SUCCESS));
+        assertEquals(0, amountBefore.add(new BigDecimal("42.50")).compareTo(statsRegistry.getSuccessAmountLast30Days()));
+
+        paymentService.refundPayment(created.getId());
+        assertEquals(successBefore, statsRegistry.getCount(Payment.PaymentStatus.SUCCESS));
+        assertEquals(refundedBefore + 1, statsRegistry.getCount(Payment.PaymentStatus.REFUNDED));
+        assertEquals(0, amountBefore.compareTo(statsRegistry.getSuccessAmountLast30Days()));
+    }
+
+    @Test
+    void testDashboardAmountsAreKeptPerCurrency() {
+        BigDecimal yenBefore = statsRegistry.getSuccessAmountsLast30DaysByCurrency().getOrDefault("JPY", BigDecimal.ZERO);
+        BigDecimal totalBefore = statsRegistry.getSuccessAmountLast30Days();
+
+        PaymentResponse created = paymentService.createPayment(new PaymentRequest("Yen Customer", "yen@example.com",
+                "+8181818181", new BigDecimal("500"), "JPY", "Dashboard yen payment", null));
+        paymentService.updatePaymentStatus(created.getId(), Payment.PaymentStatus.SUCCESS);
+
+        // Assertions
+        BigDecimal yenAfter = statsRegistry.getSuccessAmountsLast30DaysByCurrency().get("JPY");
+        assertEquals(0, yenBefore.add(new BigDecimal("500")).compareTo(yenAfter));
+        assertEquals(0, yenAfter.scale());
+        assertEquals(0, totalBefore.add(new BigDecimal("500")).compareTo(statsRegistry.getSuccessAmountLast30Days()));
+    }
+
+    @Test
+    void testStatsByCurrencyIncludesTodaysPayments() {
+        PaymentRequest request = new PaymentRequest("Analytics Customer", "analytics@example.com", "+1212121212",
+                new BigDecimal("1234"), "JPY", "Analytics payment", null);
+        PaymentResponse created = paymentService.createPayment(request);
+        paymentService.updatePaymentStatus(created.getId(), Payment.PaymentStatus.SUCCESS);
+        rollupService.refresh();
+
+        LocalDateTime now = LocalDateTime.now();
+        List<PaymentAggregate> stats = analyticsService.getStatsByCurrency(now.minusDays(7), now.plusMinutes(1));
+        PaymentAggregate jpy = stats.stream().filter(s -> "JPY".equals(s.getKey())).findFirst().orElse(null);
+
+        // Assertions
+        assertNotNull(jpy);
+        assertEquals(1, jpy.getCount());
+        assertEquals(0, new BigDecimal("1234").compareTo(jpy.getTotalAmount()));
+        assertFalse(analyticsService.getDailyStats(now.minusDays(7), now.plusMinutes(1)).isEmpty());
+    }
+
+    @Test
+    void testCachedLookupSeesStatusChanges() {
+        PaymentRequest request = new PaymentRequest("Cached Customer", "cached@example.com", "+3333333333",
+                new BigDecimal("20.00"), "INR", "Cached payment", null);
+        PaymentResponse created = paymentService.createPayment(request);
+
+        // Warm the cache through every lookup key
+        assertEquals(Payment.PaymentStatus.PENDING, paymentService.getPaymentById(created.getId()).getStatus());
+        assertEquals(Payment.PaymentStatus.PENDING, paymentService.getPaymentByOrderId(created.getOrderId()).getStatus());
+        assertEquals(Payment.PaymentStatus.PENDING, paymentService.getPaymentByRazorpayPaymentId(created.getPaymentId()).getStatus());
+
+        paymentService.updatePaymentStatus(created.getId(), Payment.PaymentStatus.SUCCESS);
+
+        // Assertions
+        assertEquals(Payment.PaymentStatus.SUCCESS, paymentService.getPaymentById(created.getId()).getStatus());
+        assertEquals(Payment.PaymentStatus.SUCCESS, paymentService.getPaymentByOrderId(created.getOrderId()).getStatus());
+        assertEquals(Payment.PaymentStatus.SUCCESS, paymentService.getPaymentByRazorpayPaymentId(created.getPaymentId()).getStatus());
+    }
+
+    @Test
+    void testCachedLookupReturnsACopy() {
+        PaymentResponse created = paymentService.createPayment(new PaymentRequest("Copy Customer", "copy@example.com",
+                "+3333333334", new BigDecimal("21.00"), "INR", "Copied payment", null));
+        PaymentResponse first = paymentService.getPaymentById(created.getId());
+        first.setStatus(Payment.PaymentStatus.REFUNDED);
+        first.setCustomerName("Mutated by caller");
+
+        PaymentResponse second = paymentService.getPaymentById(created.getId());
+
+        // Assertions
+        assertNotSame(first, second);
+        assertEquals(Payment.PaymentStatus.PENDING, second.getStatus());
+        assertEquals("Copy Customer", second.getCustomerName());
+    }
+
+    @Test
+    void testEnrichmentUpdatesAreCoalescedAndWritten() throws InterruptedException {
+        PaymentRequest request = new PaymentRequest("Enrich Customer", "enrich@example.com", "+4444444444",
+                new BigDecimal("30.00"), "INR", "Enrich payment", null);
+        PaymentResponse created = paymentService.createPayment(request);
+
+        enrichmentBuffer.enqueue(created.getId(), created.getOrderId(), "Enriched Name", null, null, "First note");
+        enrichmentBuffer.enqueue(created.getId(), created.getOrderId(), null, null, "+4444444445", "Second note");
+
+        PaymentResponse enriched = paymentService.getPaymentById(created.getId());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!"Second note".equals(enriched.getDescription()) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+            enriched = paymentService.getPaymentById(created.getId());
+        }
+
+        // Assertions
+        assertEquals("Enriched Name", enriched.getCustomerName());
+        assertEquals("enrich@example.com", enriched.getCustomerEmail());
+        assertEquals("+4444444445", enriched.getCustomerPhone());
+        assertEquals("Second note", enriched.getDescription());
+    }
+
+    @Test
+    void testEnrichmentRejectsValuesLongerThanTheirColumns() {
+        PaymentRequest request = new PaymentRequest("Long Customer", "long@example.com", "+4444444446",
+                new BigDecimal("31.00"), "INR", "Long payment", null);
+        PaymentResponse created = paymentService.createPayment(request);
+
+        // Assertions
+        assertThrows(IllegalArgumentException.class, () -> enrichmentBuffer.enqueue(created.getId(),
+                created.getOrderId(), null, null, "+44444444444444444444444", null));
+        assertThrows(IllegalArgumentException.class, () -> enrichmentBuffer.enqueue(created.getId(),
+                created.getOrderId(), null, null, null, "d".repeat(501)));
+        RazorpayPaymentVerificationRequest verification = new RazorpayPaymentVerificationRequest("pay_long_1",
+                created.getOrderId(), "any", "n".repeat(101), null, null, null);
+        assertFalse(validator.validate(verification).isEmpty());
+    }
+
+    @Test
+    void testRejectsAmountsFinerThanTheCurrency() {
+        PaymentRequest yen = new PaymentRequest("Yen Customer", "yen@example.com", "+8282828282",
+                new BigDecimal("100.50"), "JPY", "Fractional yen", null);
+        PaymentRequest rupees = new PaymentRequest("Rupee Customer", "rupee@example.com", "+8282828283",
+                new BigDecimal("100.50"), "INR", "Whole paise", null);
+
+        // Assertions
+        assertFalse(validator.validate(yen).isEmpty());
+        assertTrue(validator.validate(rupees).isEmpty());
+    }
+
+    @Test
+    void testArchivedPaymentsStayReadable() {
+        PaymentRequest request = new PaymentRequest("Archive Customer", "archive@example.com", "+5555555555",
+                new BigDecimal("42.00"), "INR", "Archived payment", null);
+        PaymentResponse created = paymentService.createPayment(request);
+        paymentService.updatePaymentStatus(created.getId(), Payment.PaymentStatus.SUCCESS);
+        LocalDateTime longAgo = LocalDateTime.now().minusYears(2).withNano(0);
+        jdbcTemplate.update("UPDATE payments SET created_at = ?, updated_at = ? WHERE id = ?", longAgo, longAgo, created.getId());
+
+        int archived = archiveService.archive();
+        // The backdating above bypassed PaymentService, so the analytics store only sees it on rebuild
+        analyticsStore.rebuild();
+        PaymentResponse byId = paymentService.getPaymentById(created.getId());
+
+        // Assertions
+        assertTrue(archived >= 1);
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payments WHERE id = ?", Integer.class, created.getId()));
+        assertEquals(Payment.PaymentStatus.SUCCESS, byId.getStatus());
+        assertEquals("archive@example.com", byId.getCustomerEmail());
+        assertEquals(longAgo, byId.getCreatedAt());
+        assertEquals(created.getId(), paymentService.getPaymentByOrderId(created.getOrderId()).getId());
+        assertEquals(created.getId(), paymentService.getPaymentByRazorpayPaymentId(created.getPaymentId()).getId());
+        assertEquals(0, new BigDecimal("42.00").compareTo(
+                paymentService.getTotalAmountByDateRange(longAgo.minusDays(1), longAgo.plusDays(1))));
+        // A refund webhook for it cannot be applied, and is rejected rather than ignored
+        assertThrows(PaymentException.class, () -> paymentService.processPaymentRefund(created.getPaymentId(), created.getOrderId()));
+    }
+
+    @Test
+    void testAnalyticsStoreMatchesDatabaseAfterRebuild() {
+        LocalDateTime start = LocalDateTime.now().minusMinutes(1);
+        PaymentResponse first = paymentService.createPayment(new PaymentRequest("Store Customer", "store@example.com",
+                "+1212121212", new BigDecimal("11.25"), "GBP", "Store payment 1", null));
+        PaymentResponse second = paymentService.createPayment(new PaymentRequest("Store Customer", "store@example.com",
+                "+1212121212", new BigDecimal("3.50"), "GBP", "Store payment 2", null));
+        paymentService.updatePaymentStatus(first.getId(), Payment.PaymentStatus.SUCCESS);
+        paymentService.updatePaymentStatus(second.getId(), Payment.PaymentStatus.SUCCESS);
+        LocalDateTime end = LocalDateTime.now().plusMinutes(1);
+
+        List<PaymentAggregate> live = analyticsStore.aggregate(PaymentAnalyticsStore.Dimension.CURRENCY, start, end,
+                Payment.PaymentStatus.SUCCESS);
+        analyticsStore.rebuild();
+        List<PaymentAggregate> rebuilt = analyticsStore.aggregate(PaymentAnalyticsStore.Dimension.CURRENCY, start, end,
+                Payment.PaymentStatus.SUCCESS);
+
+        // Assertions
+        for (List<PaymentAggregate> stats : List.of(live, rebuilt)) {
+            PaymentAggregate gbp = stats.stream().filter(a -> "GBP".equals(a.getKey())).findFirst().orElseThrow();
+            assertEquals(2, gbp.getCount());
+            assertEquals(0, new BigDecimal("14.75").compareTo(gbp.getTotalAmount()));
+            assertEquals(0, new BigDecimal("3.50").compareTo(gbp.getMinAmount()));
+            assertEquals(0, new BigDecimal("11.25").compareTo(gbp.getMaxAmount()));
+        }
+        long successInDatabase = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payments WHERE status = 'SUCCESS'", Long.class)
+                + archiveService.countByStatus(Payment.PaymentStatus.SUCCESS);
+        assertEquals(successInDatabase, analyticsStore.count(null, null, Payment.PaymentStatus.SUCCESS));
+    }
+
+    @Test
+    void testAnalyticsStoreRefreshPicksUpOutsideWritesAndKeepsCurrencyExponents() {
+        analyticsStore.refresh();
+        LocalDateTime start = LocalDateTime.now().minusMinutes(1);
+        PaymentResponse yen = paymentService.createPayment(new PaymentRequest("Refresh Customer", "refresh@example.com",
+                "+1313131313", new BigDecimal("500"), "JPY", "Refresh payment", null));
+        long before = analyticsStore.count(start, null, Payment.PaymentStatus.SUCCESS);
+        BigDecimal yenBefore = yenTotal(start);
+
+        // Written by another node, as far as this store can tell
+        jdbcTemplate.update("UPDATE payments SET status = 'SUCCESS', updated_at = ? WHERE id = ?", LocalDateTime.now(), yen.getId());
+        long stale = analyticsStore.count(start, null, Payment.PaymentStatus.SUCCESS);
+        analyticsStore.refresh();
+        BigDecimal yenAfter = yenTotal(start);
+
+        // Assertions
+        assertEquals(before, stale);
+        assertEquals(before + 1, analyticsStore.count(start, null, Payment.PaymentStatus.SUCCESS));
+        assertEquals(0, yenBefore.add(new BigDecimal("500")).compareTo(yenAfter));
+        assertEquals(0, yenAfter.scale());
+    }
+
+    private BigDecimal yenTotal(LocalDateTime start) {
+        List<PaymentAggregate> stats = analyticsStore.aggregate(PaymentAnalyticsStore.Dimension.CURRENCY, start,
+                LocalDateTime.now().plusMinutes(1), Payment.PaymentStatus.SUCCESS);
+        return stats.stream().filter(aggregate -> "JPY".equals(aggregate.getKey()))
+                .map(PaymentAggregate::getTotalAmount).findFirst().orElse(BigDecimal.ZERO);
+    }
+
+    @Test
+    void testCursorPaginationWalksEveryPaymentOnce() {
+        String customerEmail = "pages@example.com";
+        for (int i = 0; i < 5; i++) {
+            PaymentRequest request = new PaymentRequest("Paged Customer", customerEmail, "+4444444444",
+                    new BigDecimal("10.00"), "INR", "Paged payment " + i, null);
+            paymentService.createPayment(request);
+        }
+
+        Set<Long> seen = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPage<PaymentResponse> page = paymentService.getPaymentsByCustomerEmail(customerEmail, cursor, 2);
+            for (PaymentResponse payment : page.getItems()) {
+                assertTrue(seen.add(payment.getId()), "Payment " + payment.getId() + " returned twice");
+            }
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        // Assertions
+        assertEquals(5, seen.size());
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void testExportPaymentsByEmail() throws Exception {
+        PaymentRequest request = new PaymentRequest("Export, Customer", "export@example.com", "+5555555555",
+                new BigDecimal("42.00"), "INR", "=HYPERLINK(\"http://example.com\")", null);
+        paymentService.createPayment(request);
+        paymentService.createPayment(request);
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        long csvRows = exportService.exportByCustomerEmail("export@example.com", PaymentExportService.Format.CSV, csv);
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        long jsonRows = exportService.exportByCustomerEmail("export@example.com", PaymentExportService.Format.NDJSON, ndjson);
+
+        // Assertions
+        assertEquals(2, csvRows);
+        assertEquals(2, jsonRows);
+        String[] csvLines = csv.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(3, csvLines.length);
+        assertTrue(csvLines[0].endsWith(",description"));
+        assertTrue(csvLines[1].contains("\"Export, Customer\""));
+        assertTrue(csvLines[1].contains(",'+5555555555,"));
+        assertTrue(csvLines[1].endsWith(",\"'=HYPERLINK(\"\"http://example.com\"\")\""));
+        String[] jsonLines = ndjson.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, jsonLines.length);
+        assertTrue(jsonLines[0].contains("\"customerEmail\":\"export@example.com\""));
+    }
+
+    @Test
+    void testSettlementReconciliationReportsDrift() throws Exception {
+        PaymentResponse settled = paymentService.createPayment(new PaymentRequest("Settled Customer",
+                "settled@example.com", "+3131313131", new BigDecimal("42.00"), "INR", "Settled", null));
+        PaymentResponse shortPaid = paymentService.createPayment(new PaymentRequest("Short Customer",
+                "short@example.com", "+3232323232", new BigDecimal("42.00"), "INR", "Short", null));
+        PaymentResponse pending = paymentService.createPayment(new PaymentRequest("Pending Customer",
+                "pending@example.com", "+3333333333", new BigDecimal("42.00"), "INR", "Pending", null));
+        paymentService.updatePaymentStatus(settled.getId(), Payment.PaymentStatus.SUCCESS);
+        paymentService.updatePaymentStatus(shortPaid.getId(), Payment.PaymentStatus.SUCCESS);
+
+        Path file = Files.createTempFile("settlement", ".csv");
+        try (SettlementFileGenerator generator = SettlementFileGenerator.create(file)) {
+            generator.payment(settled.getPaymentId(), null, new BigDecimal("42.00"))
+                    .payment(shortPaid.getPaymentId(), null, new BigDecimal("40.00"))
+                    .payment(null, pending.getOrderId(), new BigDecimal("42.00"))
+                    .randomPayments(3, 99);
+        }
+        SettlementReconciliationResult result = settlementService.reconcile(file);
+        List<SettlementMismatch> mismatches = mismatchRepository.findByRunIdOrderByFileOffset(result.getRunId());
+
+        // Assertions
+        assertEquals(6, result.getRows());
+        assertEquals(1, result.getMatched());
+        assertEquals(1, result.getAmountDrifts());
+        assertEquals(1, result.getStatusDrifts());
+        assertEquals(3, result.getMissingPayments());
+        assertEquals(5, mismatches.size());
+        assertEquals(SettlementMismatch.MismatchType.AMOUNT_DRIFT, mismatches.get(0).getType());
+        assertEquals(4000L, mismatches.get(0).getSettledAmountMinor());
+        assertEquals(4200L, mismatches.get(0).getExpectedAmountMinor());
+        assertEquals(SettlementMismatch.MismatchType.STATUS_DRIFT, mismatches.get(1).getType());
+        assertEquals(pending.getId(), mismatches.get(1).getPaymentRecordId());
+        assertEquals(3, mismatchRepository.countByRunIdAndType(result.getRunId(),
+                SettlementMismatch.MismatchType.MISSING_PAYMENT));
+    }
+
+    @Test
+    void testMerchantWebhooksDeliveredFromOutbox() throws Exception {
+        AtomicInteger received = new AtomicInteger();
+        AtomicInteger badSignatures = new AtomicInteger();
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec("hook_secret".getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        HttpServer receiver = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        receiver.createContext("/hooks", exchange -> {
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            String expected;
+            synchronized (mac) {
+                expected = HexCodec.encode(mac.doFinal(body));
+            }
+            if (!expected.equals(exchange.getRequestHeaders().getFirst("X-Webhook-Signature"))) {
+                badSignatures.incrementAndGet();
+            }
+            received.incrementAndGet();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        receiver.createContext("/fail", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        ExecutorService receiverThreads = Executors.newFixedThreadPool(8);
+        receiver.setExecutor(receiverThreads);
+        receiver.start();
+        try {
+            String base = "http://localhost:" + receiver.getAddress().getPort();
+            Merchant healthy = new Merchant();
+            healthy.setMerchantId("MERCH_HOOK_OK");
+            healthy.setBusinessName("Hook Store");
+            healthy.setContactName("Hook Tester");
+            healthy.setEmail("hook-ok@example.com");
+            healthy.setPhone("+3434343434");
+            healthy.setApiKey("key_hook_ok");
+            healthy.setWebhookUrl(base + "/hooks");
+            healthy.setWebhookSecret("hook_secret");
+            merchantRepository.save(healthy);
+            Merchant broken = new Merchant();
+            broken.setMerchantId("MERCH_HOOK_FAIL");
+            broken.setBusinessName("Broken Hook Store");
+            broken.setContactName("Hook Tester");
+            broken.setEmail("hook-fail@example.com");
+            broken.setPhone("+3535353535");
+            broken.setApiKey("key_hook_fail");
+            broken.setWebhookUrl(base + "/fail");
+            merchantRepository.save(broken);
+            Merchant suspended = new Merchant();
+            suspended.setMerchantId("MERCH_HOOK_SUSPENDED");
+            suspended.setBusinessName("Suspended Hook Store");
+            suspended.setContactName("Hook Tester");
+            suspended.setEmail("hook-suspended@example.com");
+            suspended.setPhone("+3434343435");
+            suspended.setApiKey("key_hook_suspended");
+            suspended.setWebhookUrl(base + "/hooks");
+            suspended.setStatus(Merchant.MerchantStatus.SUSPENDED);
+            merchantRepository.save(suspended);
+
+            int payments = 200;
+            for (int i = 0; i < payments; i++) {
+                PaymentRequest request = new PaymentRequest("Hook Customer " + i, "hook" + i + "@example.com",
+                        "+3636363636", new BigDecimal("10.00"), "INR", "Hooked", null);
+                request.setMerchantId("MERCH_HOOK_OK");
+                paymentService.updatePaymentStatus(paymentService.createPayment(request).getId(), Payment.PaymentStatus.SUCCESS);
+            }
+            PaymentRequest failing = new PaymentRequest("Hook Customer Fail", "hook-fail@example.com",
+                    "+3737373737", new BigDecimal("10.00"), "INR", "Hooked", null);
+            failing.setMerchantId("MERCH_HOOK_FAIL");
+            PaymentResponse failed = paymentService.createPayment(failing);
+            paymentService.updatePaymentStatus(failed.getId(), Payment.PaymentStatus.SUCCESS);
+            PaymentRequest held = new PaymentRequest("Hook Customer Held", "hook-held@example.com",
+                    "+3737373738", new BigDecimal("10.00"), "INR", "Hooked", null);
+            held.setMerchantId("MERCH_HOOK_SUSPENDED");
+            paymentService.updatePaymentStatus(paymentService.createPayment(held).getId(), Payment.PaymentStatus.SUCCESS);
+
+            // The scheduled run may pick events up too, so poll the outbox rather than count runs
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            webhookDispatcher.dispatch();
+            while (outboxRepository.countByStatus(WebhookOutboxEvent.OutboxStatus.DELIVERED) < payments
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+                webhookDispatcher.dispatch();
+            }
+            WebhookOutboxEvent retrying = outboxRepository.findAll().stream()
+                    .filter(event -> "MERCH_HOOK_FAIL".equals(event.getMerchantId()))
+                    .findFirst()
+                    .orElseThrow();
+            WebhookOutboxEvent deferred = outboxRepository.findAll().stream()
+                    .filter(event -> "MERCH_HOOK_SUSPENDED".equals(event.getMerchantId()))
+                    .findFirst()
+                    .orElseThrow();
+
+            // Assertions
+            assertEquals(payments, received.get());
+            assertEquals(0, badSignatures.get());
+            assertEquals(payments, outboxRepository.countByStatus(WebhookOutboxEvent.OutboxStatus.DELIVERED));
+            assertEquals(failed.getId(), retrying.getPaymentRecordId());
+            assertEquals(WebhookOutboxEvent.OutboxStatus.PENDING, retrying.getStatus());
+            assertEquals(1, retrying.getAttempts());
+            assertTrue(retrying.getNextAttemptAt().isAfter(LocalDateTime.now()));
+            assertTrue(retrying.getLastError().contains("500"));
+            assertEquals(WebhookOutboxEvent.OutboxStatus.PENDING, deferred.getStatus());
+            assertEquals(0, deferred.getAttempts());
+            assertTrue(deferred.getNextAttemptAt().isAfter(LocalDateTime.now()));
+            assertTrue(deferred.getLastError().contains("SUSPENDED"));
+        } finally {
+            receiver.stop(0);
+            receiverThreads.shutdown();
+        }
+    }
+
+    @Test
+    void testStrandedAsyncCreationIsPendingUntilRecovered() {
+        // An async creation whose queued gateway call was lost, e.g. in a restart
+        Payment stranded = new Payment();
+        stranded.setOrderId("ORDER_STRANDED_1");
+        stranded.setPaymentId("PAY_PROVISIONAL_1");
+        stranded.setCustomerName("Stranded Customer");
+        stranded.setCustomerEmail("stranded@example.com");
+        stranded.setCustomerPhone("+3838383838");
+        stranded.setAmount(new BigDecimal("12.00"));
+        stranded.setCurrency("INR");
+        stranded.setAwaitingGatewayOrder(true);
+        stranded.setPollToken("stranded_poll_token");
+        stranded = paymentRepository.save(stranded);
+        jdbcTemplate.update("UPDATE payments SET created_at = ? WHERE id = ?",
+                LocalDateTime.now().minusHours(1), stranded.getId());
+
+        PaymentCreationStatus before = paymentService.getPaymentCreationStatus("ORDER_STRANDED_1", "stranded_poll_token", 0);
+        int resubmitted = paymentService.recoverPendingCreations();
+        PaymentCreationStatus after = paymentService.getPaymentCreationStatus("ORDER_STRANDED_1", "stranded_poll_token", 5000);
+        PaymentCreationStatus guessed = paymentService.getPaymentCreationStatus("ORDER_STRANDED_1", "guessed", 0);
+        Payment recovered = paymentRepository.findById(stranded.getId()).orElseThrow();
+
+        // Assertions
+        assertEquals(PaymentCreationStatus.State.PENDING, before.getState());
+        assertNull(before.getPaymentId());
+        assertTrue(resubmitted >= 1);
+        assertEquals(PaymentCreationStatus.State.COMPLETED, after.getState());
+        assertNotNull(recovered.getGatewayOrderId());
+        assertEquals(recovered.getGatewayOrderId(), after.getPaymentId());
+        assertNull(guessed);
+    }
+
+    @Test
+    void testRecoveryLeavesPaymentsCreatedBeforeGatewayOrderIds() {
+        // A synchronously created payment from before gatewayOrderId: paymentId is its Razorpay order
+        Payment legacy = new Payment();
+        legacy.setOrderId("ORDER_LEGACY_1");
+        legacy.setPaymentId("order_legacy_1");
+        legacy.setCustomerName("Legacy Customer");
+        legacy.setCustomerEmail("legacy@example.com");
+        legacy.setCustomerPhone("+3939393939");
+        legacy.setAmount(new BigDecimal("14.00"));
+        legacy.setCurrency("INR");
+        legacy = paymentRepository.save(legacy);
+        jdbcTemplate.update("UPDATE payments SET created_at = ? WHERE id = ?",
+                LocalDateTime.now().minusHours(1), legacy.getId());
+
+        paymentService.recoverPendingCreations();
+        Payment after = paymentRepository.findById(legacy.getId()).orElseThrow();
+
+        // Assertions
+        assertEquals("order_legacy_1", after.getPaymentId());
+        assertNull(after.getGatewayOrderId());
+        assertNull(paymentService.getPaymentCreationStatus("ORDER_LEGACY_1", null, 0));
+    }
+
+    @Test
+    void testJournaledWebhooksApplyAndUnparseableOnesAreDeadLettered() throws Exception {
+        PaymentResponse payment = paymentService.createPayment(new PaymentRequest("Journal Customer",
+                "journal@example.com", "+4242424242", new BigDecimal("18.00"), "INR", "Journaled", null));
+        String captured = "{\"event\":\"payment.captured\",\"payload\":{\"payment\":{\"entity\":{"
+                + "\"id\":\"pay_journal_1\",\"status\":\"captured\",\"order_id\":\"" + payment.getOrderId() + "\"}}}}";
+
+        webhookJournal.append("evt_journal_garbage", "not a webhook".getBytes(StandardCharsets.UTF_8));
+        webhookJournal.append("evt_journal_captured", captured.getBytes(StandardCharsets.UTF_8));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline
+                && paymentService.getPaymentById(payment.getId()).getStatus() != Payment.PaymentStatus.SUCCESS) {
+            Thread.sleep(50);
+        }
+
+        // Assertions
+        assertEquals(Payment.PaymentStatus.SUCCESS, paymentService.getPaymentById(payment.getId()).getStatus());
+        assertTrue(deadLetterRepository.findAll().stream()
+                .anyMatch(letter -> "evt_journal_garbage".equals(letter.getEventId())
+                        && "not a webhook".equals(letter.getPayload())));
+        assertTrue(deadLetterRepository.findByOrderId(payment.getOrderId()).isEmpty());
+    }
+
     @Test
     void testInvalidPaymentRequest() {
         // Test with invalid data
@@ -285,6 +990,68 @@ class PaymentGatewayApplicationTests {
         }
     }
 
+    @Test
+    void testCreatePaymentsBatch() {
+        PaymentRequest valid1 = new PaymentRequest("Batch Customer One", "batch1@example.com", "+6666666666",
+                new BigDecimal("15.00"), "INR", "Batch payment 1", null);
+        PaymentRequest valid2 = new PaymentRequest("Batch Customer Two", "batch2@example.com", "+7777777777",
+                new BigDecimal("25.00"), "INR", "Batch payment 2", null);
+        PaymentRequest invalid = new PaymentRequest("Batch Customer Bad", "not-an-email", "+8888888888",
+                new BigDecimal("35.00"), "INR", "Batch payment 3", null);
+
+        BatchPaymentResponse response = paymentService.createPayments(List.of(valid1, invalid, valid2));
+
+        // Assertions
+        assertEquals(3, response.getTotal());
+        assertEquals(2, response.getSucceeded());
+        assertEquals(1, response.getFailed());
+        assertTrue(response.getResults().get(0).isSuccess());
+        assertNotNull(response.getResults().get(0).getPayment().getId());
+        assertNotNull(response.getResults().get(0).getPayment().getPaymentId());
+        assertFalse(response.getResults().get(1).isSuccess());
+        assertNotNull(response.getResults().get(1).getError());
+        assertTrue(response.getResults().get(2).isSuccess());
+        assertEquals("batch2@example.com", response.getResults().get(2).getPayment().getCustomerEmail());
+    }
+
+    @Test
+    void testDuplicateOrderIdIsRejectedByTheDatabase() {
+        PaymentResponse created = paymentService.createPayment(new PaymentRequest("Unique Customer",
+                "unique@example.com", "+4242424243", new BigDecimal("12.00"), "INR", "Unique order", null));
+
+        // Assertions
+        assertFalse(partitionManager.isPartitioned());
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "INSERT INTO payments (id, order_id, payment_id, customer_name, customer_email, customer_phone, "
+                        + "amount, amount_minor, currency, status, created_at) SELECT id + 1000000000, order_id, "
+                        + "payment_id, customer_name, customer_email, customer_phone, amount, amount_minor, currency, "
+                        + "status, created_at "
+                        + "FROM payments WHERE id = ?", created.getId()));
+    }
+
+    @Test
+    void testCreatePaymentsBatchIsolatesFailedInsert() {
+        PaymentRequest valid1 = new PaymentRequest("Isolated Customer One", "isolated1@example.com", "+3939393939",
+                new BigDecimal("15.00"), "INR", "Isolated payment 1", null);
+        PaymentRequest valid2 = new PaymentRequest("Isolated Customer Two", "isolated2@example.com", "+4040404040",
+                new BigDecimal("25.00"), "INR", "Isolated payment 2", null);
+        // Passes request validation but is longer than the merchantId column, so only its INSERT fails
+        PaymentRequest unsavable = new PaymentRequest("Isolated Customer Bad", "isolated3@example.com", "+4141414141",
+                new BigDecimal("35.00"), "INR", "Isolated payment 3", null);
+        unsavable.setMerchantId("M".repeat(60));
+
+        BatchPaymentResponse response = paymentService.createPayments(List.of(valid1, unsavable, valid2));
+
+        // Assertions
+        assertEquals(2, response.getSucceeded());
+        assertEquals(1, response.getFailed());
+        assertTrue(response.getResults().get(0).isSuccess());
+        assertFalse(response.getResults().get(1).isSuccess());
+        assertTrue(response.getResults().get(2).isSuccess());
+        Long savedId = response.getResults().get(2).getPayment().getId();
+        assertEquals("isolated2@example.com", paymentService.getPaymentById(savedId).getCustomerEmail());
+    }
+
     @Test
     void testGetNonExistentPayment() {
         PaymentResponse response = paymentService.getPaymentById(999999L);
@@ -0,0 +1,32 @@
+package com.payment.service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class MerchantWebhookDispatcherTests {
+
+    @Test
+    void testInternalAddressesAreNotPublic() throws UnknownHostException {
+        assertFalse(MerchantWebhookDispatcher.isPublicAddress(InetAddress.getByName("127.0.0.1")));
+        assertFalse(MerchantWebhookDispatcher.isPublicAddress(InetAddress.getByName("10.1.2.3")));
+        assertFalse(MerchantWebhookDispatcher.isPublicAddress(InetAddress.getByName("172.16.0.1")));
+        assertFalse(MerchantWebhookDispatcher.isPublicAddress(InetAddress.getByName("192.168.1.1")));
+        assertFalse(MerchantWebhookDispatcher.isPublicAddress(InetAddress.getByName("169.254.169.254")));
+        assertFalse(MerchantWebhookDispatcher.isPublicAddress(InetAddress.getByName("0.0.0.0")));
+        assertFalse(MerchantWebhookDispatcher.isPublicAddress(InetAddress.getByName("::1")));
+        assertFalse(MerchantWebhookDispatcher.isPublicAddress(InetAddress.getByName("fe80::1")));
+        assertFalse(MerchantWebhookDispatcher.isPublicAddress(InetAddress.getByName("fd00::1")));
+        assertFalse(MerchantWebhookDispatcher.isPublicAddress(InetAddress.getByName("::ffff:127.0.0.1")));
+    }
+
+    @Test
+    void testPublicAddressesAreAllowed() throws UnknownHostException {
+        assertTrue(MerchantWebhookDispatcher.isPublicAddress(InetAddress.getByName("93.184.216.34")));
+        assertTrue(MerchantWebhookDispatcher.isPublicAddress(InetAddress.getByName("172.32.0.1")));
+        assertTrue(MerchantWebhookDispatcher.isPublicAddress(InetAddress.getByName("2606:2800:220:1::1")));
+    }
+}
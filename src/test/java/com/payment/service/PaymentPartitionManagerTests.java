@@ -0,0 +1,37 @@
+package com.payment.service;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class PaymentPartitionManagerTests {
+
+    @Test
+    void testPartitionNamesCarryTheMonth() {
+        assertEquals("payments_p202401", PaymentPartitionManager.partitionName(YearMonth.of(2024, 1)));
+        assertEquals("payments_p202512", PaymentPartitionManager.partitionName(YearMonth.of(2025, 12)));
+    }
+
+    @Test
+    void testCreatesTheCurrentMonthAndTheMonthsAheadAcrossYearEnd() {
+        List<YearMonth> months = PaymentPartitionManager.monthsToCreate(YearMonth.of(2025, 11), 3);
+
+        assertEquals(List.of(YearMonth.of(2025, 11), YearMonth.of(2025, 12), YearMonth.of(2026, 1),
+                YearMonth.of(2026, 2)), months);
+        assertEquals(List.of(YearMonth.of(2025, 11)), PaymentPartitionManager.monthsToCreate(YearMonth.of(2025, 11), 0));
+    }
+
+    @Test
+    void testRetiresOnlyMonthsBeforeTheRetentionPeriod() {
+        YearMonth current = YearMonth.of(2025, 3);
+
+        assertTrue(PaymentPartitionManager.isPastRetention("payments_p202411", current, 3));
+        assertFalse(PaymentPartitionManager.isPastRetention("payments_p202412", current, 3));
+        assertFalse(PaymentPartitionManager.isPastRetention("payments_p202503", current, 3));
+        assertFalse(PaymentPartitionManager.isPastRetention("payments_p201001", current, 0));
+    }
+}
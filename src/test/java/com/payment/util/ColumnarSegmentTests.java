@@ -0,0 +1,77 @@
+package com.payment.util;
+
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ColumnarSegmentTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRoundTripsEveryColumnType() throws IOException {
+        Path file = dir.resolve("payments-202501.seg");
+        new ColumnarSegmentWriter(4)
+                .addLongColumn("id", new long[] {1, 2, 3, 4})
+                .addLongColumn("amount", new long[] {1000, ColumnarSegment.NULL_LONG, 250, 99999})
+                .addDictionaryColumn("currency", new String[] {"INR", "USD", "INR", null})
+                .addStringColumn("orderId", new String[] {"order_1", null, "", "order_₹4"})
+                .writeTo(file);
+
+        ColumnarSegment segment = ColumnarSegment.open(file);
+
+        assertEquals(4, segment.getRowCount());
+        LongBuffer amounts = segment.longColumn("amount");
+        assertEquals(1000, amounts.get(0));
+        assertEquals(ColumnarSegment.NULL_LONG, amounts.get(1));
+        assertEquals(99999, amounts.get(3));
+        ColumnarSegment.Dictionary currencies = segment.dictionaryColumn("currency");
+        assertEquals("USD", currencies.get(1));
+        assertEquals(currencies.code(0), currencies.code(2));
+        assertNull(currencies.get(3));
+        assertEquals(-1, currencies.indexOf("EUR"));
+        assertArrayEquals(new String[] {"order_1", null, "", "order_₹4"}, segment.stringColumn("orderId"));
+        assertThrows(IllegalArgumentException.class, () -> segment.longColumn("currency"));
+    }
+
+    @Test
+    void testReadsSingleValuesAndFindsRowsThroughTheIndex() throws IOException {
+        String[] orderIds = new String[1000];
+        for (int i = 0; i < orderIds.length; i++) {
+            orderIds[i] = i == 600 ? null : "order_" + i;
+        }
+        Path file = dir.resolve("payments-202503-000000000001.seg");
+        new ColumnarSegmentWriter(orderIds.length).addIndexedStringColumn("orderId", orderIds).writeTo(file);
+
+        ColumnarSegment segment = ColumnarSegment.open(file);
+
+        assertEquals("order_0", segment.stringValue("orderId", 0));
+        assertEquals("order_257", segment.stringValue("orderId", 257));
+        assertNull(segment.stringValue("orderId", 600));
+        assertEquals("order_999", segment.stringValue("orderId", 999));
+        assertArrayEquals(orderIds, segment.stringColumn("orderId"));
+        assertEquals(513, segment.findRow("orderId", "order_513"));
+        assertEquals(-1, segment.findRow("orderId", "order_600"));
+        assertEquals(-1, segment.findRow("orderId", "order_1000"));
+    }
+
+    @Test
+    void testRejectsTruncatedFiles() throws IOException {
+        Path file = dir.resolve("payments-202502.seg");
+        new ColumnarSegmentWriter(1).addLongColumn("id", new long[] {7}).writeTo(file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 4));
+
+        assertThrows(IOException.class, () -> ColumnarSegment.open(file));
+    }
+}
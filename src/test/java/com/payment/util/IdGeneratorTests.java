@@ -0,0 +1,73 @@
+package com.payment.util;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class IdGeneratorTests {
+
+    @Test
+    void testIdsAreMonotonicAndStringsSortLikeIds() {
+        IdGenerator generator = new IdGenerator(7);
+        long previousId = generator.nextId();
+        String previous = IdGenerator.encode("ORDER_", previousId);
+        for (int i = 0; i < 100000; i++) {
+            long id = generator.nextId();
+            String encoded = IdGenerator.encode("ORDER_", id);
+            assertTrue(id > previousId);
+            assertTrue(encoded.compareTo(previous) > 0, encoded + " should sort after " + previous);
+            assertEquals(19, encoded.length());
+            previousId = id;
+            previous = encoded;
+        }
+    }
+
+    @Test
+    void testIdsAreUniqueAcrossThreads() throws Exception {
+        IdGenerator generator = new IdGenerator(1);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 50000; i++) {
+                    ids.add(generator.nextId());
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(400000, ids.size());
+    }
+
+    @Test
+    void testIdCarriesTimestampAndNode() {
+        IdGenerator generator = new IdGenerator(1023);
+        long before = System.currentTimeMillis();
+        long id = generator.nextId();
+
+        assertTrue(IdGenerator.timestampOf(id) >= before);
+        assertEquals(1023, (id >>> IdGenerator.SEQUENCE_BITS) & IdGenerator.MAX_NODE_ID);
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(1024));
+    }
+
+    @Test
+    void testConfiguredNodeIdMustBeInRange() {
+        assertEquals(42, IdGenerator.parseNodeId(" 42 "));
+        assertThrows(IllegalStateException.class, () -> IdGenerator.parseNodeId("node-1"));
+        assertThrows(IllegalStateException.class, () -> IdGenerator.parseNodeId("1024"));
+    }
+
+    @Test
+    void testPaymentUtilsUsesPrefixes() {
+        assertTrue(PaymentUtils.generateOrderId().matches("ORDER_[0-9A-HJKMNP-TV-Z]{13}"));
+        assertTrue(PaymentUtils.generatePaymentId().matches("PAY_[0-9A-HJKMNP-TV-Z]{13}"));
+        assertTrue(PaymentUtils.generateTransactionId().matches("TXN_[0-9A-HJKMNP-TV-Z]{13}"));
+    }
+}
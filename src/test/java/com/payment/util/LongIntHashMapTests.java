@@ -0,0 +1,33 @@
+package com.payment.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+class LongIntHashMapTests {
+
+    @Test
+    void testPutGetAcrossResizes() {
+        LongIntHashMap map = new LongIntHashMap(4);
+        for (int i = 0; i < 100000; i++) {
+            map.put(i * 50L, i);
+        }
+        for (int i = 0; i < 100000; i++) {
+            assertEquals(i, map.get(i * 50L, -1));
+        }
+        assertEquals(-1, map.get(25L, -1));
+        assertEquals(100000, map.size());
+    }
+
+    @Test
+    void testZeroKeyAndOverwrite() {
+        LongIntHashMap map = new LongIntHashMap(16);
+        assertEquals(-1, map.get(0L, -1));
+        map.put(0L, 7);
+        map.put(Long.MIN_VALUE, 8);
+        map.put(Long.MIN_VALUE, 9);
+
+        assertEquals(7, map.get(0L, -1));
+        assertEquals(9, map.get(Long.MIN_VALUE, -1));
+        assertEquals(2, map.size());
+    }
+}
@@ -0,0 +1,46 @@
+package com.payment.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class MoneyTests {
+
+    @Test
+    void testMinorUnitsFollowCurrencyExponent() {
+        assertEquals(123450, Money.of(new BigDecimal("1234.50"), "INR").getMinorUnits());
+        assertEquals(12, Money.of(new BigDecimal("12.34"), "JPY").getMinorUnits());
+        assertEquals(1235, Money.of(new BigDecimal("1.2345"), "KWD").getMinorUnits());
+        assertEquals(250, Money.of(new BigDecimal("2.5"), "XYZ").getMinorUnits());
+
+        assertEquals(new BigDecimal("1.235"), Money.ofMinor(1235, "KWD").toBigDecimal());
+        assertEquals("INR 1234.50", Money.ofMinor(123450, "INR").format());
+        assertEquals("INR -0.05", Money.ofMinor(-5, "INR").format());
+        assertEquals("JPY 500", Money.ofMinor(500, "JPY").format());
+        assertEquals("KWD 1.005", Money.ofMinor(1005, "KWD").format());
+    }
+
+    @Test
+    void testArithmeticIsExactAndCurrencySafe() {
+        Money total = Money.ofMinor(10, "USD").plus(Money.ofMinor(20, "USD")).times(3);
+
+        assertEquals(Money.ofMinor(90, "USD"), total);
+        assertEquals(Money.ofMinor(-90, "USD"), Money.zero("USD").minus(total));
+        assertThrows(IllegalArgumentException.class, () -> total.plus(Money.ofMinor(1, "EUR")));
+        assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MAX_VALUE, "USD").plus(Money.ofMinor(1, "USD")));
+    }
+
+    @Test
+    void testJsonRoundTrip() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        String json = mapper.writeValueAsString(Money.ofMinor(10050, "INR"));
+
+        assertEquals("{\"minor\":10050,\"currency\":\"INR\"}", json);
+        assertEquals(Money.ofMinor(10050, "INR"), mapper.readValue(json, Money.class));
+    }
+}
@@ -0,0 +1,42 @@
+package com.payment.util;
+
+import java.time.LocalDateTime;
+
+import com.payment.exception.PaymentException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+class PageCursorTests {
+
+    @Test
+    void testRoundTripKeepsNanosAndId() {
+        LocalDateTime createdAt = LocalDateTime.of(2025, 3, 14, 15, 9, 26, 535897932);
+        String token = new PageCursor(createdAt, 271828L).encode();
+
+        PageCursor decoded = PageCursor.decode(token);
+
+        assertEquals(createdAt, decoded.getCreatedAt());
+        assertEquals(271828L, decoded.getId());
+        assertEquals(27, token.length());
+    }
+
+    @Test
+    void testRejectsMalformedTokens() {
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("not a cursor!"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("AAAA"));
+    }
+
+    @Test
+    void testRequestParametersAreDecodedAndClamped() {
+        assertNull(PageCursor.fromRequest(null));
+        assertNull(PageCursor.fromRequest(""));
+        assertThrows(PaymentException.class, () -> PageCursor.fromRequest("AAAA"));
+
+        assertEquals(1, PageCursor.pageSize(0, 100));
+        assertEquals(20, PageCursor.pageSize(20, 100));
+        assertEquals(100, PageCursor.pageSize(5000, 100));
+    }
+}
@@ -0,0 +1,102 @@
+package com.payment.util;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class RazorpaySignatureVerifierTests {
+
+    private static final String SECRET = "test_secret";
+    private static final String WEBHOOK_SECRET = "test_webhook_secret";
+
+    private final RazorpaySignatureVerifier verifier = new RazorpaySignatureVerifier(SECRET, WEBHOOK_SECRET);
+
+    @Test
+    void testGenerateSignatureMatchesReferenceHmac() throws Exception {
+        String data = "pay_test123|order_test456";
+
+        assertEquals(referenceSignature(data), verifier.generateSignature(data));
+    }
+
+    @Test
+    void testGenerateSignatureHandlesLongAndNonAsciiPayloads() throws Exception {
+        StringBuilder payload = new StringBuilder("{\"event\":\"payment.captured\",\"notes\":\"");
+        for (int i = 0; i < 500; i++) {
+            payload.append("line ").append(i).append(' ');
+        }
+        payload.append("café ₹\"}");
+
+        assertEquals(referenceSignature(payload.toString()), verifier.generateSignature(payload.toString()));
+    }
+
+    @Test
+    void testVerifyPaymentSignature() throws Exception {
+        String signature = referenceSignature("pay_test123|order_test456");
+
+        assertTrue(verifier.verifyPaymentSignature("pay_test123", "order_test456", signature));
+        assertTrue(verifier.verifyPaymentSignature("pay_test123", "order_test456", signature.toUpperCase()));
+        assertFalse(verifier.verifyPaymentSignature("pay_test123", "order_other", signature));
+        assertFalse(verifier.verifyPaymentSignature("pay_test123", "order_test456", null));
+        assertFalse(verifier.verifyPaymentSignature("pay_test123", "order_test456", signature.substring(2)));
+        assertFalse(verifier.verifyPaymentSignature("pay_test123", "order_test456", "zz" + signature.substring(2)));
+    }
+
+    @Test
+    void testFailedVerificationDoesNotCorruptTheNextOne() throws Exception {
+        String signature = referenceSignature("pay_test123|order_test456");
+
+        // A null order ID fails after paymentId has already been fed into the MAC
+        assertFalse(verifier.verifyPaymentSignature("pay_test123", null, signature));
+        assertTrue(verifier.verifyPaymentSignature("pay_test123", "order_test456", signature));
+    }
+
+    @Test
+    void testVerifyWebhookSignature() throws Exception {
+        String payload = "{\"event\":\"payment.failed\"}";
+        String signature = referenceSignature(WEBHOOK_SECRET, payload);
+
+        assertTrue(verifier.verifyWebhookSignature(payload, signature));
+        assertFalse(verifier.verifyWebhookSignature(payload + " ", signature));
+        assertEquals(signature, verifier.generateWebhookSignature(payload));
+    }
+
+    @Test
+    void testWebhooksAreNotVerifiedWithTheApiKeySecret() throws Exception {
+        String payload = "{\"event\":\"payment.captured\"}";
+
+        assertFalse(verifier.verifyWebhookSignature(payload, referenceSignature(SECRET, payload)));
+        assertFalse(verifier.verifyPaymentSignature("pay_test123", "order_test456",
+                referenceSignature(WEBHOOK_SECRET, "pay_test123|order_test456")));
+    }
+
+    @Test
+    void testVerifyWebhookSignatureOverRawBytes() throws Exception {
+        String payload = "{\"event\":\"payment.captured\",\"notes\":\"café ₹\"}";
+        String signature = referenceSignature(WEBHOOK_SECRET, payload);
+
+        assertTrue(verifier.verifyWebhookSignature(payload.getBytes(StandardCharsets.UTF_8), signature));
+        assertFalse(verifier.verifyWebhookSignature((payload + " ").getBytes(StandardCharsets.UTF_8), signature));
+        assertFalse(verifier.verifyWebhookSignature(payload.getBytes(StandardCharsets.UTF_8), null));
+    }
+
+    private static String referenceSignature(String data) throws Exception {
+        return referenceSignature(SECRET, data);
+    }
+
+    private static String referenceSignature(String secret, String data) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        byte[] hash = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hash) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,133 @@
+package com.payment.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SettlementFileScannerTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRowsAreReadAcrossSmallChunks() throws IOException {
+        Path file = dir.resolve("settlement.csv");
+        try (SettlementFileGenerator generator = SettlementFileGenerator.create(file)) {
+            generator.payment("pay_A", "order_A", new BigDecimal("1234.50"))
+                    .refund("pay_B", null, new BigDecimal("0.05"))
+                    .randomPayments(5000, 7);
+        }
+
+        Map<String, Long> amounts = new ConcurrentHashMap<>();
+        Map<String, SettlementFileScanner.RowType> types = new ConcurrentHashMap<>();
+        long rows = new SettlementFileScanner(4096).scan(file, row -> {
+            amounts.put(row.paymentId(), row.amountMinor(2));
+            types.put(row.paymentId(), row.type());
+            assertEquals(SettlementFileScanner.hash(row.paymentId()), row.paymentIdHash());
+        });
+
+        assertEquals(5002, rows);
+        assertEquals(5002, amounts.size());
+        assertEquals(123450L, amounts.get("pay_A"));
+        assertEquals(5L, amounts.get("pay_B"));
+        assertEquals(SettlementFileScanner.RowType.REFUND, types.get("pay_B"));
+        assertEquals(SettlementFileScanner.RowType.PAYMENT, types.get("pay_7_4999"));
+    }
+
+    @Test
+    void testQuotesCrlfAndBlankLines() throws IOException {
+        Path file = dir.resolve("quoted.csv");
+        Files.writeString(file, "\"Type\",Notes,Amount,Payment_ID\r\n"
+                + "adjustment,\"a, b\",1.00,pay_X\r\n"
+                + "\r\n"
+                + "PAYMENT,\"c, \"\"d\"\"\",\"7.5\",\"pay_Y\"\r\n"
+                + "payment,,abc,pay_Z");
+
+        Map<String, Long> amounts = new ConcurrentHashMap<>();
+        LongAdder other = new LongAdder();
+        long rows = new SettlementFileScanner(8).scan(file, row -> {
+            if (row.type() == SettlementFileScanner.RowType.OTHER) {
+                other.increment();
+            } else {
+                amounts.put(row.paymentId(), row.amountMinor(2));
+            }
+        });
+
+        assertEquals(3, rows);
+        assertEquals(1, other.sum());
+        assertEquals(750L, amounts.get("pay_Y"));
+        assertEquals(SettlementFileScanner.INVALID_AMOUNT, amounts.get("pay_Z"));
+    }
+
+    @Test
+    void testHeaderWithoutIdColumnsIsRejected() throws IOException {
+        Path file = dir.resolve("bad.csv");
+        Files.writeString(file, "entity_id,amount\nsetl_1,1.00\n");
+
+        assertThrows(IOException.class, () -> new SettlementFileScanner(1024).scan(file, row -> { }));
+    }
+
+    @Test
+    void testParseAmount() {
+        assertEquals(123450L, parse("1234.5"));
+        assertEquals(100L, parse("1"));
+        assertEquals(100L, parse("1."));
+        assertEquals(13L, parse("0.125"));
+        assertEquals(-13L, parse("-0.125"));
+        assertEquals(12L, parse("0.1249"));
+        assertEquals(SettlementFileScanner.INVALID_AMOUNT, parse(""));
+        assertEquals(SettlementFileScanner.INVALID_AMOUNT, parse("-"));
+        assertEquals(SettlementFileScanner.INVALID_AMOUNT, parse("1,000.00"));
+        assertEquals(SettlementFileScanner.INVALID_AMOUNT, parse("99999999999999999999"));
+    }
+
+    @Test
+    void testParseAmountUsesTheCurrencyExponent() {
+        assertEquals(500L, parse("500", 0));
+        assertEquals(501L, parse("500.5", 0));
+        assertEquals(1234500L, parse("1234.5", 3));
+        assertEquals(1235L, parse("1.2345", 3));
+    }
+
+    @Test
+    void testCurrencyColumnIsReadWhenPresent() throws IOException {
+        Path file = dir.resolve("currencies.csv");
+        Files.writeString(file, "payment_id,amount,currency\npay_J,500,JPY\npay_K,1.250,KWD\npay_N,1.00,\n");
+
+        Map<String, Long> amounts = new ConcurrentHashMap<>();
+        Map<String, String> currencies = new ConcurrentHashMap<>();
+        new SettlementFileScanner(1024).scan(file, row -> {
+            amounts.put(row.paymentId(), row.amountMinor(Money.exponent(row.currency())));
+            if (row.currency() != null) {
+                currencies.put(row.paymentId(), row.currency());
+            }
+        });
+
+        assertEquals(500L, amounts.get("pay_J"));
+        assertEquals(1250L, amounts.get("pay_K"));
+        assertEquals(100L, amounts.get("pay_N"));
+        assertEquals("KWD", currencies.get("pay_K"));
+        assertEquals(2, currencies.size());
+    }
+
+    private static long parse(String amount) {
+        return parse(amount, 2);
+    }
+
+    private static long parse(String amount, int exponent) {
+        byte[] bytes = amount.getBytes(StandardCharsets.US_ASCII);
+        return SettlementFileScanner.parseAmount(ByteBuffer.wrap(bytes), 0, bytes.length, exponent);
+    }
+}
@@ -0,0 +1,51 @@
+package com.payment.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+import com.payment.dto.WebhookEvent;
+
+class WebhookPayloadParserTests {
+
+    @Test
+    void testParseRazorpayEntityEnvelope() throws Exception {
+        String payload = "{\"entity\":\"event\",\"event\":\"payment.captured\",\"contains\":[\"payment\"],"
+                + "\"payload\":{\"payment\":{\"entity\":{\"id\":\"pay_1\",\"notes\":{\"tags\":[1,2,{\"x\":1}]},"
+                + "\"status\":\"captured\",\"order_id\":\"order_rzp\"}},"
+                + "\"order\":{\"entity\":{\"id\":\"order_ours\",\"notes\":{}}}},\"created_at\":1700000000}";
+
+        WebhookEvent event = parse(payload);
+
+        assertEquals("payment.captured", event.getEvent());
+        assertEquals("pay_1", event.getPaymentId());
+        assertEquals("captured", event.getStatus());
+        assertEquals("order_ours", event.getOrderId());
+    }
+
+    @Test
+    void testParseFlatPaymentFallsBackToPaymentOrderId() throws Exception {
+        String payload = "{\"event\":\"payment.failed\",\"payload\":{\"payment\":"
+                + "{\"id\":\"pay_2\",\"status\":\"failed\",\"order_id\":\"order_2\"}}}";
+
+        WebhookEvent event = parse(payload);
+
+        assertEquals("payment.failed", event.getEvent());
+        assertEquals("pay_2", event.getPaymentId());
+        assertEquals("order_2", event.getOrderId());
+    }
+
+    @Test
+    void testParseRejectsIncompletePayload() {
+        assertThrows(IOException.class, () -> parse("{\"event\":\"payment.captured\"}"));
+        assertThrows(IOException.class, () -> parse("{\"payload\":{\"payment\":{\"id\":\"pay_3\",\"order_id\":\"o\"}}}"));
+        assertThrows(IOException.class, () -> parse("[]"));
+    }
+
+    private static WebhookEvent parse(String payload) throws IOException {
+        return WebhookPayloadParser.parse(payload.getBytes(StandardCharsets.UTF_8));
+    }
+}